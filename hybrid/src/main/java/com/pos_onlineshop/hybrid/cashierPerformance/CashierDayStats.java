@@ -0,0 +1,59 @@
+package com.pos_onlineshop.hybrid.cashierPerformance;
+
+import java.math.BigDecimal;
+
+/**
+ * Session totals of one cashier over a set of sessions, e.g. those started on one day
+ */
+public class CashierDayStats {
+
+    private long sessions;
+    private long closedSessions;
+    private long closedSessionMinutes;
+    private BigDecimal sales = BigDecimal.ZERO;
+    private long transactions;
+
+    public CashierDayStats(long sessions, long closedSessions, long closedSessionMinutes, BigDecimal sales,
+                           long transactions) {
+        this.sessions = sessions;
+        this.closedSessions = closedSessions;
+        this.closedSessionMinutes = closedSessionMinutes;
+        this.sales = sales != null ? sales : BigDecimal.ZERO;
+        this.transactions = transactions;
+    }
+
+    public static CashierDayStats empty() {
+        return new CashierDayStats(0, 0, 0, BigDecimal.ZERO, 0);
+    }
+
+    /**
+     * Add another set of sessions of the same cashier to this one
+     */
+    public CashierDayStats add(CashierDayStats other) {
+        sessions += other.sessions;
+        closedSessions += other.closedSessions;
+        closedSessionMinutes += other.closedSessionMinutes;
+        sales = sales.add(other.sales);
+        transactions += other.transactions;
+        return this;
+    }
+
+    public long getSessions() {
+        return sessions;
+    }
+
+    public BigDecimal getSales() {
+        return sales;
+    }
+
+    public long getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Average length in minutes of the sessions that have ended
+     */
+    public double getAverageSessionMinutes() {
+        return closedSessions > 0 ? (double) closedSessionMinutes / closedSessions : 0.0;
+    }
+}
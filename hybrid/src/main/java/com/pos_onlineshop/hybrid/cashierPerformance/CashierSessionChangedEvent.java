@@ -0,0 +1,9 @@
+package com.pos_onlineshop.hybrid.cashierPerformance;
+
+import java.time.LocalDate;
+
+/**
+ * A cashier session started on the given day was opened, closed or took a sale
+ */
+public record CashierSessionChangedEvent(LocalDate day) {
+}
@@ -13,7 +13,10 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "cashier_sessions")
+@Table(name = "cashier_sessions", indexes = {
+        @Index(name = "idx_cashier_sessions_start", columnList = "session_start"),
+        @Index(name = "idx_cashier_sessions_cashier_start", columnList = "cashier_id, session_start")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
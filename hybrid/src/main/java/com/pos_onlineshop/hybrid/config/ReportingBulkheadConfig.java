@@ -0,0 +1,72 @@
+package com.pos_onlineshop.hybrid.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps how many analytics requests run at once, so long reports cannot take every
+ * database connection away from the tills. Requests over the cap wait briefly and are
+ * then answered with 503. Disabled when reporting.max-concurrent-requests is 0.
+ */
+@Configuration
+@Slf4j
+public class ReportingBulkheadConfig implements WebMvcConfigurer {
+
+    @Value("${reporting.max-concurrent-requests:0}")
+    private int maxConcurrentRequests;
+
+    @Value("${reporting.queue-timeout-ms:2000}")
+    private long queueTimeoutMs;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (maxConcurrentRequests > 0) {
+            registry.addInterceptor(new BulkheadInterceptor(new Semaphore(maxConcurrentRequests, true), queueTimeoutMs))
+                    .addPathPatterns("/api/analytics/**");
+            log.info("Analytics requests limited to {} at a time", maxConcurrentRequests);
+        }
+    }
+
+    private static final class BulkheadInterceptor implements HandlerInterceptor {
+
+        private static final String PERMIT = BulkheadInterceptor.class.getName() + ".permit";
+
+        private final Semaphore permits;
+        private final long queueTimeoutMs;
+
+        private BulkheadInterceptor(Semaphore permits, long queueTimeoutMs) {
+            this.permits = permits;
+            this.queueTimeoutMs = queueTimeoutMs;
+        }
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+                throws Exception {
+            if (permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                request.setAttribute(PERMIT, Boolean.TRUE);
+                return true;
+            }
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many reports running, try again shortly");
+            return false;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                    Exception ex) {
+            if (request.getAttribute(PERMIT) != null) {
+                request.removeAttribute(PERMIT);
+                permits.release();
+            }
+        }
+    }
+}
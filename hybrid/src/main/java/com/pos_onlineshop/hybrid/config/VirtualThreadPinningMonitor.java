@@ -0,0 +1,83 @@
+package com.pos_onlineshop.hybrid.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Logs virtual threads that stay pinned to their carrier (blocking inside synchronized
+ * code or a native frame) for longer than virtual-threads.pinning.threshold, with the
+ * frames that caused it. Uses the JDK's own jdk.VirtualThreadPinned flight recorder
+ * event, so it costs nothing until a pin actually happens.
+ */
+@Component
+@Profile("virtual")
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int FRAMES_LOGGED = 8;
+
+    @Value("${virtual-threads.pinning.threshold:PT0.02S}")
+    private Duration threshold;
+
+    private final LongAdder pinnedEvents = new LongAdder();
+    private RecordingStream stream;
+
+    @PostConstruct
+    public void start() {
+        if (Runtime.version().feature() < 21) {
+            log.warn("Virtual thread profile is active on Java {}; requests run on platform threads " +
+                    "and pinning is not monitored", Runtime.version().feature());
+            return;
+        }
+
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Monitoring virtual thread pinning longer than {}", threshold);
+    }
+
+    /**
+     * Pinning events seen since startup
+     */
+    public long getPinnedEvents() {
+        return pinnedEvents.sum();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedEvents.increment();
+        log.warn("Virtual thread pinned for {} ms:{}", event.getDuration().toMillis(), topFrames(event));
+    }
+
+    private String topFrames(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return " (no stack trace)";
+        }
+        List<RecordedFrame> frames = event.getStackTrace().getFrames();
+        return frames.stream()
+                .limit(FRAMES_LOGGED)
+                .map(frame -> "\n\tat " + frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                        + ":" + frame.getLineNumber())
+                .collect(Collectors.joining());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+}
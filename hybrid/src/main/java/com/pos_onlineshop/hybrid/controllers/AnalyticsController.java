@@ -1,11 +1,20 @@
 package com.pos_onlineshop.hybrid.controllers;
 
 import com.pos_onlineshop.hybrid.currency.Currency;
+import com.pos_onlineshop.hybrid.dtos.CustomerCohort;
+import com.pos_onlineshop.hybrid.dtos.CustomerStats;
+import com.pos_onlineshop.hybrid.dtos.DashboardSnapshot;
+import com.pos_onlineshop.hybrid.dtos.ShopStockAlerts;
 
 import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import com.pos_onlineshop.hybrid.enums.SalesChannel;
+import com.pos_onlineshop.hybrid.revenueSeries.RevenueResolution;
+import com.pos_onlineshop.hybrid.salesCube.CubeDimension;
+import com.pos_onlineshop.hybrid.salesCube.CubeQuery;
+import com.pos_onlineshop.hybrid.salesCube.CubeResult;
 import com.pos_onlineshop.hybrid.services.*;
-
-import com.pos_onlineshop.hybrid.userAccount.UserAccount;
+import com.pos_onlineshop.hybrid.topProducts.TopProductsWindow;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
@@ -16,7 +25,11 @@ import org.springframework.web.bind.annotation.*;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -29,71 +42,169 @@ public class AnalyticsController {
 
     private final OrderService orderService;
     private final InventoryService inventoryService;
-    private final UserAccountService userAccountService;
     private final AccountancyService accountancyService;
     private final ShopInventoryService shopInventoryService;
     private final CurrencyService currencyService;
+    private final DashboardSnapshotService dashboardSnapshotService;
+    private final SalesCubeService salesCubeService;
+    private final TopProductsService topProductsService;
+    private final CustomerSketchService customerSketchService;
+    private final RevenueSeriesService revenueSeriesService;
 
     @GetMapping("/dashboard")
     public ResponseEntity<Map<String, Object>> getDashboardData(
             @RequestParam(value = "currencyCode", defaultValue = "USD") String currencyCode,
             @RequestParam(value = "shopId", required = false) Long shopId) {
 
-        Map<String, Object> dashboard = new HashMap<>();
-
         try {
-            // Get the currency for revenue calculations
-            Currency targetCurrency = currencyService.findByCode(currencyCode)
-                    .orElse(currencyService.getDefaultCurrency());
+            return ResponseEntity.ok(toResponse(dashboardSnapshotService.getSnapshot(shopId, currencyCode)));
+        } catch (Exception e) {
+            log.error("Error retrieving dashboard data", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to retrieve dashboard data: " + e.getMessage()));
+        }
+    }
 
-            // Order statistics
-            dashboard.put("todayOrders", orderService.countRecentOrders(1));
-            dashboard.put("weekOrders", orderService.countRecentOrders(7));
-            dashboard.put("monthOrders", orderService.countRecentOrders(30));
+    @PostMapping("/dashboard/refresh")
+    public ResponseEntity<Map<String, Object>> refreshDashboardData(
+            @RequestParam(value = "currencyCode", defaultValue = "USD") String currencyCode,
+            @RequestParam(value = "shopId", required = false) Long shopId) {
 
-            // Revenue statistics with proper currency parameter
-            dashboard.put("todayRevenue", orderService.calculateRevenue(OrderStatus.COMPLETED, targetCurrency));
-            dashboard.put("pendingRevenue", orderService.calculateRevenue(OrderStatus.PENDING, targetCurrency));
-            dashboard.put("totalRevenue", orderService.calculateRevenue(OrderStatus.COMPLETED, targetCurrency)
-                    .add(orderService.calculateRevenue(OrderStatus.DELIVERED, targetCurrency)));
+        try {
+            DashboardSnapshot snapshot = dashboardSnapshotService.refresh(shopId, currencyCode);
+            log.info("Dashboard snapshot refreshed for currency: {}, shopId: {}", currencyCode, shopId);
+            return ResponseEntity.ok(toResponse(snapshot));
+        } catch (Exception e) {
+            log.error("Error refreshing dashboard data", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to refresh dashboard data: " + e.getMessage()));
+        }
+    }
 
-            // Inventory statistics
-            if (shopId != null) {
-                // Shop-specific inventory data
-//                dashboard.put("shopInventoryValue", shopInventoryService.calculateShopInventoryValue(shopId));
-//                dashboard.put("shopLowStockCount", shopInventoryService.getLowStockItems(shopId).size());
-//                dashboard.put("shopOverstockedCount", shopInventoryService.getOverstockedItems(shopId).size());
-//                dashboard.put("shopUnderstockedCount", shopInventoryService.getUnderstockedItems(shopId).size());
-//                dashboard.put("shopItemsNeedingRestock", shopInventoryService.getItemsNeedingRestock(shopId).size());
-            } else {
-                // System-wide inventory data using existing InventoryService
-                dashboard.put("totalInventoryValue", inventoryService.calculateTotalInventoryValue());
-                dashboard.put("lowStockCount", inventoryService.findLowStockItems().size());
+    @GetMapping("/cube")
+    public ResponseEntity<Map<String, Object>> queryCube(
+            @RequestParam(value = "groupBy", required = false) List<CubeDimension> groupBy,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "shopId", required = false) Long shopId,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "productId", required = false) Long productId,
+            @RequestParam(value = "paymentMethod", required = false) PaymentMethod paymentMethod,
+            @RequestParam(value = "cashierId", required = false) Long cashierId,
+            @RequestParam(value = "currencyCode", required = false) String currencyCode,
+            @RequestParam(value = "salesChannel", required = false) SalesChannel salesChannel) {
+
+        try {
+            long started = System.nanoTime();
+            CubeResult result = salesCubeService.query(new CubeQuery(groupBy, from, to, shopId, category,
+                    productId, paymentMethod, cashierId, currencyCode, salesChannel));
+
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (CubeResult.Row row : result.rows()) {
+                Map<String, Object> values = new LinkedHashMap<>();
+                row.keys().forEach((dimension, value) -> values.put(dimension.name(), value));
+                values.put("lines", row.lines());
+                values.put("quantity", row.quantity());
+                values.put("amount", row.amount());
+                rows.add(values);
             }
 
-            // User statistics
-            dashboard.put("totalUsers", userAccountService.findAllUsers().size());
-            dashboard.put("activeUsers", userAccountService.findAllUsers().stream()
-                    .filter(UserAccount::isEnabled).count());
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("rows", rows);
+            response.put("scannedLines", result.scannedLines());
+            response.put("elapsedMs", (System.nanoTime() - started) / 1_000_000);
+            response.put("loadedAt", salesCubeService.getLoadedAt());
+            return ResponseEntity.ok(response);
 
-            // Currency information
-            dashboard.put("currency", Map.of(
-                    "code", targetCurrency.getCode(),
-                    "symbol", targetCurrency.getSymbol(),
-                    "name", targetCurrency.getName()
-            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error querying sales cube", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to query sales cube: " + e.getMessage()));
+        }
+    }
 
-            // Additional metrics
-            dashboard.put("averageOrderValue", calculateAverageOrderValue(targetCurrency));
-            dashboard.put("conversionRate", calculateOrderConversionRate());
+    @PostMapping("/cube/reload")
+    public ResponseEntity<Map<String, Object>> reloadCube() {
+        try {
+            int lines = salesCubeService.reload();
+            return ResponseEntity.ok(Map.of("lines", lines, "loadedAt", salesCubeService.getLoadedAt()));
+        } catch (Exception e) {
+            log.error("Error reloading sales cube", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to reload sales cube: " + e.getMessage()));
+        }
+    }
 
-            log.info("Dashboard data retrieved successfully for currency: {}, shopId: {}", currencyCode, shopId);
-            return ResponseEntity.ok(dashboard);
+    @GetMapping("/top-products")
+    public ResponseEntity<?> getTopProducts(
+            @RequestParam(value = "shopId", required = false) Long shopId,
+            @RequestParam(value = "window", defaultValue = "DAY") TopProductsWindow window,
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @RequestParam(value = "previous", defaultValue = "false") boolean previous,
+            @RequestParam(value = "exact", defaultValue = "false") boolean exact) {
 
+        try {
+            return ResponseEntity.ok(topProductsService.getTopProducts(shopId, window, limit, previous, exact));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
-            log.error("Error retrieving dashboard data", e);
+            log.error("Error retrieving top products", e);
             return ResponseEntity.internalServerError()
-                    .body(Map.of("error", "Failed to retrieve dashboard data: " + e.getMessage()));
+                    .body(Map.of("error", "Failed to retrieve top products: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/customers")
+    public ResponseEntity<?> getCustomerStats(
+            @RequestParam(value = "shopId", required = false) Long shopId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        try {
+            CustomerStats stats = customerSketchService.getCustomerStats(shopId, startDate, endDate);
+            return ResponseEntity.ok(stats);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error retrieving customer statistics", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to retrieve customer statistics: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/customers/retention")
+    public ResponseEntity<?> getCustomerRetention(
+            @RequestParam(value = "shopId", required = false) Long shopId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam(value = "months", defaultValue = "6") int months) {
+
+        try {
+            List<CustomerCohort> cohorts = customerSketchService.getRetention(shopId, from, months);
+            return ResponseEntity.ok(cohorts);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error retrieving customer retention", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to retrieve customer retention: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/customers/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildCustomerSketches(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        try {
+            return ResponseEntity.ok(Map.of("rows", customerSketchService.rebuild(startDate, endDate)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error rebuilding customer sketches", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to rebuild customer sketches: " + e.getMessage()));
         }
     }
 
@@ -112,20 +223,19 @@ public class AnalyticsController {
 
             Map<String, Object> trend = new HashMap<>();
             trend.put("channelStats", orderService.getSalesChannelStats(start, end));
-            trend.put("topProducts", orderService.getMostOrderedProducts());
+            trend.put("topProducts", topProductsService.getTopProducts(start, end, null, 10));
             trend.put("periodSummary", accountancyService.getPeriodicSummary());
 
             // Add revenue data for the period with currency support
-            trend.put("periodRevenue", orderService.calculatePeriodRevenue(start, end, targetCurrency));
+            BigDecimal periodRevenue = orderService.calculatePeriodRevenue(start, end, targetCurrency);
+            trend.put("periodRevenue", periodRevenue);
             trend.put("currency", targetCurrency.getCode());
 
             // Add growth comparison if available
             LocalDateTime previousStart = start.minusDays(endDate.toEpochDay() - startDate.toEpochDay() + 1);
-            trend.put("previousPeriodRevenue", orderService.calculatePeriodRevenue(previousStart, start, targetCurrency));
-            trend.put("growthRate", calculateGrowthRate(
-                    orderService.calculatePeriodRevenue(previousStart, start, targetCurrency),
-                    orderService.calculatePeriodRevenue(start, end, targetCurrency)
-            ));
+            BigDecimal previousRevenue = orderService.calculatePeriodRevenue(previousStart, start, targetCurrency);
+            trend.put("previousPeriodRevenue", previousRevenue);
+            trend.put("growthRate", calculateGrowthRate(previousRevenue, periodRevenue));
 
             return ResponseEntity.ok(trend);
 
@@ -136,6 +246,29 @@ public class AnalyticsController {
         }
     }
 
+    @GetMapping("/revenue/series")
+    public ResponseEntity<?> getRevenueSeries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(value = "resolution", defaultValue = "HOUR") RevenueResolution resolution,
+            @RequestParam(value = "currencyCode", defaultValue = "USD") String currencyCode,
+            @RequestParam(value = "shopId", required = false) Long shopId) {
+
+        try {
+            Currency targetCurrency = currencyService.findByCode(currencyCode)
+                    .orElse(currencyService.getDefaultCurrency());
+            return ResponseEntity.ok(Map.of(
+                    "points", revenueSeriesService.getSeries(shopId, resolution, startDate, endDate, targetCurrency),
+                    "currency", targetCurrency.getCode()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error retrieving revenue series", e);
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to retrieve revenue series: " + e.getMessage()));
+        }
+    }
+
     @GetMapping("/performance")
     public ResponseEntity<Map<String, Object>> getPerformanceMetrics(
             @RequestParam(value = "currencyCode", defaultValue = "USD") String currencyCode,
@@ -154,7 +287,7 @@ public class AnalyticsController {
 
             // Additional performance metrics
             performance.put("orderFulfillmentRate", calculateOrderFulfillmentRate());
-            performance.put("customerRetentionRate", calculateCustomerRetentionRate());
+            performance.put("customerRetentionRate", calculateCustomerRetentionRate(shopId));
             performance.put("averageOrderProcessingTime", calculateAverageOrderProcessingTime());
 
             if (shopId != null) {
@@ -228,8 +361,9 @@ public class AnalyticsController {
             } else {
                 // System-wide inventory using existing InventoryService
                 inventoryData.put("totalValue", inventoryService.calculateTotalInventoryValue());
-                inventoryData.put("lowStockItems", inventoryService.findLowStockItems());
-                inventoryData.put("lowStockCount", inventoryService.findLowStockItems().size());
+                List<ShopStockAlerts> lowStock = inventoryService.findLowStockItems();
+                inventoryData.put("lowStockItems", lowStock);
+                inventoryData.put("lowStockCount", InventoryService.countLowStockItems(lowStock));
             }
 
             return ResponseEntity.ok(inventoryData);
@@ -241,6 +375,12 @@ public class AnalyticsController {
         }
     }
 
+    private Map<String, Object> toResponse(DashboardSnapshot snapshot) {
+        Map<String, Object> dashboard = new LinkedHashMap<>(snapshot.getMetrics());
+        dashboard.put("generatedAt", snapshot.getGeneratedAt());
+        return dashboard;
+    }
+
     // Helper methods for calculations
     private BigDecimal calculateAverageOrderValue(Currency currency) {
         try {
@@ -299,10 +439,13 @@ public class AnalyticsController {
         }
     }
 
-    private double calculateCustomerRetentionRate() {
+    /**
+     * Share of the last 30 days' customers who also bought in the 30 days before
+     */
+    private double calculateCustomerRetentionRate(Long shopId) {
         try {
-            // Placeholder - implement based on your customer analytics
-            return 0.0; // TODO: Implement customer retention rate
+            LocalDate today = LocalDate.now();
+            return customerSketchService.getCustomerStats(shopId, today.minusDays(29), today).getReturningRate();
         } catch (Exception e) {
             log.warn("Error calculating customer retention rate", e);
             return 0.0;
@@ -330,8 +473,7 @@ public class AnalyticsController {
 
     private BigDecimal getShopRevenue(Long shopId, Currency currency) {
         try {
-            // Placeholder - implement shop-specific revenue calculation
-            return BigDecimal.ZERO; // TODO: Implement shop revenue calculation
+            return orderService.calculateShopRevenue(shopId, currency);
         } catch (Exception e) {
             log.warn("Error calculating shop revenue", e);
             return BigDecimal.ZERO;
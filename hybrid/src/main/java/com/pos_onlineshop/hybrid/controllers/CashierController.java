@@ -213,6 +213,34 @@ public class CashierController {
         }
     }
 
+    @GetMapping("/leaderboard")
+    @PreAuthorize("hasAnyRole('SUPERVISOR', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<List<CashierPerformance>> getLeaderboard(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(cashierService.getTopPerformingCashiers(startDate, endDate, limit));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid cashier leaderboard request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{cashierId}/stats")
+    @PreAuthorize("hasAnyRole('SUPERVISOR', 'MANAGER', 'ADMIN')")
+    public ResponseEntity<CashierPerformance> getCashierStats(
+            @PathVariable Long cashierId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+        try {
+            return ResponseEntity.ok(cashierService.getCashierSessionStats(cashierId, startDate, endDate));
+        } catch (RuntimeException e) {
+            log.error("Error retrieving cashier stats", e);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/{cashierId}/sessions/active")
     @PreAuthorize("hasAnyRole('CASHIER', 'SUPERVISOR', 'MANAGER', 'ADMIN')")
     public ResponseEntity<CashierSession> getActiveSession(@PathVariable Long cashierId) {
@@ -0,0 +1,95 @@
+package com.pos_onlineshop.hybrid.controllers;
+
+import com.pos_onlineshop.hybrid.dataExport.ExportFormat;
+import com.pos_onlineshop.hybrid.dataExport.ExportType;
+import com.pos_onlineshop.hybrid.services.DataExportService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk exports written straight to the response as CSV or NDJSON, gzip-compressed when
+ * the client accepts it
+ */
+@RestController
+@RequestMapping("/api/exports")
+@RequiredArgsConstructor
+@PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+@CrossOrigin(origins = "*")
+@Slf4j
+public class ExportController {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final DataExportService dataExportService;
+
+    @GetMapping("/orders")
+    public void exportOrders(
+            @RequestParam(value = "format", defaultValue = "CSV") ExportFormat format,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "shopId", required = false) Long shopId,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        export(ExportType.ORDERS, format, from, to, shopId, request, response);
+    }
+
+    @GetMapping("/order-lines")
+    public void exportOrderLines(
+            @RequestParam(value = "format", defaultValue = "CSV") ExportFormat format,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "shopId", required = false) Long shopId,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        export(ExportType.ORDER_LINES, format, from, to, shopId, request, response);
+    }
+
+    @GetMapping("/sales")
+    public void exportSales(
+            @RequestParam(value = "format", defaultValue = "CSV") ExportFormat format,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "shopId", required = false) Long shopId,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        export(ExportType.SALES, format, from, to, shopId, request, response);
+    }
+
+    @GetMapping("/accounting-entries")
+    public void exportAccountingEntries(
+            @RequestParam(value = "format", defaultValue = "CSV") ExportFormat format,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        export(ExportType.ACCOUNTING_ENTRIES, format, from, to, null, request, response);
+    }
+
+    private void export(ExportType type, ExportFormat format, LocalDate from, LocalDate to, Long shopId,
+                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String fileName = type.getFileName() + (from != null ? "-" + from : "") + (to != null ? "-to-" + to : "")
+                + "." + format.getExtension();
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(fileName).build().toString());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        OutputStream out = response.getOutputStream();
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            out = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+        }
+        dataExportService.export(type, format, from, to, shopId, out);
+    }
+}
@@ -86,7 +86,7 @@ public class InventoryController {
     }
 
     @GetMapping("/low-stock")
-    public List<InventoryItem> getLowStockItems() {
+    public List<ShopStockAlerts> getLowStockItems() {
         return inventoryService.findLowStockItems();
     }
 
@@ -8,18 +8,21 @@ import com.pos_onlineshop.hybrid.enums.Permission;
 import com.pos_onlineshop.hybrid.orders.Order;
 import com.pos_onlineshop.hybrid.products.Product;
 import com.pos_onlineshop.hybrid.services.CashierService;
+import com.pos_onlineshop.hybrid.services.DailySalesRollupService;
 import com.pos_onlineshop.hybrid.services.POSService;
 import com.pos_onlineshop.hybrid.services.UserAccountService;
 import com.pos_onlineshop.hybrid.userAccount.UserAccount;
 import lombok.Data;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/pos")
@@ -29,6 +32,7 @@ public class POSController {
 
     private final POSService posService;
     private final CashierService cashierService;
+    private final DailySalesRollupService dailySalesRollupService;
 
     @PostMapping("/quick-sale")
     public ResponseEntity<Order> quickSale(@RequestBody QuickSaleRequest request) {
@@ -72,6 +76,17 @@ public class POSController {
         return ResponseEntity.ok(summary);
     }
 
+    /**
+     * Recompute the daily sales rollup behind the daily summary, e.g. to backfill history
+     */
+    @PostMapping("/daily-summary/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildDailySummaries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        int rows = dailySalesRollupService.rebuild(from, to);
+        return ResponseEntity.ok(Map.of("from", from, "to", to, "rows", rows));
+    }
+
     @PostMapping("/open-cash-drawer")
     public ResponseEntity<Void> openCashDrawer(@RequestBody CashDrawerRequest request) {
         Cashier cashier = cashierService.findById(request.getCashierId())
@@ -91,6 +106,12 @@ public class POSController {
         return ResponseEntity.ok(receipt);
     }
 
+    @GetMapping("/receipt/number/{receiptNumber}")
+    public ResponseEntity<Receipt> getReceiptByNumber(@PathVariable String receiptNumber) {
+        Receipt receipt = posService.generateReceiptByNumber(receiptNumber);
+        return ResponseEntity.ok(receipt);
+    }
+
     @PostMapping("/void-transaction/{orderId}")
     public ResponseEntity<Void> voidTransaction(
             @PathVariable Long orderId,
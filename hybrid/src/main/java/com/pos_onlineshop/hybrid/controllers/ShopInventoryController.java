@@ -5,18 +5,27 @@ package com.pos_onlineshop.hybrid.controllers;
 import com.pos_onlineshop.hybrid.dtos.*;
 import com.pos_onlineshop.hybrid.products.Product;
 import com.pos_onlineshop.hybrid.products.ProductRepository;
+import com.pos_onlineshop.hybrid.services.ShopInventoryCompactionService;
 import com.pos_onlineshop.hybrid.services.ShopInventoryService;
+import com.pos_onlineshop.hybrid.services.StockAlertService;
+import com.pos_onlineshop.hybrid.services.StockLedgerService;
+import com.pos_onlineshop.hybrid.services.StockMutationCoordinator;
 import com.pos_onlineshop.hybrid.shop.Shop;
 import com.pos_onlineshop.hybrid.shop.ShopRepository;
 import com.pos_onlineshop.hybrid.shopInventory.ShopInventory;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventorySnapshot;
+import com.pos_onlineshop.hybrid.stockLedger.StockMovement;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -26,6 +35,10 @@ import java.util.Optional;
 public class ShopInventoryController {
 
     private final ShopInventoryService shopInventoryService;
+    private final StockMutationCoordinator stockMutationCoordinator;
+    private final ShopInventoryCompactionService compactionService;
+    private final StockLedgerService stockLedgerService;
+    private final StockAlertService stockAlertService;
     private final ShopRepository shopRepository;
     private final ProductRepository productRepository;
 
@@ -64,6 +77,27 @@ public class ShopInventoryController {
         return ResponseEntity.ok(responses);
     }
 
+    /**
+     * Get a shop's inventory a page at a time, by product id; pass the returned
+     * nextCursor as cursor for the next page
+     */
+    @GetMapping("/shop/{shopId}/page")
+    public ResponseEntity<ShopInventoryPage> getShopInventoryPage(
+            @PathVariable Long shopId,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "100") int limit) {
+        if (!shopRepository.existsById(shopId)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            return ResponseEntity.ok(shopInventoryService.getShopInventoryPage(shopId, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid shop inventory page request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Get all inventory items for a product across all shops
      */
@@ -168,6 +202,80 @@ public class ShopInventoryController {
         return ResponseEntity.ok(products);
     }
 
+    /**
+     * Lock wait and deadlock retry counters for multi-row stock changes since startup
+     */
+    @GetMapping("/stock-mutations/stats")
+    public ResponseEntity<StockMutationStatsResponse> getStockMutationStats() {
+        return ResponseEntity.ok(stockMutationCoordinator.getStats());
+    }
+
+    /**
+     * Monthly snapshots of the compacted inventory records of a shop and product
+     */
+    @GetMapping("/shop/{shopId}/product/{productId}/snapshots")
+    public ResponseEntity<List<ShopInventorySnapshot>> getSnapshots(
+            @PathVariable Long shopId,
+            @PathVariable Long productId) {
+        return ResponseEntity.ok(compactionService.getSnapshots(shopId, productId));
+    }
+
+    /**
+     * Compact inventory records added before the cutoff, or before the configured
+     * retention when no cutoff is given
+     */
+    @PostMapping("/compaction")
+    public ResponseEntity<ShopInventoryCompactionResult> compact(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cutoff) {
+        return ResponseEntity.ok(cutoff != null ? compactionService.compact(cutoff) : compactionService.compactToRetention());
+    }
+
+    /**
+     * Latest stock ledger movements of a shop and product, newest first
+     */
+    @GetMapping("/shop/{shopId}/product/{productId}/movements")
+    public ResponseEntity<List<StockMovement>> getMovements(
+            @PathVariable Long shopId,
+            @PathVariable Long productId,
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(stockLedgerService.getMovements(shopId, productId, limit));
+    }
+
+    /**
+     * A shop's stock as of the given time, rebuilt from the stock ledger
+     */
+    @GetMapping("/shop/{shopId}/stock-as-of")
+    public ResponseEntity<StockAsOfResponse> getStockAsOf(
+            @PathVariable Long shopId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return ResponseEntity.ok(stockLedgerService.stockAsOf(shopId, at));
+    }
+
+    /**
+     * Checkpoint the stock ledger of every shop now rather than at the next scheduled run
+     */
+    @PostMapping("/stock-ledger/checkpoint")
+    public ResponseEntity<Map<String, Object>> checkpointStockLedger() {
+        return ResponseEntity.ok(Map.of("checkpoints", stockLedgerService.checkpointAll()));
+    }
+
+    /**
+     * Products of a shop currently low on or out of stock; changes are pushed to
+     * /topic/shops/{shopId}/stock-alerts
+     */
+    @GetMapping("/shop/{shopId}/stock-alerts")
+    public ResponseEntity<ShopStockAlerts> getStockAlerts(@PathVariable Long shopId) {
+        return ResponseEntity.ok(stockAlertService.getAlerts(shopId));
+    }
+
+    /**
+     * Reload the watched stock levels of every shop from the inventory totals
+     */
+    @PostMapping("/stock-alerts/reload")
+    public ResponseEntity<Map<String, Object>> reloadStockAlerts() {
+        return ResponseEntity.ok(Map.of("levels", stockAlertService.reload()));
+    }
+
     /**
      * Create new shop inventory with full details (WORLD-CLASS IMPLEMENTATION)
      *
@@ -2,8 +2,10 @@ package com.pos_onlineshop.hybrid.controllers;
 
 import com.pos_onlineshop.hybrid.dtos.FiscalisationResponse;
 import com.pos_onlineshop.hybrid.dtos.FiscalDeviceResponse;
+import com.pos_onlineshop.hybrid.dtos.FiscalStatusResponse;
 import com.pos_onlineshop.hybrid.dtos.FiscaliseTransactionRequest;
 
+import com.pos_onlineshop.hybrid.services.FiscalOutboxDispatcher;
 import com.pos_onlineshop.hybrid.services.ZimraService;
 import com.pos_onlineshop.hybrid.shop.Shop;
 import com.pos_onlineshop.hybrid.shop.ShopRepository;
@@ -31,6 +33,7 @@ public class ZimraController {
 
     private final ZimraService zimraService;
     private final ShopRepository shopRepository;
+    private final FiscalOutboxDispatcher fiscalOutboxDispatcher;
 
     @PostMapping("/fiscalise/order/{orderId}")
     @Operation(summary = "Fiscalise an order", description = "Send order to fiscal device for ZIMRA compliance")
@@ -64,6 +67,22 @@ public class ZimraController {
         }
     }
 
+    @GetMapping("/order/{orderId}/status")
+    @Operation(summary = "Get order fiscal status", description = "Poll, or wait up to waitMs, for a queued order's fiscalisation")
+    public ResponseEntity<FiscalStatusResponse> getOrderFiscalStatus(
+        @PathVariable Long orderId,
+        @RequestParam(defaultValue = "0") long waitMs
+    ) {
+        try {
+            return fiscalOutboxDispatcher.awaitStatus(orderId, waitMs)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+        } catch (Exception e) {
+            log.error("Error retrieving fiscal status for order {}", orderId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @GetMapping("/fiscal-code/{fiscalCode}")
     @Operation(summary = "Get fiscalisation by fiscal code", description = "Retrieve fiscal record by unique code")
     public ResponseEntity<FiscalisationResponse> getByFiscalCode(@PathVariable String fiscalCode) {
@@ -0,0 +1,9 @@
+package com.pos_onlineshop.hybrid.customerSketch;
+
+import java.time.LocalDate;
+
+/**
+ * Published when a customer's order completes; added to the day's sketches once the change commits
+ */
+public record CustomerSaleEvent(LocalDate salesDate, Long shopId, long customerHash) {
+}
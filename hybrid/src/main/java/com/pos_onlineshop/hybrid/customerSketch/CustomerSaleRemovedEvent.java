@@ -0,0 +1,10 @@
+package com.pos_onlineshop.hybrid.customerSketch;
+
+import java.time.LocalDate;
+
+/**
+ * Published when a customer's sold order is voided or deleted; the day is re-sketched from
+ * the orders table at the next flush once the change commits
+ */
+public record CustomerSaleRemovedEvent(LocalDate salesDate) {
+}
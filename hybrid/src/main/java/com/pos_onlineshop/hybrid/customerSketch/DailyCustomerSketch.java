@@ -0,0 +1,41 @@
+package com.pos_onlineshop.hybrid.customerSketch;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * HyperLogLog sketch of the customers who completed an order on one day at one shop.
+ * shopId 0 holds the day across all shops, including orders without a shop.
+ */
+@Entity
+@Table(name = "daily_customer_sketch",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_customer_sketch",
+                columnNames = {"sales_date", "shop_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailyCustomerSketch {
+
+    /** shopId of the all-shops rows */
+    public static final long ALL_SHOPS = 0L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "sales_date", nullable = false)
+    private LocalDate salesDate;
+
+    @Column(name = "shop_id", nullable = false)
+    private Long shopId;
+
+    @Column(name = "registers", nullable = false, length = HyperLogLog.MAX_BYTES)
+    private byte[] registers;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,27 @@
+package com.pos_onlineshop.hybrid.customerSketch;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DailyCustomerSketchRepository extends JpaRepository<DailyCustomerSketch, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM DailyCustomerSketch s WHERE s.salesDate = :date AND s.shopId = :shopId")
+    Optional<DailyCustomerSketch> findForUpdate(@Param("date") LocalDate date, @Param("shopId") Long shopId);
+
+    List<DailyCustomerSketch> findByShopIdAndSalesDateBetween(Long shopId, LocalDate from, LocalDate to);
+
+    @Modifying
+    @Query("DELETE FROM DailyCustomerSketch s WHERE s.salesDate BETWEEN :from AND :to")
+    int deleteBySalesDateBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
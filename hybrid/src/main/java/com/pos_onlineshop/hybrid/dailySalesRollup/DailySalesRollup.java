@@ -0,0 +1,76 @@
+package com.pos_onlineshop.hybrid.dailySalesRollup;
+
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Running POS sales totals for one day, shop, payment method and cashier.
+ *
+ * Rows with productId 0 hold the order-level figures (orders, order totals, voids);
+ * the other rows hold quantities and line totals per product. Shop and cashier ids are
+ * 0 when the order has none, so every key column stays non-null and unique.
+ */
+@Entity
+@Table(name = "daily_sales_rollup",
+        uniqueConstraints = @UniqueConstraint(name = "uk_daily_sales_rollup",
+                columnNames = {"sales_date", "shop_id", "payment_method", "cashier_id", "product_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailySalesRollup {
+
+    /** productId of the order-level rows */
+    public static final long ORDER_LEVEL = 0L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "sales_date", nullable = false)
+    private LocalDate salesDate;
+
+    @Column(name = "shop_id", nullable = false)
+    private Long shopId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "payment_method", nullable = false)
+    private PaymentMethod paymentMethod;
+
+    @Column(name = "cashier_id", nullable = false)
+    private Long cashierId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "product_name")
+    private String productName;
+
+    @Column(name = "order_count", nullable = false)
+    @Builder.Default
+    private Integer orderCount = 0;
+
+    @Column(name = "order_total", nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal orderTotal = BigDecimal.ZERO;
+
+    @Column(name = "refund_count", nullable = false)
+    @Builder.Default
+    private Integer refundCount = 0;
+
+    @Column(name = "refund_total", nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal refundTotal = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer quantity = 0;
+
+    @Column(name = "line_total", nullable = false, precision = 19, scale = 4)
+    @Builder.Default
+    private BigDecimal lineTotal = BigDecimal.ZERO;
+}
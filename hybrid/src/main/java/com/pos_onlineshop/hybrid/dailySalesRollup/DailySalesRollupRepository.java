@@ -0,0 +1,40 @@
+package com.pos_onlineshop.hybrid.dailySalesRollup;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailySalesRollupRepository extends JpaRepository<DailySalesRollup, Long>, DailySalesRollupRepositoryCustom {
+
+    /**
+     * Per payment method: orders, order total, voids and void total
+     */
+    @Query("SELECT r.paymentMethod, SUM(r.orderCount), SUM(r.orderTotal), SUM(r.refundCount), SUM(r.refundTotal) " +
+            "FROM DailySalesRollup r WHERE r.salesDate = :date AND r.productId = 0 " +
+            "AND (:shopId IS NULL OR r.shopId = :shopId) " +
+            "GROUP BY r.paymentMethod")
+    List<Object[]> sumByPaymentMethod(@Param("date") LocalDate date, @Param("shopId") Long shopId);
+
+    /**
+     * Product names and quantities sold, best sellers first
+     */
+    @Query("SELECT r.productName, SUM(r.quantity) FROM DailySalesRollup r " +
+            "WHERE r.salesDate = :date AND r.productId <> 0 AND (:shopId IS NULL OR r.shopId = :shopId) " +
+            "GROUP BY r.productName HAVING SUM(r.quantity) <> 0 ORDER BY SUM(r.quantity) DESC")
+    List<Object[]> findTopProducts(@Param("date") LocalDate date, @Param("shopId") Long shopId, Pageable pageable);
+
+    /**
+     * Cashier ids and order counts, busiest first
+     */
+    @Query("SELECT r.cashierId, SUM(r.orderCount) FROM DailySalesRollup r " +
+            "WHERE r.salesDate = :date AND r.productId = 0 AND r.cashierId <> 0 " +
+            "AND (:shopId IS NULL OR r.shopId = :shopId) " +
+            "GROUP BY r.cashierId HAVING SUM(r.orderCount) > 0 ORDER BY SUM(r.orderCount) DESC")
+    List<Object[]> findTopCashiers(@Param("date") LocalDate date, @Param("shopId") Long shopId, Pageable pageable);
+}
@@ -0,0 +1,21 @@
+package com.pos_onlineshop.hybrid.dailySalesRollup;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Set-based rollup maintenance that bypasses entity loading
+ */
+public interface DailySalesRollupRepositoryCustom {
+
+    /**
+     * Add the deltas in one JDBC batch, in list order, creating rows that do not exist yet
+     */
+    void applyAll(List<SalesRollupDelta> deltas);
+
+    /**
+     * Replace the rows of one day with totals recomputed from the POS orders of that day;
+     * returns the number of rows written
+     */
+    int rebuildDay(LocalDate date);
+}
@@ -0,0 +1,89 @@
+package com.pos_onlineshop.hybrid.dailySalesRollup;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class DailySalesRollupRepositoryImpl implements DailySalesRollupRepositoryCustom {
+
+    private static final String COLUMNS = "sales_date, shop_id, payment_method, cashier_id, product_id, product_name, " +
+            "order_count, order_total, refund_count, refund_total, quantity, line_total";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO daily_sales_rollup (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + VALUES(order_count), " +
+            "order_total = order_total + VALUES(order_total), " +
+            "refund_count = refund_count + VALUES(refund_count), " +
+            "refund_total = refund_total + VALUES(refund_total), " +
+            "quantity = quantity + VALUES(quantity), " +
+            "line_total = line_total + VALUES(line_total), " +
+            "product_name = COALESCE(VALUES(product_name), product_name)";
+
+    private static final String DELETE_DAY_SQL = "DELETE FROM daily_sales_rollup WHERE sales_date = ?";
+
+    private static final String POS_ORDERS_OF_DAY =
+            "o.sales_channel = 'POS' AND o.payment_method IS NOT NULL AND o.order_date >= ? AND o.order_date < ? ";
+
+    private static final String REBUILD_ORDERS_SQL =
+            "INSERT INTO daily_sales_rollup (" + COLUMNS + ") " +
+            "SELECT CAST(? AS DATE), COALESCE(o.shop_id, 0), o.payment_method, COALESCE(o.cashier_id, 0), 0, NULL, " +
+            "COUNT(*), SUM(o.total_amount), " +
+            "SUM(CASE WHEN o.status = 'CANCELLED' THEN 1 ELSE 0 END), " +
+            "SUM(CASE WHEN o.status = 'CANCELLED' THEN o.total_amount ELSE 0 END), 0, 0 " +
+            "FROM orders o WHERE " + POS_ORDERS_OF_DAY +
+            "GROUP BY COALESCE(o.shop_id, 0), o.payment_method, COALESCE(o.cashier_id, 0)";
+
+    private static final String REBUILD_PRODUCTS_SQL =
+            "INSERT INTO daily_sales_rollup (" + COLUMNS + ") " +
+            "SELECT CAST(? AS DATE), COALESCE(o.shop_id, 0), o.payment_method, COALESCE(o.cashier_id, 0), " +
+            "l.product_id, MAX(l.product_name), 0, 0, 0, 0, SUM(l.quantity), SUM(l.unit_price * l.quantity) " +
+            "FROM orders o JOIN order_lines l ON l.order_id = o.id WHERE " + POS_ORDERS_OF_DAY +
+            "GROUP BY COALESCE(o.shop_id, 0), o.payment_method, COALESCE(o.cashier_id, 0), l.product_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void applyAll(List<SalesRollupDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, deltas, deltas.size(), (ps, delta) -> {
+            ps.setDate(1, Date.valueOf(delta.salesDate()));
+            ps.setLong(2, delta.shopId());
+            ps.setString(3, delta.paymentMethod().name());
+            ps.setLong(4, delta.cashierId());
+            ps.setLong(5, delta.productId());
+            ps.setString(6, delta.productName());
+            ps.setInt(7, delta.orderCount());
+            ps.setBigDecimal(8, delta.orderTotal());
+            ps.setInt(9, delta.refundCount());
+            ps.setBigDecimal(10, delta.refundTotal());
+            ps.setInt(11, delta.quantity());
+            ps.setBigDecimal(12, delta.lineTotal());
+        });
+    }
+
+    @Override
+    public int rebuildDay(LocalDate date) {
+        // Orders saved in this transaction must be visible to the INSERT ... SELECT
+        entityManager.flush();
+
+        Date day = Date.valueOf(date);
+        Timestamp from = Timestamp.valueOf(date.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(date.plusDays(1).atStartOfDay());
+
+        jdbcTemplate.update(DELETE_DAY_SQL, day);
+        return jdbcTemplate.update(REBUILD_ORDERS_SQL, day, from, to)
+                + jdbcTemplate.update(REBUILD_PRODUCTS_SQL, day, from, to);
+    }
+}
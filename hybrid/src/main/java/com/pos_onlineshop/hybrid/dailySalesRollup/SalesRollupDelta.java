@@ -0,0 +1,16 @@
+package com.pos_onlineshop.hybrid.dailySalesRollup;
+
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Amounts to add to one daily sales rollup row; negative to take an order back out
+ */
+public record SalesRollupDelta(LocalDate salesDate, long shopId, PaymentMethod paymentMethod, long cashierId,
+                               long productId, String productName,
+                               int orderCount, BigDecimal orderTotal,
+                               int refundCount, BigDecimal refundTotal,
+                               int quantity, BigDecimal lineTotal) {
+}
@@ -0,0 +1,64 @@
+package com.pos_onlineshop.hybrid.dataExport;
+
+/**
+ * Tables that can be exported: the projection, the column the date range applies to, the
+ * shop column (null if the rows are not per shop) and the row order
+ */
+public enum ExportType {
+    ORDERS("orders",
+            "SELECT o.id, o.order_date, o.status, o.sales_channel, o.payment_method, o.shop_id, o.store_location, " +
+            "o.cashier_id, o.customer_id, o.user_id, o.receipt_number, c.code AS currency, o.total_amount, o.tax_amount, " +
+            "o.exchange_rate, o.cash_given, o.change_amount " +
+            "FROM orders o JOIN currencies c ON c.id = o.currency_id",
+            "o.order_date", "o.shop_id", "o.id"),
+    ORDER_LINES("order-lines",
+            "SELECT l.id, l.order_id, o.order_date, o.status AS order_status, o.shop_id, l.product_id, " +
+            "l.product_name, l.quantity, c.code AS currency, l.unit_price, l.tax_rate, " +
+            "l.unit_price * l.quantity AS subtotal " +
+            "FROM order_lines l JOIN orders o ON o.id = l.order_id JOIN currencies c ON c.id = l.currency_id",
+            "o.order_date", "o.shop_id", "l.id"),
+    SALES("sales",
+            "SELECT s.id, s.created_at, s.shop_id, s.customer_id, s.product_id, s.quantity, c.code AS currency, " +
+            "s.unit_price, s.unit_price * s.quantity AS total_price, s.payment_method, s.sale_type " +
+            "FROM sales s JOIN currencies c ON c.id = s.currency_id",
+            "s.created_at", "s.shop_id", "s.id"),
+    ACCOUNTING_ENTRIES("accounting-entries",
+            "SELECT e.id, e.entry_date, e.accounting_period, e.type, e.description, e.reference_type, " +
+            "e.reference_id, e.user_id, c.code AS currency, e.amount, e.exchange_rate, e.base_amount " +
+            "FROM accountancy_entries e JOIN currencies c ON c.id = e.currency_id",
+            "e.entry_date", null, "e.id");
+
+    private final String fileName;
+    private final String selectSql;
+    private final String dateColumn;
+    private final String shopColumn;
+    private final String orderColumn;
+
+    ExportType(String fileName, String selectSql, String dateColumn, String shopColumn, String orderColumn) {
+        this.fileName = fileName;
+        this.selectSql = selectSql;
+        this.dateColumn = dateColumn;
+        this.shopColumn = shopColumn;
+        this.orderColumn = orderColumn;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getSelectSql() {
+        return selectSql;
+    }
+
+    public String getDateColumn() {
+        return dateColumn;
+    }
+
+    public String getShopColumn() {
+        return shopColumn;
+    }
+
+    public String getOrderColumn() {
+        return orderColumn;
+    }
+}
@@ -0,0 +1,174 @@
+package com.pos_onlineshop.hybrid.dataExport;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Writes result set rows to an output stream one at a time as CSV (with a header line)
+ * or as newline-delimited JSON objects keyed by column label. Nothing is kept per row,
+ * so memory use does not depend on the number of rows.
+ */
+public abstract class ExportWriter implements Closeable, Flushable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    protected String[] columns;
+
+    public static ExportWriter open(ExportFormat format, OutputStream out) throws IOException {
+        return switch (format) {
+            case CSV -> new Csv(out);
+            case NDJSON -> new Ndjson(out);
+        };
+    }
+
+    /**
+     * Take the column labels from the result set; called once, before the first row
+     */
+    public void start(ResultSetMetaData metaData) throws SQLException, IOException {
+        columns = new String[metaData.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = metaData.getColumnLabel(i + 1).toLowerCase();
+        }
+        writeHeader();
+    }
+
+    public abstract void writeRow(ResultSet rs) throws SQLException, IOException;
+
+    protected void writeHeader() throws IOException {
+    }
+
+    /**
+     * Dates as ISO-8601 text; everything else as the driver returns it
+     */
+    protected static Object valueOf(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate().toString();
+        }
+        return value;
+    }
+
+    private static final class Csv extends ExportWriter {
+
+        private final Writer writer;
+
+        Csv(OutputStream out) {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        @Override
+        protected void writeHeader() throws IOException {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(columns[i]);
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void writeRow(ResultSet rs) throws SQLException, IOException {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = valueOf(rs, i + 1);
+                if (value instanceof BigDecimal decimal) {
+                    writer.write(decimal.toPlainString());
+                } else if (value instanceof Number || value instanceof Boolean) {
+                    writer.write(value.toString());
+                } else if (value != null) {
+                    writeQuoted(value.toString());
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        /**
+         * RFC 4180 quoting, only when the text needs it
+         */
+        private void writeQuoted(String text) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < text.length() && !quote; i++) {
+                char c = text.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static final class Ndjson extends ExportWriter {
+
+        private final JsonGenerator generator;
+
+        Ndjson(OutputStream out) throws IOException {
+            generator = JSON_FACTORY.createGenerator(new BufferedOutputStream(out, BUFFER_SIZE), JsonEncoding.UTF8);
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void writeRow(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < columns.length; i++) {
+                generator.writeFieldName(columns[i]);
+                Object value = valueOf(rs, i + 1);
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof BigDecimal decimal) {
+                    generator.writeNumber(decimal);
+                } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                        || value instanceof Byte) {
+                    generator.writeNumber(((Number) value).longValue());
+                } else if (value instanceof Number number) {
+                    generator.writeNumber(number.doubleValue());
+                } else if (value instanceof Boolean bool) {
+                    generator.writeBoolean(bool);
+                } else {
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+}
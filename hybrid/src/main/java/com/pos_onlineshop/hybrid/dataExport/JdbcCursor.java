@@ -0,0 +1,40 @@
+package com.pos_onlineshop.hybrid.dataExport;
+
+import org.springframework.jdbc.core.PreparedStatementCreator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Forward-only, read-only statements that hand rows over as the database sends them
+ * instead of buffering the whole result in the driver
+ */
+public final class JdbcCursor {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private JdbcCursor() {
+    }
+
+    public static PreparedStatementCreator forwardOnly(String sql, Object... params) {
+        return connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize(connection));
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            return statement;
+        };
+    }
+
+    /**
+     * MySQL only streams a result set when asked for Integer.MIN_VALUE rows at a time
+     */
+    private static int fetchSize(Connection connection) throws SQLException {
+        return connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql")
+                ? Integer.MIN_VALUE : FETCH_SIZE;
+    }
+}
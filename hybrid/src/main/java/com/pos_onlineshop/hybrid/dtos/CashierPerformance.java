@@ -0,0 +1,22 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Session totals of one cashier over a period, by the sessions started in it
+ */
+@Data
+@Builder
+public class CashierPerformance {
+    private Long cashierId;
+    private String employeeId;
+    private String name;
+    private long totalSessions;
+    private BigDecimal totalSales;
+    private long totalTransactions;
+    private double averageSessionDuration;
+    private BigDecimal averageSalesPerSession;
+}
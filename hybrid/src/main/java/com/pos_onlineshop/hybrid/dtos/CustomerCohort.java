@@ -0,0 +1,19 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Customers active in one month and the share of them active again in each later month,
+ * as percentages with the first entry for the month after
+ */
+@Data
+@Builder
+public class CustomerCohort {
+    private YearMonth month;
+    private long customers;
+    private List<Double> retention;
+}
@@ -0,0 +1,22 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Estimated distinct customers of a period and how many of them also bought in the
+ * period of the same length just before it
+ */
+@Data
+@Builder
+public class CustomerStats {
+    private Long shopId;
+    private LocalDate from;
+    private LocalDate to;
+    private long uniqueCustomers;
+    private long previousPeriodCustomers;
+    private long returningCustomers;
+    private double returningRate;
+}
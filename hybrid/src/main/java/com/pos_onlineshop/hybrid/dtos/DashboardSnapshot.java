@@ -0,0 +1,20 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Dashboard metrics in one currency, as computed at generatedAt, seen from one shop or
+ * from all shops when shopId is null. The metrics map is read-only.
+ */
+@Value
+@Builder
+public class DashboardSnapshot {
+    Long shopId;
+    String currencyCode;
+    Map<String, Object> metrics;
+    LocalDateTime generatedAt;
+}
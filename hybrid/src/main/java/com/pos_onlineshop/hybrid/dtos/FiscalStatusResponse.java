@@ -0,0 +1,24 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import com.pos_onlineshop.hybrid.enums.FiscalStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FiscalStatusResponse {
+    private Long orderId;
+    private FiscalStatus status;
+    private Integer attempts;
+    private LocalDateTime queuedAt;
+    private LocalDateTime nextAttemptAt;
+    private LocalDateTime completedAt;
+    private String lastError;
+    private FiscalisationResponse fiscalisation;
+}
@@ -0,0 +1,19 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Completed and delivered revenue of the orders placed in one time bucket, converted to
+ * the requested currency
+ */
+@Data
+@Builder
+public class RevenuePoint {
+    private LocalDateTime start;
+    private BigDecimal revenue;
+    private long orders;
+}
@@ -0,0 +1,19 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of one compaction run over the ShopInventory records added before the cutoff;
+ * archiveFile is null when there was nothing to compact
+ */
+@Data
+@Builder
+public class ShopInventoryCompactionResult {
+    private LocalDateTime cutoff;
+    private int recordsCompacted;
+    private int snapshotsUpdated;
+    private String archiveFile;
+}
@@ -0,0 +1,17 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of a shop's inventory listing by product id; pass nextCursor back as the
+ * cursor for the following page, it is null on the last one
+ */
+@Data
+@Builder
+public class ShopInventoryPage {
+    private List<ShopInventoryResponse> items;
+    private Long nextCursor;
+}
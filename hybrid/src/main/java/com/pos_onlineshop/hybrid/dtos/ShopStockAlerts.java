@@ -0,0 +1,18 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Products of a shop currently at or below their reorder level or minimum stock, and
+ * those out of stock
+ */
+@Data
+@Builder
+public class ShopStockAlerts {
+    private Long shopId;
+    private List<Long> lowStockProductIds;
+    private List<Long> outOfStockProductIds;
+}
@@ -0,0 +1,24 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import com.pos_onlineshop.hybrid.enums.StockLevelStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * A product of a shop crossing a stock threshold, pushed to /topic/shops/{id}/stock-alerts.
+ * previousStatus is null the first time the product is seen.
+ */
+@Data
+@Builder
+public class StockAlert {
+    private Long shopId;
+    private Long productId;
+    private StockLevelStatus previousStatus;
+    private StockLevelStatus status;
+    private int currentStock;
+    private Integer reorderLevel;
+    private Integer minStock;
+    private LocalDateTime at;
+}
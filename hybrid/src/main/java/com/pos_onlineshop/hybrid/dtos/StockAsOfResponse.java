@@ -0,0 +1,29 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A shop's stock rebuilt from the movement ledger as of a point in time: the balances of
+ * the latest checkpoint before it plus the movements replayed after that checkpoint
+ */
+@Data
+@Builder
+public class StockAsOfResponse {
+    private Long shopId;
+    private LocalDateTime asOf;
+    /** Last movement of the checkpoint started from, null when replayed from the beginning */
+    private Long checkpointMovementId;
+    private long movementsReplayed;
+    private List<StockLevel> levels;
+
+    @Data
+    @Builder
+    public static class StockLevel {
+        private Long productId;
+        private long quantity;
+    }
+}
@@ -0,0 +1,22 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMutationStatsResponse {
+    private long mutations;
+    private long rowsChanged;
+    private long lockWaitMillis;
+    private long slowLockWaits;
+    private long deadlocks;
+    private long lockTimeouts;
+    private long staleWrites;
+    private long retries;
+    private long retriesExhausted;
+}
@@ -0,0 +1,36 @@
+package com.pos_onlineshop.hybrid.dtos;
+
+import com.pos_onlineshop.hybrid.topProducts.TopProductsWindow;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Best-selling products of one shop (or all shops) in one window. When estimated, each
+ * quantity overcounts by at most its maxError, and every product sold more than errorBound
+ * units in the window is listed if within the limit.
+ */
+@Data
+@Builder
+public class TopProductsReport {
+    private Long shopId;
+    private TopProductsWindow window;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private boolean exact;
+    private boolean complete;
+    private long totalQuantity;
+    private long errorBound;
+    private List<Item> products;
+
+    @Data
+    @Builder
+    public static class Item {
+        private Long productId;
+        private String productName;
+        private long quantity;
+        private long maxError;
+    }
+}
@@ -0,0 +1,5 @@
+package com.pos_onlineshop.hybrid.enums;
+
+public enum OrderChangeType {
+    CREATED, STATUS_CHANGED, PAYMENT_METHOD_CHANGED, DELETED
+}
@@ -0,0 +1,41 @@
+package com.pos_onlineshop.hybrid.enums;
+
+import lombok.Getter;
+
+/**
+ * Where a shop's stock of a product stands against its reorder level and minimum stock
+ */
+@Getter
+public enum StockLevelStatus {
+
+    IN_STOCK("In Stock"),
+    LOW_STOCK("At or Below Reorder Level"),
+    BELOW_MIN_STOCK("Below Minimum Stock"),
+    OUT_OF_STOCK("Out of Stock");
+
+    private final String displayName;
+
+    StockLevelStatus(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Status of a stock level; reorderLevel and minStock are null when not set
+     */
+    public static StockLevelStatus of(int stock, Integer reorderLevel, Integer minStock) {
+        if (stock <= 0) {
+            return OUT_OF_STOCK;
+        }
+        if (minStock != null && stock < minStock) {
+            return BELOW_MIN_STOCK;
+        }
+        if (reorderLevel != null && stock <= reorderLevel) {
+            return LOW_STOCK;
+        }
+        return IN_STOCK;
+    }
+
+    public boolean isLow() {
+        return this == LOW_STOCK || this == BELOW_MIN_STOCK;
+    }
+}
@@ -0,0 +1,27 @@
+package com.pos_onlineshop.hybrid.enums;
+
+import lombok.Getter;
+
+/**
+ * Why a shop's stock of a product changed, as recorded in the stock movement ledger
+ */
+@Getter
+public enum StockMovementType {
+
+    OPENING_BALANCE("Opening Balance"),
+    SALE("Sale"),
+    VOID("Voided Sale"),
+    RETURN("Cancelled or Deleted Order"),
+    TRANSFER_OUT("Transfer Shipped"),
+    TRANSFER_IN("Transfer Received"),
+    TRANSFER_CANCELLED("Transfer Cancelled"),
+    DAMAGE("Damaged Stock"),
+    RECEIPT("Stock Received"),
+    ADJUSTMENT("Manual Adjustment");
+
+    private final String displayName;
+
+    StockMovementType(String displayName) {
+        this.displayName = displayName;
+    }
+}
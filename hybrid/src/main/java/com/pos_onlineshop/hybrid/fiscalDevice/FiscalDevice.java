@@ -67,7 +67,9 @@ public class FiscalDevice {
 
     private String lastErrorMessage;
 
-    private Long lastReceiptNumber;  // Last issued receipt number
+    // Last issued receipt number; only ever advanced by FiscalCounterAllocator, never by entity saves
+    @Column(updatable = false)
+    private Long lastReceiptNumber;
 
     @Column(nullable = false)
     private LocalDateTime createdAt;
@@ -87,14 +89,6 @@ public class FiscalDevice {
         updatedAt = LocalDateTime.now();
     }
 
-    /**
-     * Get the next receipt number for this device
-     */
-    public synchronized Long getNextReceiptNumber() {
-        lastReceiptNumber++;
-        return lastReceiptNumber;
-    }
-
     /**
      * Check if device is operational
      */
@@ -0,0 +1,7 @@
+package com.pos_onlineshop.hybrid.fiscalOutbox;
+
+/**
+ * Published when an order is queued for fiscalisation; handled once the sale commits
+ */
+public record FiscalOutboxEnqueuedEvent(Long entryId, Long shopId, Long orderId) {
+}
@@ -0,0 +1,74 @@
+package com.pos_onlineshop.hybrid.fiscalOutbox;
+
+import com.pos_onlineshop.hybrid.enums.FiscalDocumentType;
+import com.pos_onlineshop.hybrid.enums.FiscalStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Transactional outbox row asking for an order to be fiscalised.
+ * Written in the same transaction as the order and drained by the fiscal outbox workers.
+ */
+@Entity
+@Table(name = "fiscal_outbox",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"order_id"}),
+        indexes = {
+                @Index(name = "idx_fiscal_outbox_ready", columnList = "status, next_attempt_at"),
+                @Index(name = "idx_fiscal_outbox_shop", columnList = "shop_id")
+        })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FiscalOutboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "shop_id", nullable = false)
+    private Long shopId; // Worker lane: a shop's documents go to its fiscal device one at a time
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "document_type", nullable = false)
+    @Builder.Default
+    private FiscalDocumentType documentType = FiscalDocumentType.FISCAL_RECEIPT;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    @Builder.Default
+    private FiscalStatus status = FiscalStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    @Builder.Default
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "fiscalisation_id")
+    private Long fiscalisationId;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public boolean isFinished() {
+        return status == FiscalStatus.FISCALISED || status == FiscalStatus.FAILED;
+    }
+}
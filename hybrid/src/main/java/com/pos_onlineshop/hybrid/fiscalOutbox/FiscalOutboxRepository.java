@@ -0,0 +1,51 @@
+package com.pos_onlineshop.hybrid.fiscalOutbox;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FiscalOutboxRepository extends JpaRepository<FiscalOutboxEntry, Long> {
+
+    Optional<FiscalOutboxEntry> findByOrderId(Long orderId);
+
+    /**
+     * Find entries due for dispatch: pending and due, or claimed by a worker that never finished
+     */
+    @Query("SELECT e FROM FiscalOutboxEntry e WHERE " +
+            "(e.status = com.pos_onlineshop.hybrid.enums.FiscalStatus.PENDING AND e.nextAttemptAt <= :now) " +
+            "OR (e.status = com.pos_onlineshop.hybrid.enums.FiscalStatus.PROCESSING AND e.claimedAt < :staleBefore) " +
+            "ORDER BY e.id")
+    List<FiscalOutboxEntry> findReadyForDispatch(@Param("now") LocalDateTime now,
+                                                 @Param("staleBefore") LocalDateTime staleBefore,
+                                                 Pageable pageable);
+
+    /**
+     * Claim an entry for processing. Returns 1 only for the worker that wins the claim.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE FiscalOutboxEntry e SET e.status = com.pos_onlineshop.hybrid.enums.FiscalStatus.PROCESSING, " +
+            "e.claimedAt = :now, e.attempts = e.attempts + 1 WHERE e.id = :id AND (" +
+            "(e.status = com.pos_onlineshop.hybrid.enums.FiscalStatus.PENDING AND e.nextAttemptAt <= :now) " +
+            "OR (e.status = com.pos_onlineshop.hybrid.enums.FiscalStatus.PROCESSING AND e.claimedAt < :staleBefore))")
+    int claim(@Param("id") Long id,
+              @Param("now") LocalDateTime now,
+              @Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Lock an entry to record an attempt, only while the claim made at claimedAt still holds
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM FiscalOutboxEntry e WHERE e.id = :id AND e.claimedAt = :claimedAt " +
+            "AND e.status = com.pos_onlineshop.hybrid.enums.FiscalStatus.PROCESSING")
+    Optional<FiscalOutboxEntry> findClaimed(@Param("id") Long id, @Param("claimedAt") LocalDateTime claimedAt);
+}
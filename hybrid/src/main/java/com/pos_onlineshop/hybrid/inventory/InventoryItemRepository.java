@@ -26,6 +26,9 @@ public interface InventoryItemRepository extends JpaRepository<InventoryItem, Lo
     @Query("SELECT i FROM InventoryItem i WHERE i.quantity <= i.reorderLevel")
     List<InventoryItem> findItemsNeedingReorder();
 
+    @Query("SELECT COUNT(i) FROM InventoryItem i WHERE i.quantity <= i.reorderLevel")
+    long countItemsNeedingReorder();
+
 
 
     @Query(value = "SELECT SUM(CAST(i.quantity AS decimal) * p.price) " +
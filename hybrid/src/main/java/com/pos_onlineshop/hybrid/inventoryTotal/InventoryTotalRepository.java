@@ -3,17 +3,21 @@ package com.pos_onlineshop.hybrid.inventoryTotal;
 import com.pos_onlineshop.hybrid.products.Product;
 import com.pos_onlineshop.hybrid.shop.Shop;
 import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface InventoryTotalRepository extends JpaRepository<InventoryTotal, Long> {
+public interface InventoryTotalRepository extends JpaRepository<InventoryTotal, Long>, InventoryTotalRepositoryCustom {
 
     /**
      * Find inventory total by shop and product
@@ -27,12 +31,49 @@ public interface InventoryTotalRepository extends JpaRepository<InventoryTotal,
     @Query("SELECT it FROM InventoryTotal it WHERE it.shop.id = :shopId AND it.product.id = :productId")
     Optional<InventoryTotal> findByShopIdAndProductIdWithLock(@Param("shopId") Long shopId, @Param("productId") Long productId);
 
+    /**
+     * Decrement stock in a single statement, only if enough is available.
+     * Returns the number of rows changed: 0 means no row or insufficient stock.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE InventoryTotal it SET it.totalstock = it.totalstock - :quantity, it.lastUpdated = :now, " +
+            "it.version = COALESCE(it.version, 0) + 1 " +
+            "WHERE it.shop.id = :shopId AND it.product.id = :productId AND it.totalstock >= :quantity")
+    int decrementIfAvailable(@Param("shopId") Long shopId,
+                             @Param("productId") Long productId,
+                             @Param("quantity") int quantity,
+                             @Param("now") LocalDateTime now);
+
+    /**
+     * Current stock level for a shop and product, read without loading the entity
+     */
+    @Query("SELECT it.totalstock FROM InventoryTotal it WHERE it.shop.id = :shopId AND it.product.id = :productId")
+    Optional<Integer> findTotalstock(@Param("shopId") Long shopId, @Param("productId") Long productId);
+
+    /**
+     * Current stock levels of several products in a shop as (product id, stock) pairs,
+     * read without locking
+     */
+    @Query("SELECT it.product.id, it.totalstock FROM InventoryTotal it " +
+            "WHERE it.shop.id = :shopId AND it.product.id IN :productIds")
+    List<Object[]> findTotalstocks(@Param("shopId") Long shopId, @Param("productIds") Collection<Long> productIds);
+
     /**
      * Find all inventory totals for a specific shop
      */
     @Query("SELECT it FROM InventoryTotal it WHERE it.shop.id = :shopId")
     List<InventoryTotal> findByShopId(@Param("shopId") Long shopId);
 
+    /**
+     * Next page of a shop's inventory totals by product id, with shop and product fetched;
+     * the (shop_id, product_id) unique key serves it without sorting
+     */
+    @Query("SELECT it FROM InventoryTotal it JOIN FETCH it.shop s LEFT JOIN FETCH s.defaultCurrency " +
+            "JOIN FETCH it.product WHERE s.id = :shopId AND it.product.id > :afterProductId ORDER BY it.product.id")
+    List<InventoryTotal> findPageByShopId(@Param("shopId") Long shopId,
+                                          @Param("afterProductId") Long afterProductId,
+                                          Limit limit);
+
     /**
      * Find all inventory totals for a specific product across all shops
      */
@@ -57,12 +98,6 @@ public interface InventoryTotalRepository extends JpaRepository<InventoryTotal,
     @Query("SELECT COUNT(DISTINCT it.product.id) FROM InventoryTotal it WHERE it.totalstock > 0")
     Integer countProductsWithStock();
 
-    /**
-     * Find items that are out of stock (totalstock = 0)
-     */
-    @Query("SELECT it FROM InventoryTotal it WHERE it.totalstock = 0")
-    List<InventoryTotal> findOutOfStockItems();
-
     /**
      * Get total stock units for a specific shop
      */
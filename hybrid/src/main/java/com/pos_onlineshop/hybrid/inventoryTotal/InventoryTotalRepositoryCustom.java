@@ -0,0 +1,29 @@
+package com.pos_onlineshop.hybrid.inventoryTotal;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Set-based stock updates that bypass entity loading
+ */
+public interface InventoryTotalRepositoryCustom {
+
+    /**
+     * Apply conditional decrements in one JDBC batch, in list order. Each entry only
+     * succeeds if enough stock remains; the result holds the affected row count (0 or 1)
+     * for each entry.
+     */
+    int[] decrementAllIfAvailable(List<StockChange> changes);
+
+    /**
+     * Apply increments in one JDBC batch, in list order, creating the inventory total
+     * when a shop/product pair has none yet
+     */
+    void incrementAll(List<StockChange> changes);
+
+    /**
+     * Load an inventory total and refresh it, so a copy already in the persistence
+     * context reflects changes made by bulk updates
+     */
+    Optional<InventoryTotal> findCurrent(Long shopId, Long productId);
+}
@@ -0,0 +1,78 @@
+package com.pos_onlineshop.hybrid.inventoryTotal;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class InventoryTotalRepositoryImpl implements InventoryTotalRepositoryCustom {
+
+    private static final String DECREMENT_SQL =
+            "UPDATE inventory_total SET totalstock = totalstock - ?, last_updated = ?, version = COALESCE(version, 0) + 1 " +
+            "WHERE shop_id = ? AND product_id = ? AND totalstock >= ?";
+
+    private static final String UPSERT_INCREMENT_SQL =
+            "INSERT INTO inventory_total (shop_id, product_id, totalstock, last_updated, version) VALUES (?, ?, ?, ?, 0) " +
+            "ON DUPLICATE KEY UPDATE totalstock = totalstock + VALUES(totalstock), last_updated = VALUES(last_updated), " +
+            "version = COALESCE(version, 0) + 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int[] decrementAllIfAvailable(List<StockChange> changes) {
+        if (changes.isEmpty()) {
+            return new int[0];
+        }
+        // Write pending entity changes first so the batch sees them
+        entityManager.flush();
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.batchUpdate(DECREMENT_SQL, changes, changes.size(), (ps, change) -> {
+            ps.setInt(1, change.quantity());
+            ps.setTimestamp(2, now);
+            ps.setLong(3, change.shopId());
+            ps.setLong(4, change.productId());
+            ps.setInt(5, change.quantity());
+        })[0];
+    }
+
+    @Override
+    public void incrementAll(List<StockChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(UPSERT_INCREMENT_SQL, changes, changes.size(), (ps, change) -> {
+            ps.setLong(1, change.shopId());
+            ps.setLong(2, change.productId());
+            ps.setInt(3, change.quantity());
+            ps.setTimestamp(4, now);
+        });
+    }
+
+    @Override
+    public Optional<InventoryTotal> findCurrent(Long shopId, Long productId) {
+        return entityManager.createQuery(
+                        "SELECT it FROM InventoryTotal it WHERE it.shop.id = :shopId AND it.product.id = :productId",
+                        InventoryTotal.class)
+                .setParameter("shopId", shopId)
+                .setParameter("productId", productId)
+                .getResultStream()
+                .findFirst()
+                .map(total -> {
+                    entityManager.refresh(total);
+                    return total;
+                });
+    }
+}
@@ -0,0 +1,7 @@
+package com.pos_onlineshop.hybrid.inventoryTotal;
+
+/**
+ * A quantity to apply to one shop/product inventory total
+ */
+public record StockChange(Long shopId, Long productId, int quantity) {
+}
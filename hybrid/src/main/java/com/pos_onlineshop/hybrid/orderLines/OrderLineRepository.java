@@ -1,9 +1,15 @@
 package com.pos_onlineshop.hybrid.orderLines;
 
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
 import com.pos_onlineshop.hybrid.products.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,4 +20,26 @@ public interface OrderLineRepository extends JpaRepository<OrderLine, Long> {
     @Query("SELECT ol.product, SUM(ol.quantity) FROM OrderLine ol " +
             "GROUP BY ol.product ORDER BY SUM(ol.quantity) DESC")
     List<Object[]> findMostOrderedProducts();
+
+    /**
+     * (product id, name, units) for orders in the given statuses placed in [from, to),
+     * optionally of one shop, best sellers first
+     */
+    @Query("SELECT p.id, p.name, SUM(ol.quantity) FROM OrderLine ol JOIN ol.order o JOIN ol.product p " +
+            "WHERE o.status IN :statuses AND o.orderDate >= :from AND o.orderDate < :to " +
+            "AND (:shopId IS NULL OR o.shop.id = :shopId) " +
+            "GROUP BY p.id, p.name ORDER BY SUM(ol.quantity) DESC")
+    List<Object[]> sumQuantityByProduct(@Param("statuses") Collection<OrderStatus> statuses,
+                                        @Param("from") LocalDateTime from,
+                                        @Param("to") LocalDateTime to,
+                                        @Param("shopId") Long shopId,
+                                        Pageable pageable);
+
+    @Query("SELECT COALESCE(SUM(ol.quantity), 0) FROM OrderLine ol JOIN ol.order o " +
+            "WHERE o.status IN :statuses AND o.orderDate >= :from AND o.orderDate < :to " +
+            "AND (:shopId IS NULL OR o.shop.id = :shopId)")
+    long sumQuantity(@Param("statuses") Collection<OrderStatus> statuses,
+                     @Param("from") LocalDateTime from,
+                     @Param("to") LocalDateTime to,
+                     @Param("shopId") Long shopId);
 }
\ No newline at end of file
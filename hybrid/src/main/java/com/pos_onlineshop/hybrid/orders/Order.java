@@ -18,13 +18,16 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_receipt_number", columnList = "receipt_number", unique = true),
+        @Index(name = "idx_orders_order_date", columnList = "order_date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@EqualsAndHashCode(exclude = {"orderLines", "user", "customer", "currency", "shop", "cashier", "cashierSession"})
-@ToString(exclude = {"orderLines", "user", "customer", "currency", "shop", "cashier", "cashierSession"})
+@EqualsAndHashCode(exclude = {"orderLines", "user", "customer", "currency", "shop", "cashier", "cashierSession", "totals"})
+@ToString(exclude = {"orderLines", "user", "customer", "currency", "shop", "cashier", "cashierSession", "totals"})
 public class Order {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -115,6 +118,17 @@ public class Order {
     @Builder.Default
     private LocalDateTime updatedAt = LocalDateTime.now();
 
+    // Orders from before the column existed start at 0
+    @Version
+    @Column(columnDefinition = "bigint default 0 not null")
+    private Long version; // Optimistic locking; analytics reloads also use it to tell which changes they read
+
+    // Running totals of the lines; built from orderLines on first use
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private OrderTotals totals;
+
     @PreUpdate
     public void preUpdate() {
         this.updatedAt = LocalDateTime.now();
@@ -122,18 +136,47 @@ public class Order {
 
     // Business methods
     public void addOrderLine(OrderLine line) {
+        OrderTotals current = totals();
         orderLines.add(line);
         line.setOrder(this);
-        recalculateTotal();
+        current.add(line);
+        applyTotals();
     }
 
     public void removeOrderLine(OrderLine line) {
-        orderLines.remove(line);
+        OrderTotals current = totals();
+        if (orderLines.remove(line)) {
+            current.remove(line);
+        }
         line.setOrder(null);
-        recalculateTotal();
+        applyTotals();
     }
 
+    /**
+     * Recount totals from every line; needed after changing a line that is already on the order
+     */
     public void recalculateTotal() {
+        totals = OrderTotals.of(orderLines);
+        applyTotals();
+    }
+
+    private OrderTotals totals() {
+        if (totals == null) {
+            totals = OrderTotals.of(orderLines);
+        }
+        return totals;
+    }
+
+    private void applyTotals() {
+        if (totals.isExact()) {
+            this.totalAmount = totals.totalAmount();
+            this.taxAmount = totals.taxAmount();
+        } else {
+            sumLines();
+        }
+    }
+
+    private void sumLines() {
         this.totalAmount = orderLines.stream()
                 .map(OrderLine::getSubtotal)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
@@ -0,0 +1,33 @@
+package com.pos_onlineshop.hybrid.orders;
+
+import com.pos_onlineshop.hybrid.enums.OrderChangeType;
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+
+/**
+ * An order was created, changed status or payment method, or is about to be deleted.
+ * Published inside the transaction making the change, so listeners can still read the
+ * order's lines; oldStatus and oldPaymentMethod are only set for the change they name.
+ *
+ * Status and payment method changes are published once the change is flushed, so the
+ * order's version is the one the change is written with.
+ */
+public record OrderChangedEvent(Order order, OrderChangeType type, OrderStatus oldStatus,
+                                PaymentMethod oldPaymentMethod) {
+
+    public static OrderChangedEvent created(Order order) {
+        return new OrderChangedEvent(order, OrderChangeType.CREATED, null, null);
+    }
+
+    public static OrderChangedEvent statusChanged(Order order, OrderStatus oldStatus) {
+        return new OrderChangedEvent(order, OrderChangeType.STATUS_CHANGED, oldStatus, null);
+    }
+
+    public static OrderChangedEvent paymentMethodChanged(Order order, PaymentMethod oldPaymentMethod) {
+        return new OrderChangedEvent(order, OrderChangeType.PAYMENT_METHOD_CHANGED, null, oldPaymentMethod);
+    }
+
+    public static OrderChangedEvent deleted(Order order) {
+        return new OrderChangedEvent(order, OrderChangeType.DELETED, null, null);
+    }
+}
@@ -5,7 +5,9 @@ import com.pos_onlineshop.hybrid.enums.SalesChannel;
 import com.pos_onlineshop.hybrid.userAccount.UserAccount;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -21,6 +23,10 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     List<Order> findByStatus(OrderStatus status);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findByIdWithLock(@Param("id") Long id);
+
     List<Order> findByOrderDateBetween(LocalDateTime startDate, LocalDateTime endDate);
 
     List<Order> findBySalesChannel(SalesChannel channel);
@@ -36,12 +42,31 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     @Query("SELECT SUM(o.totalAmount) FROM Order o WHERE o.status = :status")
     BigDecimal calculateTotalRevenueByStatus(@Param("status") OrderStatus status);
 
+    /**
+     * Order count and total per status and currency id; null filters are ignored
+     */
+    @Query("SELECT o.status, o.currency.id, SUM(o.totalAmount), COUNT(o) FROM Order o " +
+            "WHERE (:status IS NULL OR o.status = :status) " +
+            "AND (:shopId IS NULL OR o.shop.id = :shopId) " +
+            "AND (:startDate IS NULL OR o.orderDate >= :startDate) " +
+            "AND (:endDate IS NULL OR o.orderDate <= :endDate) " +
+            "GROUP BY o.status, o.currency.id")
+    List<Object[]> sumTotalsByStatusAndCurrency(@Param("status") OrderStatus status,
+                                                @Param("shopId") Long shopId,
+                                                @Param("startDate") LocalDateTime startDate,
+                                                @Param("endDate") LocalDateTime endDate);
+
+    long countByStatus(OrderStatus status);
+
     @Query("SELECT COUNT(o) FROM Order o WHERE o.orderDate >= :date")
     Long countOrdersSince(@Param("date") LocalDateTime date);
 
     @Query("SELECT o FROM Order o JOIN FETCH o.orderLines WHERE o.id = :orderId")
     Optional<Order> findByIdWithOrderLines(@Param("orderId") Long orderId);
 
+    @Query("SELECT o FROM Order o LEFT JOIN FETCH o.orderLines WHERE o.receiptNumber = :receiptNumber")
+    Optional<Order> findByReceiptNumberWithOrderLines(@Param("receiptNumber") String receiptNumber);
+
     @Query("SELECT o.salesChannel, COUNT(o), SUM(o.totalAmount) FROM Order o " +
             "WHERE o.orderDate BETWEEN :startDate AND :endDate " +
             "GROUP BY o.salesChannel")
@@ -0,0 +1,122 @@
+package com.pos_onlineshop.hybrid.orders;
+
+import com.pos_onlineshop.hybrid.orderLines.OrderLine;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+
+/**
+ * Running order totals kept as scaled longs, so adding or removing a line costs a few
+ * multiplications instead of a pass over every line.
+ *
+ * Subtotals are held in units of 10^-4 and tax in units of 10^-8, which is exact for unit
+ * prices with up to 4 decimals and tax rates with up to 4 decimals. The scale of each
+ * term is counted as well, so the BigDecimals handed back have exactly the value and scale
+ * the sum over all lines would have. A line outside that range, or a total that would
+ * overflow, marks the totals inexact and the order falls back to summing BigDecimals.
+ */
+final class OrderTotals {
+
+    private static final int PRICE_SCALE = 4;
+    private static final int RATE_SCALE = 4;
+    private static final int TAX_SCALE = PRICE_SCALE + RATE_SCALE;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L};
+
+    private long subtotal;
+    private long tax;
+    private final int[] subtotalScales = new int[PRICE_SCALE + 1];
+    private final int[] taxScales = new int[TAX_SCALE + 1];
+    private boolean exact = true;
+
+    static OrderTotals of(Collection<OrderLine> lines) {
+        OrderTotals totals = new OrderTotals();
+        for (OrderLine line : lines) {
+            totals.add(line);
+        }
+        return totals;
+    }
+
+    void add(OrderLine line) {
+        apply(line, 1);
+    }
+
+    void remove(OrderLine line) {
+        apply(line, -1);
+    }
+
+    boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Sum of line subtotals plus tax, as Order.totalAmount
+     */
+    BigDecimal totalAmount() {
+        BigDecimal total = BigDecimal.valueOf(subtotal, PRICE_SCALE).add(BigDecimal.valueOf(tax, TAX_SCALE));
+        return total.setScale(Math.max(highestScale(subtotalScales), highestScale(taxScales)), RoundingMode.UNNECESSARY);
+    }
+
+    /**
+     * Sum of line tax, as Order.taxAmount
+     */
+    BigDecimal taxAmount() {
+        return BigDecimal.valueOf(tax, TAX_SCALE).setScale(highestScale(taxScales), RoundingMode.UNNECESSARY);
+    }
+
+    private void apply(OrderLine line, int sign) {
+        if (!exact) {
+            return;
+        }
+
+        BigDecimal unitPrice = line.getUnitPrice();
+        Integer quantity = line.getQuantity();
+        BigDecimal taxRate = line.getTaxRate();
+        boolean priced = unitPrice != null && quantity != null;
+
+        int priceScale = priced ? unitPrice.scale() : 0;
+        if (taxRate == null || priceScale < 0 || priceScale > PRICE_SCALE
+                || taxRate.scale() < 0 || taxRate.scale() > RATE_SCALE
+                || (priced && unitPrice.unscaledValue().bitLength() > 62)
+                || taxRate.unscaledValue().bitLength() > 62) {
+            exact = false;
+            return;
+        }
+
+        try {
+            long lineSubtotal = 0;
+            long lineTax = 0;
+            if (priced) {
+                lineSubtotal = Math.multiplyExact(
+                        Math.multiplyExact(unitPrice.unscaledValue().longValue(), POWERS_OF_TEN[PRICE_SCALE - priceScale]),
+                        (long) quantity);
+                lineTax = Math.multiplyExact(
+                        Math.multiplyExact(lineSubtotal, taxRate.unscaledValue().longValue()),
+                        POWERS_OF_TEN[RATE_SCALE - taxRate.scale()]);
+            }
+
+            int taxScale = priceScale + taxRate.scale();
+            if (sign < 0 && (subtotalScales[priceScale] == 0 || taxScales[taxScale] == 0)) {
+                // Removing a line that was never counted; only a full recount can tell
+                exact = false;
+                return;
+            }
+
+            subtotal = Math.addExact(subtotal, sign * lineSubtotal);
+            tax = Math.addExact(tax, sign * lineTax);
+            subtotalScales[priceScale] += sign;
+            taxScales[taxScale] += sign;
+        } catch (ArithmeticException e) {
+            exact = false;
+        }
+    }
+
+    private static int highestScale(int[] counts) {
+        for (int scale = counts.length - 1; scale > 0; scale--) {
+            if (counts[scale] > 0) {
+                return scale;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,59 @@
+package com.pos_onlineshop.hybrid.orders;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * The orders a background load read and the version it read each at, so that changes
+ * captured while the load ran can be replayed onto it exactly once.
+ *
+ * A change to an order the load read is replayed when it was written at a later version
+ * than the one read, and a deletion always is. An order the load never read was either
+ * created after it, so all its changes are replayed, or has been deleted, in which case it
+ * counts for nothing either way and none are. Ids are kept in a bit set and versions only
+ * above 0, as most orders are never changed once placed.
+ */
+public class ScannedOrders {
+
+    private final BitSet read = new BitSet();
+    private final Map<Long, Long> versions = new HashMap<>();
+
+    public void add(long orderId, long version) {
+        read.set(Math.toIntExact(orderId));
+        if (version > 0) {
+            versions.put(orderId, version);
+        }
+    }
+
+    /**
+     * The captured changes the load did not read, in capture order
+     *
+     * @param deletes whether a change is the order's deletion
+     */
+    public <E> List<E> unread(List<E> captured, ToLongFunction<E> orderId, ToLongFunction<E> version,
+                              Predicate<E> deletes) {
+        Set<Long> deletedBeforeRead = new HashSet<>();
+        for (E change : captured) {
+            long id = orderId.applyAsLong(change);
+            if (deletes.test(change) && !wasRead(id)) {
+                deletedBeforeRead.add(id);
+            }
+        }
+        List<E> unread = new ArrayList<>();
+        for (E change : captured) {
+            long id = orderId.applyAsLong(change);
+            boolean replay = wasRead(id)
+                    ? deletes.test(change) || version.applyAsLong(change) > versions.getOrDefault(id, 0L)
+                    : !deletedBeforeRead.contains(id);
+            if (replay) {
+                unread.add(change);
+            }
+        }
+        return unread;
+    }
+
+    private boolean wasRead(long orderId) {
+        return orderId <= Integer.MAX_VALUE && read.get((int) orderId);
+    }
+}
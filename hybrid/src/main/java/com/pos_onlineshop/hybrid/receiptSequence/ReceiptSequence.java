@@ -0,0 +1,33 @@
+package com.pos_onlineshop.hybrid.receiptSequence;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Per-shop, per-day receipt counter. Nodes reserve blocks of numbers from it
+ * and hand them out from memory.
+ */
+@Entity
+@Table(name = "receipt_sequences",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"shop_id", "business_date"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReceiptSequence {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "shop_id", nullable = false)
+    private Long shopId;
+
+    @Column(name = "business_date", nullable = false)
+    private LocalDate businessDate;
+
+    @Column(name = "next_value", nullable = false)
+    @Builder.Default
+    private Long nextValue = 1L; // First number not yet reserved by any node
+}
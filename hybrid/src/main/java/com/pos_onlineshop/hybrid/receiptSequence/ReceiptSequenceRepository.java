@@ -0,0 +1,26 @@
+package com.pos_onlineshop.hybrid.receiptSequence;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+
+@Repository
+public interface ReceiptSequenceRepository extends JpaRepository<ReceiptSequence, Long> {
+
+    /**
+     * Reserve a block by advancing the counter; returns 0 if the day's row does not exist yet
+     */
+    @Modifying
+    @Query("UPDATE ReceiptSequence rs SET rs.nextValue = rs.nextValue + :blockSize " +
+            "WHERE rs.shopId = :shopId AND rs.businessDate = :businessDate")
+    int advance(@Param("shopId") Long shopId,
+                @Param("businessDate") LocalDate businessDate,
+                @Param("blockSize") long blockSize);
+
+    @Query("SELECT rs.nextValue FROM ReceiptSequence rs WHERE rs.shopId = :shopId AND rs.businessDate = :businessDate")
+    Long findNextValue(@Param("shopId") Long shopId, @Param("businessDate") LocalDate businessDate);
+}
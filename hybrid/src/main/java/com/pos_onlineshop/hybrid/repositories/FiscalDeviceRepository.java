@@ -4,6 +4,7 @@ import com.pos_onlineshop.hybrid.enums.FiscalDeviceType;
 import com.pos_onlineshop.hybrid.fiscalDevice.FiscalDevice;
 import com.pos_onlineshop.hybrid.shop.Shop;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -37,4 +38,14 @@ public interface FiscalDeviceRepository extends JpaRepository<FiscalDevice, Long
 
     @Query("SELECT COUNT(fd) FROM FiscalDevice fd WHERE fd.shop = :shop AND fd.isActive = true")
     Long countActiveDevicesByShop(@Param("shop") Shop shop);
+
+    /**
+     * Atomically advance a device's receipt counter. The row stays locked until the caller commits.
+     */
+    @Modifying
+    @Query("UPDATE FiscalDevice fd SET fd.lastReceiptNumber = COALESCE(fd.lastReceiptNumber, 0) + 1 WHERE fd.id = :id")
+    int incrementReceiptCounter(@Param("id") Long id);
+
+    @Query("SELECT fd.lastReceiptNumber FROM FiscalDevice fd WHERE fd.id = :id")
+    Long findLastReceiptNumber(@Param("id") Long id);
 }
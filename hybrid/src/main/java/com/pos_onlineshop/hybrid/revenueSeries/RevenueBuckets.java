@@ -0,0 +1,206 @@
+package com.pos_onlineshop.hybrid.revenueSeries;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revenue and order counts per shop (and across all shops) and currency in minute, hour
+ * and day buckets of order time.
+ *
+ * Every change is added to its minute, hour and day bucket at once, so the coarser
+ * buckets are always the rollup of the finer ones. Minute buckets are kept for the minute
+ * retention and hour buckets for the hour retention; day buckets are kept for good.
+ *
+ * A range sums the buckets lying wholly inside it, taking whole days from the day buckets
+ * and only the edges from hours and minutes. A range with an edge in time whose finer
+ * buckets are gone has no exact total, so none is given.
+ */
+public class RevenueBuckets {
+
+    public static final long ALL_SHOPS = 0L;
+
+    private final long minuteRetention;
+    private final long hourRetention;
+    private final Map<SeriesKey, Series> series = new ConcurrentHashMap<>();
+
+    // First minute still held at minute and hour resolution; hour- and day-aligned
+    private volatile long oldestMinute = Long.MIN_VALUE;
+    private volatile long oldestHour = Long.MIN_VALUE;
+
+    private record SeriesKey(long shopId, long currencyId) {
+    }
+
+    /**
+     * One bucket of one currency
+     */
+    public record Bucket(LocalDateTime start, long currencyId, long amountCents, long orders) {
+    }
+
+    public RevenueBuckets(Duration minuteRetention, Duration hourRetention) {
+        this.minuteRetention = minuteRetention.toMinutes();
+        this.hourRetention = hourRetention.toMinutes();
+    }
+
+    public void add(Long shopId, long currencyId, LocalDateTime at, long amountCents, int orders) {
+        long minute = epochMinute(at);
+        seriesOf(ALL_SHOPS, currencyId).add(minute, amountCents, orders, oldestMinute, oldestHour);
+        if (shopId != null) {
+            seriesOf(shopId, currencyId).add(minute, amountCents, orders, oldestMinute, oldestHour);
+        }
+    }
+
+    /**
+     * Per currency totals of orders placed in [from, to), to the minute, for a shop or all
+     * shops when shopId is null; empty when an edge falls where its resolution is trimmed
+     */
+    public Optional<List<RevenueTotal>> sum(Long shopId, LocalDateTime from, LocalDateTime to) {
+        long shop = shopId != null ? shopId : ALL_SHOPS;
+        long first = ceilMinute(from);
+        long end = ceilMinute(to);
+        long minutesFrom = oldestMinute;
+        long hoursFrom = oldestHour;
+        if (!isHeld(first, minutesFrom, hoursFrom) || !isHeld(end, minutesFrom, hoursFrom)) {
+            return Optional.empty();
+        }
+        List<RevenueTotal> totals = new ArrayList<>();
+        series.forEach((key, held) -> {
+            if (key.shopId() == shop) {
+                long[] total = held.sum(first, end, minutesFrom, hoursFrom);
+                if (total[0] != 0 || total[1] != 0) {
+                    totals.add(new RevenueTotal(key.currencyId(), total[0], total[1]));
+                }
+            }
+        });
+        return Optional.of(totals);
+    }
+
+    /**
+     * The buckets of one resolution starting in [from, to), oldest first
+     */
+    public List<Bucket> buckets(Long shopId, RevenueResolution resolution, LocalDateTime from, LocalDateTime to) {
+        long shop = shopId != null ? shopId : ALL_SHOPS;
+        long first = ceilMinute(from);
+        long end = ceilMinute(to);
+        List<Bucket> buckets = new ArrayList<>();
+        series.forEach((key, held) -> {
+            if (key.shopId() == shop) {
+                held.forEach(resolution, first, end, (start, values) -> buckets.add(new Bucket(
+                        LocalDateTime.ofEpochSecond(start * 60, 0, ZoneOffset.UTC), key.currencyId(),
+                        values[0], values[1])));
+            }
+        });
+        buckets.sort(Comparator.comparing(Bucket::start).thenComparingLong(Bucket::currencyId));
+        return buckets;
+    }
+
+    /**
+     * Drop minute and hour buckets that have aged out of their retention
+     */
+    public void trim(LocalDateTime now) {
+        long minute = epochMinute(now);
+        oldestMinute = RevenueResolution.HOUR.floor(minute - minuteRetention);
+        oldestHour = RevenueResolution.DAY.floor(minute - hourRetention);
+        series.values().forEach(held -> held.trim(oldestMinute, oldestHour));
+    }
+
+    /**
+     * Whether a range can start or end at the minute with the buckets still held
+     */
+    private static boolean isHeld(long minute, long oldestMinute, long oldestHour) {
+        return RevenueResolution.DAY.isAligned(minute)
+                || RevenueResolution.HOUR.isAligned(minute) && minute >= oldestHour
+                || minute >= oldestMinute;
+    }
+
+    private Series seriesOf(long shopId, long currencyId) {
+        return series.computeIfAbsent(new SeriesKey(shopId, currencyId), key -> new Series());
+    }
+
+    private static long epochMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static long ceilMinute(LocalDateTime time) {
+        long minute = epochMinute(time);
+        return time.getSecond() == 0 && time.getNano() == 0 ? minute : minute + 1;
+    }
+
+    private interface BucketConsumer {
+        void accept(long start, long[] values);
+    }
+
+    private static final class Series {
+
+        // Bucket start in epoch minutes to {amount in cents, orders}
+        private final TreeMap<Long, long[]> minutes = new TreeMap<>();
+        private final TreeMap<Long, long[]> hours = new TreeMap<>();
+        private final TreeMap<Long, long[]> days = new TreeMap<>();
+
+        synchronized void add(long minute, long amountCents, int orders, long oldestMinute, long oldestHour) {
+            if (minute >= oldestMinute) {
+                addTo(minutes, minute, amountCents, orders);
+            }
+            if (minute >= oldestHour) {
+                addTo(hours, RevenueResolution.HOUR.floor(minute), amountCents, orders);
+            }
+            addTo(days, RevenueResolution.DAY.floor(minute), amountCents, orders);
+        }
+
+        synchronized long[] sum(long from, long to, long oldestMinute, long oldestHour) {
+            long[] total = new long[2];
+            long cursor = from;
+            while (cursor < to) {
+                long end;
+                if (RevenueResolution.DAY.isAligned(cursor) && RevenueResolution.DAY.next(cursor) <= to) {
+                    end = RevenueResolution.DAY.floor(to);
+                    addRange(days, cursor, end, total);
+                } else if (cursor >= oldestHour && RevenueResolution.HOUR.isAligned(cursor)
+                        && RevenueResolution.HOUR.next(cursor) <= to) {
+                    end = Math.min(RevenueResolution.HOUR.floor(to), RevenueResolution.DAY.next(cursor));
+                    addRange(hours, cursor, end, total);
+                } else if (cursor >= oldestMinute) {
+                    end = Math.min(to, RevenueResolution.HOUR.next(cursor));
+                    addRange(minutes, cursor, end, total);
+                } else if (cursor >= oldestHour) {
+                    // Minutes of this hour are gone
+                    end = RevenueResolution.HOUR.next(cursor);
+                } else {
+                    // Hours of this day are gone
+                    end = RevenueResolution.DAY.next(cursor);
+                }
+                cursor = end;
+            }
+            return total;
+        }
+
+        synchronized void forEach(RevenueResolution resolution, long from, long to, BucketConsumer consumer) {
+            TreeMap<Long, long[]> buckets = switch (resolution) {
+                case MINUTE -> minutes;
+                case HOUR -> hours;
+                case DAY -> days;
+            };
+            buckets.subMap(from, true, to, false).forEach(consumer::accept);
+        }
+
+        synchronized void trim(long oldestMinute, long oldestHour) {
+            minutes.headMap(oldestMinute, false).clear();
+            hours.headMap(oldestHour, false).clear();
+        }
+
+        private static void addTo(TreeMap<Long, long[]> buckets, long start, long amountCents, int orders) {
+            long[] values = buckets.computeIfAbsent(start, key -> new long[2]);
+            values[0] += amountCents;
+            values[1] += orders;
+        }
+
+        private static void addRange(TreeMap<Long, long[]> buckets, long from, long to, long[] total) {
+            for (long[] values : buckets.subMap(from, true, to, false).values()) {
+                total[0] += values[0];
+                total[1] += values[1];
+            }
+        }
+    }
+}
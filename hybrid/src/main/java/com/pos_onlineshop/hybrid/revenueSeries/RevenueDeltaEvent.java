@@ -0,0 +1,12 @@
+package com.pos_onlineshop.hybrid.revenueSeries;
+
+import java.time.LocalDateTime;
+
+/**
+ * Revenue an order adds (or, negative, takes back); applied to the buckets once the change
+ * commits. Carries the order version the change was written at, and whether it is the
+ * order's deletion, so a reload can tell whether it already read it.
+ */
+public record RevenueDeltaEvent(long orderId, long version, boolean deleted, LocalDateTime orderDate, Long shopId,
+                                long currencyId, long amountCents, int orders) {
+}
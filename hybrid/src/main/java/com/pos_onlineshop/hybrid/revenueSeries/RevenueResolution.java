@@ -0,0 +1,36 @@
+package com.pos_onlineshop.hybrid.revenueSeries;
+
+/**
+ * Bucket sizes of the revenue time series, in minutes
+ */
+public enum RevenueResolution {
+    MINUTE(1), HOUR(60), DAY(24 * 60);
+
+    private final long minutes;
+
+    RevenueResolution(long minutes) {
+        this.minutes = minutes;
+    }
+
+    public long minutes() {
+        return minutes;
+    }
+
+    /**
+     * Start of the bucket holding the given epoch minute
+     */
+    public long floor(long epochMinute) {
+        return Math.floorDiv(epochMinute, minutes) * minutes;
+    }
+
+    /**
+     * Start of the bucket after the one holding the given epoch minute
+     */
+    public long next(long epochMinute) {
+        return floor(epochMinute) + minutes;
+    }
+
+    public boolean isAligned(long epochMinute) {
+        return Math.floorMod(epochMinute, minutes) == 0;
+    }
+}
@@ -0,0 +1,7 @@
+package com.pos_onlineshop.hybrid.revenueSeries;
+
+/**
+ * Revenue in cents and order count of one currency, over a range or within one bucket
+ */
+public record RevenueTotal(long currencyId, long amountCents, long orders) {
+}
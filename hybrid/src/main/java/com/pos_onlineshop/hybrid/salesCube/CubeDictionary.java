@@ -0,0 +1,40 @@
+package com.pos_onlineshop.hybrid.salesCube;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the distinct values of a column, null included, to dense int codes
+ */
+final class CubeDictionary<T> {
+
+    private final Map<T, Integer> codes = new HashMap<>();
+    private final List<T> values = new ArrayList<>();
+
+    synchronized int encode(T value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            values.add(value);
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    /**
+     * Code of a value, or -1 if the cube has never seen it
+     */
+    synchronized int lookup(T value) {
+        return codes.getOrDefault(value, -1);
+    }
+
+    synchronized T decode(int code) {
+        return values.get(code);
+    }
+
+    synchronized int size() {
+        return values.size();
+    }
+}
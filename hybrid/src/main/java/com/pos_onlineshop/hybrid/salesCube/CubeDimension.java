@@ -0,0 +1,15 @@
+package com.pos_onlineshop.hybrid.salesCube;
+
+/**
+ * Columns of the sales cube that queries can group or filter by
+ */
+public enum CubeDimension {
+    SHOP,
+    CATEGORY,
+    PRODUCT,
+    DAY,
+    PAYMENT_METHOD,
+    CASHIER,
+    CURRENCY,
+    SALES_CHANNEL
+}
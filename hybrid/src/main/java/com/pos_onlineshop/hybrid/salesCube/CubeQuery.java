@@ -0,0 +1,15 @@
+package com.pos_onlineshop.hybrid.salesCube;
+
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import com.pos_onlineshop.hybrid.enums.SalesChannel;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Dimensions to group by plus optional filters; a null filter matches every line
+ */
+public record CubeQuery(List<CubeDimension> groupBy, LocalDate from, LocalDate to,
+                        Long shopId, String category, Long productId, PaymentMethod paymentMethod,
+                        Long cashierId, String currencyCode, SalesChannel salesChannel) {
+}
@@ -0,0 +1,14 @@
+package com.pos_onlineshop.hybrid.salesCube;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups matched by a cube query, highest amount first, and the number of lines scanned
+ */
+public record CubeResult(List<Row> rows, long scannedLines) {
+
+    public record Row(Map<CubeDimension, Object> keys, long lines, long quantity, BigDecimal amount) {
+    }
+}
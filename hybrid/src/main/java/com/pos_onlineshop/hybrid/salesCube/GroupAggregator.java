@@ -0,0 +1,87 @@
+package com.pos_onlineshop.hybrid.salesCube;
+
+/**
+ * Open-addressing map from a packed group key to line count, quantity and amount, so a
+ * scan adds a row without allocating. Each slot is four adjacent longs (key + 1, lines,
+ * quantity, amount), with 0 marking a free slot, so an add touches one cache line.
+ */
+final class GroupAggregator {
+
+    private static final int STRIDE = 4;
+
+    private final int maxGroups;
+    private long[] table;
+    private int size;
+
+    GroupAggregator(int maxGroups) {
+        this.maxGroups = maxGroups;
+        this.table = new long[64 * STRIDE];
+    }
+
+    void add(long key, long lineCount, long quantity, long amount) {
+        int slot = slotOf(table, key);
+        if (table[slot] == 0) {
+            if (size == maxGroups) {
+                throw new IllegalArgumentException("Query produces more than " + maxGroups
+                        + " groups; filter further or group by fewer dimensions");
+            }
+            if ((size + 1) * 2 * STRIDE > table.length) {
+                grow();
+                slot = slotOf(table, key);
+            }
+            table[slot] = key + 1;
+            size++;
+        }
+        table[slot + 1] += lineCount;
+        table[slot + 2] += quantity;
+        table[slot + 3] += amount;
+    }
+
+    void merge(GroupAggregator other) {
+        long[] entries = other.table;
+        for (int slot = 0; slot < entries.length; slot += STRIDE) {
+            if (entries[slot] != 0) {
+                add(entries[slot] - 1, entries[slot + 1], entries[slot + 2], entries[slot + 3]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Visit every group as (key, lines, quantity, amount)
+     */
+    void forEach(GroupConsumer consumer) {
+        for (int slot = 0; slot < table.length; slot += STRIDE) {
+            if (table[slot] != 0) {
+                consumer.accept(table[slot] - 1, table[slot + 1], table[slot + 2], table[slot + 3]);
+            }
+        }
+    }
+
+    interface GroupConsumer {
+        void accept(long key, long lines, long quantity, long amount);
+    }
+
+    private static int slotOf(long[] table, long key) {
+        int mask = table.length / STRIDE - 1;
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int index = (int) (hash ^ (hash >>> 32)) & mask;
+        while (table[index * STRIDE] != 0 && table[index * STRIDE] != key + 1) {
+            index = (index + 1) & mask;
+        }
+        return index * STRIDE;
+    }
+
+    private void grow() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        for (int slot = 0; slot < old.length; slot += STRIDE) {
+            if (old[slot] != 0) {
+                System.arraycopy(old, slot, table, slotOf(table, old[slot] - 1), STRIDE);
+            }
+        }
+    }
+}
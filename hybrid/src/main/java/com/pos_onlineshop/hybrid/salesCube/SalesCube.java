@@ -0,0 +1,306 @@
+package com.pos_onlineshop.hybrid.salesCube;
+
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import com.pos_onlineshop.hybrid.enums.SalesChannel;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Columnar in-memory store of order lines for ad-hoc group-by queries.
+ *
+ * Lines live in fixed-size blocks of primitive columns: shops, categories, products,
+ * cashiers and currencies are dictionary-encoded ints, days are epoch days and amounts
+ * are scaled longs. Appends are serialised; a query sees the lines published before it
+ * started and scans the blocks in parallel, each fork-join task aggregating into its
+ * own table before the tables are merged.
+ */
+public class SalesCube {
+
+    public static final int AMOUNT_SCALE = 4;
+
+    private static final int BLOCK_BITS = 16;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int ANY = -1;
+    private static final PaymentMethod[] PAYMENT_METHODS = PaymentMethod.values();
+    private static final SalesChannel[] SALES_CHANNELS = SalesChannel.values();
+
+    private final CubeDictionary<Long> shops = new CubeDictionary<>();
+    private final CubeDictionary<String> categories = new CubeDictionary<>();
+    private final CubeDictionary<Long> products = new CubeDictionary<>();
+    private final CubeDictionary<Long> cashiers = new CubeDictionary<>();
+    private final CubeDictionary<String> currencies = new CubeDictionary<>();
+
+    // Written under the append lock before size is published
+    private volatile Block[] blocks = new Block[0];
+    private volatile int minDay = Integer.MAX_VALUE;
+    private volatile int maxDay = Integer.MIN_VALUE;
+    private volatile int size;
+
+    private static final class Block {
+        final int[] shop = new int[BLOCK_SIZE];
+        final int[] category = new int[BLOCK_SIZE];
+        final int[] product = new int[BLOCK_SIZE];
+        final int[] day = new int[BLOCK_SIZE];
+        final int[] cashier = new int[BLOCK_SIZE];
+        final int[] currency = new int[BLOCK_SIZE];
+        final byte[] paymentMethod = new byte[BLOCK_SIZE];
+        final byte[] salesChannel = new byte[BLOCK_SIZE];
+        final byte[] lines = new byte[BLOCK_SIZE];
+        final int[] quantity = new int[BLOCK_SIZE];
+        final long[] amount = new long[BLOCK_SIZE];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public synchronized void append(SalesCubeLine line) {
+        int row = size;
+        int blockIndex = row >>> BLOCK_BITS;
+        Block[] current = blocks;
+        if (blockIndex == current.length) {
+            current = Arrays.copyOf(current, blockIndex + 1);
+            current[blockIndex] = new Block();
+            blocks = current;
+        }
+
+        Block block = current[blockIndex];
+        int i = row & (BLOCK_SIZE - 1);
+        int day = (int) line.day().toEpochDay();
+        block.shop[i] = shops.encode(line.shopId());
+        block.category[i] = categories.encode(line.category());
+        block.product[i] = products.encode(line.productId());
+        block.day[i] = day;
+        block.cashier[i] = cashiers.encode(line.cashierId());
+        block.currency[i] = currencies.encode(line.currencyCode());
+        block.paymentMethod[i] = (byte) (line.paymentMethod() != null ? line.paymentMethod().ordinal() + 1 : 0);
+        block.salesChannel[i] = (byte) (line.salesChannel() != null ? line.salesChannel().ordinal() + 1 : 0);
+        block.lines[i] = (byte) line.lines();
+        block.quantity[i] = line.quantity();
+        block.amount[i] = line.amount();
+
+        if (day < minDay) {
+            minDay = day;
+        }
+        if (day > maxDay) {
+            maxDay = day;
+        }
+        size = row + 1;
+    }
+
+    public synchronized void appendAll(Collection<SalesCubeLine> lines) {
+        lines.forEach(this::append);
+    }
+
+    /**
+     * Run a query on the lines published so far; throws IllegalArgumentException if it
+     * would produce more than maxGroups groups
+     */
+    public CubeResult query(CubeQuery query, ForkJoinPool pool, int maxGroups) {
+        int rows = size;
+        Block[] snapshot = blocks;
+
+        Scan scan = plan(query);
+        if (rows == 0 || scan == null) {
+            return new CubeResult(List.of(), rows);
+        }
+
+        int blockCount = (rows + BLOCK_SIZE - 1) >>> BLOCK_BITS;
+        scan.maxGroups = maxGroups;
+        GroupAggregator groups = pool.invoke(new ScanTask(scan, snapshot, rows, 0, blockCount));
+
+        List<CubeResult.Row> result = new ArrayList<>(groups.size());
+        groups.forEach((key, lines, quantity, amount) -> {
+            // Groups whose lines were all taken back out
+            if (lines != 0 || quantity != 0 || amount != 0) {
+                result.add(new CubeResult.Row(decode(scan, key), lines, quantity,
+                        BigDecimal.valueOf(amount, AMOUNT_SCALE)));
+            }
+        });
+        result.sort(Comparator.comparing(CubeResult.Row::amount).reversed());
+        return new CubeResult(result, rows);
+    }
+
+    /**
+     * Resolve filters to codes and size the group key; null if no line can match
+     */
+    private Scan plan(CubeQuery query) {
+        Scan scan = new Scan();
+        scan.shop = filterCode(shops, query.shopId());
+        scan.category = filterCode(categories, query.category());
+        scan.product = filterCode(products, query.productId());
+        scan.cashier = filterCode(cashiers, query.cashierId());
+        scan.currency = filterCode(currencies, query.currencyCode());
+        scan.paymentMethod = query.paymentMethod() != null ? query.paymentMethod().ordinal() + 1 : ANY;
+        scan.salesChannel = query.salesChannel() != null ? query.salesChannel().ordinal() + 1 : ANY;
+        if (scan.shop == Integer.MIN_VALUE || scan.category == Integer.MIN_VALUE || scan.product == Integer.MIN_VALUE
+                || scan.cashier == Integer.MIN_VALUE || scan.currency == Integer.MIN_VALUE) {
+            return null;
+        }
+
+        scan.firstDay = Math.max(minDay, query.from() != null ? (int) query.from().toEpochDay() : Integer.MIN_VALUE);
+        scan.lastDay = Math.min(maxDay, query.to() != null ? (int) query.to().toEpochDay() : Integer.MAX_VALUE);
+        if (scan.firstDay > scan.lastDay) {
+            return null;
+        }
+
+        scan.dimensions = query.groupBy() != null
+                ? new LinkedHashSet<>(query.groupBy()).toArray(new CubeDimension[0])
+                : new CubeDimension[0];
+        scan.radix = new long[scan.dimensions.length];
+        long combinations = 1;
+        for (int d = 0; d < scan.dimensions.length; d++) {
+            scan.radix[d] = radixOf(scan.dimensions[d], scan);
+            try {
+                combinations = Math.multiplyExact(combinations, scan.radix[d]);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Too many groups for " + Arrays.toString(scan.dimensions));
+            }
+        }
+        return scan;
+    }
+
+    private long radixOf(CubeDimension dimension, Scan scan) {
+        return Math.max(1, switch (dimension) {
+            case SHOP -> shops.size();
+            case CATEGORY -> categories.size();
+            case PRODUCT -> products.size();
+            case DAY -> scan.lastDay - scan.firstDay + 1;
+            case PAYMENT_METHOD -> PAYMENT_METHODS.length + 1;
+            case CASHIER -> cashiers.size();
+            case CURRENCY -> currencies.size();
+            case SALES_CHANNEL -> SALES_CHANNELS.length + 1;
+        });
+    }
+
+    private Map<CubeDimension, Object> decode(Scan scan, long key) {
+        Object[] values = new Object[scan.dimensions.length];
+        for (int d = scan.dimensions.length - 1; d >= 0; d--) {
+            int code = (int) (key % scan.radix[d]);
+            key /= scan.radix[d];
+            values[d] = switch (scan.dimensions[d]) {
+                case SHOP -> shops.decode(code);
+                case CATEGORY -> categories.decode(code);
+                case PRODUCT -> products.decode(code);
+                case DAY -> LocalDate.ofEpochDay(scan.firstDay + code);
+                case PAYMENT_METHOD -> code > 0 ? PAYMENT_METHODS[code - 1] : null;
+                case CASHIER -> cashiers.decode(code);
+                case CURRENCY -> currencies.decode(code);
+                case SALES_CHANNEL -> code > 0 ? SALES_CHANNELS[code - 1] : null;
+            };
+        }
+
+        Map<CubeDimension, Object> keys = new LinkedHashMap<>();
+        for (int d = 0; d < values.length; d++) {
+            keys.put(scan.dimensions[d], values[d]);
+        }
+        return keys;
+    }
+
+    /**
+     * ANY for no filter, Integer.MIN_VALUE for a value the cube has never seen
+     */
+    private static <T> int filterCode(CubeDictionary<T> dictionary, T value) {
+        if (value == null) {
+            return ANY;
+        }
+        int code = dictionary.lookup(value);
+        return code >= 0 ? code : Integer.MIN_VALUE;
+    }
+
+    /**
+     * Resolved filters and group key layout of one query
+     */
+    private static final class Scan {
+        int shop;
+        int category;
+        int product;
+        int cashier;
+        int currency;
+        int paymentMethod;
+        int salesChannel;
+        int firstDay;
+        int lastDay;
+        CubeDimension[] dimensions;
+        long[] radix;
+        int maxGroups;
+
+        void scanBlock(Block b, int count, GroupAggregator groups) {
+            for (int i = 0; i < count; i++) {
+                int day = b.day[i];
+                if (day < firstDay || day > lastDay
+                        || (shop != ANY && b.shop[i] != shop)
+                        || (category != ANY && b.category[i] != category)
+                        || (product != ANY && b.product[i] != product)
+                        || (cashier != ANY && b.cashier[i] != cashier)
+                        || (currency != ANY && b.currency[i] != currency)
+                        || (paymentMethod != ANY && b.paymentMethod[i] != paymentMethod)
+                        || (salesChannel != ANY && b.salesChannel[i] != salesChannel)) {
+                    continue;
+                }
+
+                long key = 0;
+                for (int d = 0; d < dimensions.length; d++) {
+                    key = key * radix[d] + switch (dimensions[d]) {
+                        case SHOP -> b.shop[i];
+                        case CATEGORY -> b.category[i];
+                        case PRODUCT -> b.product[i];
+                        case DAY -> day - firstDay;
+                        case PAYMENT_METHOD -> b.paymentMethod[i];
+                        case CASHIER -> b.cashier[i];
+                        case CURRENCY -> b.currency[i];
+                        case SALES_CHANNEL -> b.salesChannel[i];
+                    };
+                }
+                groups.add(key, b.lines[i], b.quantity[i], b.amount[i]);
+            }
+        }
+    }
+
+    /**
+     * Scans a range of blocks, splitting until each task has one block
+     */
+    private static final class ScanTask extends RecursiveTask<GroupAggregator> {
+
+        private final Scan scan;
+        private final Block[] blocks;
+        private final int rows;
+        private final int from;
+        private final int to;
+
+        ScanTask(Scan scan, Block[] blocks, int rows, int from, int to) {
+            this.scan = scan;
+            this.blocks = blocks;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected GroupAggregator compute() {
+            if (to - from <= 1) {
+                GroupAggregator groups = new GroupAggregator(scan.maxGroups);
+                for (int b = from; b < to; b++) {
+                    scan.scanBlock(blocks[b], Math.min(BLOCK_SIZE, rows - (b << BLOCK_BITS)), groups);
+                }
+                return groups;
+            }
+
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(scan, blocks, rows, from, middle);
+            left.fork();
+            GroupAggregator right = new ScanTask(scan, blocks, rows, middle, to).compute();
+            GroupAggregator groups = left.join();
+            if (groups.size() < right.size()) {
+                right.merge(groups);
+                return right;
+            }
+            groups.merge(right);
+            return groups;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.pos_onlineshop.hybrid.salesCube;
+
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import com.pos_onlineshop.hybrid.enums.SalesChannel;
+
+import java.time.LocalDate;
+
+/**
+ * One order line as the cube stores it. The amount is in the order currency in units of
+ * 10^-{@value SalesCube#AMOUNT_SCALE}; lines is 1, or -1 with negated quantity and amount to
+ * take a line back out.
+ */
+public record SalesCubeLine(long orderId, LocalDate day, Long shopId, String category, Long productId,
+                            PaymentMethod paymentMethod, Long cashierId, String currencyCode,
+                            SalesChannel salesChannel, int lines, int quantity, long amount) {
+}
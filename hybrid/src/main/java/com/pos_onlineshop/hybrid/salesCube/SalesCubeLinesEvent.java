@@ -0,0 +1,11 @@
+package com.pos_onlineshop.hybrid.salesCube;
+
+import java.util.List;
+
+/**
+ * Published when an order change adds or takes back cube lines; applied once the change
+ * commits. Carries the order version the change was written at, and whether it is the
+ * order's deletion, so a reload can tell whether it already read it.
+ */
+public record SalesCubeLinesEvent(long orderId, long version, boolean deleted, List<SalesCubeLine> lines) {
+}
@@ -32,7 +32,7 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class SellingPrice {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -41,6 +41,29 @@ public interface SellingPriceRepository extends JpaRepository<SellingPrice, Long
                                                          @Param("shop") Shop shop,
                                                          @Param("now") LocalDateTime now);
 
+    /**
+     * Best price of a product in a shop at a time, in the price book's order: priority,
+     * then price type, then the most recent effectiveFrom
+     */
+    @Query("SELECT sp FROM SellingPrice sp WHERE sp.product.id = :productId AND sp.shop.id = :shopId " +
+            "AND sp.active = true AND (sp.effectiveFrom IS NULL OR sp.effectiveFrom <= :at) " +
+            "AND (sp.effectiveTo IS NULL OR sp.effectiveTo >= :at) " +
+            "ORDER BY sp.priority DESC NULLS LAST, sp.priceType, sp.effectiveFrom DESC NULLS LAST LIMIT 1")
+    Optional<SellingPrice> findBestPriceByIds(@Param("shopId") Long shopId,
+                                              @Param("productId") Long productId,
+                                              @Param("at") LocalDateTime at);
+
+    /**
+     * Find active prices for a shop that have not yet expired, including ones that start later,
+     * with product, shop, currency and taxes loaded for use outside a session
+     */
+    @Query("SELECT DISTINCT sp FROM SellingPrice sp JOIN FETCH sp.product JOIN FETCH sp.shop " +
+            "JOIN FETCH sp.currency LEFT JOIN FETCH sp.taxes " +
+            "WHERE sp.shop.id = :shopId AND sp.active = true " +
+            "AND (sp.effectiveTo IS NULL OR sp.effectiveTo >= :now)")
+    List<SellingPrice> findActiveAndUpcomingByShopIdWithDetails(@Param("shopId") Long shopId,
+                                                                @Param("now") LocalDateTime now);
+
     /**
      * Find prices by product and shop with specific price type
      */
@@ -0,0 +1,126 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.QuickSaleItem;
+import com.pos_onlineshop.hybrid.enums.StockMovementType;
+import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotalRepository;
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
+import com.pos_onlineshop.hybrid.products.Product;
+import com.pos_onlineshop.hybrid.products.ProductRepository;
+import com.pos_onlineshop.hybrid.selling_price.SellingPrice;
+import com.pos_onlineshop.hybrid.shop.Shop;
+import com.pos_onlineshop.hybrid.stockLedger.StockMovementReason;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves a whole POS basket against a shop: products and their stock levels are loaded
+ * in one query each and selling prices come from the shop's price book. Each line is
+ * checked for stock and then for a price, in basket order, as quick sales always have
+ * been, so a basket fails on the same line with the same error. Stock for the basket is
+ * then taken
+ * through the stock mutation coordinator in one batch of conditional decrements, which
+ * callers run as the last write of the sale so the inventory_total rows stay locked as
+ * briefly as possible.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class BasketResolutionService {
+
+    private final ProductRepository productRepository;
+    private final InventoryTotalRepository inventoryTotalRepository;
+    private final SellingPriceService sellingPriceService;
+    private final StockMutationCoordinator stockMutationCoordinator;
+
+    /**
+     * Resolve products and current prices for the basket, in basket order. Fails on the
+     * first line with a missing product, an invalid quantity, too little stock (counting
+     * earlier lines of the same product) or no price. Stock is only read here; it is taken
+     * by reduceStock.
+     */
+    public List<ResolvedLine> resolve(Shop shop, List<QuickSaleItem> items) {
+        if (items == null || items.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Set<Long> productIds = items.stream()
+                .map(QuickSaleItem::getProductId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        Map<Long, Integer> available = new HashMap<>();
+        for (Object[] row : inventoryTotalRepository.findTotalstocks(shop.getId(), productIds)) {
+            available.put((Long) row[0], (Integer) row[1]);
+        }
+
+        List<ResolvedLine> lines = new ArrayList<>(items.size());
+
+        for (QuickSaleItem item : items) {
+            Product product = products.get(item.getProductId());
+            if (product == null) {
+                throw new RuntimeException("Product not found");
+            }
+
+            Integer quantity = item.getQuantity();
+            if (quantity == null || quantity <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive, received: " + quantity);
+            }
+
+            Integer stock = available.get(product.getId());
+            if (stock == null || stock < quantity) {
+                throw new RuntimeException("Insufficient stock in shop for: " + product.getName());
+            }
+            available.put(product.getId(), stock - quantity);
+
+            SellingPrice sellingPrice = sellingPriceService.getCurrentPrice(product, shop)
+                    .orElseThrow(() -> new RuntimeException("No selling price found for product: " + product.getName() + " in shop: " + shop.getName()));
+
+            lines.add(new ResolvedLine(product, sellingPrice, quantity));
+        }
+
+        return lines;
+    }
+
+    /**
+     * Take stock for every resolved line in one batch, in (shop, product) lock order.
+     * Lines for the same product are merged into one decrement. Fails on the first product
+     * without enough stock, which resolve has already checked unless another sale took it
+     * meanwhile; the caller's transaction then rolls the batch back. The
+     * movements are recorded as a sale of the given order.
+     */
+    public void reduceStock(Shop shop, List<ResolvedLine> lines, Long orderId) {
+        List<StockChange> changes = lines.stream()
+                .map(line -> new StockChange(shop.getId(), line.getProduct().getId(), line.getQuantity()))
+                .toList();
+
+        Map<Long, String> productNames = lines.stream()
+                .collect(Collectors.toMap(line -> line.getProduct().getId(), line -> line.getProduct().getName(),
+                        (first, second) -> first));
+        stockMutationCoordinator.reduce(changes, StockMovementReason.of(StockMovementType.SALE, orderId), shortfall ->
+                new RuntimeException("Insufficient stock in shop for: " + productNames.get(shortfall.productId())));
+
+        log.debug("Reduced stock for basket of {} lines in shop {}", lines.size(), shop.getCode());
+    }
+
+    /**
+     * A basket line with its product and current selling price resolved
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class ResolvedLine {
+        private final Product product;
+        private final SellingPrice sellingPrice;
+        private final Integer quantity;
+    }
+}
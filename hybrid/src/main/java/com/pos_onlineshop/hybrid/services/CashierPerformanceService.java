@@ -0,0 +1,253 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.cashier.Cashier;
+import com.pos_onlineshop.hybrid.cashier.CashierRepository;
+import com.pos_onlineshop.hybrid.cashierPerformance.CashierDayStats;
+import com.pos_onlineshop.hybrid.cashierPerformance.CashierSessionChangedEvent;
+import com.pos_onlineshop.hybrid.dtos.CashierPerformance;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Cashier leaderboard and per-cashier session statistics, aggregated in the database
+ * from cashier_sessions.
+ *
+ * Sessions count towards the day they started on, as in CashierService. Whole days are
+ * summed from per-day, per-cashier totals that are cached until a session of that day
+ * changes; only the partial days at the ends of a range are queried directly. Either
+ * way the database groups the sessions, so no session is loaded into memory.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CashierPerformanceService {
+
+    private static final String TOTALS =
+            "SELECT %s cashier_id, COUNT(*), COUNT(session_end), " +
+            "COALESCE(SUM(TIMESTAMPDIFF(MINUTE, session_start, session_end)), 0), " +
+            "COALESCE(SUM(total_sales), 0), COALESCE(SUM(transaction_count), 0) " +
+            "FROM cashier_sessions WHERE session_start >= ? AND session_start %s ? GROUP BY %s cashier_id";
+
+    private static final String DAYS_SQL = TOTALS.formatted("CAST(session_start AS DATE),", "<",
+            "CAST(session_start AS DATE),");
+    private static final String RANGE_SQL = TOTALS.formatted("", "<", "");
+    private static final String RANGE_INCLUSIVE_SQL = TOTALS.formatted("", "<=", "");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CashierRepository cashierRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${cashier.performance.cache-days:1100}")
+    private int cacheDays;
+
+    private record CachedDay(long readAt, Map<Long, CashierDayStats> totals) {
+    }
+
+    // Days by recency of use, dropping the least recently used past cacheDays
+    private final Map<LocalDate, CachedDay> days = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<LocalDate, CachedDay> eldest) {
+                    return size() > cacheDays;
+                }
+            });
+    private final AtomicLong changes = new AtomicLong();
+    private final Map<LocalDate, Long> changedAt = new ConcurrentHashMap<>();
+
+    /**
+     * Drop the cached totals of the day a session started on once the current transaction
+     * commits
+     */
+    public void markChanged(LocalDateTime sessionStart) {
+        if (sessionStart != null) {
+            eventPublisher.publishEvent(new CashierSessionChangedEvent(sessionStart.toLocalDate()));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSessionChanged(CashierSessionChangedEvent event) {
+        changedAt.put(event.day(), changes.incrementAndGet());
+        days.remove(event.day());
+    }
+
+    /**
+     * Cashiers by total sales of the sessions started in [startDate, endDate], best first
+     */
+    public List<CashierPerformance> getLeaderboard(LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        List<Map.Entry<Long, CashierDayStats>> top = totals(startDate, endDate).entrySet().stream()
+                .sorted(Map.Entry.<Long, CashierDayStats>comparingByValue(
+                        Comparator.comparing(CashierDayStats::getSales)).reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .toList();
+
+        Map<Long, Cashier> cashiers = cashierRepository.findAllById(top.stream().map(Map.Entry::getKey).toList())
+                .stream()
+                .collect(Collectors.toMap(Cashier::getId, Function.identity()));
+        return top.stream()
+                .map(entry -> toPerformance(entry.getKey(), cashiers.get(entry.getKey()), entry.getValue()))
+                .toList();
+    }
+
+    /**
+     * Totals of one cashier's sessions started in [startDate, endDate]
+     */
+    public CashierPerformance getCashierStats(Long cashierId, LocalDateTime startDate, LocalDateTime endDate) {
+        Cashier cashier = cashierRepository.findById(cashierId)
+                .orElseThrow(() -> new RuntimeException("Cashier not found"));
+
+        CashierDayStats stats = totals(startDate, endDate).getOrDefault(cashierId, CashierDayStats.empty());
+        return toPerformance(cashierId, cashier, stats);
+    }
+
+    /**
+     * Per cashier totals of the sessions started in [startDate, endDate]
+     */
+    public Map<Long, CashierDayStats> totals(LocalDateTime startDate, LocalDateTime endDate) {
+        Range range = Range.of(startDate, endDate);
+        Map<Long, CashierDayStats> totals = new HashMap<>();
+        if (range.firstDay().isBefore(range.endDay())) {
+            wholeDays(range.firstDay(), range.endDay()).forEach(day -> addAll(totals, day));
+        }
+        range.edges(this::queryRange).forEach(edge -> addAll(totals, edge));
+        return totals;
+    }
+
+    /**
+     * Per-cashier totals of each day in [firstDay, endDay), from the cache where still
+     * valid and with each run of missing days queried at once
+     */
+    private List<Map<Long, CashierDayStats>> wholeDays(LocalDate firstDay, LocalDate endDay) {
+        List<Map<Long, CashierDayStats>> totals = new ArrayList<>();
+        LocalDate missingFrom = null;
+        for (LocalDate day = firstDay; day.isBefore(endDay); day = day.plusDays(1)) {
+            CachedDay cached = validDay(day);
+            if (cached == null) {
+                if (missingFrom == null) {
+                    missingFrom = day;
+                }
+                continue;
+            }
+            if (missingFrom != null) {
+                totals.addAll(loadDays(missingFrom, day).values());
+                missingFrom = null;
+            }
+            totals.add(cached.totals());
+        }
+        if (missingFrom != null) {
+            totals.addAll(loadDays(missingFrom, endDay).values());
+        }
+        return totals;
+    }
+
+    private CachedDay validDay(LocalDate day) {
+        CachedDay cached = days.get(day);
+        return cached != null && cached.readAt() >= changedAt.getOrDefault(day, 0L) ? cached : null;
+    }
+
+    /**
+     * Query and cache the per-cashier totals of each day in [from, to) in one statement
+     */
+    private Map<LocalDate, Map<Long, CashierDayStats>> loadDays(LocalDate from, LocalDate to) {
+        // Read before querying, so a change committed meanwhile leaves the days stale
+        long readAt = changes.get();
+        Map<LocalDate, Map<Long, CashierDayStats>> loaded = new HashMap<>();
+        from.datesUntil(to).forEach(day -> loaded.put(day, new HashMap<>()));
+        jdbcTemplate.query(DAYS_SQL, (RowCallbackHandler) rs -> loaded
+                        .computeIfAbsent(rs.getDate(1).toLocalDate(), day -> new HashMap<>())
+                        .put(rs.getLong(2), stats(rs, 3)),
+                Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.atStartOfDay()));
+        loaded.forEach((day, totals) -> days.put(day, new CachedDay(readAt, totals)));
+        log.debug("Cached cashier totals for {} days from {}", ChronoUnit.DAYS.between(from, to), from);
+        return loaded;
+    }
+
+    private Map<Long, CashierDayStats> queryRange(LocalDateTime from, LocalDateTime to, boolean inclusive) {
+        Map<Long, CashierDayStats> totals = new HashMap<>();
+        jdbcTemplate.query(inclusive ? RANGE_INCLUSIVE_SQL : RANGE_SQL,
+                (RowCallbackHandler) rs -> totals.put(rs.getLong(1), stats(rs, 2)),
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        return totals;
+    }
+
+    private static CashierDayStats stats(ResultSet rs, int first) throws SQLException {
+        return new CashierDayStats(rs.getLong(first), rs.getLong(first + 1), rs.getLong(first + 2),
+                rs.getBigDecimal(first + 3), rs.getLong(first + 4));
+    }
+
+    private static void addAll(Map<Long, CashierDayStats> totals, Map<Long, CashierDayStats> more) {
+        more.forEach((cashierId, stats) ->
+                totals.computeIfAbsent(cashierId, id -> CashierDayStats.empty()).add(stats));
+    }
+
+    private static CashierPerformance toPerformance(Long cashierId, Cashier cashier, CashierDayStats stats) {
+        return CashierPerformance.builder()
+                .cashierId(cashierId)
+                .employeeId(cashier != null ? cashier.getEmployeeId() : null)
+                .name(cashier != null ? cashier.getFullName() : null)
+                .totalSessions(stats.getSessions())
+                .totalSales(stats.getSales())
+                .totalTransactions(stats.getTransactions())
+                .averageSessionDuration(stats.getAverageSessionMinutes())
+                .averageSalesPerSession(stats.getSessions() > 0
+                        ? stats.getSales().divide(BigDecimal.valueOf(stats.getSessions()), 2, RoundingMode.HALF_UP)
+                        : BigDecimal.ZERO)
+                .build();
+    }
+
+    private interface RangeQuery {
+        Map<Long, CashierDayStats> query(LocalDateTime from, LocalDateTime to, boolean inclusive);
+    }
+
+    /**
+     * [start, end] split into the whole days [firstDay, endDay) and the partial days
+     * before and after them
+     */
+    private record Range(LocalDateTime start, LocalDateTime end, LocalDate firstDay, LocalDate endDay) {
+
+        static Range of(LocalDateTime start, LocalDateTime end) {
+            if (start == null || end == null || end.isBefore(start)) {
+                throw new IllegalArgumentException("A start date not after the end date is required");
+            }
+            LocalDate firstDay = start.equals(start.toLocalDate().atStartOfDay())
+                    ? start.toLocalDate() : start.toLocalDate().plusDays(1);
+            return new Range(start, end, firstDay, end.toLocalDate());
+        }
+
+        List<Map<Long, CashierDayStats>> edges(RangeQuery query) {
+            if (!firstDay.isBefore(endDay)) {
+                return List.of(query.query(start, end, true));
+            }
+            List<Map<Long, CashierDayStats>> edges = new ArrayList<>(2);
+            if (start.isBefore(firstDay.atStartOfDay())) {
+                edges.add(query.query(start, firstDay.atStartOfDay(), false));
+            }
+            edges.add(query.query(endDay.atStartOfDay(), end, true));
+            return edges;
+        }
+    }
+}
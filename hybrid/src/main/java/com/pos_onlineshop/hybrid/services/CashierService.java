@@ -6,6 +6,7 @@ import com.pos_onlineshop.hybrid.cashierPermission.CashierPermission;
 import com.pos_onlineshop.hybrid.cashierPermission.CashierPermissionRepository;
 import com.pos_onlineshop.hybrid.cashierSessions.CashierSession;
 import com.pos_onlineshop.hybrid.cashierSessions.CashierSessionRepository;
+import com.pos_onlineshop.hybrid.dtos.CashierPerformance;
 import com.pos_onlineshop.hybrid.enums.CashierRole;
 import com.pos_onlineshop.hybrid.enums.Permission;
 import com.pos_onlineshop.hybrid.enums.SessionStatus;
@@ -36,6 +37,7 @@ public class CashierService {
     private final CashierPermissionRepository permissionRepository;
     private final PasswordEncoder passwordEncoder;
     private final ShopRepository shopRepository;
+    private final CashierPerformanceService cashierPerformanceService;
 
     public Cashier createCashier(Cashier cashier, String plainPassword) {
         if (cashierRepository.existsByUsername(cashier.getUsername())) {
@@ -159,6 +161,7 @@ public class CashierService {
 
         cashier.setLastLogin(LocalDateTime.now());
         cashierRepository.save(cashier);
+        cashierPerformanceService.markChanged(session.getSessionStart());
 
         return sessionRepository.save(session);
     }
@@ -174,6 +177,7 @@ public class CashierService {
 
         session.endSession(closingCash);
         session.setNotes(notes);
+        cashierPerformanceService.markChanged(session.getSessionStart());
 
         return sessionRepository.save(session);
     }
@@ -189,6 +193,7 @@ public class CashierService {
         session.setExpectedCash(session.getExpectedCash().add(saleAmount));
 
         sessionRepository.save(session);
+        cashierPerformanceService.markChanged(session.getSessionStart());
     }
 
     public List<Cashier> findByShop(Shop shop) {
@@ -332,9 +337,7 @@ public class CashierService {
     public List<CashierSession> getSessionHistory(Cashier cashier,
                                                   LocalDateTime startDate,
                                                   LocalDateTime endDate) {
-        return sessionRepository.findByDateRange(startDate, endDate).stream()
-                .filter(session -> session.getCashier().equals(cashier))
-                .collect(Collectors.toList());
+        return sessionRepository.findByCashierAndDateRange(cashier.getId(), startDate, endDate);
     }
 
     // Add these methods to CashierService.java
@@ -359,54 +362,8 @@ public class CashierService {
      * Get session statistics for a cashier
      */
     @Transactional(readOnly = true)
-    public Map<String, Object> getCashierSessionStats(Long cashierId, LocalDateTime startDate, LocalDateTime endDate) {
-        Cashier cashier = cashierRepository.findById(cashierId)
-                .orElseThrow(() -> new RuntimeException("Cashier not found"));
-
-        List<CashierSession> sessions = getSessionHistory(cashier, startDate, endDate);
-
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalSessions", sessions.size());
-        stats.put("totalSales", sessions.stream()
-                .map(CashierSession::getTotalSales)
-                .reduce(BigDecimal.ZERO, BigDecimal::add));
-        stats.put("totalTransactions", sessions.stream()
-                .mapToInt(CashierSession::getTransactionCount)
-                .sum());
-        stats.put("averageSessionDuration", calculateAverageSessionDuration(sessions));
-        stats.put("averageSalesPerSession", calculateAverageSalesPerSession(sessions));
-
-        return stats;
-    }
-
-    /**
-     * Calculate average session duration in minutes
-     */
-    private double calculateAverageSessionDuration(List<CashierSession> sessions) {
-        if (sessions.isEmpty()) return 0.0;
-
-        double totalMinutes = sessions.stream()
-                .filter(session -> session.getSessionEnd() != null)
-                .mapToLong(session -> java.time.Duration.between(
-                        session.getSessionStart(),
-                        session.getSessionEnd()).toMinutes())
-                .average()
-                .orElse(0.0);
-
-        return totalMinutes;
-    }
-
-    /**
-     * Calculate average sales per session
-     */
-    private BigDecimal calculateAverageSalesPerSession(List<CashierSession> sessions) {
-        if (sessions.isEmpty()) return BigDecimal.ZERO;
-
-        BigDecimal totalSales = sessions.stream()
-                .map(CashierSession::getTotalSales)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        return totalSales.divide(BigDecimal.valueOf(sessions.size()), 2, BigDecimal.ROUND_HALF_UP);
+    public CashierPerformance getCashierSessionStats(Long cashierId, LocalDateTime startDate, LocalDateTime endDate) {
+        return cashierPerformanceService.getCashierStats(cashierId, startDate, endDate);
     }
 
     /**
@@ -460,30 +417,10 @@ public class CashierService {
      * Get top performing cashiers by sales
      */
     @Transactional(readOnly = true)
-    public List<Map<String, Object>> getTopPerformingCashiers(LocalDateTime startDate, LocalDateTime endDate, int limit) {
-        List<CashierSession> sessions = sessionRepository.findByDateRange(startDate, endDate);
-
-        Map<Long, BigDecimal> cashierSales = sessions.stream()
-                .collect(Collectors.groupingBy(
-                        session -> session.getCashier().getId(),
-                        Collectors.reducing(BigDecimal.ZERO, CashierSession::getTotalSales, BigDecimal::add)
-                ));
-
-        return cashierSales.entrySet().stream()
-                .sorted(Map.Entry.<Long, BigDecimal>comparingByValue().reversed())
-                .limit(limit)
-                .map(entry -> {
-                    Cashier cashier = cashierRepository.findById(entry.getKey()).orElse(null);
-                    Map<String, Object> result = new HashMap<>();
-                    result.put("cashier", cashier);
-                    result.put("totalSales", entry.getValue());
-                    return result;
-                })
-                .collect(Collectors.toList());
+    public List<CashierPerformance> getTopPerformingCashiers(LocalDateTime startDate, LocalDateTime endDate, int limit) {
+        return cashierPerformanceService.getLeaderboard(startDate, endDate, limit);
     }
 
-
-
     /**
      * Find all cashiers assigned to a shop
      */
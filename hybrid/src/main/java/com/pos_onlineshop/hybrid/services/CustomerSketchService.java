@@ -0,0 +1,377 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.customerSketch.CustomerSaleEvent;
+import com.pos_onlineshop.hybrid.customerSketch.CustomerSaleRemovedEvent;
+import com.pos_onlineshop.hybrid.customerSketch.DailyCustomerSketch;
+import com.pos_onlineshop.hybrid.customerSketch.DailyCustomerSketchRepository;
+import com.pos_onlineshop.hybrid.customerSketch.HyperLogLog;
+import com.pos_onlineshop.hybrid.dtos.CustomerCohort;
+import com.pos_onlineshop.hybrid.dtos.CustomerStats;
+import com.pos_onlineshop.hybrid.enums.OrderChangeType;
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderChangedEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Distinct-customer, returning-customer and cohort retention estimates from HyperLogLog
+ * sketches of each day's customers per shop, stored in daily_customer_sketch.
+ *
+ * A customer counts on the day of an order once it is COMPLETED or DELIVERED, identified
+ * by the order's customer or, failing that, its user account; anonymous sales are not
+ * counted. Committed sales are collected in memory and merged into the stored rows on a
+ * fixed delay; because a merge is a register-wise maximum, merging the same sale twice
+ * changes nothing. A sketch cannot take one customer back out, so when a sold order is
+ * voided or deleted the next flush recomputes that day's sketches from the orders table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerSketchService {
+
+    private static final Set<OrderStatus> SOLD = EnumSet.of(OrderStatus.COMPLETED, OrderStatus.DELIVERED);
+
+    private static final long CUSTOMER_IDS = 1;
+    private static final long USER_IDS = 2;
+
+    private static final String DAY_SQL =
+            "SELECT o.shop_id, o.customer_id, o.user_id FROM orders o " +
+            "WHERE o.status IN ('COMPLETED', 'DELIVERED') AND o.order_date >= ? AND o.order_date < ? " +
+            "AND (o.customer_id IS NOT NULL OR o.user_id IS NOT NULL)";
+
+    private final DailyCustomerSketchRepository sketchRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${analytics.customers.max-days:1100}")
+    private int maxDays;
+
+    // Committed sales not yet merged into the table, the batch being merged, and days to
+    // recompute; guarded by pending
+    private final Map<SketchKey, HyperLogLog> pending = new HashMap<>();
+    private Map<SketchKey, HyperLogLog> flushing = Map.of();
+    private final Set<LocalDate> staleDays = new HashSet<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private TransactionTemplate rowTransaction;
+
+    private record SketchKey(LocalDate salesDate, long shopId) {
+    }
+
+    @PostConstruct
+    void init() {
+        rowTransaction = new TransactionTemplate(transactionManager);
+        rowTransaction.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Count the customer of an order as it becomes sold, whether created so as POS sales
+     * are or moved there later, and have the day recomputed when it stops being sold
+     */
+    @EventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        Order order = event.order();
+        boolean sold = SOLD.contains(order.getStatus());
+        boolean wasSold = switch (event.type()) {
+            case CREATED -> false;
+            case STATUS_CHANGED -> SOLD.contains(event.oldStatus());
+            case PAYMENT_METHOD_CHANGED, DELETED -> sold;
+        };
+        boolean isSold = sold && event.type() != OrderChangeType.DELETED;
+        Long hash = customerHash(order);
+        if (isSold == wasSold || order.getOrderDate() == null || hash == null) {
+            return;
+        }
+        LocalDate day = order.getOrderDate().toLocalDate();
+        if (isSold) {
+            eventPublisher.publishEvent(new CustomerSaleEvent(day,
+                    order.getShop() != null ? order.getShop().getId() : null, hash));
+        } else {
+            eventPublisher.publishEvent(new CustomerSaleRemovedEvent(day));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSale(CustomerSaleEvent event) {
+        synchronized (pending) {
+            add(pending, event.salesDate(), DailyCustomerSketch.ALL_SHOPS, event.customerHash());
+            if (event.shopId() != null) {
+                add(pending, event.salesDate(), event.shopId(), event.customerHash());
+            }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSaleRemoved(CustomerSaleRemovedEvent event) {
+        synchronized (pending) {
+            staleDays.add(event.salesDate());
+        }
+    }
+
+    /**
+     * Recompute the days that lost a sale, then merge collected sales into the stored
+     * sketches, one row or day per transaction. A row or day that fails is kept for the
+     * next flush.
+     */
+    @Scheduled(fixedDelayString = "${analytics.customers.flush-interval-ms:10000}")
+    public void flush() {
+        // A lock rather than a monitor, as the flush holds it across its transactions
+        flushLock.lock();
+        try {
+            doFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void doFlush() {
+        Map<SketchKey, HyperLogLog> batch;
+        Set<LocalDate> stale;
+        synchronized (pending) {
+            if (pending.isEmpty() && staleDays.isEmpty()) {
+                return;
+            }
+            batch = new HashMap<>(pending);
+            stale = new TreeSet<>(staleDays);
+            pending.clear();
+            staleDays.clear();
+            flushing = batch;
+        }
+
+        // A recomputed day reads every sale committed so far from the orders table, so the
+        // batch's sales of that day are dropped rather than merged
+        for (LocalDate day : stale) {
+            try {
+                rowTransaction.execute(status -> rebuildDay(day));
+            } catch (RuntimeException e) {
+                log.warn("Failed to recompute customer sketches of {}", day, e);
+                synchronized (pending) {
+                    staleDays.add(day);
+                }
+            }
+        }
+        batch.keySet().removeIf(key -> stale.contains(key.salesDate()));
+
+        for (Map.Entry<SketchKey, HyperLogLog> entry : batch.entrySet()) {
+            SketchKey key = entry.getKey();
+            try {
+                rowTransaction.executeWithoutResult(status -> mergeIntoRow(key, entry.getValue()));
+            } catch (RuntimeException e) {
+                log.warn("Failed to store customer sketch for shop {} on {}", key.shopId(), key.salesDate(), e);
+                synchronized (pending) {
+                    pending.merge(key, entry.getValue(), HyperLogLog::merge);
+                }
+            }
+        }
+
+        synchronized (pending) {
+            flushing = Map.of();
+        }
+    }
+
+    /**
+     * Distinct customers of [from, to] and how many of them also bought in the period of
+     * the same length just before
+     */
+    @Transactional(readOnly = true)
+    public CustomerStats getCustomerStats(Long shopId, LocalDate from, LocalDate to) {
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        LocalDate previousFrom = from.minusDays(days);
+        Map<LocalDate, HyperLogLog> byDay = loadDays(shopId, previousFrom, to);
+
+        HyperLogLog current = union(byDay, from, to);
+        HyperLogLog previous = union(byDay, previousFrom, from.minusDays(1));
+        long customers = current.estimate();
+        long returning = HyperLogLog.intersection(current, previous);
+
+        return CustomerStats.builder()
+                .shopId(shopId)
+                .from(from)
+                .to(to)
+                .uniqueCustomers(customers)
+                .previousPeriodCustomers(previous.estimate())
+                .returningCustomers(returning)
+                .returningRate(percentage(returning, customers))
+                .build();
+    }
+
+    /**
+     * For each of months consecutive cohorts starting at first, the customers active that
+     * month and the share of them active in each later month of the range
+     */
+    @Transactional(readOnly = true)
+    public List<CustomerCohort> getRetention(Long shopId, YearMonth first, int months) {
+        if (months < 1 || months > 24) {
+            throw new IllegalArgumentException("Months must be between 1 and 24");
+        }
+        YearMonth last = first.plusMonths(months - 1);
+        Map<LocalDate, HyperLogLog> byDay = loadDays(shopId, first.atDay(1), last.atEndOfMonth());
+
+        List<HyperLogLog> monthly = new ArrayList<>(months);
+        for (int i = 0; i < months; i++) {
+            YearMonth month = first.plusMonths(i);
+            monthly.add(union(byDay, month.atDay(1), month.atEndOfMonth()));
+        }
+
+        List<CustomerCohort> cohorts = new ArrayList<>(months);
+        for (int i = 0; i < months; i++) {
+            long customers = monthly.get(i).estimate();
+            List<Double> retention = new ArrayList<>();
+            for (int j = i + 1; j < months; j++) {
+                retention.add(percentage(HyperLogLog.intersection(monthly.get(i), monthly.get(j)), customers));
+            }
+            cohorts.add(CustomerCohort.builder()
+                    .month(first.plusMonths(i))
+                    .customers(customers)
+                    .retention(retention)
+                    .build());
+        }
+        return cohorts;
+    }
+
+    /**
+     * Recompute the stored sketches of [from, to] from the orders table, one day per
+     * transaction, e.g. to backfill days from before the sketches existed
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int rebuild(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        int rows = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            LocalDate current = day;
+            rows += rowTransaction.execute(status -> rebuildDay(current));
+        }
+        log.info("Rebuilt customer sketches from {} to {}: {} rows", from, to, rows);
+        return rows;
+    }
+
+    private int rebuildDay(LocalDate day) {
+        Map<SketchKey, HyperLogLog> sketches = new HashMap<>();
+        jdbcTemplate.query(DAY_SQL, (RowCallbackHandler) rs -> {
+            Long customerId = rs.getObject(2, Long.class);
+            long hash = customerId != null
+                    ? HyperLogLog.hash(CUSTOMER_IDS, customerId)
+                    : HyperLogLog.hash(USER_IDS, rs.getLong(3));
+            add(sketches, day, DailyCustomerSketch.ALL_SHOPS, hash);
+            Long shopId = rs.getObject(1, Long.class);
+            if (shopId != null) {
+                add(sketches, day, shopId, hash);
+            }
+        }, Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay()));
+
+        sketchRepository.deleteBySalesDateBetween(day, day);
+        sketchRepository.flush();
+        LocalDateTime now = LocalDateTime.now();
+        sketchRepository.saveAll(sketches.entrySet().stream()
+                .map(entry -> DailyCustomerSketch.builder()
+                        .salesDate(day)
+                        .shopId(entry.getKey().shopId())
+                        .registers(entry.getValue().toBytes())
+                        .updatedAt(now)
+                        .build())
+                .toList());
+        return sketches.size();
+    }
+
+    private void mergeIntoRow(SketchKey key, HyperLogLog sketch) {
+        DailyCustomerSketch row = sketchRepository.findForUpdate(key.salesDate(), key.shopId())
+                .orElseGet(() -> DailyCustomerSketch.builder()
+                        .salesDate(key.salesDate())
+                        .shopId(key.shopId())
+                        .build());
+        HyperLogLog merged = row.getRegisters() != null
+                ? HyperLogLog.fromBytes(row.getRegisters()).merge(sketch)
+                : sketch;
+        row.setRegisters(merged.toBytes());
+        row.setUpdatedAt(LocalDateTime.now());
+        sketchRepository.save(row);
+    }
+
+    /**
+     * Each day's sketch in [from, to] for the shop, with sales not yet stored merged in
+     */
+    private Map<LocalDate, HyperLogLog> loadDays(Long shopId, LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        long shop = shopId != null ? shopId : DailyCustomerSketch.ALL_SHOPS;
+        Map<LocalDate, HyperLogLog> byDay = new HashMap<>();
+        for (DailyCustomerSketch row : sketchRepository.findByShopIdAndSalesDateBetween(shop, from, to)) {
+            byDay.put(row.getSalesDate(), HyperLogLog.fromBytes(row.getRegisters()));
+        }
+
+        synchronized (pending) {
+            for (Map<SketchKey, HyperLogLog> unstored : List.of(flushing, pending)) {
+                unstored.forEach((key, sketch) -> {
+                    if (key.shopId() == shop && !key.salesDate().isBefore(from) && !key.salesDate().isAfter(to)) {
+                        byDay.merge(key.salesDate(), sketch.copy(), HyperLogLog::merge);
+                    }
+                });
+            }
+        }
+        return byDay;
+    }
+
+    private static HyperLogLog union(Map<LocalDate, HyperLogLog> byDay, LocalDate from, LocalDate to) {
+        HyperLogLog union = new HyperLogLog();
+        byDay.forEach((day, sketch) -> {
+            if (!day.isBefore(from) && !day.isAfter(to)) {
+                union.merge(sketch);
+            }
+        });
+        return union;
+    }
+
+    /**
+     * Sketch hash of the order's customer, or of its user account when it has none; null for
+     * anonymous sales
+     */
+    private static Long customerHash(Order order) {
+        if (order.getCustomer() != null) {
+            return HyperLogLog.hash(CUSTOMER_IDS, order.getCustomer().getId());
+        }
+        if (order.getUser() != null) {
+            return HyperLogLog.hash(USER_IDS, order.getUser().getId());
+        }
+        return null;
+    }
+
+    private static void add(Map<SketchKey, HyperLogLog> sketches, LocalDate day, long shopId, long hash) {
+        sketches.computeIfAbsent(new SketchKey(day, shopId), key -> new HyperLogLog()).add(hash);
+    }
+
+    private void checkRange(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Range ends before it starts");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxDays) {
+            throw new IllegalArgumentException("Range is longer than " + maxDays + " days");
+        }
+    }
+
+    private static double percentage(long part, long whole) {
+        return whole > 0 ? Math.round(part * 10_000.0 / whole) / 100.0 : 0.0;
+    }
+}
@@ -0,0 +1,190 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.cashier.Cashier;
+import com.pos_onlineshop.hybrid.cashier.CashierRepository;
+import com.pos_onlineshop.hybrid.dailySalesRollup.DailySalesRollup;
+import com.pos_onlineshop.hybrid.dailySalesRollup.DailySalesRollupRepository;
+import com.pos_onlineshop.hybrid.dailySalesRollup.SalesRollupDelta;
+import com.pos_onlineshop.hybrid.dtos.DailySummary;
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import com.pos_onlineshop.hybrid.enums.SalesChannel;
+import com.pos_onlineshop.hybrid.orderLines.OrderLine;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderChangedEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Keeps the daily_sales_rollup table in step with POS orders and answers the POS daily
+ * summary from it, so the summary no longer loads the day's orders.
+ *
+ * Every change is applied in the transaction that changes the order. Rows are keyed by
+ * cashier, so tills selling at the same time never update the same row.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class DailySalesRollupService {
+
+    private static final int TOP_PRODUCTS = 5;
+
+    private static final Comparator<SalesRollupDelta> KEY_ORDER = Comparator
+            .comparing(SalesRollupDelta::salesDate)
+            .thenComparingLong(SalesRollupDelta::shopId)
+            .thenComparing(SalesRollupDelta::paymentMethod)
+            .thenComparingLong(SalesRollupDelta::cashierId)
+            .thenComparingLong(SalesRollupDelta::productId);
+
+    private final DailySalesRollupRepository rollupRepository;
+    private final CashierRepository cashierRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate dayTransaction;
+
+    @PostConstruct
+    void init() {
+        dayTransaction = new TransactionTemplate(transactionManager);
+        dayTransaction.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Apply an order change to its day in the transaction making it. A payment method
+     * change moves the order from its old key to its new one.
+     */
+    @EventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        Order order = event.order();
+        boolean isVoid = order.getStatus() == OrderStatus.CANCELLED;
+        switch (event.type()) {
+            case CREATED -> apply(order, order.getPaymentMethod(), 1, true, isVoid);
+            case DELETED -> apply(order, order.getPaymentMethod(), -1, true, isVoid);
+            case PAYMENT_METHOD_CHANGED -> {
+                apply(order, event.oldPaymentMethod(), -1, true, isVoid);
+                apply(order, order.getPaymentMethod(), 1, true, isVoid);
+            }
+            case STATUS_CHANGED -> {
+                // Count or uncount a void when an order moves into or out of CANCELLED
+                if ((event.oldStatus() == OrderStatus.CANCELLED) != isVoid) {
+                    apply(order, order.getPaymentMethod(), isVoid ? 1 : -1, false, true);
+                }
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public DailySummary getDailySummary(LocalDate date, Long shopId) {
+        int totalTransactions = 0;
+        int refundsProcessed = 0;
+        BigDecimal refundTotal = BigDecimal.ZERO;
+        Map<PaymentMethod, BigDecimal> revenueByMethod = new HashMap<>();
+
+        for (Object[] row : rollupRepository.sumByPaymentMethod(date, shopId)) {
+            int orders = ((Number) row[1]).intValue();
+            if (orders == 0) {
+                continue;
+            }
+            totalTransactions += orders;
+            revenueByMethod.put((PaymentMethod) row[0], (BigDecimal) row[2]);
+            refundsProcessed += ((Number) row[3]).intValue();
+            refundTotal = refundTotal.add((BigDecimal) row[4]);
+        }
+
+        Map<String, Integer> topProducts = new LinkedHashMap<>();
+        for (Object[] row : rollupRepository.findTopProducts(date, shopId, PageRequest.of(0, TOP_PRODUCTS))) {
+            topProducts.put((String) row[0], ((Number) row[1]).intValue());
+        }
+
+        String topCashier = rollupRepository.findTopCashiers(date, shopId, PageRequest.of(0, 1)).stream()
+                .findFirst()
+                .flatMap(row -> cashierRepository.findById((Long) row[0]))
+                .map(Cashier::getFullName)
+                .orElse("N/A");
+
+        BigDecimal totalRevenue = revenueByMethod.values().stream()
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        return DailySummary.builder()
+                .date(date)
+                .storeLocation(shopId != null ? "Shop " + shopId : "All Shops")
+                .totalTransactions(totalTransactions)
+                .totalRevenue(totalRevenue)
+                .revenueByPaymentMethod(revenueByMethod)
+                .topSellingProducts(topProducts)
+                .cashInDrawer(revenueByMethod.getOrDefault(PaymentMethod.CASH, BigDecimal.ZERO))
+                .refundsProcessed(refundsProcessed)
+                .refundTotal(refundTotal)
+                .topCashier(topCashier)
+                .build();
+    }
+
+    /**
+     * Recompute the rollup from the orders table, one day per transaction. Meant for
+     * backfill and repair; sales committed while a day is being rebuilt may be missed,
+     * so rebuild the current day only when the tills are quiet.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int rebuild(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Rebuild range ends before it starts");
+        }
+        int rows = 0;
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            LocalDate current = day;
+            rows += dayTransaction.execute(status -> rollupRepository.rebuildDay(current));
+        }
+        log.info("Rebuilt daily sales rollup from {} to {}: {} rows", from, to, rows);
+        return rows;
+    }
+
+    private void apply(Order order, PaymentMethod paymentMethod, int sign, boolean sale, boolean refund) {
+        if (order.getSalesChannel() != SalesChannel.POS || paymentMethod == null || order.getOrderDate() == null) {
+            return;
+        }
+
+        LocalDate date = order.getOrderDate().toLocalDate();
+        long shopId = order.getShop() != null ? order.getShop().getId() : 0L;
+        long cashierId = order.getCashier() != null ? order.getCashier().getId() : 0L;
+        BigDecimal orderTotal = signed(order.getTotalAmount(), sign);
+
+        List<SalesRollupDelta> deltas = new ArrayList<>();
+        deltas.add(new SalesRollupDelta(date, shopId, paymentMethod, cashierId,
+                DailySalesRollup.ORDER_LEVEL, null,
+                sale ? sign : 0, sale ? orderTotal : BigDecimal.ZERO,
+                refund ? sign : 0, refund ? orderTotal : BigDecimal.ZERO,
+                0, BigDecimal.ZERO));
+
+        if (sale) {
+            for (OrderLine line : order.getOrderLines()) {
+                deltas.add(new SalesRollupDelta(date, shopId, paymentMethod, cashierId,
+                        line.getProduct().getId(), line.getProductName(),
+                        0, BigDecimal.ZERO, 0, BigDecimal.ZERO,
+                        sign * line.getQuantity(), signed(line.getSubtotal(), sign)));
+            }
+        }
+
+        // Same row order in every transaction, so concurrent updates cannot deadlock
+        deltas.sort(KEY_ORDER);
+        rollupRepository.applyAll(deltas);
+    }
+
+    private static BigDecimal signed(BigDecimal amount, int sign) {
+        if (amount == null) {
+            return BigDecimal.ZERO;
+        }
+        return sign < 0 ? amount.negate() : amount;
+    }
+}
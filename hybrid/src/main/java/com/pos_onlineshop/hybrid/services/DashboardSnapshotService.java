@@ -0,0 +1,192 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.currency.Currency;
+import com.pos_onlineshop.hybrid.dtos.DashboardSnapshot;
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serves the analytics dashboard from in-memory snapshots instead of querying on every
+ * request.
+ *
+ * None of the metrics depend on the shop; asking for a shop only leaves out the
+ * system-wide inventory figures, as the dashboard always has. So one snapshot is kept per
+ * currency. It is computed the first time the currency is asked for and then recomputed
+ * in the background on a fixed delay. Currencies nobody has asked for within the idle
+ * timeout are dropped, so the refresh only does work for dashboards that are open.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardSnapshotService {
+
+    // Left out of the dashboard of a single shop
+    private static final Set<String> SYSTEM_WIDE_METRICS = Set.of("totalInventoryValue", "lowStockCount");
+
+    private final OrderService orderService;
+    private final InventoryService inventoryService;
+    private final UserAccountService userAccountService;
+    private final CurrencyService currencyService;
+
+    @Value("${analytics.dashboard.idle-timeout:PT30M}")
+    private Duration idleTimeout;
+
+    private final Map<String, DashboardSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, LocalDateTime> lastRequested = new ConcurrentHashMap<>();
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Latest snapshot for the currency, seen from the shop (or all shops when null),
+     * computing it on the caller's thread only if none exists yet
+     */
+    public DashboardSnapshot getSnapshot(Long shopId, String currencyCode) {
+        String key = keyOf(currencyCode);
+        lastRequested.put(key, LocalDateTime.now());
+
+        DashboardSnapshot snapshot = snapshots.get(key);
+        if (snapshot == null) {
+            snapshot = recompute(key, true);
+        }
+        return forShop(snapshot, shopId);
+    }
+
+    /**
+     * Recompute the currency's snapshot now, e.g. right after a bulk import
+     */
+    public DashboardSnapshot refresh(Long shopId, String currencyCode) {
+        String key = keyOf(currencyCode);
+        lastRequested.put(key, LocalDateTime.now());
+        return forShop(recompute(key, false), shopId);
+    }
+
+    /**
+     * Recompute every currency still in use; a failed one keeps serving its previous snapshot
+     */
+    @Scheduled(fixedDelayString = "${analytics.dashboard.refresh-interval-ms:60000}")
+    public void refreshAll() {
+        LocalDateTime idleSince = LocalDateTime.now().minus(idleTimeout);
+        for (Map.Entry<String, LocalDateTime> entry : lastRequested.entrySet()) {
+            String key = entry.getKey();
+            if (entry.getValue().isBefore(idleSince)) {
+                lastRequested.remove(key);
+                snapshots.remove(key);
+                locks.remove(key);
+                continue;
+            }
+            try {
+                recompute(key, false);
+            } catch (Exception e) {
+                log.error("Failed to refresh dashboard snapshot for {}", key, e);
+            }
+        }
+    }
+
+    /**
+     * Compute the currency's snapshot, one computation per currency at a time. With
+     * ifMissing, a snapshot computed while waiting for the lock is returned instead.
+     */
+    private DashboardSnapshot recompute(String key, boolean ifMissing) {
+        ReentrantLock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            DashboardSnapshot snapshot = ifMissing ? snapshots.get(key) : null;
+            if (snapshot == null) {
+                snapshot = DashboardSnapshot.builder()
+                        .currencyCode(key)
+                        .metrics(Collections.unmodifiableMap(computeMetrics(key)))
+                        .generatedAt(LocalDateTime.now())
+                        .build();
+                snapshots.put(key, snapshot);
+            }
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private DashboardSnapshot forShop(DashboardSnapshot snapshot, Long shopId) {
+        if (shopId == null) {
+            return snapshot;
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>(snapshot.getMetrics());
+        metrics.keySet().removeAll(SYSTEM_WIDE_METRICS);
+        return DashboardSnapshot.builder()
+                .shopId(shopId)
+                .currencyCode(snapshot.getCurrencyCode())
+                .metrics(Collections.unmodifiableMap(metrics))
+                .generatedAt(snapshot.getGeneratedAt())
+                .build();
+    }
+
+    private Map<String, Object> computeMetrics(String currencyCode) {
+        Currency currency = currencyService.findByCode(currencyCode)
+                .orElse(currencyService.getDefaultCurrency());
+
+        // One grouped query each for revenue and order counts across all statuses
+        Map<OrderStatus, BigDecimal> revenue = orderService.getRevenueBreakdownByStatus(null, null, currency);
+        Map<OrderStatus, Long> orderCounts = orderService.getOrderCountBreakdownByStatus(null, null);
+        BigDecimal completedRevenue = revenue.getOrDefault(OrderStatus.COMPLETED, BigDecimal.ZERO);
+        long totalOrders = orderCounts.values().stream().mapToLong(Long::longValue).sum();
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        put(metrics, "todayOrders", () -> orderService.countRecentOrders(1));
+        put(metrics, "weekOrders", () -> orderService.countRecentOrders(7));
+        put(metrics, "monthOrders", () -> orderService.countRecentOrders(30));
+
+        metrics.put("todayRevenue", completedRevenue);
+        metrics.put("pendingRevenue", revenue.getOrDefault(OrderStatus.PENDING, BigDecimal.ZERO));
+        metrics.put("totalRevenue", completedRevenue.add(revenue.getOrDefault(OrderStatus.DELIVERED, BigDecimal.ZERO)));
+
+        put(metrics, "totalInventoryValue", inventoryService::calculateTotalInventoryValue);
+        put(metrics, "lowStockCount", inventoryService::countLowStockItems);
+
+        put(metrics, "totalUsers", userAccountService::countUsers);
+        put(metrics, "activeUsers", userAccountService::countActiveUsers);
+
+        metrics.put("currency", Map.of(
+                "code", currency.getCode(),
+                "symbol", currency.getSymbol(),
+                "name", currency.getName()
+        ));
+
+        metrics.put("averageOrderValue", totalOrders > 0
+                ? completedRevenue.divide(BigDecimal.valueOf(totalOrders), 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO);
+        metrics.put("conversionRate", totalOrders > 0
+                ? (double) orderCounts.getOrDefault(OrderStatus.COMPLETED, 0L) / totalOrders * 100
+                : 0.0);
+        return metrics;
+    }
+
+    /**
+     * Add one metric, leaving it out rather than failing the whole snapshot if it throws
+     */
+    private void put(Map<String, Object> metrics, String name, Supplier<?> metric) {
+        try {
+            metrics.put(name, metric.get());
+        } catch (Exception e) {
+            log.warn("Dashboard metric {} failed", name, e);
+        }
+    }
+
+    private static String keyOf(String currencyCode) {
+        return currencyCode.toUpperCase(Locale.ROOT);
+    }
+}
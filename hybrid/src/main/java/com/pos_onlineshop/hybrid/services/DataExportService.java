@@ -0,0 +1,80 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dataExport.ExportFormat;
+import com.pos_onlineshop.hybrid.dataExport.ExportType;
+import com.pos_onlineshop.hybrid.dataExport.ExportWriter;
+import com.pos_onlineshop.hybrid.dataExport.JdbcCursor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams whole tables to a client for accountants and bulk analysis.
+ *
+ * Rows are read as plain projections through a forward-only cursor and written out as
+ * they arrive, so no entities are loaded and memory use is the same at any row count.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DataExportService {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Write the rows of one export to out, oldest first, and close it; the date range
+     * covers whole days and either end may be open. Returns the number of rows written.
+     */
+    @Transactional(readOnly = true)
+    public long export(ExportType type, ExportFormat format, LocalDate from, LocalDate to, Long shopId,
+                       OutputStream out) {
+        if (shopId != null && type.getShopColumn() == null) {
+            throw new IllegalArgumentException("The " + type.getFileName() + " export cannot be filtered by shop");
+        }
+
+        StringBuilder sql = new StringBuilder(type.getSelectSql()).append(" WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (from != null) {
+            sql.append(" AND ").append(type.getDateColumn()).append(" >= ?");
+            params.add(Timestamp.valueOf(from.atStartOfDay()));
+        }
+        if (to != null) {
+            sql.append(" AND ").append(type.getDateColumn()).append(" < ?");
+            params.add(Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+        }
+        if (shopId != null) {
+            sql.append(" AND ").append(type.getShopColumn()).append(" = ?");
+            params.add(shopId);
+        }
+        sql.append(" ORDER BY ").append(type.getOrderColumn());
+
+        long started = System.currentTimeMillis();
+        Long rows = jdbcTemplate.query(JdbcCursor.forwardOnly(sql.toString(), params.toArray()), rs -> {
+            try (ExportWriter writer = ExportWriter.open(format, out)) {
+                writer.start(rs.getMetaData());
+                long count = 0;
+                while (rs.next()) {
+                    writer.writeRow(rs);
+                    count++;
+                }
+                return count;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        log.info("Exported {} {} rows as {} in {} ms", rows, type.getFileName(), format,
+                System.currentTimeMillis() - started);
+        return rows;
+    }
+}
@@ -0,0 +1,39 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.repositories.FiscalDeviceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Hands out per-device fiscal receipt numbers.
+ *
+ * The counter is advanced with a single atomic increment of the device row and read
+ * back in the same transaction. The row lock is held only until the caller commits, so
+ * concurrent allocations on one device queue on the database rather than overwrite each
+ * other, and a number whose transaction rolls back is handed out again. Callers save the
+ * document holding the number in that same transaction, failed or not, and retry it
+ * under the number it already has, so each number ends up on exactly one document and
+ * the sequence has no gaps. A retried document can reach the device after later ones.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FiscalCounterAllocator {
+
+    private final FiscalDeviceRepository deviceRepository;
+
+    /**
+     * Allocate the next receipt number for a device. Must run inside the transaction
+     * that records the fiscal document.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long allocate(Long deviceId) {
+        if (deviceRepository.incrementReceiptCounter(deviceId) == 0) {
+            throw new RuntimeException("Fiscal device not found: " + deviceId);
+        }
+        return deviceRepository.findLastReceiptNumber(deviceId);
+    }
+}
@@ -0,0 +1,218 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.FiscalStatusResponse;
+import com.pos_onlineshop.hybrid.dtos.FiscalisationResponse;
+import com.pos_onlineshop.hybrid.dtos.FiscaliseTransactionRequest;
+import com.pos_onlineshop.hybrid.fiscalOutbox.FiscalOutboxEnqueuedEvent;
+import com.pos_onlineshop.hybrid.fiscalOutbox.FiscalOutboxEntry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains the fiscal outbox outside the sale transaction.
+ *
+ * Each shop sends to its primary fiscal device, so documents are lined up per shop and a
+ * shop's documents reach its device one at a time. Shops share a fixed pool of workers
+ * that takes one document of a shop at a time, so shops proceed in parallel and a busy
+ * shop does not hold back the others. A shop's lane exists only while it has documents
+ * waiting and is dropped once it runs dry. New entries are dispatched in
+ * queue order as soon as their sale commits; a scheduled poll picks up retries and
+ * anything left behind by a restart. A failed entry waits out its backoff without holding
+ * back the rest of its shop, so a retry can reach the device after later documents.
+ *
+ * An entry whose worker outlives the claim timeout can be claimed again, e.g. by another
+ * instance. Only the current claim records an outcome, and ZimraService locks the order
+ * while sending, so the second attempt finds the order fiscalised instead of sending it twice.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FiscalOutboxDispatcher {
+
+    private static final long MAX_WAIT_MS = 30_000;
+
+    private final FiscalOutboxService outboxService;
+    private final ZimraService zimraService;
+
+    @Value("${zimra.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${zimra.outbox.workers:4}")
+    private int workerCount;
+
+    // Entries waiting per shop; a shop is present only while one of its lanes is queued or running
+    private final Map<Long, Queue<Long>> lanes = new ConcurrentHashMap<>();
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<Long, CompletableFuture<Void>> waiters = new ConcurrentHashMap<>();
+
+    private ExecutorService workers;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threads = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "fiscal-outbox-worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Dispatch a new entry once the sale that queued it has committed
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onEnqueued(FiscalOutboxEnqueuedEvent event) {
+        dispatch(event.entryId(), event.shopId());
+    }
+
+    /**
+     * Pick up due retries and entries whose worker never finished
+     */
+    @Scheduled(fixedDelayString = "${zimra.outbox.poll-interval-ms:5000}")
+    public void poll() {
+        try {
+            for (FiscalOutboxEntry entry : outboxService.findReadyForDispatch(batchSize)) {
+                dispatch(entry.getId(), entry.getShopId());
+            }
+        } catch (Exception e) {
+            log.error("Failed to poll fiscal outbox", e);
+        }
+    }
+
+    /**
+     * Wait up to waitMs for an order's fiscalisation to finish, then report its status
+     */
+    public Optional<FiscalStatusResponse> awaitStatus(Long orderId, long waitMs) {
+        Optional<FiscalStatusResponse> status = outboxService.getStatus(orderId);
+        if (status.isEmpty() || waitMs <= 0 || isFinished(status.get())) {
+            return status;
+        }
+
+        CompletableFuture<Void> done = waiters.computeIfAbsent(orderId, id -> new CompletableFuture<>());
+        // Re-check after registering so a completion in between is not missed
+        status = outboxService.getStatus(orderId);
+        if (!isFinished(status.get())) {
+            try {
+                done.get(Math.min(waitMs, MAX_WAIT_MS), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Still in progress; report the current state
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                log.warn("Fiscal status wait for order {} failed", orderId, e);
+            }
+            status = outboxService.getStatus(orderId);
+        }
+        return status;
+    }
+
+    private void dispatch(Long entryId, Long shopId) {
+        if (!inFlight.add(entryId)) {
+            return;
+        }
+        boolean[] opened = new boolean[1];
+        lanes.compute(shopId, (id, lane) -> {
+            if (lane == null) {
+                lane = new ArrayDeque<>();
+                opened[0] = true;
+            }
+            lane.add(entryId);
+            return lane;
+        });
+        if (opened[0]) {
+            schedule(shopId);
+        }
+    }
+
+    private void schedule(Long shopId) {
+        try {
+            workers.execute(() -> runLane(shopId));
+        } catch (RejectedExecutionException e) {
+            Queue<Long> lane = lanes.remove(shopId);
+            if (lane != null) {
+                inFlight.removeAll(lane);
+            }
+            log.warn("Fiscal outbox workers are shut down; entries of shop {} left for the next poll", shopId);
+        }
+    }
+
+    /**
+     * Process the shop's next entry, then queue the lane behind the other shops if it has
+     * more, or drop it if it ran dry
+     */
+    private void runLane(Long shopId) {
+        // The lane is only touched inside compute, which locks the shop's map entry
+        Long[] next = new Long[1];
+        lanes.computeIfPresent(shopId, (id, lane) -> {
+            next[0] = lane.peek();
+            return lane;
+        });
+        process(next[0]);
+        Queue<Long> rest = lanes.computeIfPresent(shopId, (id, lane) -> {
+            lane.remove();
+            return lane.isEmpty() ? null : lane;
+        });
+        if (rest != null) {
+            schedule(shopId);
+        }
+    }
+
+    private void process(Long entryId) {
+        try {
+            Optional<FiscalOutboxEntry> claimed = outboxService.claim(entryId);
+            if (claimed.isEmpty()) {
+                return;
+            }
+            FiscalOutboxEntry entry = claimed.get();
+
+            FiscalOutboxEntry result;
+            try {
+                FiscalisationResponse response = zimraService.fiscaliseOrder(entry.getOrderId(),
+                        FiscaliseTransactionRequest.builder()
+                                .orderId(entry.getOrderId())
+                                .shopId(entry.getShopId())
+                                .documentType(entry.getDocumentType())
+                                .build());
+                result = outboxService.recordResult(entryId, entry.getClaimedAt(), response);
+            } catch (Exception e) {
+                result = outboxService.recordFailure(entryId, entry.getClaimedAt(), e.getMessage());
+            }
+
+            if (result.isFinished()) {
+                CompletableFuture<Void> done = waiters.remove(result.getOrderId());
+                if (done != null) {
+                    done.complete(null);
+                }
+                log.info("Fiscal outbox finished order {} with status {}", result.getOrderId(), result.getStatus());
+            }
+        } catch (Exception e) {
+            log.error("Failed to process fiscal outbox entry {}", entryId, e);
+        } finally {
+            inFlight.remove(entryId);
+        }
+    }
+
+    private boolean isFinished(FiscalStatusResponse status) {
+        return status.getCompletedAt() != null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
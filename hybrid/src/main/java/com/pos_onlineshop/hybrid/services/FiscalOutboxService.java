@@ -0,0 +1,172 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.FiscalStatusResponse;
+import com.pos_onlineshop.hybrid.dtos.FiscalisationResponse;
+import com.pos_onlineshop.hybrid.enums.FiscalStatus;
+import com.pos_onlineshop.hybrid.fiscalOutbox.FiscalOutboxEnqueuedEvent;
+import com.pos_onlineshop.hybrid.fiscalOutbox.FiscalOutboxEntry;
+import com.pos_onlineshop.hybrid.fiscalOutbox.FiscalOutboxRepository;
+import com.pos_onlineshop.hybrid.mappers.FiscalisationMapper;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.repositories.ZimraFiscalisationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Transactional side of the fiscal outbox: queues orders with the sale and
+ * records the outcome of each fiscalisation attempt.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class FiscalOutboxService {
+
+    private final FiscalOutboxRepository outboxRepository;
+    private final ZimraFiscalisationRepository fiscalisationRepository;
+    private final FiscalisationMapper fiscalisationMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${zimra.auto-fiscalise:true}")
+    private boolean autoFiscalise;
+
+    @Value("${zimra.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${zimra.outbox.retry-backoff:PT10S}")
+    private Duration retryBackoff;
+
+    @Value("${zimra.outbox.max-retry-backoff:PT10M}")
+    private Duration maxRetryBackoff;
+
+    @Value("${zimra.outbox.claim-timeout:PT5M}")
+    private Duration claimTimeout;
+
+    /**
+     * Queue a saved order for fiscalisation as part of the caller's transaction
+     */
+    public void enqueueOrder(Order order) {
+        if (!autoFiscalise || order.getShop() == null) {
+            return;
+        }
+
+        FiscalOutboxEntry entry = outboxRepository.save(FiscalOutboxEntry.builder()
+                .orderId(order.getId())
+                .shopId(order.getShop().getId())
+                .build());
+
+        eventPublisher.publishEvent(new FiscalOutboxEnqueuedEvent(entry.getId(), entry.getShopId(), entry.getOrderId()));
+        log.debug("Queued order {} for fiscalisation", order.getId());
+    }
+
+    /**
+     * Entries that are due, oldest first
+     */
+    @Transactional(readOnly = true)
+    public List<FiscalOutboxEntry> findReadyForDispatch(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        return outboxRepository.findReadyForDispatch(now, now.minus(claimTimeout), PageRequest.of(0, limit));
+    }
+
+    /**
+     * Claim an entry for this worker; empty if it is not due or another worker holds it
+     */
+    public Optional<FiscalOutboxEntry> claim(Long entryId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (outboxRepository.claim(entryId, now, now.minus(claimTimeout)) == 0) {
+            return Optional.empty();
+        }
+        return outboxRepository.findById(entryId);
+    }
+
+    /**
+     * Record the response of an attempt made under the claim taken at claimedAt. An attempt
+     * that outlived the claim timeout and lost the entry to another worker records nothing.
+     */
+    public FiscalOutboxEntry recordResult(Long entryId, LocalDateTime claimedAt, FiscalisationResponse response) {
+        if (response.getStatus() == FiscalStatus.FISCALISED || response.getStatus() == FiscalStatus.VERIFIED) {
+            Optional<FiscalOutboxEntry> claimed = outboxRepository.findClaimed(entryId, claimedAt);
+            if (claimed.isEmpty()) {
+                return claimLost(entryId);
+            }
+            FiscalOutboxEntry entry = claimed.get();
+            entry.setStatus(FiscalStatus.FISCALISED);
+            entry.setFiscalisationId(response.getId());
+            entry.setLastError(null);
+            entry.setCompletedAt(LocalDateTime.now());
+            return outboxRepository.save(entry);
+        }
+        return recordFailure(entryId, claimedAt, response.getErrorMessage());
+    }
+
+    /**
+     * Record a failed attempt made under the claim taken at claimedAt, backing off
+     * exponentially until attempts run out
+     */
+    public FiscalOutboxEntry recordFailure(Long entryId, LocalDateTime claimedAt, String error) {
+        Optional<FiscalOutboxEntry> claimed = outboxRepository.findClaimed(entryId, claimedAt);
+        if (claimed.isEmpty()) {
+            return claimLost(entryId);
+        }
+        FiscalOutboxEntry entry = claimed.get();
+        entry.setLastError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+
+        if (entry.getAttempts() >= maxAttempts) {
+            entry.setStatus(FiscalStatus.FAILED);
+            entry.setCompletedAt(LocalDateTime.now());
+            log.error("Giving up fiscalising order {} after {} attempts: {}",
+                    entry.getOrderId(), entry.getAttempts(), error);
+        } else {
+            Duration backoff = retryBackoff.multipliedBy(1L << Math.min(entry.getAttempts() - 1, 20));
+            if (backoff.compareTo(maxRetryBackoff) > 0) {
+                backoff = maxRetryBackoff;
+            }
+            entry.setStatus(FiscalStatus.PENDING);
+            entry.setNextAttemptAt(LocalDateTime.now().plus(backoff));
+            log.warn("Fiscalisation of order {} failed (attempt {}), retrying in {}: {}",
+                    entry.getOrderId(), entry.getAttempts(), backoff, error);
+        }
+        return outboxRepository.save(entry);
+    }
+
+    /**
+     * Current fiscal status of an order
+     */
+    @Transactional(readOnly = true)
+    public Optional<FiscalStatusResponse> getStatus(Long orderId) {
+        return outboxRepository.findByOrderId(orderId).map(entry -> FiscalStatusResponse.builder()
+                .orderId(orderId)
+                .status(entry.getStatus())
+                .attempts(entry.getAttempts())
+                .queuedAt(entry.getCreatedAt())
+                .nextAttemptAt(entry.isFinished() ? null : entry.getNextAttemptAt())
+                .completedAt(entry.getCompletedAt())
+                .lastError(entry.getLastError())
+                .fiscalisation(fiscalisationRepository.findByOrderId(orderId)
+                        .map(fiscalisationMapper::toResponse)
+                        .orElse(null))
+                .build());
+    }
+
+    private FiscalOutboxEntry claimLost(Long entryId) {
+        FiscalOutboxEntry entry = getEntry(entryId);
+        log.warn("Claim on fiscal outbox entry {} for order {} was taken over; leaving it to the current worker",
+                entryId, entry.getOrderId());
+        return entry;
+    }
+
+    private FiscalOutboxEntry getEntry(Long entryId) {
+        return outboxRepository.findById(entryId)
+                .orElseThrow(() -> new RuntimeException("Fiscal outbox entry not found: " + entryId));
+    }
+}
@@ -1,20 +1,19 @@
 package com.pos_onlineshop.hybrid.services;
 
+import com.pos_onlineshop.hybrid.dtos.ShopStockAlerts;
 import com.pos_onlineshop.hybrid.dtos.ShopStockReport;
 import com.pos_onlineshop.hybrid.dtos.StockSummaryReport;
 import com.pos_onlineshop.hybrid.dtos.StockValueReport;
 import com.pos_onlineshop.hybrid.dtos.TransferReport;
 import com.pos_onlineshop.hybrid.inventory.InventoryItem;
 import com.pos_onlineshop.hybrid.inventory.InventoryItemRepository;
-import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotal;
-import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotalRepository;
 import com.pos_onlineshop.hybrid.inventoryTransfer.InventoryTransfer;
 import com.pos_onlineshop.hybrid.inventoryTransfer.InventoryTransferRepository;
 import com.pos_onlineshop.hybrid.products.Product;
 import com.pos_onlineshop.hybrid.shop.Shop;
 import com.pos_onlineshop.hybrid.shop.ShopRepository;
-import com.pos_onlineshop.hybrid.shopInventory.ShopInventory;
-import com.pos_onlineshop.hybrid.shopInventory.ShopInventoryRepository;
+import com.pos_onlineshop.hybrid.stockValuation.ShopValuation;
+import com.pos_onlineshop.hybrid.stockValuation.StockValuation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -34,11 +33,12 @@ import java.util.stream.Collectors;
 public class InventoryService {
 
     private final InventoryItemRepository inventoryRepository;
-    private final InventoryTotalRepository inventoryTotalRepository;
     private final InventoryTransferRepository transferRepository;
     private final ShopRepository shopRepository;
-    private final ShopInventoryRepository shopInventoryRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final StockValuationService stockValuationService;
+    private final ShopStockReportService shopStockReportService;
+    private final StockAlertService stockAlertService;
 
     public InventoryItem initializeInventory(Product product, Integer initialQuantity) {
         log.info("Initializing inventory for product: {}", product.getName());
@@ -113,8 +113,24 @@ public class InventoryService {
                 .orElse(false);
     }
 
-    public List<InventoryItem> findLowStockItems() {
-        return inventoryRepository.findItemsNeedingReorder();
+    /**
+     * Products low on or out of stock in each shop, from the stock level watcher
+     */
+    public List<ShopStockAlerts> findLowStockItems() {
+        return stockAlertService.getAlerts();
+    }
+
+    /**
+     * Shop products at or below their reorder level or minimum stock, out of stock ones included
+     */
+    public long countLowStockItems() {
+        return countLowStockItems(findLowStockItems());
+    }
+
+    public static long countLowStockItems(List<ShopStockAlerts> alerts) {
+        return alerts.stream()
+                .mapToLong(shop -> shop.getLowStockProductIds().size() + shop.getOutOfStockProductIds().size())
+                .sum();
     }
 
     public BigDecimal calculateTotalInventoryValue() {
@@ -150,56 +166,36 @@ public class InventoryService {
     public StockSummaryReport generateStockSummaryReport() {
         log.info("Generating global stock summary report");
 
-        List<InventoryTotal> allInventory = inventoryTotalRepository.findAllWithShopAndProduct();
+        StockValuation valuation = stockValuationService.valueAllShops();
+        Map<Long, Shop> shops = shopsOf(valuation);
         List<Shop> activeShops = shopRepository.findByActiveTrue();
-        int outOfStockCount = inventoryTotalRepository.findOutOfStockItems().size();
 
         // Build per-shop breakdown
-        Map<Long, List<InventoryTotal>> byShop = allInventory.stream()
-                .collect(Collectors.groupingBy(it -> it.getShop().getId()));
-
         List<StockSummaryReport.ShopStockSummary> shopBreakdown = new ArrayList<>();
-        for (Map.Entry<Long, List<InventoryTotal>> entry : byShop.entrySet()) {
-            List<InventoryTotal> shopItems = entry.getValue();
-            Shop shop = shopItems.get(0).getShop();
-
-            int shopTotalUnits = shopItems.stream().mapToInt(InventoryTotal::getTotalstock).sum();
-            BigDecimal shopValue = calculateShopStockValue(shop, shopItems);
-            int productCount = (int) shopItems.stream()
-                    .filter(it -> it.getTotalstock() > 0)
-                    .count();
-
+        for (ShopValuation shopValuation : valuation.getShops()) {
+            Shop shop = shops.get(shopValuation.getShopId());
             shopBreakdown.add(StockSummaryReport.ShopStockSummary.builder()
                     .shopId(shop.getId())
                     .shopName(shop.getName())
                     .shopCode(shop.getCode())
                     .shopType(shop.getType().name())
-                    .productCount(productCount)
-                    .totalStockUnits(shopTotalUnits)
-                    .totalStockValue(shopValue)
+                    .productCount(shopValuation.getStockedProductCount())
+                    .totalStockUnits(Math.toIntExact(shopValuation.getUnits()))
+                    .totalStockValue(shopValuation.getValue())
                     .build());
         }
 
-        // Count low stock items by checking against reorder levels from ShopInventory
-        int lowStockCount = countLowStockItems(allInventory);
-
-        int totalUnits = allInventory.stream().mapToInt(InventoryTotal::getTotalstock).sum();
-        BigDecimal totalValue = shopBreakdown.stream()
-                .map(StockSummaryReport.ShopStockSummary::getTotalStockValue)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        int totalProducts = (int) allInventory.stream()
-                .map(it -> it.getProduct().getId())
-                .distinct()
-                .count();
+        int totalProducts = valuation.getProductCount();
+        int totalUnits = Math.toIntExact(valuation.getUnits());
+        BigDecimal totalValue = valuation.getValue();
 
         StockSummaryReport report = StockSummaryReport.builder()
                 .totalProducts(totalProducts)
                 .totalStockUnits(totalUnits)
                 .totalStockValue(totalValue)
                 .activeShopCount(activeShops.size())
-                .lowStockItemCount(lowStockCount)
-                .outOfStockItemCount(outOfStockCount)
+                .lowStockItemCount(valuation.getLowStockCount())
+                .outOfStockItemCount(valuation.getOutOfStockCount())
                 .shopBreakdown(shopBreakdown)
                 .generatedAt(LocalDateTime.now())
                 .build();
@@ -299,7 +295,8 @@ public class InventoryService {
 
     /**
      * Generate a detailed stock report for a specific shop.
-     * Lists all products with stock levels, values, and stock status indicators.
+     * Lists all products with stock levels, values, and stock status indicators,
+     * loaded together with their latest pricing in a single query.
      */
     @Transactional(readOnly = true)
     public ShopStockReport generateShopStockReport(Long shopId) {
@@ -308,77 +305,10 @@ public class InventoryService {
         Shop shop = shopRepository.findById(shopId)
                 .orElseThrow(() -> new RuntimeException("Shop not found with id: " + shopId));
 
-        List<InventoryTotal> inventoryTotals = inventoryTotalRepository.findByShopIdWithDetails(shopId);
-
-        int lowStockCount = 0;
-        int outOfStockCount = 0;
-        BigDecimal totalValue = BigDecimal.ZERO;
-        int totalUnits = 0;
-
-        List<ShopStockReport.ProductStockDetail> productDetails = new ArrayList<>();
-
-        for (InventoryTotal it : inventoryTotals) {
-            Product product = it.getProduct();
-
-            // Look up unit price and reorder info from latest ShopInventory record
-            Optional<ShopInventory> siOpt = shopInventoryRepository
-                    .findFirstByShopAndProductOrderByIdDesc(shop, product);
-
-            BigDecimal unitPrice = siOpt.map(ShopInventory::getUnitPrice).orElse(BigDecimal.ZERO);
-            Integer reorderLevel = siOpt.map(ShopInventory::getReorderLevel).orElse(null);
-            Integer minStock = siOpt.map(ShopInventory::getMinStock).orElse(null);
-            Integer maxStock = siOpt.map(ShopInventory::getMaxStock).orElse(null);
-
-            int currentStock = it.getTotalstock();
-            BigDecimal productValue = unitPrice.multiply(BigDecimal.valueOf(currentStock));
-
-            // Determine stock status
-            String stockStatus;
-            if (currentStock <= 0) {
-                stockStatus = "OUT_OF_STOCK";
-                outOfStockCount++;
-            } else if (reorderLevel != null && currentStock <= reorderLevel) {
-                stockStatus = "LOW_STOCK";
-                lowStockCount++;
-            } else {
-                stockStatus = "IN_STOCK";
-            }
-
-            totalValue = totalValue.add(productValue);
-            totalUnits += currentStock;
-
-            productDetails.add(ShopStockReport.ProductStockDetail.builder()
-                    .productId(product.getId())
-                    .productName(product.getName())
-                    .productBarcode(product.getBarcode())
-                    .productSku(product.getSku())
-                    .category(product.getCategory())
-                    .currentStock(currentStock)
-                    .unitPrice(unitPrice)
-                    .totalValue(productValue)
-                    .reorderLevel(reorderLevel)
-                    .minStock(minStock)
-                    .maxStock(maxStock)
-                    .stockStatus(stockStatus)
-                    .build());
-        }
-
-        ShopStockReport report = ShopStockReport.builder()
-                .shopId(shop.getId())
-                .shopName(shop.getName())
-                .shopCode(shop.getCode())
-                .shopType(shop.getType().name())
-                .totalProducts(inventoryTotals.size())
-                .totalStockUnits(totalUnits)
-                .totalStockValue(totalValue)
-                .lowStockProductCount(lowStockCount)
-                .outOfStockProductCount(outOfStockCount)
-                .products(productDetails)
-                .generatedAt(LocalDateTime.now())
-                .build();
+        ShopStockReport report = shopStockReportService.generate(shop);
 
         log.info("Shop stock report generated for {}: {} products, {} units, {} value",
-                shop.getName(), inventoryTotals.size(), totalUnits, totalValue);
+                shop.getName(), report.getTotalProducts(), report.getTotalStockUnits(), report.getTotalStockValue());
 
         return report;
     }
@@ -391,133 +321,66 @@ public class InventoryService {
     public StockValueReport generateStockValueReport() {
         log.info("Generating global stock value report");
 
-        List<InventoryTotal> allInventory = inventoryTotalRepository.findAllWithShopAndProduct();
-
-        BigDecimal grandTotalValue = BigDecimal.ZERO;
-        int grandTotalUnits = 0;
-        Set<Long> distinctProducts = new HashSet<>();
-
-        // Per-shop value tracking
-        Map<Long, BigDecimal> shopValueMap = new LinkedHashMap<>();
-        Map<Long, Integer> shopUnitsMap = new LinkedHashMap<>();
-        Map<Long, Integer> shopProductCountMap = new LinkedHashMap<>();
-        Map<Long, Shop> shopMap = new LinkedHashMap<>();
-
-        // Per-category value tracking
-        Map<String, BigDecimal> categoryValueMap = new LinkedHashMap<>();
-        Map<String, Integer> categoryUnitsMap = new LinkedHashMap<>();
-        Map<String, Set<Long>> categoryProductsMap = new LinkedHashMap<>();
-
-        for (InventoryTotal it : allInventory) {
-            Shop shop = it.getShop();
-            Product product = it.getProduct();
-            int stock = it.getTotalstock();
-
-            Optional<ShopInventory> siOpt = shopInventoryRepository
-                    .findFirstByShopAndProductOrderByIdDesc(shop, product);
-            BigDecimal unitPrice = siOpt.map(ShopInventory::getUnitPrice).orElse(BigDecimal.ZERO);
-            BigDecimal lineValue = unitPrice.multiply(BigDecimal.valueOf(stock));
-
-            grandTotalValue = grandTotalValue.add(lineValue);
-            grandTotalUnits += stock;
-            distinctProducts.add(product.getId());
-
-            // Shop aggregation
-            Long sid = shop.getId();
-            shopMap.putIfAbsent(sid, shop);
-            shopValueMap.merge(sid, lineValue, BigDecimal::add);
-            shopUnitsMap.merge(sid, stock, Integer::sum);
-            shopProductCountMap.merge(sid, 1, Integer::sum);
-
-            // Category aggregation
-            String category = product.getCategory() != null ? product.getCategory() : "Uncategorized";
-            categoryValueMap.merge(category, lineValue, BigDecimal::add);
-            categoryUnitsMap.merge(category, stock, Integer::sum);
-            categoryProductsMap.computeIfAbsent(category, k -> new HashSet<>()).add(product.getId());
-        }
+        StockValuation valuation = stockValuationService.valueAllShops();
+        Map<Long, Shop> shops = shopsOf(valuation);
+        BigDecimal grandTotalValue = valuation.getValue();
+        int grandTotalUnits = Math.toIntExact(valuation.getUnits());
+        int totalProducts = valuation.getProductCount();
 
         // Build shop value breakdowns
         List<StockValueReport.ShopValueBreakdown> shopValues = new ArrayList<>();
-        for (Map.Entry<Long, Shop> entry : shopMap.entrySet()) {
-            Long sid = entry.getKey();
-            Shop shop = entry.getValue();
-            BigDecimal shopValue = shopValueMap.getOrDefault(sid, BigDecimal.ZERO);
-            BigDecimal pct = grandTotalValue.compareTo(BigDecimal.ZERO) > 0
-                    ? shopValue.multiply(BigDecimal.valueOf(100)).divide(grandTotalValue, 2, RoundingMode.HALF_UP)
-                    : BigDecimal.ZERO;
-
+        for (ShopValuation shopValuation : valuation.getShops()) {
+            Shop shop = shops.get(shopValuation.getShopId());
             shopValues.add(StockValueReport.ShopValueBreakdown.builder()
-                    .shopId(sid)
+                    .shopId(shop.getId())
                     .shopName(shop.getName())
                     .shopCode(shop.getCode())
                     .shopType(shop.getType().name())
-                    .totalValue(shopValue)
-                    .totalUnits(shopUnitsMap.getOrDefault(sid, 0))
-                    .productCount(shopProductCountMap.getOrDefault(sid, 0))
-                    .percentageOfTotal(pct)
+                    .totalValue(shopValuation.getValue())
+                    .totalUnits(Math.toIntExact(shopValuation.getUnits()))
+                    .productCount(shopValuation.getProductCount())
+                    .percentageOfTotal(percentageOf(shopValuation.getValue(), grandTotalValue))
                     .build());
         }
 
         // Build category value breakdowns
         List<StockValueReport.CategoryValueBreakdown> categoryValues = new ArrayList<>();
-        for (Map.Entry<String, BigDecimal> entry : categoryValueMap.entrySet()) {
-            String category = entry.getKey();
-            BigDecimal catValue = entry.getValue();
-            BigDecimal pct = grandTotalValue.compareTo(BigDecimal.ZERO) > 0
-                    ? catValue.multiply(BigDecimal.valueOf(100)).divide(grandTotalValue, 2, RoundingMode.HALF_UP)
-                    : BigDecimal.ZERO;
-
-            categoryValues.add(StockValueReport.CategoryValueBreakdown.builder()
-                    .category(category)
-                    .totalValue(catValue)
-                    .totalUnits(categoryUnitsMap.getOrDefault(category, 0))
-                    .productCount(categoryProductsMap.getOrDefault(category, Collections.emptySet()).size())
-                    .percentageOfTotal(pct)
-                    .build());
-        }
+        valuation.getCategories().forEach((category, categoryValuation) ->
+                categoryValues.add(StockValueReport.CategoryValueBreakdown.builder()
+                        .category(category)
+                        .totalValue(categoryValuation.getValue())
+                        .totalUnits(Math.toIntExact(categoryValuation.getUnits()))
+                        .productCount(categoryValuation.getProductCount())
+                        .percentageOfTotal(percentageOf(categoryValuation.getValue(), grandTotalValue))
+                        .build()));
 
         StockValueReport report = StockValueReport.builder()
                 .totalInventoryValue(grandTotalValue)
                 .totalStockUnits(grandTotalUnits)
-                .totalProducts(distinctProducts.size())
+                .totalProducts(totalProducts)
                 .shopValues(shopValues)
                 .categoryValues(categoryValues)
                 .generatedAt(LocalDateTime.now())
                 .build();
 
         log.info("Stock value report generated: total value = {}, {} units, {} products",
-                grandTotalValue, grandTotalUnits, distinctProducts.size());
+                grandTotalValue, grandTotalUnits, totalProducts);
 
         return report;
     }
 
     // ==================== Private Helpers ====================
 
-    private BigDecimal calculateShopStockValue(Shop shop, List<InventoryTotal> shopItems) {
-        BigDecimal total = BigDecimal.ZERO;
-        for (InventoryTotal it : shopItems) {
-            Optional<ShopInventory> siOpt = shopInventoryRepository
-                    .findFirstByShopAndProductOrderByIdDesc(shop, it.getProduct());
-            BigDecimal unitPrice = siOpt.map(ShopInventory::getUnitPrice).orElse(BigDecimal.ZERO);
-            total = total.add(unitPrice.multiply(BigDecimal.valueOf(it.getTotalstock())));
-        }
-        return total;
+    private Map<Long, Shop> shopsOf(StockValuation valuation) {
+        List<Long> shopIds = valuation.getShops().stream().map(ShopValuation::getShopId).toList();
+        return shopRepository.findAllById(shopIds).stream()
+                .collect(Collectors.toMap(Shop::getId, shop -> shop));
     }
 
-    private int countLowStockItems(List<InventoryTotal> allInventory) {
-        int count = 0;
-        for (InventoryTotal it : allInventory) {
-            if (it.getTotalstock() <= 0) continue;
-            Optional<ShopInventory> siOpt = shopInventoryRepository
-                    .findFirstByShopAndProductOrderByIdDesc(it.getShop(), it.getProduct());
-            if (siOpt.isPresent()) {
-                Integer reorderLevel = siOpt.get().getReorderLevel();
-                if (reorderLevel != null && it.getTotalstock() <= reorderLevel) {
-                    count++;
-                }
-            }
-        }
-        return count;
+    private static BigDecimal percentageOf(BigDecimal value, BigDecimal total) {
+        return total.compareTo(BigDecimal.ZERO) > 0
+                ? value.multiply(BigDecimal.valueOf(100)).divide(total, 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
     }
 
     private void broadcastInventoryUpdate(Long productId, Integer newQuantity) {
@@ -1,11 +1,13 @@
 package com.pos_onlineshop.hybrid.services;
 
 import com.pos_onlineshop.hybrid.cashier.Cashier;
+import com.pos_onlineshop.hybrid.enums.StockMovementType;
 import com.pos_onlineshop.hybrid.enums.TransferPriority;
 import com.pos_onlineshop.hybrid.enums.TransferStatus;
 import com.pos_onlineshop.hybrid.enums.TransferType;
 import com.pos_onlineshop.hybrid.exceptions.InsufficientInventoryException;
 import com.pos_onlineshop.hybrid.exceptions.ResourceNotFoundException;
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
 import com.pos_onlineshop.hybrid.inventoryTransfer.InventoryTransfer;
 import com.pos_onlineshop.hybrid.inventoryTransfer.InventoryTransferRepository;
 import com.pos_onlineshop.hybrid.inventoryTransferItems.InventoryTransferItem;
@@ -14,11 +16,13 @@ import com.pos_onlineshop.hybrid.products.ProductRepository;
 import com.pos_onlineshop.hybrid.shop.Shop;
 import com.pos_onlineshop.hybrid.shop.ShopRepository;
 import com.pos_onlineshop.hybrid.shopInventory.ShopInventory;
+import com.pos_onlineshop.hybrid.stockLedger.StockMovementReason;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import org.hibernate.Hibernate;
@@ -40,6 +44,8 @@ public class InventoryTransferService {
     private final ShopRepository shopRepository;
     private final ProductRepository productRepository;
     private final ShopInventoryService shopInventoryService;
+    private final StockMutationCoordinator stockMutationCoordinator;
+    private final StockLedgerService stockLedgerService;
 
     /**
      * Initialize lazy-loaded collections so they are available after the transaction closes.
@@ -215,9 +221,15 @@ public class InventoryTransferService {
     }
 
     /**
-     * Ship transfer - updates inventory and sets status to IN_TRANSIT
+     * Ship transfer - updates inventory and sets status to IN_TRANSIT.
+     * Rerun as a whole if it loses a stock lock conflict.
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public InventoryTransfer shipTransfer(Long transferId, Cashier shipper) {
+        return stockMutationCoordinator.execute(() -> doShipTransfer(transferId, shipper));
+    }
+
+    private InventoryTransfer doShipTransfer(Long transferId, Cashier shipper) {
         InventoryTransfer transfer = transferRepository.findById(transferId)
                 .orElseThrow(() -> new ResourceNotFoundException("Transfer", transferId));
 
@@ -233,30 +245,24 @@ public class InventoryTransferService {
 
         transfer.ship(shipper);
 
-        // Update inventory in both shops
+        // Remove stock from the source shop in one batch, in lock order
+        Long fromShopId = transfer.getFromShop().getId();
+        stockMutationCoordinator.reduce(transfer.getTransferItems().stream()
+                        .map(item -> new StockChange(fromShopId, item.getProduct().getId(), item.getRequestedQuantity()))
+                        .toList(),
+                StockMovementReason.of(StockMovementType.TRANSFER_OUT, transfer.getId()),
+                shortfall -> new InsufficientInventoryException("Insufficient inventory for product: " +
+                        productName(transfer, shortfall.productId())));
+
+        // Mark as shipped in transfer items
         for (InventoryTransferItem item : transfer.getTransferItems()) {
-            try {
-                // 1. Remove stock from source shop
-                shopInventoryService.reduceStock(
-                        transfer.getFromShop().getId(),
-                        item.getProduct().getId(),
-                        item.getRequestedQuantity());
-
-
-                // 2. Mark as shipped in transfer item
-                item.setShippedQuantity(item.getRequestedQuantity());
-
-                log.debug("Shipped {} units of {} from shop {} to shop {}",
-                        item.getRequestedQuantity(),
-                        item.getProduct().getName(),
-                        transfer.getFromShop().getName(),
-                        transfer.getToShop().getName());
-
-            } catch (Exception e) {
-                log.error("Error updating inventory during shipping for product {}: {}",
-                        item.getProduct().getName(), e.getMessage());
-                throw new RuntimeException("Failed to update inventory during shipping", e);
-            }
+            item.setShippedQuantity(item.getRequestedQuantity());
+
+            log.debug("Shipped {} units of {} from shop {} to shop {}",
+                    item.getRequestedQuantity(),
+                    item.getProduct().getName(),
+                    transfer.getFromShop().getName(),
+                    transfer.getToShop().getName());
         }
 
         InventoryTransfer savedTransfer = transferRepository.save(transfer);
@@ -272,14 +278,24 @@ public class InventoryTransferService {
     }
 
     /**
-     * Receive transfer - updates destination inventory
+     * Receive transfer - updates destination inventory.
+     * Rerun as a whole if it loses a stock lock conflict.
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public InventoryTransfer receiveTransfer(Long transferId, Cashier receiver,
                                              List<ReceiveItemDto> receivedItems) {
+        return stockMutationCoordinator.execute(() -> doReceiveTransfer(transferId, receiver, receivedItems));
+    }
+
+    private InventoryTransfer doReceiveTransfer(Long transferId, Cashier receiver,
+                                                List<ReceiveItemDto> receivedItems) {
 
         InventoryTransfer transfer = transferRepository.findById(transferId)
                 .orElseThrow(() -> new ResourceNotFoundException("Transfer", transferId));
 
+        List<StockChange> additions = new ArrayList<>();
+        List<StockChange> damaged = new ArrayList<>();
+
         // Update received quantities for each item
         for (ReceiveItemDto receivedItem : receivedItems) {
             InventoryTransferItem transferItem = transfer.getTransferItems().stream()
@@ -302,44 +318,45 @@ public class InventoryTransferService {
             // Update received and damaged quantities in transfer item
             transferItem.receiveQuantity(receivedItem.getReceivedQuantity(), receivedItem.getDamagedQuantity());
 
-            try {
-                // 1. Add received stock to destination shop inventory
-                if (receivedItem.getReceivedQuantity() > 0) {
-                    shopInventoryService.addStock(
-                            transfer.getToShop().getId(),
-                            transferItem.getProduct().getId(),
-                            receivedItem.getReceivedQuantity());
-
-                    log.debug("Added {} units of {} to shop {} inventory",
-                            receivedItem.getReceivedQuantity(),
-                            transferItem.getProduct().getName(),
-                            transfer.getToShop().getName());
-                }
-
-                // 2. Log damaged items (these are not added to inventory)
-                if (receivedItem.getDamagedQuantity() != null && receivedItem.getDamagedQuantity() > 0) {
-                    log.warn("Received {} damaged units of {} in transfer {} - not added to inventory",
-                            receivedItem.getDamagedQuantity(),
-                            transferItem.getProduct().getName(),
-                            transfer.getTransferNumber());
-                }
-
-                // 3. Handle partial receipts (items not received at all)
-                int unreceivedQuantity = transferItem.getShippedQuantity() - totalReceived;
-                if (unreceivedQuantity > 0) {
-                    log.warn("Missing {} units of {} in transfer {} - possible loss or theft",
-                            unreceivedQuantity,
-                            transferItem.getProduct().getName(),
-                            transfer.getTransferNumber());
-                }
-
-            } catch (Exception e) {
-                log.error("Error updating inventory during receiving for product {}: {}",
-                        transferItem.getProduct().getName(), e.getMessage());
-                throw new RuntimeException("Failed to update inventory during receiving", e);
+            // 1. Collect received stock for the destination shop inventory
+            if (receivedItem.getReceivedQuantity() > 0) {
+                additions.add(new StockChange(
+                        transfer.getToShop().getId(),
+                        transferItem.getProduct().getId(),
+                        receivedItem.getReceivedQuantity()));
+            }
+
+            // 2. Log damaged items (these are not added to inventory)
+            if (receivedItem.getDamagedQuantity() != null && receivedItem.getDamagedQuantity() > 0) {
+                damaged.add(new StockChange(
+                        transfer.getToShop().getId(),
+                        transferItem.getProduct().getId(),
+                        receivedItem.getDamagedQuantity()));
+                log.warn("Received {} damaged units of {} in transfer {} - not added to inventory",
+                        receivedItem.getDamagedQuantity(),
+                        transferItem.getProduct().getName(),
+                        transfer.getTransferNumber());
+            }
+
+            // 3. Handle partial receipts (items not received at all)
+            int unreceivedQuantity = transferItem.getShippedQuantity() - totalReceived;
+            if (unreceivedQuantity > 0) {
+                log.warn("Missing {} units of {} in transfer {} - possible loss or theft",
+                        unreceivedQuantity,
+                        transferItem.getProduct().getName(),
+                        transfer.getTransferNumber());
             }
         }
 
+        // Add received stock to the destination shop in one batch, in lock order
+        stockMutationCoordinator.add(additions, StockMovementReason.of(StockMovementType.TRANSFER_IN, transfer.getId()));
+        log.debug("Added {} received lines to shop {} inventory", additions.size(), transfer.getToShop().getName());
+
+        // Damaged units arrive and are written off at once, leaving the destination total unchanged
+        stockLedgerService.record(damaged, 1, new StockMovementReason(StockMovementType.TRANSFER_IN,
+                transfer.getId(), "Arrived damaged"));
+        stockLedgerService.record(damaged, -1, StockMovementReason.of(StockMovementType.DAMAGE, transfer.getId()));
+
         transfer.receive(receiver);
 
         InventoryTransfer savedTransfer = transferRepository.save(transfer);
@@ -364,33 +381,27 @@ public class InventoryTransferService {
     }
 
     /**
-     * Cancel transfer - reverses inventory changes if transfer was shipped
+     * Cancel transfer - reverses inventory changes if transfer was shipped.
+     * Rerun as a whole if it loses a stock lock conflict.
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public InventoryTransfer cancelTransfer(Long transferId, String reason) {
+        return stockMutationCoordinator.execute(() -> doCancelTransfer(transferId, reason));
+    }
+
+    private InventoryTransfer doCancelTransfer(Long transferId, String reason) {
         InventoryTransfer transfer = transferRepository.findById(transferId)
                 .orElseThrow(() -> new ResourceNotFoundException("Transfer", transferId));
 
         // If transfer was shipped, need to reverse inventory changes
         if (transfer.getStatus() == TransferStatus.IN_TRANSIT) {
-            for (InventoryTransferItem item : transfer.getTransferItems()) {
-                try {
-                    // 1. Return stock to source shop (add back what was removed)
-                    shopInventoryService.addStock(
-                            transfer.getFromShop().getId(),
-                            item.getProduct().getId(),
-                            item.getShippedQuantity());
-
-                    log.debug("Reversed inventory for product {} - returned {} units to {}",
-                            item.getProduct().getName(),
-                            item.getShippedQuantity(),
-                            transfer.getFromShop().getName());
-
-                } catch (Exception e) {
-                    log.error("Error reversing inventory during cancellation for product {}: {}",
-                            item.getProduct().getName(), e.getMessage());
-                    // Log error but don't fail the entire cancellation
-                }
-            }
+            // Return shipped stock to the source shop in one batch, in lock order
+            Long fromShopId = transfer.getFromShop().getId();
+            stockMutationCoordinator.add(transfer.getTransferItems().stream()
+                    .filter(item -> item.getShippedQuantity() != null && item.getShippedQuantity() > 0)
+                    .map(item -> new StockChange(fromShopId, item.getProduct().getId(), item.getShippedQuantity()))
+                    .toList(),
+                    new StockMovementReason(StockMovementType.TRANSFER_CANCELLED, transfer.getId(), reason));
 
             log.info("Reversed inventory changes for cancelled transfer {}", transfer.getTransferNumber());
         }
@@ -409,6 +420,14 @@ public class InventoryTransferService {
         return savedTransfer;
     }
 
+    private String productName(InventoryTransfer transfer, Long productId) {
+        return transfer.getTransferItems().stream()
+                .filter(item -> item.getProduct().getId().equals(productId))
+                .map(item -> item.getProduct().getName())
+                .findFirst()
+                .orElse(String.valueOf(productId));
+    }
+
     /**
      * Complete transfer
      */
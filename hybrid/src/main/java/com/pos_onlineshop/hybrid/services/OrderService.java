@@ -5,6 +5,7 @@ import com.pos_onlineshop.hybrid.cartItem.CartItem;
 import com.pos_onlineshop.hybrid.cashier.Cashier;
 import com.pos_onlineshop.hybrid.cashierSessions.CashierSession;
 import com.pos_onlineshop.hybrid.currency.Currency;
+import com.pos_onlineshop.hybrid.currency.CurrencyRepository;
 import com.pos_onlineshop.hybrid.customers.Customers;
 import com.pos_onlineshop.hybrid.customers.CustomersRepository;
 import com.pos_onlineshop.hybrid.dtos.OrderResponse;
@@ -13,28 +14,32 @@ import com.pos_onlineshop.hybrid.dtos.UpdateOrderRequest;
 import com.pos_onlineshop.hybrid.enums.OrderStatus;
 import com.pos_onlineshop.hybrid.enums.PaymentMethod;
 import com.pos_onlineshop.hybrid.enums.SalesChannel;
+import com.pos_onlineshop.hybrid.enums.StockMovementType;
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
 import com.pos_onlineshop.hybrid.mappers.OrderMapper;
 import com.pos_onlineshop.hybrid.orderLines.OrderLine;
 import com.pos_onlineshop.hybrid.orderLines.OrderLineRepository;
 import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderChangedEvent;
 import com.pos_onlineshop.hybrid.orders.OrderRepository;
 import com.pos_onlineshop.hybrid.products.Product;
 import com.pos_onlineshop.hybrid.selling_price.SellingPrice;
 import com.pos_onlineshop.hybrid.shop.Shop;
+import com.pos_onlineshop.hybrid.stockLedger.StockMovementReason;
 import com.pos_onlineshop.hybrid.userAccount.UserAccount;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -49,18 +54,33 @@ public class OrderService {
     private final InventoryService inventoryService;
     private final AccountancyService accountancyService;
     private final CurrencyService currencyService;
+    private final CurrencyRepository currencyRepository;
     private final ProductService productService;
     private final SimpMessagingTemplate messagingTemplate;
     private final CustomersRepository customersRepository;
     private final OrderMapper orderMapper;
-    private final ShopInventoryService shopInventoryService;
-    private final ZimraService zimraService;
+    private final FiscalOutboxService fiscalOutboxService;
+    private final ReceiptNumberAllocator receiptNumberAllocator;
     private final SellingPriceService sellingPriceService;
+    private final BasketResolutionService basketResolutionService;
+    private final StockMutationCoordinator stockMutationCoordinator;
+    private final RevenueSeriesService revenueSeriesService;
+    private final ApplicationEventPublisher eventPublisher;
 
-    @Transactional
+    /**
+     * Create an order from the user's cart; rerun as a whole if it loses a stock lock conflict
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Order createOrderFromCart(UserAccount user, String shippingAddress,
                                      PaymentMethod paymentMethod, SalesChannel channel,
                                      Currency orderCurrency) {
+        return stockMutationCoordinator.execute(() ->
+                doCreateOrderFromCart(user, shippingAddress, paymentMethod, channel, orderCurrency));
+    }
+
+    private Order doCreateOrderFromCart(UserAccount user, String shippingAddress,
+                                        PaymentMethod paymentMethod, SalesChannel channel,
+                                        Currency orderCurrency) {
         Cart cart = cartService.getCartByUser(user)
                 .orElseThrow(() -> new RuntimeException("Cart not found for user"));
 
@@ -88,11 +108,6 @@ public class OrderService {
         for (CartItem cartItem : cart.getCartItems()) {
             Product product = cartItem.getProduct();
 
-            // Check inventory
-            if (!inventoryService.isInStock(product.getId(), cartItem.getQuantity())) {
-                throw new RuntimeException("Insufficient stock for product: " + product.getName());
-            }
-
             // Get product price in order currency
             // For online orders, get any available selling price for the product
             java.util.List<SellingPrice> productPrices = sellingPriceService.getProductPrices(product);
@@ -108,16 +123,26 @@ public class OrderService {
             orderLine.copyProductDetails(sellingPrice, orderCurrency);
 
             order.addOrderLine(orderLine);
-
-            if (channel == SalesChannel.ONLINE) {
-                inventoryService.reserveInventory(product.getId(), cartItem.getQuantity());
-            } else {
-                inventoryService.removeStock(product.getId(), cartItem.getQuantity());
-            }
         }
 
+        // Check and take inventory in product order so concurrent carts lock rows the same way
+        stockMutationCoordinator.forEachInLockOrder(cart.getCartItems(), item -> null, item -> item.getProduct().getId(),
+                cartItem -> {
+                    Product product = cartItem.getProduct();
+                    if (!inventoryService.isInStock(product.getId(), cartItem.getQuantity())) {
+                        throw new RuntimeException("Insufficient stock for product: " + product.getName());
+                    }
+
+                    if (channel == SalesChannel.ONLINE) {
+                        inventoryService.reserveInventory(product.getId(), cartItem.getQuantity());
+                    } else {
+                        inventoryService.removeStock(product.getId(), cartItem.getQuantity());
+                    }
+                });
+
         Order savedOrder = orderRepository.save(order);
         accountancyService.createOrderAccountingEntries(savedOrder);
+        eventPublisher.publishEvent(OrderChangedEvent.created(savedOrder));
         cartService.clearCart(user);
 
         // Notify new order
@@ -128,10 +153,17 @@ public class OrderService {
         return savedOrder;
     }
 
-    @Transactional
+    /**
+     * Process a POS sale; the whole sale is rerun if it loses a stock lock conflict
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Order processPOSSale(List<QuickSaleItem> items, PaymentMethod paymentMethod,
                                 BigDecimal cashGiven, CashierSession session) {
+        return stockMutationCoordinator.execute(() -> doProcessPOSSale(items, paymentMethod, cashGiven, session));
+    }
 
+    private Order doProcessPOSSale(List<QuickSaleItem> items, PaymentMethod paymentMethod,
+                                   BigDecimal cashGiven, CashierSession session) {
         Cashier cashier = session.getCashier();
         Shop shop = session.getShop();
         Currency shopCurrency = shop.getDefaultCurrency();
@@ -146,31 +178,18 @@ public class OrderService {
                 .paymentMethod(paymentMethod)
                 .storeLocation(shop.getName())
                 .status(OrderStatus.COMPLETED)
-                .receiptNumber(generateReceiptNumber())
+                .receiptNumber(receiptNumberAllocator.nextReceiptNumber(shop))
                 .build();
 
-        for (QuickSaleItem item : items) {
-            Product product = productService.findById(item.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Product not found"));
-
-            // Check shop inventory
-            if (!shopInventoryService.isInStock(shop.getId(), item.getProductId(), item.getQuantity())) {
-                throw new RuntimeException("Insufficient stock in shop for: " + product.getName());
-            }
-
-            // Get selling price for this product in this shop
-            SellingPrice sellingPrice = sellingPriceService.getCurrentPrice(product, shop)
-                    .orElseThrow(() -> new RuntimeException("No selling price found for product: " + product.getName() + " in shop: " + shop.getName()));
-
+        // Resolve products and prices for the whole basket in one pass
+        List<BasketResolutionService.ResolvedLine> lines = basketResolutionService.resolve(shop, items);
+        for (BasketResolutionService.ResolvedLine line : lines) {
             OrderLine orderLine = OrderLine.builder()
-                    .quantity(item.getQuantity())
+                    .quantity(line.getQuantity())
                     .build();
-            orderLine.copyProductDetails(sellingPrice, shopCurrency);
+            orderLine.copyProductDetails(line.getSellingPrice(), shopCurrency);
 
             order.addOrderLine(orderLine);
-
-            // Remove from shop inventory
-            shopInventoryService.reduceStock(shop.getId(), item.getProductId(), item.getQuantity());
         }
 
         if (paymentMethod == PaymentMethod.CASH && cashGiven != null) {
@@ -181,20 +200,13 @@ public class OrderService {
         Order savedOrder = orderRepository.save(order);
         accountancyService.createOrderAccountingEntries(savedOrder);
         accountancyService.createPaymentAccountingEntries(savedOrder);
+        eventPublisher.publishEvent(OrderChangedEvent.created(savedOrder));
 
-        // Auto-fiscalise POS transactions
-        try {
-            com.pos_onlineshop.hybrid.dtos.FiscaliseTransactionRequest fiscalRequest =
-                com.pos_onlineshop.hybrid.dtos.FiscaliseTransactionRequest.builder()
-                    .orderId(savedOrder.getId())
-                    .shopId(shop.getId())
-                    .documentType(com.pos_onlineshop.hybrid.enums.FiscalDocumentType.FISCAL_RECEIPT)
-                    .build();
-            zimraService.fiscaliseOrder(savedOrder.getId(), fiscalRequest);
-            log.info("Auto-fiscalised POS order {}", savedOrder.getId());
-        } catch (Exception e) {
-            log.warn("Failed to auto-fiscalise POS order {}: {}", savedOrder.getId(), e.getMessage());
-        }
+        // Take stock last so the inventory rows are locked only until commit
+        basketResolutionService.reduceStock(shop, lines, savedOrder.getId());
+
+        // Queue for fiscalisation; the outbox workers pick it up once this sale commits
+        fiscalOutboxService.enqueueOrder(savedOrder);
 
         log.info("Processed POS sale {} at shop {} in currency {}",
                 savedOrder.getId(), shop.getName(), shopCurrency.getCode());
@@ -217,7 +229,15 @@ public class OrderService {
         return orderRepository.findBySalesChannel(channel);
     }
 
+    /**
+     * Move an order to a new status, adjusting stock; rerun as a whole if it loses a stock lock conflict
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Order updateOrderStatus(Long orderId, OrderStatus newStatus) {
+        return stockMutationCoordinator.execute(() -> doUpdateOrderStatus(orderId, newStatus));
+    }
+
+    private Order doUpdateOrderStatus(Long orderId, OrderStatus newStatus) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
 
@@ -227,29 +247,45 @@ public class OrderService {
         if (newStatus == OrderStatus.CONFIRMED && oldStatus == OrderStatus.PENDING) {
             // Convert reservations to actual stock deduction for online orders
             if (order.getSalesChannel() == SalesChannel.ONLINE) {
-                for (OrderLine line : order.getOrderLines()) {
-                    inventoryService.releaseReservation(line.getProduct().getId(), line.getQuantity());
-                    inventoryService.removeStock(line.getProduct().getId(), line.getQuantity());
-                }
+                stockMutationCoordinator.forEachInLockOrder(order.getOrderLines(), line -> null,
+                        line -> line.getProduct().getId(), line -> {
+                            inventoryService.releaseReservation(line.getProduct().getId(), line.getQuantity());
+                            inventoryService.removeStock(line.getProduct().getId(), line.getQuantity());
+                        });
             }
             accountancyService.createPaymentAccountingEntries(order);
         } else if (newStatus == OrderStatus.CANCELLED) {
             // Restore inventory
-            for (OrderLine line : order.getOrderLines()) {
-                if (order.getSalesChannel() == SalesChannel.ONLINE && oldStatus == OrderStatus.PENDING) {
-                    inventoryService.releaseReservation(line.getProduct().getId(), line.getQuantity());
-                } else if (order.getShop() != null) {
-                    shopInventoryService.addStock(order.getShop().getId(), line.getProduct().getId(), line.getQuantity());
-                } else {
-                    inventoryService.addStock(line.getProduct().getId(), line.getQuantity());
-                }
-            }
+            restoreInventory(order, order.getSalesChannel() == SalesChannel.ONLINE && oldStatus == OrderStatus.PENDING);
             if (oldStatus != OrderStatus.PENDING) {
                 accountancyService.createRefundAccountingEntries(order);
             }
         }
 
-        return orderRepository.save(order);
+        Order saved = orderRepository.saveAndFlush(order);
+        eventPublisher.publishEvent(OrderChangedEvent.statusChanged(saved, oldStatus));
+        return saved;
+    }
+
+    /**
+     * Give an order's stock back: release online reservations, or return the quantities
+     * to the shop (or central) inventory, touching rows in lock order
+     */
+    private void restoreInventory(Order order, boolean reservedOnly) {
+        if (reservedOnly) {
+            stockMutationCoordinator.forEachInLockOrder(order.getOrderLines(), line -> null,
+                    line -> line.getProduct().getId(),
+                    line -> inventoryService.releaseReservation(line.getProduct().getId(), line.getQuantity()));
+        } else if (order.getShop() != null) {
+            stockMutationCoordinator.add(order.getOrderLines().stream()
+                            .map(line -> new StockChange(order.getShop().getId(), line.getProduct().getId(), line.getQuantity()))
+                            .toList(),
+                    StockMovementReason.of(StockMovementType.RETURN, order.getId()));
+        } else {
+            stockMutationCoordinator.forEachInLockOrder(order.getOrderLines(), line -> null,
+                    line -> line.getProduct().getId(),
+                    line -> inventoryService.addStock(line.getProduct().getId(), line.getQuantity()));
+        }
     }
 
     public List<Object[]> getMostOrderedProducts() {
@@ -257,22 +293,8 @@ public class OrderService {
     }
 
     public BigDecimal calculateRevenue(OrderStatus status, Currency currency) {
-        List<Order> orders = orderRepository.findByStatus(status);
-
-        return orders.stream()
-                .map(order -> {
-                    if (order.getCurrency().equals(currency)) {
-                        return order.getTotalAmount();
-                    } else {
-                        // Convert to requested currency
-                        return currencyService.convert(
-                                order.getTotalAmount(),
-                                order.getCurrency(),
-                                currency
-                        );
-                    }
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        List<Object[]> totals = orderRepository.sumTotalsByStatusAndCurrency(status, null, null, null);
+        return convertAndSum(totals, s -> true, currency);
     }
 
     public Long countRecentOrders(int days) {
@@ -284,41 +306,31 @@ public class OrderService {
         return orderRepository.getSalesChannelStats(startDate, endDate);
     }
 
-    private String generateReceiptNumber() {
-        return "REC-" + System.currentTimeMillis() + "-" +
-                UUID.randomUUID().toString().substring(0, 4).toUpperCase();
-    }
-
     // Add these methods to OrderService.java
 
     /**
-     * Calculate revenue for a specific period
+     * Calculate revenue for a specific period, from the revenue series once it is loaded
      */
     public BigDecimal calculatePeriodRevenue(LocalDateTime startDate, LocalDateTime endDate, Currency currency) {
-        List<Order> orders = orderRepository.findByOrderDateBetween(startDate, endDate);
+        return revenueSeriesService.sumRevenue(null, startDate, endDate, currency).orElseGet(() -> {
+            List<Object[]> totals = orderRepository.sumTotalsByStatusAndCurrency(null, null, startDate, endDate);
+            return convertAndSum(totals, OrderService::isRevenue, currency);
+        });
+    }
 
-        return orders.stream()
-                .filter(order -> order.getStatus() == OrderStatus.COMPLETED || order.getStatus() == OrderStatus.DELIVERED)
-                .map(order -> {
-                    if (order.getCurrency().equals(currency)) {
-                        return order.getTotalAmount();
-                    } else {
-                        // Convert to requested currency
-                        return currencyService.convert(
-                                order.getTotalAmount(),
-                                order.getCurrency(),
-                                currency
-                        );
-                    }
-                })
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Calculate completed and delivered revenue of one shop
+     */
+    public BigDecimal calculateShopRevenue(Long shopId, Currency currency) {
+        List<Object[]> totals = orderRepository.sumTotalsByStatusAndCurrency(null, shopId, null, null);
+        return convertAndSum(totals, OrderService::isRevenue, currency);
     }
 
     /**
      * Count orders by status
      */
     public Long countOrdersByStatus(OrderStatus status) {
-        return (long) orderRepository.findByStatus(status).size();
+        return orderRepository.countByStatus(status);
     }
 
     /**
@@ -381,42 +393,59 @@ public class OrderService {
      * Get revenue breakdown by status for a period
      */
     public Map<OrderStatus, BigDecimal> getRevenueBreakdownByStatus(LocalDateTime startDate, LocalDateTime endDate, Currency currency) {
-        List<Order> orders = orderRepository.findByOrderDateBetween(startDate, endDate);
+        List<Object[]> totals = orderRepository.sumTotalsByStatusAndCurrency(null, null, startDate, endDate);
 
-        return orders.stream()
-                .collect(Collectors.groupingBy(
-                        Order::getStatus,
-                        Collectors.reducing(
-                                BigDecimal.ZERO,
-                                order -> {
-                                    if (order.getCurrency().equals(currency)) {
-                                        return order.getTotalAmount();
-                                    } else {
-                                        return currencyService.convert(
-                                                order.getTotalAmount(),
-                                                order.getCurrency(),
-                                                currency
-                                        );
-                                    }
-                                },
-                                BigDecimal::add
-                        )
-                ));
+        Map<OrderStatus, BigDecimal> breakdown = new HashMap<>();
+        for (OrderStatus status : statusesOf(totals)) {
+            breakdown.put(status, convertAndSum(totals, status::equals, currency));
+        }
+        return breakdown;
     }
 
     /**
      * Get order count breakdown by status for a period
      */
     public Map<OrderStatus, Long> getOrderCountBreakdownByStatus(LocalDateTime startDate, LocalDateTime endDate) {
-        List<Order> orders = orderRepository.findByOrderDateBetween(startDate, endDate);
-
-        return orders.stream()
+        return orderRepository.sumTotalsByStatusAndCurrency(null, null, startDate, endDate).stream()
                 .collect(Collectors.groupingBy(
-                        Order::getStatus,
-                        Collectors.counting()
+                        row -> (OrderStatus) row[0],
+                        Collectors.summingLong(row -> (Long) row[3])
                 ));
     }
 
+    private static boolean isRevenue(OrderStatus status) {
+        return status == OrderStatus.COMPLETED || status == OrderStatus.DELIVERED;
+    }
+
+    private static Set<OrderStatus> statusesOf(List<Object[]> totals) {
+        Set<OrderStatus> statuses = EnumSet.noneOf(OrderStatus.class);
+        totals.forEach(row -> statuses.add((OrderStatus) row[0]));
+        return statuses;
+    }
+
+    /**
+     * Add up rows of (status, currency id, total, count) in the given currency. Totals are
+     * merged per currency first, so each currency is converted once however many orders
+     * it covers.
+     */
+    private BigDecimal convertAndSum(List<Object[]> totals, Predicate<OrderStatus> statuses, Currency currency) {
+        Map<Long, BigDecimal> byCurrency = new HashMap<>();
+        for (Object[] row : totals) {
+            if (statuses.test((OrderStatus) row[0]) && row[2] != null) {
+                byCurrency.merge((Long) row[1], (BigDecimal) row[2], BigDecimal::add);
+            }
+        }
+
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Currency from : currencyRepository.findAllById(byCurrency.keySet())) {
+            BigDecimal amount = byCurrency.get(from.getId());
+            sum = sum.add(from.getId().equals(currency.getId())
+                    ? amount
+                    : currencyService.convert(amount, from, currency));
+        }
+        return sum;
+    }
+
     /**
      * Update an existing order from DTO
      */
@@ -431,8 +460,12 @@ public class OrderService {
                     }
 
                     // Update payment method if provided
-                    if (request.getPaymentMethod() != null) {
+                    if (request.getPaymentMethod() != null && request.getPaymentMethod() != order.getPaymentMethod()) {
+                        // The rollup and cube are keyed by payment method, so move the order across
+                        PaymentMethod oldPaymentMethod = order.getPaymentMethod();
                         order.setPaymentMethod(request.getPaymentMethod());
+                        order = orderRepository.saveAndFlush(order);
+                        eventPublisher.publishEvent(OrderChangedEvent.paymentMethodChanged(order, oldPaymentMethod));
                     }
 
                     // Update shipping address if provided
@@ -461,26 +494,25 @@ public class OrderService {
     }
 
     /**
-     * Delete an order
+     * Delete an order, returning its stock; rerun as a whole if it loses a stock lock conflict
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void deleteOrder(Long id) {
+        stockMutationCoordinator.executeWithoutResult(() -> doDeleteOrder(id));
+    }
+
+    private void doDeleteOrder(Long id) {
         Optional<Order> orderOpt = orderRepository.findById(id);
         if (orderOpt.isPresent()) {
             Order order = orderOpt.get();
 
             // Restore inventory before deletion
             if (order.getStatus() != OrderStatus.CANCELLED) {
-                for (OrderLine line : order.getOrderLines()) {
-                    if (order.getSalesChannel() == SalesChannel.ONLINE && order.getStatus() == OrderStatus.PENDING) {
-                        inventoryService.releaseReservation(line.getProduct().getId(), line.getQuantity());
-                    } else if (order.getShop() != null) {
-                        shopInventoryService.addStock(order.getShop().getId(), line.getProduct().getId(), line.getQuantity());
-                    } else {
-                        inventoryService.addStock(line.getProduct().getId(), line.getQuantity());
-                    }
-                }
+                restoreInventory(order,
+                        order.getSalesChannel() == SalesChannel.ONLINE && order.getStatus() == OrderStatus.PENDING);
             }
 
+            eventPublisher.publishEvent(OrderChangedEvent.deleted(order));
             orderRepository.deleteById(id);
             log.info("Deleted order with ID: {}", id);
         } else {
@@ -9,21 +9,25 @@ import com.pos_onlineshop.hybrid.dtos.Receipt;
 import com.pos_onlineshop.hybrid.enums.OrderStatus;
 import com.pos_onlineshop.hybrid.enums.PaymentMethod;
 import com.pos_onlineshop.hybrid.enums.SalesChannel;
+import com.pos_onlineshop.hybrid.enums.StockMovementType;
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
 import com.pos_onlineshop.hybrid.orderLines.OrderLine;
 import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderChangedEvent;
 import com.pos_onlineshop.hybrid.orders.OrderRepository;
 import com.pos_onlineshop.hybrid.products.Product;
-import com.pos_onlineshop.hybrid.selling_price.SellingPrice;
 import com.pos_onlineshop.hybrid.shop.Shop;
+import com.pos_onlineshop.hybrid.stockLedger.StockMovementReason;
 import com.pos_onlineshop.hybrid.userAccount.UserAccount;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -36,14 +40,25 @@ public class POSService {
     private final OrderService orderService;
     private final ProductService productService;
     private final OrderRepository orderRepository;
-    private final ShopInventoryService shopInventoryService;
     private final AccountancyService accountancyService;
-    private final SellingPriceService sellingPriceService;
-
-    @Transactional
+    private final BasketResolutionService basketResolutionService;
+    private final FiscalOutboxService fiscalOutboxService;
+    private final ReceiptNumberAllocator receiptNumberAllocator;
+    private final StockMutationCoordinator stockMutationCoordinator;
+    private final DailySalesRollupService dailySalesRollupService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Process a POS sale; the whole sale is rerun if it loses a stock lock conflict
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Order processQuickSale(List<QuickSaleItem> items, PaymentMethod paymentMethod,
                                   BigDecimal cashGiven, CashierSession session) {
+        return stockMutationCoordinator.execute(() -> doProcessQuickSale(items, paymentMethod, cashGiven, session));
+    }
 
+    private Order doProcessQuickSale(List<QuickSaleItem> items, PaymentMethod paymentMethod,
+                                     BigDecimal cashGiven, CashierSession session) {
         Cashier cashier = session.getCashier();
         Shop shop = session.getShop();
         Currency shopCurrency = shop.getDefaultCurrency(); // Get shop's default currency
@@ -58,35 +73,22 @@ public class POSService {
                 .paymentMethod(paymentMethod)
                 .storeLocation(shop.getName())
                 .status(OrderStatus.COMPLETED)
-                .receiptNumber(generateReceiptNumber())
+                .receiptNumber(receiptNumberAllocator.nextReceiptNumber(shop))
                 .build();
 
-        for (QuickSaleItem item : items) {
-            Product product = productService.findById(item.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Product not found"));
-
-            // Check shop inventory using the corrected method
-            if (!shopInventoryService.isInStock(shop.getId(), item.getProductId(), item.getQuantity())) {
-                throw new RuntimeException("Insufficient stock in shop for: " + product.getName());
-            }
-
-            // Get the selling price for this product in this shop
-            SellingPrice sellingPrice = sellingPriceService.getCurrentPrice(product, shop)
-                    .orElseThrow(() -> new RuntimeException("No selling price found for product: " + product.getName() + " in shop: " + shop.getName()));
-
+        // Resolve products and prices for the whole basket in one pass
+        List<BasketResolutionService.ResolvedLine> lines = basketResolutionService.resolve(shop, items);
+        for (BasketResolutionService.ResolvedLine line : lines) {
             OrderLine orderLine = OrderLine.builder()
-                    .quantity(item.getQuantity())
+                    .quantity(line.getQuantity())
                     .cashier(cashier) // Set the cashier who processed this line
                     .cashierSession(session) // Set the session
                     .build();
 
             // Pass the SellingPrice and currency to copyProductDetails
-            orderLine.copyProductDetails(sellingPrice, shopCurrency);
+            orderLine.copyProductDetails(line.getSellingPrice(), shopCurrency);
 
             order.addOrderLine(orderLine);
-
-            // Remove from shop inventory using the corrected method
-            shopInventoryService.reduceStock(shop.getId(), item.getProductId(), item.getQuantity());
         }
 
         if (paymentMethod == PaymentMethod.CASH && cashGiven != null) {
@@ -97,6 +99,13 @@ public class POSService {
         Order savedOrder = orderRepository.save(order);
         accountancyService.createOrderAccountingEntries(savedOrder);
         accountancyService.createPaymentAccountingEntries(savedOrder);
+        eventPublisher.publishEvent(OrderChangedEvent.created(savedOrder));
+
+        // Take stock last so the inventory rows are locked only until commit
+        basketResolutionService.reduceStock(shop, lines, savedOrder.getId());
+
+        // Queue for fiscalisation; the outbox workers pick it up once this sale commits
+        fiscalOutboxService.enqueueOrder(savedOrder);
 
         log.info("Processed POS sale {} at shop {} by cashier {}",
                 savedOrder.getId(), shop.getName(), cashier.getFullName());
@@ -109,84 +118,28 @@ public class POSService {
                 .orElseThrow(() -> new RuntimeException("Product not found with barcode: " + barcode));
     }
 
+    /**
+     * Day totals for the POS daily summary, read from the daily sales rollup
+     */
     public DailySummary getDailySummary(LocalDate date, Long shopId) {
-        LocalDateTime startOfDay = date.atStartOfDay();
-        LocalDateTime endOfDay = date.plusDays(1).atStartOfDay();
-
-        List<Order> dailyOrders = orderRepository.findByOrderDateBetween(startOfDay, endOfDay).stream()
-                .filter(o -> o.getSalesChannel() == SalesChannel.POS)
-                .filter(o -> shopId == null || (o.getShop() != null && o.getShop().getId().equals(shopId)))
-                .toList();
-
-        Map<PaymentMethod, BigDecimal> revenueByMethod = dailyOrders.stream()
-                .collect(Collectors.groupingBy(
-                        Order::getPaymentMethod,
-                        Collectors.reducing(BigDecimal.ZERO, Order::getTotalAmount, BigDecimal::add)
-                ));
-
-        Map<String, Integer> topProducts = dailyOrders.stream()
-                .flatMap(order -> order.getOrderLines().stream())
-                .collect(Collectors.groupingBy(
-                        OrderLine::getProductName,
-                        Collectors.summingInt(OrderLine::getQuantity)
-                ));
-
-        // Get top 5 products
-        Map<String, Integer> top5Products = topProducts.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .limit(5)
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        LinkedHashMap::new
-                ));
-
-        BigDecimal totalRevenue = revenueByMethod.values().stream()
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal cashInDrawer = revenueByMethod.getOrDefault(PaymentMethod.CASH, BigDecimal.ZERO);
-
-        // Count refunds/voids
-        int refundsProcessed = (int) dailyOrders.stream()
-                .filter(o -> o.getStatus() == OrderStatus.CANCELLED)
-                .count();
-
-        BigDecimal refundTotal = dailyOrders.stream()
-                .filter(o -> o.getStatus() == OrderStatus.CANCELLED)
-                .map(Order::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // Find top cashier
-        String topCashier = dailyOrders.stream()
-                .filter(o -> o.getCashier() != null)
-                .collect(Collectors.groupingBy(
-                        o -> o.getCashier().getFullName(),
-                        Collectors.counting()
-                ))
-                .entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("N/A");
-
-        return DailySummary.builder()
-                .date(date)
-                .storeLocation(shopId != null ? "Shop " + shopId : "All Shops")
-                .totalTransactions(dailyOrders.size())
-                .totalRevenue(totalRevenue)
-                .revenueByPaymentMethod(revenueByMethod)
-                .topSellingProducts(top5Products)
-                .cashInDrawer(cashInDrawer)
-                .refundsProcessed(refundsProcessed)
-                .refundTotal(refundTotal)
-                .topCashier(topCashier)
-                .build();
+        return dailySalesRollupService.getDailySummary(date, shopId);
     }
 
     public Receipt generateReceipt(Long orderId) {
         Order order = orderRepository.findByIdWithOrderLines(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
+        return toReceipt(order);
+    }
+
+    public Receipt generateReceiptByNumber(String receiptNumber) {
+        Order order = orderRepository.findByReceiptNumberWithOrderLines(receiptNumber)
+                .orElseThrow(() -> new RuntimeException("Order not found with receipt number: " + receiptNumber));
+
+        return toReceipt(order);
+    }
+
+    private Receipt toReceipt(Order order) {
         List<Receipt.ReceiptLine> lines = order.getOrderLines().stream()
                 .map(line -> Receipt.ReceiptLine.builder()
                         .productName(line.getProductName())
@@ -217,8 +170,15 @@ public class POSService {
                 .build();
     }
 
-    @Transactional
+    /**
+     * Void a sale and return its stock; rerun as a whole if it loses a stock lock conflict
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void voidTransaction(Long orderId, String reason) {
+        stockMutationCoordinator.executeWithoutResult(() -> doVoidTransaction(orderId, reason));
+    }
+
+    private void doVoidTransaction(Long orderId, String reason) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
@@ -227,16 +187,15 @@ public class POSService {
         }
 
         // Return items to inventory
-        for (OrderLine line : order.getOrderLines()) {
-            shopInventoryService.addStock(
-                    order.getShop().getId(),
-                    line.getProduct().getId(),
-                    line.getQuantity()
-            );
-        }
+        stockMutationCoordinator.add(order.getOrderLines().stream()
+                        .map(line -> new StockChange(order.getShop().getId(), line.getProduct().getId(), line.getQuantity()))
+                        .toList(),
+                new StockMovementReason(StockMovementType.VOID, order.getId(), reason));
 
+        OrderStatus oldStatus = order.getStatus();
         order.setStatus(OrderStatus.CANCELLED);
-        orderRepository.save(order);
+        orderRepository.saveAndFlush(order);
+        eventPublisher.publishEvent(OrderChangedEvent.statusChanged(order, oldStatus));
 
         // Create refund accounting entries
         accountancyService.createRefundAccountingEntries(order);
@@ -249,10 +208,5 @@ public class POSService {
         // Hardware integration would go here
     }
 
-    private String generateReceiptNumber() {
-        return "REC-" + System.currentTimeMillis() + "-" +
-                UUID.randomUUID().toString().substring(0, 4).toUpperCase();
-    }
-
 
 }
\ No newline at end of file
@@ -0,0 +1,204 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.selling_price.SellingPrice;
+import com.pos_onlineshop.hybrid.selling_price.SellingPriceRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory, shop-scoped index of active selling prices.
+ *
+ * Each shop is loaded once with all of its active and upcoming prices, grouped by
+ * product and sorted best-first (priority, then price type, then most recent
+ * effectiveFrom). Lookups walk that short array and return the first entry whose
+ * effective window contains the requested time, so promotions start and expire
+ * without a reload. Any price write invalidates the affected shop. Callers get a copy
+ * of the cached price, so changing it never reaches other lookups.
+ *
+ * Shops are loaded on a background thread, never on the caller's: a lookup on a shop
+ * that is not loaded, or whose prices are older than the max age, queues the load and
+ * answers with one keyed query in the caller's own transaction, so a sale never needs a
+ * second connection. A shop is loaded again as soon as a write to it commits.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PriceBook {
+
+    private static final Comparator<SellingPrice> BEST_FIRST = Comparator
+            .comparing(SellingPrice::getPriority, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(sp -> sp.getPriceType().name())
+            .thenComparing(SellingPrice::getEffectiveFrom, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private static final SellingPrice[] NO_PRICES = new SellingPrice[0];
+
+    private final SellingPriceRepository sellingPriceRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${pricebook.max-age:PT10M}")
+    private Duration maxAge;
+
+    private final Map<Long, ShopPrices> shops = new ConcurrentHashMap<>();
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+    private final Set<Long> loading = ConcurrentHashMap.newKeySet();
+
+    private TransactionTemplate loadTemplate;
+    private ExecutorService loader;
+
+    @PostConstruct
+    public void init() {
+        // Prices are loaded in their own read-only transaction, on the loader thread, so the
+        // cached entities never belong to a caller's persistence context
+        loadTemplate = new TransactionTemplate(transactionManager);
+        loadTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        loadTemplate.setReadOnly(true);
+        loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "price-book-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Find the best price for a product in a shop at the given time
+     */
+    public Optional<SellingPrice> findBestPrice(Long shopId, Long productId, LocalDateTime at) {
+        ShopPrices cached = shops.get(shopId);
+        if (cached == null || cached.isOlderThan(maxAge)) {
+            scheduleLoad(shopId);
+            return sellingPriceRepository.findBestPriceByIds(shopId, productId, at).map(PriceBook::copyOf);
+        }
+
+        SellingPrice[] candidates = cached.byProduct.getOrDefault(productId, NO_PRICES);
+        for (SellingPrice candidate : candidates) {
+            if (isEffectiveAt(candidate, at)) {
+                return Optional.of(copyOf(candidate));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Whether the shop's prices are loaded and served from memory
+     */
+    public boolean isLoaded(Long shopId) {
+        ShopPrices cached = shops.get(shopId);
+        return cached != null && !cached.isOlderThan(maxAge);
+    }
+
+    /**
+     * Drop the cached prices for a shop. When called inside a transaction the shop is
+     * invalidated again after commit so a reload racing the write cannot keep stale rows.
+     */
+    public void invalidate(Long shopId) {
+        if (shopId == null) {
+            return;
+        }
+        evict(shopId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(shopId);
+                    scheduleLoad(shopId);
+                }
+            });
+        } else {
+            scheduleLoad(shopId);
+        }
+    }
+
+    /**
+     * Drop the cached prices for every shop
+     */
+    public void invalidateAll() {
+        new ArrayList<>(shops.keySet()).forEach(this::invalidate);
+    }
+
+    private void evict(Long shopId) {
+        generations.merge(shopId, 1L, Long::sum);
+        shops.remove(shopId);
+    }
+
+    /**
+     * Queue a load of the shop unless one is already queued or running
+     */
+    private void scheduleLoad(Long shopId) {
+        if (!loading.add(shopId)) {
+            return;
+        }
+        try {
+            loader.execute(() -> {
+                try {
+                    long generation = generations.getOrDefault(shopId, 0L);
+                    ShopPrices loaded = load(shopId);
+
+                    // Only publish if no write invalidated the shop while we were loading
+                    shops.compute(shopId, (id, current) ->
+                            generations.getOrDefault(id, 0L) == generation ? loaded : current);
+                } catch (Exception e) {
+                    log.error("Failed to load the price book of shop {}", shopId, e);
+                } finally {
+                    loading.remove(shopId);
+                }
+            });
+        } catch (RuntimeException e) {
+            loading.remove(shopId);
+            throw e;
+        }
+    }
+
+    private ShopPrices load(Long shopId) {
+        List<SellingPrice> prices = loadTemplate.execute(status ->
+                sellingPriceRepository.findActiveAndUpcomingByShopIdWithDetails(shopId, LocalDateTime.now()));
+
+        Map<Long, SellingPrice[]> byProduct = prices.stream()
+                .collect(Collectors.groupingBy(sp -> sp.getProduct().getId()))
+                .entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> e.getValue().stream()
+                        .sorted(BEST_FIRST)
+                        .toArray(SellingPrice[]::new)));
+
+        log.debug("Loaded price book for shop {}: {} prices across {} products",
+                shopId, prices.size(), byProduct.size());
+        return new ShopPrices(byProduct, System.nanoTime());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    private static SellingPrice copyOf(SellingPrice price) {
+        return price.toBuilder().taxes(new ArrayList<>(price.getTaxes())).build();
+    }
+
+    private static boolean isEffectiveAt(SellingPrice price, LocalDateTime at) {
+        return (price.getEffectiveFrom() == null || !price.getEffectiveFrom().isAfter(at)) &&
+                (price.getEffectiveTo() == null || !price.getEffectiveTo().isBefore(at));
+    }
+
+    private record ShopPrices(Map<Long, SellingPrice[]> byProduct, long loadedAtNanos) {
+        boolean isOlderThan(Duration age) {
+            return System.nanoTime() - loadedAtNanos > age.toNanos();
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.util.Optional;
 public class ProductService {
 
     private final ProductRepository productRepository;
+    private final StockValuationService stockValuationService;
 
 
     /**
@@ -108,8 +109,11 @@ public class ProductService {
                     if (productDetails.getDescription() != null) {
                         product.setDescription(productDetails.getDescription());
                     }
-                    if (productDetails.getCategory() != null) {
+                    if (productDetails.getCategory() != null
+                            && !productDetails.getCategory().equals(product.getCategory())) {
                         product.setCategory(productDetails.getCategory());
+                        // Stock value reports break shops down by category
+                        stockValuationService.markAllChanged();
                     }
                     if (productDetails.getImageUrl() != null) {
                         product.setImageUrl(productDetails.getImageUrl());
@@ -0,0 +1,206 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.receiptSequence.ReceiptSequence;
+import com.pos_onlineshop.hybrid.receiptSequence.ReceiptSequenceRepository;
+import com.pos_onlineshop.hybrid.shop.Shop;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Allocates order receipt numbers of the form SHOPCODE-yyyyMMdd-000001.
+ *
+ * Each shop has one sequence per business day. A node reserves blocks of numbers from
+ * receipt_sequences and hands them out with a single atomic increment. Reservations run
+ * in short transactions of their own on one background thread, never on a sale's thread,
+ * so a sale never opens a second connection: the next block is reserved once the current
+ * one is partly used, and the first block of tomorrow for every shop that sold today is
+ * reserved before midnight. Only a shop's first sale since the node started waits for its
+ * block to be reserved.
+ *
+ * Numbers are unique across nodes and increase within a node. A block that is only
+ * partly used when a node stops leaves a gap, which is acceptable for order receipts
+ * (fiscal numbering is handled by FiscalCounterAllocator).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReceiptNumberAllocator {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final ReceiptSequenceRepository sequenceRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${receipt.sequence.block-size:50}")
+    private long blockSize;
+
+    @Value("${receipt.sequence.reserve-ahead-at:0.8}")
+    private double reserveAheadAt;
+
+    private final Map<SequenceKey, Block> blocks = new ConcurrentHashMap<>();
+    private final Map<SequenceKey, CompletableFuture<Block>> nextBlocks = new ConcurrentHashMap<>();
+    private final Map<SequenceKey, ReentrantLock> refillLocks = new ConcurrentHashMap<>();
+
+    private TransactionTemplate reserveTemplate;
+    private ExecutorService reserver;
+
+    @PostConstruct
+    public void init() {
+        // Reservations commit on their own so the sequence row is never locked for a whole sale
+        reserveTemplate = new TransactionTemplate(transactionManager);
+        reserveTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        reserver = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "receipt-number-reserver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Next receipt number for a shop on today's business date
+     */
+    public String nextReceiptNumber(Shop shop) {
+        LocalDate businessDate = LocalDate.now();
+        long sequence = next(new SequenceKey(shop.getId(), businessDate));
+        return String.format("%s-%s-%06d", shop.getCode(), businessDate.format(DATE_FORMAT), sequence);
+    }
+
+    /**
+     * Reserve tomorrow's first block for every shop that has sold today, so the first
+     * sales after midnight do not wait for one
+     */
+    @Scheduled(cron = "${receipt.sequence.reserve-tomorrow-cron:0 50 23 * * *}")
+    public void reserveTomorrow() {
+        LocalDate today = LocalDate.now();
+        blocks.keySet().stream()
+                .filter(key -> key.businessDate().equals(today))
+                .forEach(key -> reserveAhead(new SequenceKey(key.shopId(), today.plusDays(1))));
+    }
+
+    private long next(SequenceKey key) {
+        while (true) {
+            Block block = blocks.get(key);
+            if (block != null) {
+                long value = block.next.getAndIncrement();
+                if (value < block.end) {
+                    if (value == block.reserveAheadFrom) {
+                        reserveAhead(key);
+                    }
+                    return value;
+                }
+            }
+            refill(key, block);
+        }
+    }
+
+    /**
+     * Replace a used-up block, or the missing first one, with the next reserved block,
+     * waiting for its reservation if it is still running
+     */
+    private void refill(SequenceKey key, Block usedUp) {
+        ReentrantLock lock = refillLocks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            // Another thread may have refilled while we waited
+            if (blocks.get(key) != usedUp) {
+                return;
+            }
+            if (usedUp == null) {
+                evictPreviousDays(key.businessDate());
+            }
+
+            CompletableFuture<Block> reserved = reserveAhead(key);
+            Block block;
+            try {
+                block = reserved.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            } finally {
+                nextBlocks.remove(key, reserved);
+            }
+            blocks.put(key, block);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start reserving the key's next block on the background thread, unless it already is
+     */
+    private CompletableFuture<Block> reserveAhead(SequenceKey key) {
+        return nextBlocks.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(() -> {
+            long start = reserve(k);
+            long reserveAheadFrom = start + Math.min(blockSize - 1, (long) (blockSize * reserveAheadAt));
+            return new Block(start, start + blockSize, reserveAheadFrom);
+        }, reserver));
+    }
+
+    private long reserve(SequenceKey key) {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            Long start = reserveTemplate.execute(status -> {
+                if (sequenceRepository.advance(key.shopId(), key.businessDate(), blockSize) == 0) {
+                    return null;
+                }
+                return sequenceRepository.findNextValue(key.shopId(), key.businessDate()) - blockSize;
+            });
+            if (start != null) {
+                log.debug("Reserved receipt numbers {}-{} for shop {} on {}",
+                        start, start + blockSize - 1, key.shopId(), key.businessDate());
+                return start;
+            }
+
+            try {
+                reserveTemplate.executeWithoutResult(status -> sequenceRepository.save(ReceiptSequence.builder()
+                        .shopId(key.shopId())
+                        .businessDate(key.businessDate())
+                        .build()));
+            } catch (DataIntegrityViolationException e) {
+                // Another node created the day's row first; reserve from it on the next pass
+            }
+        }
+        throw new IllegalStateException("Could not reserve receipt numbers for shop " + key.shopId()
+                + " on " + key.businessDate());
+    }
+
+    private void evictPreviousDays(LocalDate today) {
+        blocks.keySet().removeIf(key -> key.businessDate().isBefore(today));
+        nextBlocks.keySet().removeIf(key -> key.businessDate().isBefore(today));
+        refillLocks.keySet().removeIf(key -> key.businessDate().isBefore(today));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reserver.shutdownNow();
+    }
+
+    private record SequenceKey(Long shopId, LocalDate businessDate) {
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+        private final long reserveAheadFrom;
+
+        private Block(long start, long end, long reserveAheadFrom) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+            this.reserveAheadFrom = reserveAheadFrom;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.currency.Currency;
+import com.pos_onlineshop.hybrid.currency.CurrencyRepository;
+import com.pos_onlineshop.hybrid.dataExport.JdbcCursor;
+import com.pos_onlineshop.hybrid.dtos.RevenuePoint;
+import com.pos_onlineshop.hybrid.enums.OrderChangeType;
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderChangedEvent;
+import com.pos_onlineshop.hybrid.orders.ScannedOrders;
+import com.pos_onlineshop.hybrid.revenueSeries.*;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owns the revenue time series: loads it from the orders table in the background at
+ * startup and keeps it current from order changes once they commit.
+ *
+ * Revenue is the total of COMPLETED and DELIVERED orders by order time, as in
+ * OrderService. An order moving into those statuses adds its total and moving out of them,
+ * e.g. when voided, takes it back. Until the first load finishes sums are unavailable and
+ * callers fall back to querying orders.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RevenueSeriesService {
+
+    // Every order, so the load knows the version of each it read
+    private static final String LOAD_SQL =
+            "SELECT o.id, o.version, o.status, o.order_date, o.shop_id, o.currency_id, o.total_amount FROM orders o";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CurrencyService currencyService;
+    private final CurrencyRepository currencyRepository;
+
+    @Value("${analytics.revenue-series.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.revenue-series.minute-retention:PT48H}")
+    private Duration minuteRetention;
+
+    @Value("${analytics.revenue-series.hour-retention:P90D}")
+    private Duration hourRetention;
+
+    @Value("${analytics.revenue-series.max-points:5000}")
+    private int maxPoints;
+
+    private final Object applyLock = new Object();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private volatile RevenueBuckets buckets;
+    private volatile boolean loaded;
+    // Non-null while a reload runs; guarded by applyLock
+    private List<RevenueDeltaEvent> appliedDuringLoad;
+
+    @PostConstruct
+    void init() {
+        buckets = newBuckets();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread loader = new Thread(() -> {
+            try {
+                reload();
+            } catch (Exception e) {
+                log.error("Initial revenue series load failed", e);
+            }
+        }, "revenue-series-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Turn an order change into the revenue it adds or takes back: a new or deleted order
+     * counts if it is revenue, and a status change when it moves into or out of the revenue
+     * statuses
+     */
+    @EventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        boolean is = isRevenue(event.order().getStatus());
+        int sign = switch (event.type()) {
+            case CREATED -> is ? 1 : 0;
+            case DELETED -> is ? -1 : 0;
+            case STATUS_CHANGED -> isRevenue(event.oldStatus()) == is ? 0 : is ? 1 : -1;
+            case PAYMENT_METHOD_CHANGED -> 0;
+        };
+        if (sign != 0) {
+            publish(event.order(), sign, event.type() == OrderChangeType.DELETED);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDelta(RevenueDeltaEvent event) {
+        synchronized (applyLock) {
+            apply(buckets, event);
+            if (appliedDuringLoad != null) {
+                appliedDuringLoad.add(event);
+            }
+        }
+    }
+
+    /**
+     * Rebuild the series from the orders table and swap it in. Changes committed while it
+     * runs are captured and those the load did not read, going by order version, are
+     * replayed onto it.
+     */
+    public int reload() {
+        if (!enabled) {
+            throw new RuntimeException("Revenue series is disabled");
+        }
+        if (!reloadLock.tryLock()) {
+            throw new RuntimeException("Revenue series reload already running");
+        }
+        try {
+            long started = System.currentTimeMillis();
+            synchronized (applyLock) {
+                appliedDuringLoad = new ArrayList<>();
+            }
+
+            RevenueBuckets fresh = newBuckets();
+            ScannedOrders read = new ScannedOrders();
+            int[] orders = new int[1];
+            try {
+                jdbcTemplate.query(JdbcCursor.forwardOnly(LOAD_SQL), (RowCallbackHandler) rs -> {
+                    read.add(rs.getLong(1), rs.getLong(2));
+                    String status = rs.getString(3);
+                    if (status != null && isRevenue(OrderStatus.valueOf(status))) {
+                        fresh.add(rs.getObject(5, Long.class), rs.getLong(6), rs.getTimestamp(4).toLocalDateTime(),
+                                cents(rs.getBigDecimal(7)), 1);
+                        orders[0]++;
+                    }
+                });
+            } catch (RuntimeException e) {
+                synchronized (applyLock) {
+                    appliedDuringLoad = null;
+                }
+                throw e;
+            }
+
+            synchronized (applyLock) {
+                read.unread(appliedDuringLoad, RevenueDeltaEvent::orderId, RevenueDeltaEvent::version,
+                                RevenueDeltaEvent::deleted)
+                        .forEach(event -> apply(fresh, event));
+                appliedDuringLoad = null;
+                buckets = fresh;
+            }
+            loaded = true;
+            log.info("Loaded {} orders into the revenue series in {} ms",
+                    orders[0], System.currentTimeMillis() - started);
+            return orders[0];
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.revenue-series.trim-interval-ms:300000}")
+    public void trim() {
+        buckets.trim(LocalDateTime.now());
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Revenue of the orders placed in [from, to) in the given currency, or empty while the
+     * series is not loaded or when an edge falls before the minutes or hours still held
+     */
+    public Optional<BigDecimal> sumRevenue(Long shopId, LocalDateTime from, LocalDateTime to, Currency currency) {
+        if (!loaded) {
+            return Optional.empty();
+        }
+        Optional<List<RevenueTotal>> held = buckets.sum(shopId, from, to);
+        if (held.isEmpty()) {
+            return Optional.empty();
+        }
+        List<RevenueTotal> totals = held.get();
+        Map<Long, BigDecimal> rates = ratesTo(totals.stream().map(RevenueTotal::currencyId).toList(), currency);
+        BigDecimal sum = BigDecimal.ZERO;
+        for (RevenueTotal total : totals) {
+            sum = sum.add(convert(total.amountCents(), total.currencyId(), rates, currency));
+        }
+        return Optional.of(sum);
+    }
+
+    /**
+     * Revenue per bucket of the given resolution over [from, to), oldest first; buckets
+     * without orders are left out
+     */
+    public List<RevenuePoint> getSeries(Long shopId, RevenueResolution resolution, LocalDateTime from,
+                                        LocalDateTime to, Currency currency) {
+        if (!loaded) {
+            throw new RuntimeException("Revenue series is still loading");
+        }
+        if (!to.isAfter(from)) {
+            throw new IllegalArgumentException("Range ends before it starts");
+        }
+        if (Duration.between(from, to).toMinutes() / resolution.minutes() > maxPoints) {
+            throw new IllegalArgumentException("Range has more than " + maxPoints + " "
+                    + resolution.name().toLowerCase(Locale.ROOT) + " buckets");
+        }
+
+        List<RevenueBuckets.Bucket> held = buckets.buckets(shopId, resolution, from, to);
+        Map<Long, BigDecimal> rates = ratesTo(held.stream().map(RevenueBuckets.Bucket::currencyId).toList(), currency);
+        Map<LocalDateTime, RevenuePoint> points = new LinkedHashMap<>();
+        for (RevenueBuckets.Bucket bucket : held) {
+            RevenuePoint point = points.computeIfAbsent(bucket.start(), start -> RevenuePoint.builder()
+                    .start(start)
+                    .revenue(BigDecimal.ZERO)
+                    .build());
+            point.setRevenue(point.getRevenue().add(
+                    convert(bucket.amountCents(), bucket.currencyId(), rates, currency)));
+            point.setOrders(point.getOrders() + bucket.orders());
+        }
+        return new ArrayList<>(points.values());
+    }
+
+    private void publish(Order order, int sign, boolean deleted) {
+        if (!enabled || order.getOrderDate() == null || order.getCurrency() == null) {
+            return;
+        }
+        eventPublisher.publishEvent(new RevenueDeltaEvent(order.getId(),
+                order.getVersion() != null ? order.getVersion() : 0L, deleted, order.getOrderDate(),
+                order.getShop() != null ? order.getShop().getId() : null, order.getCurrency().getId(),
+                sign * cents(order.getTotalAmount()), sign));
+    }
+
+    private static void apply(RevenueBuckets target, RevenueDeltaEvent event) {
+        target.add(event.shopId(), event.currencyId(), event.orderDate(), event.amountCents(), event.orders());
+    }
+
+    /**
+     * Exchange rate into the target of each other currency present, looked up once per query
+     */
+    private Map<Long, BigDecimal> ratesTo(Collection<Long> currencyIds, Currency currency) {
+        Map<Long, BigDecimal> rates = new HashMap<>();
+        for (Currency from : currencyRepository.findAllById(new HashSet<>(currencyIds))) {
+            if (!from.getId().equals(currency.getId())) {
+                rates.put(from.getId(), currencyService.getExchangeRate(from, currency));
+            }
+        }
+        return rates;
+    }
+
+    private static BigDecimal convert(long amountCents, long currencyId, Map<Long, BigDecimal> rates, Currency to) {
+        BigDecimal amount = BigDecimal.valueOf(amountCents, 2);
+        if (currencyId == to.getId()) {
+            return amount;
+        }
+        BigDecimal rate = rates.get(currencyId);
+        if (rate == null) {
+            throw new RuntimeException("No exchange rate from currency " + currencyId + " to " + to.getCode());
+        }
+        return amount.multiply(rate).setScale(to.getDecimalPlaces(), RoundingMode.HALF_UP);
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount != null ? amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact() : 0L;
+    }
+
+    private static boolean isRevenue(OrderStatus status) {
+        return status == OrderStatus.COMPLETED || status == OrderStatus.DELIVERED;
+    }
+
+    private RevenueBuckets newBuckets() {
+        RevenueBuckets fresh = new RevenueBuckets(minuteRetention, hourRetention);
+        fresh.trim(LocalDateTime.now());
+        return fresh;
+    }
+}
@@ -0,0 +1,258 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dataExport.JdbcCursor;
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import com.pos_onlineshop.hybrid.enums.SalesChannel;
+import com.pos_onlineshop.hybrid.orderLines.OrderLine;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderChangedEvent;
+import com.pos_onlineshop.hybrid.orders.ScannedOrders;
+import com.pos_onlineshop.hybrid.salesCube.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owns the in-memory sales cube: loads it from order_lines/orders in the background at
+ * startup and keeps it current from order changes once they commit.
+ *
+ * The cube holds the lines of every order that is not cancelled. Voids, reinstatements
+ * and deletes append lines with negated quantity and amount rather than editing rows.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SalesCubeService {
+
+    // Every order, with or without lines, so the load knows the version of each it read
+    private static final String LOAD_SQL =
+            "SELECT o.id, o.order_date, o.shop_id, p.category, l.product_id, o.payment_method, o.cashier_id, " +
+            "c.code, o.sales_channel, l.quantity, l.unit_price, o.version, o.status, l.id " +
+            "FROM orders o LEFT JOIN order_lines l ON l.order_id = o.id " +
+            "LEFT JOIN currencies c ON c.id = o.currency_id LEFT JOIN products p ON p.id = l.product_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${analytics.cube.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.cube.parallelism:0}")
+    private int parallelism;
+
+    @Value("${analytics.cube.max-groups:100000}")
+    private int maxGroups;
+
+    private final Object appendLock = new Object();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private volatile SalesCube cube = new SalesCube();
+    private volatile LocalDateTime loadedAt;
+    // Non-null while a reload runs; guarded by appendLock
+    private List<SalesCubeLinesEvent> appliedDuringLoad;
+    private ForkJoinPool scanPool;
+
+    @PostConstruct
+    void init() {
+        scanPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread loader = new Thread(() -> {
+            try {
+                reload();
+            } catch (Exception e) {
+                log.error("Initial sales cube load failed", e);
+            }
+        }, "sales-cube-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Turn an order change into the cube lines it adds or takes back. Cancelled orders hold
+     * no lines, so a void takes the order's lines out and a reinstatement adds them again.
+     */
+    @EventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        Order order = event.order();
+        boolean isVoid = order.getStatus() == OrderStatus.CANCELLED;
+        switch (event.type()) {
+            case CREATED -> {
+                if (!isVoid) {
+                    publish(order, order.getPaymentMethod(), 1, false);
+                }
+            }
+            case DELETED -> {
+                if (!isVoid) {
+                    publish(order, order.getPaymentMethod(), -1, true);
+                }
+            }
+            case PAYMENT_METHOD_CHANGED -> {
+                if (!isVoid) {
+                    publish(order, event.oldPaymentMethod(), -1, false);
+                    publish(order, order.getPaymentMethod(), 1, false);
+                }
+            }
+            case STATUS_CHANGED -> {
+                if ((event.oldStatus() == OrderStatus.CANCELLED) != isVoid) {
+                    publish(order, order.getPaymentMethod(), isVoid ? -1 : 1, false);
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onLines(SalesCubeLinesEvent event) {
+        synchronized (appendLock) {
+            cube.appendAll(event.lines());
+            if (appliedDuringLoad != null) {
+                appliedDuringLoad.add(event);
+            }
+        }
+    }
+
+    /**
+     * Rebuild the cube from the database and swap it in; queries keep using the old cube
+     * meanwhile. Changes committed while it runs are captured and those the load did not
+     * read, going by order version, are appended to it.
+     */
+    public int reload() {
+        requireEnabled();
+        if (!reloadLock.tryLock()) {
+            throw new RuntimeException("Sales cube reload already running");
+        }
+        try {
+            long started = System.currentTimeMillis();
+            synchronized (appendLock) {
+                appliedDuringLoad = new ArrayList<>();
+            }
+
+            SalesCube fresh = new SalesCube();
+            ScannedOrders read = new ScannedOrders();
+            try {
+                jdbcTemplate.query(JdbcCursor.forwardOnly(LOAD_SQL), (RowCallbackHandler) rs -> {
+                    read.add(rs.getLong(1), rs.getLong(12));
+                    if (rs.getObject(14) != null && rs.getString(8) != null
+                            && !OrderStatus.CANCELLED.name().equals(rs.getString(13))) {
+                        fresh.append(toLine(rs));
+                    }
+                });
+            } catch (RuntimeException e) {
+                synchronized (appendLock) {
+                    appliedDuringLoad = null;
+                }
+                throw e;
+            }
+
+            synchronized (appendLock) {
+                read.unread(appliedDuringLoad, SalesCubeLinesEvent::orderId, SalesCubeLinesEvent::version,
+                                SalesCubeLinesEvent::deleted)
+                        .forEach(event -> fresh.appendAll(event.lines()));
+                appliedDuringLoad = null;
+                cube = fresh;
+            }
+            loadedAt = LocalDateTime.now();
+            log.info("Loaded {} order lines into the sales cube in {} ms",
+                    fresh.size(), System.currentTimeMillis() - started);
+            return fresh.size();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Run a group-by query. Amounts are in order currency, so unless the query filters on
+     * one currency the result is also grouped by currency.
+     */
+    public CubeResult query(CubeQuery query) {
+        requireEnabled();
+        List<CubeDimension> groupBy = query.groupBy() != null ? new ArrayList<>(query.groupBy()) : new ArrayList<>();
+        if (query.currencyCode() == null && !groupBy.contains(CubeDimension.CURRENCY)) {
+            groupBy.add(CubeDimension.CURRENCY);
+        }
+        return cube.query(new CubeQuery(groupBy, query.from(), query.to(), query.shopId(), query.category(),
+                query.productId(), query.paymentMethod(), query.cashierId(), query.currencyCode(),
+                query.salesChannel()), scanPool, maxGroups);
+    }
+
+    public int size() {
+        return cube.size();
+    }
+
+    public LocalDateTime getLoadedAt() {
+        return loadedAt;
+    }
+
+    private void publish(Order order, PaymentMethod paymentMethod, int sign, boolean deleted) {
+        if (!enabled || order.getOrderDate() == null) {
+            return;
+        }
+        List<SalesCubeLine> lines = new ArrayList<>();
+        for (OrderLine line : order.getOrderLines()) {
+            lines.add(new SalesCubeLine(order.getId(), order.getOrderDate().toLocalDate(),
+                    order.getShop() != null ? order.getShop().getId() : null,
+                    line.getProduct().getCategory(), line.getProduct().getId(), paymentMethod,
+                    order.getCashier() != null ? order.getCashier().getId() : null,
+                    order.getCurrency().getCode(), order.getSalesChannel(),
+                    sign, line.getQuantity() != null ? sign * line.getQuantity() : 0, sign * scaled(line.getSubtotal())));
+        }
+        if (!lines.isEmpty()) {
+            eventPublisher.publishEvent(new SalesCubeLinesEvent(order.getId(),
+                    order.getVersion() != null ? order.getVersion() : 0L, deleted, lines));
+        }
+    }
+
+    private static SalesCubeLine toLine(ResultSet rs) throws SQLException {
+        String paymentMethod = rs.getString(6);
+        String salesChannel = rs.getString(9);
+        int quantity = rs.getInt(10);
+        BigDecimal unitPrice = rs.getBigDecimal(11);
+        return new SalesCubeLine(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime().toLocalDate(),
+                rs.getObject(3, Long.class), rs.getString(4), rs.getLong(5),
+                paymentMethod != null ? PaymentMethod.valueOf(paymentMethod) : null,
+                rs.getObject(7, Long.class), rs.getString(8),
+                salesChannel != null ? SalesChannel.valueOf(salesChannel) : null,
+                1, quantity, unitPrice != null ? scaled(unitPrice.multiply(BigDecimal.valueOf(quantity))) : 0L);
+    }
+
+    private static long scaled(BigDecimal amount) {
+        return amount.setScale(SalesCube.AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private void requireEnabled() {
+        if (!enabled) {
+            throw new RuntimeException("Sales cube is disabled");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scanPool.shutdown();
+    }
+}
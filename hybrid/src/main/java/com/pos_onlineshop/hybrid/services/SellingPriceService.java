@@ -24,8 +24,10 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -37,6 +39,7 @@ public class SellingPriceService {
     private final SellingPriceRepository sellingPriceRepository;
     private final TaxRepository taxRepository;
     private final TaxMapper taxMapper;
+    private final PriceBook priceBook;
 
     /**
      * Create or update a selling price
@@ -55,6 +58,7 @@ public class SellingPriceService {
         }
 
         SellingPrice savedPrice = sellingPriceRepository.save(sellingPrice);
+        priceBook.invalidate(savedPrice.getShop().getId());
         log.info("Created/updated selling price for product {} in shop {}: {}",
                 sellingPrice.getProduct().getId(),
                 sellingPrice.getShop().getId(),
@@ -72,20 +76,17 @@ public class SellingPriceService {
     }
 
     /**
-     * Get the current effective price for a product in a shop
+     * Get the current effective price for a product in a shop, served from the price book
      */
     public Optional<SellingPrice> getCurrentPrice(Product product, Shop shop) {
-        return sellingPriceRepository.findBestPriceByProductAndShop(product, shop, LocalDateTime.now());
+        return priceBook.findBestPrice(shop.getId(), product.getId(), LocalDateTime.now());
     }
 
     /**
-     * Get the current effective price by IDs
+     * Get the current effective price by IDs, served from the price book
      */
     public Optional<SellingPrice> getCurrentPrice(Long productId, Long shopId) {
-        List<SellingPrice> prices = sellingPriceRepository.findByProduct_IdAndShop_IdAndActiveTrue(productId, shopId);
-        return prices.stream()
-                .filter(SellingPrice::isCurrentlyEffective)
-                .findFirst();
+        return priceBook.findBestPrice(shopId, productId, LocalDateTime.now());
     }
 
     /**
@@ -206,7 +207,9 @@ public class SellingPriceService {
 
         price.setSellingPrice(calculateSellingPriceFromMarkup(costPrice, markupPercentage));
 
-        return sellingPriceRepository.save(price);
+        SellingPrice savedPrice = sellingPriceRepository.save(price);
+        priceBook.invalidate(savedPrice.getShop().getId());
+        return savedPrice;
     }
 
     /**
@@ -218,6 +221,7 @@ public class SellingPriceService {
 
         price.setActive(false);
         sellingPriceRepository.save(price);
+        priceBook.invalidate(price.getShop().getId());
 
         log.info("Deactivated selling price: {}", priceId);
     }
@@ -233,6 +237,7 @@ public class SellingPriceService {
         for (SellingPrice price : expiringPrices) {
             price.setActive(false);
             sellingPriceRepository.save(price);
+            priceBook.invalidate(price.getShop().getId());
         }
 
         log.info("Expired {} promotional prices", expiringPrices.size());
@@ -284,6 +289,7 @@ public class SellingPriceService {
         }
 
         sellingPriceRepository.saveAll(prices);
+        priceBook.invalidate(shop.getId());
         log.info("Bulk updated {} prices in shop {} by {}%", prices.size(), shop.getName(), percentage);
     }
 
@@ -294,11 +300,14 @@ public class SellingPriceService {
     public void copyPricesFromShop(Shop sourceShop, Shop targetShop, String createdBy) {
         List<SellingPrice> sourcePrices = sellingPriceRepository.findActiveByShop(sourceShop, LocalDateTime.now());
 
+        // Products copied in this run are not visible to the price book until commit
+        Set<Long> copiedProductIds = new HashSet<>();
+
         for (SellingPrice sourcePrice : sourcePrices) {
             // Check if price already exists for this product in target shop
             Optional<SellingPrice> existingPrice = getCurrentPrice(sourcePrice.getProduct(), targetShop);
 
-            if (existingPrice.isEmpty()) {
+            if (existingPrice.isEmpty() && copiedProductIds.add(sourcePrice.getProduct().getId())) {
                 SellingPrice newPrice = SellingPrice.builder()
                         .product(sourcePrice.getProduct())
                         .shop(targetShop)
@@ -319,6 +328,7 @@ public class SellingPriceService {
             }
         }
 
+        priceBook.invalidate(targetShop.getId());
         log.info("Copied prices from shop {} to shop {}", sourceShop.getName(), targetShop.getName());
     }
 
@@ -377,7 +387,9 @@ public class SellingPriceService {
 
         validateSellingPrice(existingPrice);
 
-        return sellingPriceRepository.save(existingPrice);
+        SellingPrice savedPrice = sellingPriceRepository.save(existingPrice);
+        priceBook.invalidate(savedPrice.getShop().getId());
+        return savedPrice;
     }
 
     /**
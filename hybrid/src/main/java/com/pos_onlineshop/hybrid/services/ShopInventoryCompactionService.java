@@ -0,0 +1,296 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dataExport.ExportFormat;
+import com.pos_onlineshop.hybrid.dataExport.ExportWriter;
+import com.pos_onlineshop.hybrid.dtos.ShopInventoryCompactionResult;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventoryRepository;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventorySnapshot;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventorySnapshotDelta;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventorySnapshotRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compacts the ShopInventory record history.
+ *
+ * Records older than the retention are archived to a gzip-compressed CSV file, folded
+ * into monthly per shop, product and currency snapshots and deleted, a batch per
+ * transaction. The current record of each shop and product, the one shop_inventory_latest
+ * points at, is always kept however old it is, and so is the one before it, which
+ * deleteInventory makes current again with its supplier, pricing and reorder settings.
+ *
+ * A batch is written and synced to the archive before its transaction commits, so a
+ * failed batch can leave rows in the archive that are still in the table; archived rows
+ * keep their record id.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ShopInventoryCompactionService {
+
+    private static final String LATEST_COUNT_SQL = "SELECT COUNT(*) FROM shop_inventory_latest";
+
+    // Records older than the one before the current record
+    private static final String BATCH_SQL =
+            "SELECT si.id, si.shop_id, si.product_id, si.supplier_id, si.currency_id, si.quantity, si.unit_price, " +
+            "si.expiry_date, si.reorder_level, si.min_stock, si.max_stock, si.created_at " +
+            "FROM shop_inventories si " +
+            "JOIN shop_inventory_latest l ON l.shop_id = si.shop_id AND l.product_id = si.product_id " +
+            "WHERE si.id > ? AND si.created_at < ? " +
+            "AND si.id < (SELECT MAX(p.id) FROM shop_inventories p WHERE p.shop_id = si.shop_id " +
+            "AND p.product_id = si.product_id AND p.id < l.shop_inventory_id) " +
+            "ORDER BY si.id LIMIT ?";
+
+    private static final String SNAPSHOT_SQL =
+            "INSERT INTO shop_inventory_snapshots (shop_id, product_id, period_start, currency_id, record_count, " +
+            "quantity, received_value, min_unit_price, max_unit_price, first_added_at, last_added_at, last_record_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE record_count = record_count + VALUES(record_count), " +
+            "quantity = quantity + VALUES(quantity), " +
+            "received_value = received_value + VALUES(received_value), " +
+            "min_unit_price = LEAST(min_unit_price, VALUES(min_unit_price)), " +
+            "max_unit_price = GREATEST(max_unit_price, VALUES(max_unit_price)), " +
+            "first_added_at = LEAST(first_added_at, VALUES(first_added_at)), " +
+            "last_added_at = GREATEST(last_added_at, VALUES(last_added_at)), " +
+            "last_record_id = GREATEST(last_record_id, VALUES(last_record_id))";
+
+    private static final Comparator<ShopInventorySnapshotDelta> KEY_ORDER = Comparator
+            .comparingLong(ShopInventorySnapshotDelta::shopId)
+            .thenComparingLong(ShopInventorySnapshotDelta::productId)
+            .thenComparing(ShopInventorySnapshotDelta::periodStart)
+            .thenComparingLong(ShopInventorySnapshotDelta::currencyId);
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShopInventoryRepository shopInventoryRepository;
+    private final ShopInventorySnapshotRepository snapshotRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${shop-inventory.compaction.enabled:true}")
+    private boolean enabled;
+
+    @Value("${shop-inventory.compaction.retention:P180D}")
+    private Duration retention;
+
+    @Value("${shop-inventory.compaction.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${shop-inventory.compaction.archive-dir:archive/shop-inventories}")
+    private String archiveDir;
+
+    private final ReentrantLock runLock = new ReentrantLock();
+    private TransactionTemplate batchTransaction;
+
+    private record SnapshotKey(long shopId, long productId, LocalDate periodStart, long currencyId) {
+    }
+
+    private record Batch(int records, int snapshots, long lastId) {
+    }
+
+    @PostConstruct
+    void init() {
+        batchTransaction = new TransactionTemplate(transactionManager);
+        batchTransaction.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Fill shop_inventory_latest from the records the first time the application runs
+     * with it
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillLatest() {
+        Long pointers = jdbcTemplate.queryForObject(LATEST_COUNT_SQL, Long.class);
+        if (pointers != null && pointers == 0) {
+            int written = batchTransaction.execute(status -> shopInventoryRepository.rebuildLatest());
+            log.info("Backfilled {} latest shop inventory pointers", written);
+        }
+    }
+
+    @Scheduled(cron = "${shop-inventory.compaction.cron:0 30 2 * * *}")
+    public void compactNightly() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            compactToRetention();
+        } catch (Exception e) {
+            log.error("Shop inventory compaction failed", e);
+        }
+    }
+
+    public ShopInventoryCompactionResult compactToRetention() {
+        return compact(LocalDateTime.now().minus(retention));
+    }
+
+    /**
+     * Compact every record added before the cutoff that is neither the current one of its
+     * shop and product nor the one before it
+     */
+    public ShopInventoryCompactionResult compact(LocalDateTime cutoff) {
+        if (!runLock.tryLock()) {
+            throw new RuntimeException("Shop inventory compaction already running");
+        }
+        try {
+            long started = System.currentTimeMillis();
+            // Pointers written by anything that bypassed recordLatest are repaired first,
+            // so a current record is never taken for history
+            batchTransaction.execute(status -> shopInventoryRepository.rebuildLatest());
+
+            Path archive = Path.of(archiveDir).resolve(
+                    "shop-inventories-" + LocalDateTime.now().format(FILE_TIME) + ".csv.gz");
+            int records = 0;
+            int snapshots = 0;
+            try (Archive out = new Archive(archive)) {
+                long lastId = 0;
+                Batch batch;
+                do {
+                    long after = lastId;
+                    batch = batchTransaction.execute(status -> compactBatch(after, cutoff, out));
+                    records += batch.records();
+                    snapshots += batch.snapshots();
+                    lastId = batch.lastId();
+                } while (batch.records() == batchSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write shop inventory archive " + archive, e);
+            }
+
+            log.info("Compacted {} shop inventory records added before {} into {} snapshots in {} ms",
+                    records, cutoff, snapshots, System.currentTimeMillis() - started);
+            return ShopInventoryCompactionResult.builder()
+                    .cutoff(cutoff)
+                    .recordsCompacted(records)
+                    .snapshotsUpdated(snapshots)
+                    .archiveFile(records > 0 ? archive.toString() : null)
+                    .build();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    /**
+     * Monthly snapshots of a shop's compacted records of one product, oldest first
+     */
+    public List<ShopInventorySnapshot> getSnapshots(Long shopId, Long productId) {
+        return snapshotRepository.findByShopIdAndProductIdOrderByPeriodStartAscCurrencyIdAsc(shopId, productId);
+    }
+
+    private Batch compactBatch(long afterId, LocalDateTime cutoff, Archive archive) {
+        Map<SnapshotKey, ShopInventorySnapshotDelta> deltas = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        jdbcTemplate.query(BATCH_SQL, (RowCallbackHandler) rs -> {
+            archive.write(rs);
+            ShopInventorySnapshotDelta delta = ShopInventorySnapshotDelta.of(rs.getLong(1), rs.getLong(2),
+                    rs.getLong(3), rs.getLong(5), rs.getInt(6), rs.getBigDecimal(7),
+                    rs.getTimestamp(12).toLocalDateTime());
+            deltas.merge(new SnapshotKey(delta.shopId(), delta.productId(), delta.periodStart(), delta.currencyId()),
+                    delta, ShopInventorySnapshotDelta::merge);
+            ids.add(rs.getLong(1));
+        }, afterId, Timestamp.valueOf(cutoff), batchSize);
+        if (ids.isEmpty()) {
+            return new Batch(0, 0, afterId);
+        }
+        archive.sync();
+
+        List<ShopInventorySnapshotDelta> ordered = new ArrayList<>(deltas.values());
+        ordered.sort(KEY_ORDER);
+        jdbcTemplate.batchUpdate(SNAPSHOT_SQL, ordered, ordered.size(), (ps, delta) -> {
+            ps.setLong(1, delta.shopId());
+            ps.setLong(2, delta.productId());
+            ps.setObject(3, delta.periodStart());
+            ps.setLong(4, delta.currencyId());
+            ps.setInt(5, delta.recordCount());
+            ps.setLong(6, delta.quantity());
+            ps.setBigDecimal(7, delta.receivedValue());
+            ps.setBigDecimal(8, delta.minUnitPrice());
+            ps.setBigDecimal(9, delta.maxUnitPrice());
+            ps.setTimestamp(10, Timestamp.valueOf(delta.firstAddedAt()));
+            ps.setTimestamp(11, Timestamp.valueOf(delta.lastAddedAt()));
+            ps.setLong(12, delta.lastRecordId());
+        });
+
+        // Fewer rows deleted than read means another run compacted them first; rolling back
+        // keeps the snapshots from counting them twice
+        int deleted = jdbcTemplate.update("DELETE FROM shop_inventories WHERE id IN ("
+                + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")", ids.toArray());
+        if (deleted != ids.size()) {
+            throw new RuntimeException("Shop inventory records " + ids.get(0) + " to " + ids.get(ids.size() - 1)
+                    + " were compacted concurrently");
+        }
+        return new Batch(ids.size(), ordered.size(), ids.get(ids.size() - 1));
+    }
+
+    /**
+     * The run's archive file, created with the first row written to it
+     */
+    private static final class Archive implements AutoCloseable {
+
+        private final Path path;
+        private FileOutputStream file;
+        private ExportWriter writer;
+
+        Archive(Path path) {
+            this.path = path;
+        }
+
+        void write(ResultSet rs) throws SQLException {
+            try {
+                if (writer == null) {
+                    Files.createDirectories(path.getParent());
+                    file = new FileOutputStream(path.toFile());
+                    writer = ExportWriter.open(ExportFormat.CSV, new GZIPOutputStream(file, GZIP_BUFFER_SIZE, true));
+                    writer.start(rs.getMetaData());
+                }
+                writer.writeRow(rs);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write shop inventory archive " + path, e);
+            }
+        }
+
+        /**
+         * Force the rows written so far to disk, before the batch deleting them commits
+         */
+        void sync() {
+            try {
+                writer.flush();
+                file.getFD().sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to sync shop inventory archive " + path, e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+}
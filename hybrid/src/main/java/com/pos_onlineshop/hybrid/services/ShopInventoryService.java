@@ -4,27 +4,39 @@ package com.pos_onlineshop.hybrid.services;
 import com.pos_onlineshop.hybrid.currency.Currency;
 import com.pos_onlineshop.hybrid.currency.CurrencyRepository;
 import com.pos_onlineshop.hybrid.dtos.CreateShopInventoryRequest;
+import com.pos_onlineshop.hybrid.dtos.ShopInventoryPage;
 import com.pos_onlineshop.hybrid.dtos.ShopInventoryResponse;
 import com.pos_onlineshop.hybrid.dtos.UpdateShopInventoryRequest;
+import com.pos_onlineshop.hybrid.enums.StockMovementType;
 import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotal;
 import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotalRepository;
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
 import com.pos_onlineshop.hybrid.products.Product;
 import com.pos_onlineshop.hybrid.products.ProductRepository;
 import com.pos_onlineshop.hybrid.shop.Shop;
 import com.pos_onlineshop.hybrid.shop.ShopRepository;
 import com.pos_onlineshop.hybrid.shopInventory.ShopInventory;
 import com.pos_onlineshop.hybrid.shopInventory.ShopInventoryRepository;
+import com.pos_onlineshop.hybrid.stockAlerts.StockLevelRemovedEvent;
+import com.pos_onlineshop.hybrid.stockAlerts.StockThresholdsChangedEvent;
+import com.pos_onlineshop.hybrid.stockLedger.StockMovementReason;
 import com.pos_onlineshop.hybrid.suppliers.Suppliers;
 import com.pos_onlineshop.hybrid.suppliers.SuppliersRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -39,13 +51,20 @@ public class ShopInventoryService {
     private final SuppliersRepository suppliersRepository;
     private final CurrencyRepository currencyRepository;
     private final InventoryTotalRepository inventoryTotalRepository;
+    private final StockMutationCoordinator stockMutationCoordinator;
+    private final StockValuationService stockValuationService;
+    private final StockLedgerService stockLedgerService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${shop-inventory.listing.max-page-size:500}")
+    private int maxListingPageSize;
 
     /**
      * Get inventory for a specific shop and product
      */
     @Transactional(readOnly = true)
     public Optional<ShopInventory> getInventory(Shop shop, Product product) {
-        return shopInventoryRepository.findFirstByShopAndProductOrderByIdDesc(shop, product);
+        return shopInventoryRepository.findLatest(shop, product);
     }
 
     /**
@@ -66,57 +85,80 @@ public class ShopInventoryService {
 
     /**
      * Get all inventory items for a shop from InventoryTotal table
-     * This is the primary method for retrieving current inventory levels
+     * This is the primary method for retrieving current inventory levels; read page by page
      */
     @Transactional(readOnly = true)
     public List<ShopInventoryResponse> getShopInventoryFromTotal(Long shopId) {
-        // Query InventoryTotal first as source of truth for stock levels
-        List<InventoryTotal> inventoryTotals = inventoryTotalRepository.findByShopId(shopId);
-
-        return inventoryTotals.stream()
-                .map(inventoryTotal -> {
-                    // Try to find corresponding ShopInventory for additional details
-                    Optional<ShopInventory> shopInventoryOpt = shopInventoryRepository.findFirstByShopAndProductOrderByIdDesc(
-                            inventoryTotal.getShop(), inventoryTotal.getProduct());
-
-                    if (shopInventoryOpt.isPresent()) {
-                        // If ShopInventory exists, use it to build full response
-                        ShopInventory shopInventory = shopInventoryOpt.get();
-                        return ShopInventoryResponse.builder()
-                                .id(shopInventory.getId())
-                                .shopId(inventoryTotal.getShop().getId())
-                                .shopCode(inventoryTotal.getShop().getCode())
-                                .shopName(inventoryTotal.getShop().getName())
-                                .productId(inventoryTotal.getProduct().getId())
-                                .productName(inventoryTotal.getProduct().getName())
-                                .productBarcode(inventoryTotal.getProduct().getBarcode())
-                                .supplierId(shopInventory.getSuppliers() != null ? shopInventory.getSuppliers().getId() : null)
-                                .supplierName(shopInventory.getSuppliers() != null ? shopInventory.getSuppliers().getName() : null)
-                                .quantity(shopInventory.getQuantity())
-                                .totalStock(inventoryTotal.getTotalstock())
-                                .currencyId(shopInventory.getCurrency() != null ? shopInventory.getCurrency().getId() : null)
-                                .currencyCode(shopInventory.getCurrency() != null ? shopInventory.getCurrency().getCode() : null)
-                                .unitPrice(shopInventory.getUnitPrice())
-                                .expiryDate(shopInventory.getExpiryDate())
-                                .reorderLevel(shopInventory.getReorderLevel())
-                                .minStock(shopInventory.getMinStock())
-                                .maxStock(shopInventory.getMaxStock())
-                                .addedAt(shopInventory.getAddedAt())
-                                .build();
-                    } else {
-                        // If no ShopInventory exists, return minimal response from InventoryTotal only
-                        return ShopInventoryResponse.builder()
-                                .shopId(inventoryTotal.getShop().getId())
-                                .shopCode(inventoryTotal.getShop().getCode())
-                                .shopName(inventoryTotal.getShop().getName())
-                                .productId(inventoryTotal.getProduct().getId())
-                                .productName(inventoryTotal.getProduct().getName())
-                                .productBarcode(inventoryTotal.getProduct().getBarcode())
-                                .totalStock(inventoryTotal.getTotalstock())
-                                .build();
-                    }
-                })
-                .collect(Collectors.toList());
+        List<ShopInventoryResponse> responses = new ArrayList<>();
+        Long cursor = null;
+        do {
+            ShopInventoryPage page = getShopInventoryPage(shopId, cursor, maxListingPageSize);
+            responses.addAll(page.getItems());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return responses;
+    }
+
+    /**
+     * One page of a shop's inventory totals by product id, each paired with the latest
+     * ShopInventory record of its product. Two queries per page: the totals with their
+     * shop and product, then the latest records of all the page's products at once.
+     */
+    @Transactional(readOnly = true)
+    public ShopInventoryPage getShopInventoryPage(Long shopId, Long cursor, int limit) {
+        if (limit < 1 || limit > maxListingPageSize) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + maxListingPageSize);
+        }
+
+        // One extra row tells whether another page follows
+        List<InventoryTotal> totals = inventoryTotalRepository.findPageByShopId(
+                shopId, cursor != null ? cursor : 0L, Limit.of(limit + 1));
+        boolean more = totals.size() > limit;
+        if (more) {
+            totals = totals.subList(0, limit);
+        }
+
+        Map<Long, ShopInventory> latest = totals.isEmpty() ? Map.of() : shopInventoryRepository
+                .findLatestByShopIdAndProductIds(shopId, totals.stream().map(it -> it.getProduct().getId()).toList())
+                .stream()
+                .collect(Collectors.toMap(si -> si.getProduct().getId(), Function.identity()));
+
+        List<ShopInventoryResponse> items = totals.stream()
+                .map(inventoryTotal -> toListingResponse(inventoryTotal, latest.get(inventoryTotal.getProduct().getId())))
+                .toList();
+        return ShopInventoryPage.builder()
+                .items(items)
+                .nextCursor(more ? totals.get(totals.size() - 1).getProduct().getId() : null)
+                .build();
+    }
+
+    private ShopInventoryResponse toListingResponse(InventoryTotal inventoryTotal, ShopInventory shopInventory) {
+        ShopInventoryResponse.ShopInventoryResponseBuilder response = ShopInventoryResponse.builder()
+                .shopId(inventoryTotal.getShop().getId())
+                .shopCode(inventoryTotal.getShop().getCode())
+                .shopName(inventoryTotal.getShop().getName())
+                .productId(inventoryTotal.getProduct().getId())
+                .productName(inventoryTotal.getProduct().getName())
+                .productBarcode(inventoryTotal.getProduct().getBarcode())
+                .totalStock(inventoryTotal.getTotalstock());
+        if (shopInventory == null) {
+            // No ShopInventory record: minimal response from InventoryTotal only
+            return response.build();
+        }
+        return response
+                .id(shopInventory.getId())
+                .supplierId(shopInventory.getSuppliers() != null ? shopInventory.getSuppliers().getId() : null)
+                .supplierName(shopInventory.getSuppliers() != null ? shopInventory.getSuppliers().getName() : null)
+                .quantity(shopInventory.getQuantity())
+                .currencyId(shopInventory.getCurrency() != null ? shopInventory.getCurrency().getId() : null)
+                .currencyCode(shopInventory.getCurrency() != null ? shopInventory.getCurrency().getCode() : null)
+                .unitPrice(shopInventory.getUnitPrice())
+                .expiryDate(shopInventory.getExpiryDate())
+                .reorderLevel(shopInventory.getReorderLevel())
+                .minStock(shopInventory.getMinStock())
+                .maxStock(shopInventory.getMaxStock())
+                .addedAt(shopInventory.getAddedAt())
+                .build();
     }
 
     /**
@@ -136,9 +178,15 @@ public class ShopInventoryService {
     }
 
     /**
-     * Add stock with notes - creates audit trail record and updates inventory total
+     * Add stock with notes - records an adjustment in the stock ledger and updates inventory total
      */
     public InventoryTotal addStock(Long shopId, Long productId, Integer additionalQuantity, String notes) {
+        return receiveStock(shopId, productId, additionalQuantity,
+                new StockMovementReason(StockMovementType.ADJUSTMENT, null, notes));
+    }
+
+    private InventoryTotal receiveStock(Long shopId, Long productId, Integer additionalQuantity,
+                                        StockMovementReason reason) {
         // Validate input
         if (additionalQuantity == null || additionalQuantity <= 0) {
             throw new IllegalArgumentException("Additional quantity must be positive, received: " + additionalQuantity);
@@ -169,6 +217,8 @@ public class ShopInventoryService {
         }
 
         InventoryTotal savedTotal = inventoryTotalRepository.save(inventoryTotal);
+        stockLedgerService.record(List.of(new StockChange(shopId, productId, additionalQuantity)), 1, reason);
+        stockValuationService.markChanged(shopId);
 
         log.info("Added {} items to inventory for shop {} and product {}. New total stock: {}",
                 additionalQuantity, shop.getCode(), product.getName(), savedTotal.getTotalstock());
@@ -184,7 +234,7 @@ public class ShopInventoryService {
     }
 
     /**
-     * Reduce stock with notes - creates audit trail record and updates inventory total
+     * Reduce stock with notes - records an adjustment in the stock ledger and updates inventory total
      */
     public InventoryTotal reduceStock(Long shopId, Long productId, Integer quantity, String notes) {
         // Validate input
@@ -192,36 +242,57 @@ public class ShopInventoryService {
             throw new IllegalArgumentException("Quantity must be positive, received: " + quantity);
         }
 
-        // Get shop and product
-        Shop shop = shopRepository.findById(shopId)
-                .orElseThrow(() -> new RuntimeException("Shop not found with id: " + shopId));
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
-
-        // Get inventory total with pessimistic lock
-        Optional<InventoryTotal> inventoryTotalOpt = inventoryTotalRepository.findByShopIdAndProductIdWithLock(shopId, productId);
-
-        if (inventoryTotalOpt.isEmpty()) {
-            throw new RuntimeException("Inventory total not found for shop " + shopId + " and product " + productId);
+        // Check and decrement in one statement; the row is never read under lock
+        int updated = inventoryTotalRepository.decrementIfAvailable(shopId, productId, quantity, LocalDateTime.now());
+        if (updated == 0) {
+            throw stockReductionFailure(shopId, productId, quantity);
         }
+        stockLedgerService.record(List.of(new StockChange(shopId, productId, quantity)), -1,
+                new StockMovementReason(StockMovementType.ADJUSTMENT, null, notes));
+        stockValuationService.markChanged(shopId);
 
-        InventoryTotal inventoryTotal = inventoryTotalOpt.get();
+        InventoryTotal savedTotal = inventoryTotalRepository.findCurrent(shopId, productId)
+                .orElseThrow(() -> new RuntimeException("Inventory total not found for shop " + shopId + " and product " + productId));
 
-        if (inventoryTotal.getTotalstock() < quantity) {
-            throw new RuntimeException("Insufficient stock. Available: " + inventoryTotal.getTotalstock() +
-                    ", Requested: " + quantity);
-        }
+        log.info("Reduced {} items from inventory for shop {} and product {}. New total stock: {}",
+                quantity, shopId, productId, savedTotal.getTotalstock());
 
-        // Update inventory total
-        inventoryTotal.setTotalstock(inventoryTotal.getTotalstock() - quantity);
-        inventoryTotal.setLastUpdated(LocalDateTime.now());
+        return savedTotal;
+    }
 
-        InventoryTotal savedTotal = inventoryTotalRepository.save(inventoryTotal);
+    /**
+     * Reduce stock for several shop/product pairs in one batch, in lock order. Fails on
+     * the first pair that could not be applied; the caller's transaction then rolls back.
+     */
+    public void reduceStock(List<StockChange> changes) {
+        stockMutationCoordinator.reduce(changes, StockMovementReason.of(StockMovementType.ADJUSTMENT, null), shortfall ->
+                stockReductionFailure(shortfall.shopId(), shortfall.productId(), shortfall.quantity()));
 
-        log.info("Reduced {} items from inventory for shop {} and product {}. New total stock: {}",
-                quantity, shop.getCode(), product.getName(), savedTotal.getTotalstock());
+        log.debug("Reduced stock for {} inventory totals in one batch", changes.size());
+    }
 
-        return savedTotal;
+    /**
+     * Work out why a conditional decrement changed no rows
+     */
+    private RuntimeException stockReductionFailure(Long shopId, Long productId, Integer quantity) {
+        if (!shopRepository.existsById(shopId)) {
+            return new RuntimeException("Shop not found with id: " + shopId);
+        }
+        if (!productRepository.existsById(productId)) {
+            return new RuntimeException("Product not found with id: " + productId);
+        }
+        return inventoryTotalRepository.findTotalstock(shopId, productId)
+                .<RuntimeException>map(available -> new RuntimeException("Insufficient stock. Available: " + available +
+                        ", Requested: " + quantity))
+                .orElseGet(() -> new RuntimeException("Inventory total not found for shop " + shopId + " and product " + productId));
+    }
+
+    /**
+     * Tell the stock alert watcher the thresholds of the shop's current record of a product
+     */
+    private void publishThresholds(ShopInventory current) {
+        eventPublisher.publishEvent(new StockThresholdsChangedEvent(current.getShop().getId(),
+                current.getProduct().getId(), current.getReorderLevel(), current.getMinStock()));
     }
 
 
@@ -277,10 +348,17 @@ public class ShopInventoryService {
         }
 
         // Delete shop inventory if it exists
-        Optional<ShopInventory> inventoryOpt = shopInventoryRepository.findFirstByShopAndProductOrderByIdDesc(shop, product);
+        Optional<ShopInventory> inventoryOpt = shopInventoryRepository.findLatest(shop, product);
         if (inventoryOpt.isPresent()) {
+            // The previous record becomes the current one
+            shopInventoryRepository.relinkLatest(shopId, productId, inventoryOpt.get().getId());
             shopInventoryRepository.delete(inventoryOpt.get());
         }
+        stockValuationService.markChanged(shopId);
+        eventPublisher.publishEvent(new StockLevelRemovedEvent(shopId, productId));
+        if (inventoryOpt.isPresent()) {
+            shopInventoryRepository.findLatest(shop, product).ifPresent(this::publishThresholds);
+        }
 
         log.info("Deleted inventory for shop {} and product {}", shop.getCode(), product.getName());
     }
@@ -338,10 +416,14 @@ public class ShopInventoryService {
                 .build();
 
         ShopInventory savedInventory = shopInventoryRepository.save(shopInventory);
+        shopInventoryRepository.recordLatest(savedInventory);
+        stockValuationService.markChanged(shop.getId());
+        publishThresholds(savedInventory);
 
         // Add to inventory total (cumulative tracking)
         if (initialQuantity > 0) {
-            addStock(shop.getId(), product.getId(), initialQuantity);
+            receiveStock(shop.getId(), product.getId(), initialQuantity,
+                    StockMovementReason.of(StockMovementType.RECEIPT, savedInventory.getId()));
             log.info("Created shop inventory record for shop {} and product {}: quantity = {}",
                     shop.getCode(), product.getName(), initialQuantity);
         } else {
@@ -401,6 +483,8 @@ public class ShopInventoryService {
         }
 
         ShopInventory updatedInventory = shopInventoryRepository.save(inventory);
+        stockValuationService.markChanged(shopId);
+        publishThresholds(updatedInventory);
         log.info("Updated shop inventory for shop {} and product {}",
                 inventory.getShop().getCode(), inventory.getProduct().getName());
 
@@ -0,0 +1,53 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dataExport.JdbcCursor;
+import com.pos_onlineshop.hybrid.dtos.ShopStockReport;
+import com.pos_onlineshop.hybrid.shop.Shop;
+import com.pos_onlineshop.hybrid.shopStockReport.ShopStockReportAssembler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+/**
+ * Loads the shop stock report in one streamed query: every inventory total of the shop
+ * with its product and the pricing and stock levels of the product's latest shop
+ * inventory record, instead of looking that record up product by product.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ShopStockReportService {
+
+    static final String REPORT_SQL =
+            "SELECT p.id, p.name, p.barcode, p.sku, p.category, it.totalstock, " +
+            "si.unit_price, si.reorder_level, si.min_stock, si.max_stock " +
+            "FROM inventory_total it " +
+            "JOIN products p ON p.id = it.product_id " +
+            "LEFT JOIN shop_inventory_latest l ON l.shop_id = it.shop_id AND l.product_id = it.product_id " +
+            "LEFT JOIN shop_inventories si ON si.id = l.shop_inventory_id " +
+            "WHERE it.shop_id = ? " +
+            "ORDER BY it.product_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ShopStockReport generate(Shop shop) {
+        long started = System.currentTimeMillis();
+        ShopStockReportAssembler assembler = new ShopStockReportAssembler();
+        jdbcTemplate.query(JdbcCursor.forwardOnly(REPORT_SQL, shop.getId()), (RowCallbackHandler) rs ->
+                assembler.add(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                        rs.getInt(6), rs.getBigDecimal(7), rs.getObject(8, Integer.class),
+                        rs.getObject(9, Integer.class), rs.getObject(10, Integer.class)));
+
+        ShopStockReport report = assembler.toReport()
+                .shopId(shop.getId())
+                .shopName(shop.getName())
+                .shopCode(shop.getCode())
+                .shopType(shop.getType().name())
+                .build();
+        log.debug("Loaded {} stock report rows for shop {} in {} ms",
+                report.getTotalProducts(), shop.getId(), System.currentTimeMillis() - started);
+        return report;
+    }
+}
@@ -0,0 +1,279 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dataExport.JdbcCursor;
+import com.pos_onlineshop.hybrid.dtos.ShopStockAlerts;
+import com.pos_onlineshop.hybrid.dtos.StockAlert;
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
+import com.pos_onlineshop.hybrid.stockAlerts.ShopStockLevels;
+import com.pos_onlineshop.hybrid.stockAlerts.StockLevelRemovedEvent;
+import com.pos_onlineshop.hybrid.stockAlerts.StockMovedEvent;
+import com.pos_onlineshop.hybrid.stockAlerts.StockThresholdsChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Watches stock levels against each product's reorder level and minimum stock.
+ *
+ * The levels of every shop are loaded into memory in the background at startup. Once a
+ * stock change commits, the quantities it moved, or the thresholds it set, are applied to
+ * the levels in memory without reading anything back, and a product whose status changed
+ * is pushed to /topic/shops/{id}/stock-alerts. Moves add up in any order, so changes of
+ * one shop committing side by side need no ordering. The low-stock and out-of-stock
+ * products of a shop, or of every shop, are then answered from memory. Writes that bypass
+ * the stock ledger are picked up by the periodic resync.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockAlertService {
+
+    // Inventory totals with the thresholds of their current inventory record, then the
+    // current records of products without an inventory total
+    private static final String LEVELS_SQL =
+            "SELECT it.shop_id, it.product_id, it.totalstock, si.reorder_level, si.min_stock " +
+            "FROM inventory_total it " +
+            "LEFT JOIN shop_inventory_latest l ON l.shop_id = it.shop_id AND l.product_id = it.product_id " +
+            "LEFT JOIN shop_inventories si ON si.id = l.shop_inventory_id%s " +
+            "UNION ALL " +
+            "SELECT l.shop_id, l.product_id, NULL, si.reorder_level, si.min_stock " +
+            "FROM shop_inventory_latest l " +
+            "JOIN shop_inventories si ON si.id = l.shop_inventory_id " +
+            "WHERE NOT EXISTS (SELECT 1 FROM inventory_total it " +
+            "WHERE it.shop_id = l.shop_id AND it.product_id = l.product_id)%s";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${stock.alerts.enabled:true}")
+    private boolean enabled;
+
+    private final ReentrantLock applyLock = new ReentrantLock();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private volatile Map<Long, ShopStockLevels> shops = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+    // Shop and product ids changed while a reload runs, non-null only then; guarded by applyLock
+    private Map<Long, Set<Long>> changedDuringLoad;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread loader = new Thread(() -> {
+            try {
+                reload();
+            } catch (Exception e) {
+                log.error("Initial stock level load failed", e);
+            }
+        }, "stock-alerts-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    @Scheduled(fixedDelayString = "${stock.alerts.resync-interval-ms:900000}",
+            initialDelayString = "${stock.alerts.resync-interval-ms:900000}")
+    public void resync() {
+        if (!enabled || !loaded) {
+            return;
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("Stock level resync failed", e);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStockMoved(StockMovedEvent event) {
+        for (StockChange change : event.changes()) {
+            int delta = event.sign() * change.quantity();
+            apply(change.shopId(), change.productId(), levels -> levels.adjust(change.productId(), delta));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onThresholdsChanged(StockThresholdsChangedEvent event) {
+        apply(event.shopId(), event.productId(),
+                levels -> levels.setThresholds(event.productId(), event.reorderLevel(), event.minStock()));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStockLevelRemoved(StockLevelRemovedEvent event) {
+        apply(event.shopId(), event.productId(), levels -> {
+            levels.remove(event.productId());
+            return null;
+        });
+    }
+
+    /**
+     * Reload every shop's levels and swap them in. Products changed while loading are read
+     * again afterwards, so a change the load missed is not lost; a change committing while
+     * they are read is settled by the next resync.
+     */
+    public int reload() {
+        if (!enabled) {
+            throw new RuntimeException("Stock alerts are disabled");
+        }
+        if (!reloadLock.tryLock()) {
+            throw new RuntimeException("Stock level reload already running");
+        }
+        try {
+            long started = System.currentTimeMillis();
+            applyLock.lock();
+            try {
+                changedDuringLoad = new HashMap<>();
+            } finally {
+                applyLock.unlock();
+            }
+
+            Map<Long, ShopStockLevels> fresh;
+            int[] rows = new int[1];
+            try {
+                fresh = readLevels(rows);
+            } catch (RuntimeException e) {
+                applyLock.lock();
+                try {
+                    changedDuringLoad = null;
+                } finally {
+                    applyLock.unlock();
+                }
+                throw e;
+            }
+
+            Map<Long, Set<Long>> missed;
+            applyLock.lock();
+            try {
+                missed = changedDuringLoad;
+                changedDuringLoad = null;
+                shops = fresh;
+                loaded = true;
+            } finally {
+                applyLock.unlock();
+            }
+            missed.forEach(this::readBack);
+            log.info("Loaded {} stock levels of {} shops in {} ms",
+                    rows[0], fresh.size(), System.currentTimeMillis() - started);
+            return rows[0];
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Products of the shop currently low on or out of stock
+     */
+    public ShopStockAlerts getAlerts(Long shopId) {
+        if (!loaded) {
+            throw new RuntimeException("Stock levels are still loading");
+        }
+        return alertsOf(shopId, shops.get(shopId));
+    }
+
+    /**
+     * Products low on or out of stock in each shop that has any, by shop id. Until the first
+     * load finishes they are read with one scan instead.
+     */
+    public List<ShopStockAlerts> getAlerts() {
+        Map<Long, ShopStockLevels> current = loaded ? shops : readLevels(new int[1]);
+        return current.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(shop -> alertsOf(shop.getKey(), shop.getValue()))
+                .filter(alerts -> !alerts.getLowStockProductIds().isEmpty()
+                        || !alerts.getOutOfStockProductIds().isEmpty())
+                .toList();
+    }
+
+    private ShopStockAlerts alertsOf(Long shopId, ShopStockLevels levels) {
+        return ShopStockAlerts.builder()
+                .shopId(shopId)
+                .lowStockProductIds(levels != null ? levels.lowStockProductIds() : List.of())
+                .outOfStockProductIds(levels != null ? levels.outOfStockProductIds() : List.of())
+                .build();
+    }
+
+    /**
+     * Apply a committed change of one product to its shop's levels and push the alert it raises
+     */
+    private void apply(Long shopId, Long productId, Function<ShopStockLevels, StockAlert> change) {
+        if (!enabled) {
+            return;
+        }
+        ShopStockLevels levels;
+        applyLock.lock();
+        try {
+            if (changedDuringLoad != null) {
+                changedDuringLoad.computeIfAbsent(shopId, id -> new HashSet<>()).add(productId);
+            }
+            if (!loaded) {
+                return;
+            }
+            levels = shops.computeIfAbsent(shopId, ShopStockLevels::new);
+        } finally {
+            applyLock.unlock();
+        }
+        push(change.apply(levels));
+    }
+
+    private Map<Long, ShopStockLevels> readLevels(int[] rows) {
+        Map<Long, ShopStockLevels> levels = new ConcurrentHashMap<>();
+        jdbcTemplate.query(JdbcCursor.forwardOnly(String.format(LEVELS_SQL, "", "")), (RowCallbackHandler) rs -> {
+            levels.computeIfAbsent(rs.getLong(1), ShopStockLevels::new)
+                    .update(rs.getLong(2), rs.getObject(3, Integer.class), rs.getObject(4, Integer.class),
+                            rs.getObject(5, Integer.class));
+            rows[0]++;
+        });
+        return levels;
+    }
+
+    /**
+     * Read the given products of one shop back from the database, on the reload's thread,
+     * and push the ones that crossed a threshold
+     */
+    private void readBack(Long shopId, Set<Long> productIds) {
+        String in = productIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+        String sql = String.format(LEVELS_SQL, " WHERE it.shop_id = ? AND it.product_id IN (" + in + ")",
+                " AND l.shop_id = ? AND l.product_id IN (" + in + ")");
+        List<Object> params = new ArrayList<>(2 * productIds.size() + 2);
+        for (int branch = 0; branch < 2; branch++) {
+            params.add(shopId);
+            params.addAll(productIds);
+        }
+
+        ShopStockLevels levels = shops.computeIfAbsent(shopId, ShopStockLevels::new);
+        Set<Long> missing = new HashSet<>(productIds);
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            long productId = rs.getLong(2);
+            missing.remove(productId);
+            push(levels.update(productId, rs.getObject(3, Integer.class), rs.getObject(4, Integer.class),
+                    rs.getObject(5, Integer.class)));
+        }, params.toArray());
+        missing.forEach(levels::remove);
+    }
+
+    private void push(StockAlert alert) {
+        if (alert != null) {
+            messagingTemplate.convertAndSend("/topic/shops/" + alert.getShopId() + "/stock-alerts", alert);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.StockAsOfResponse;
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
+import com.pos_onlineshop.hybrid.stockAlerts.StockMovedEvent;
+import com.pos_onlineshop.hybrid.stockLedger.*;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Owns the stock movement ledger.
+ *
+ * Every stock change appends its movements in one JDBC batch inside the transaction that
+ * changes the inventory totals, so the ledger and the totals commit together. Checkpoints
+ * store each shop's balances as of a movement, writing only the products that moved
+ * since the previous one, and stock as of any time is rebuilt from the latest checkpoint
+ * before it plus the movements after that.
+ *
+ * Movement ids and created_at are taken as increasing together. Checkpoints stay the
+ * settle period behind the newest movements, so a movement whose transaction has not
+ * committed yet, or that was stamped by a node with a slightly different clock, is not
+ * passed over.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockLedgerService {
+
+    private static final String OPENING_BALANCE_COUNT_SQL =
+            "SELECT COUNT(*) FROM stock_movements WHERE movement_type = 'OPENING_BALANCE'";
+
+    private static final String OPENING_BALANCE_SQL =
+            "INSERT INTO stock_movements (shop_id, product_id, movement_type, quantity, notes, created_at) " +
+            "SELECT it.shop_id, it.product_id, 'OPENING_BALANCE', it.totalstock - COALESCE(SUM(m.quantity), 0), ?, ? " +
+            "FROM inventory_total it " +
+            "LEFT JOIN stock_movements m ON m.shop_id = it.shop_id AND m.product_id = it.product_id " +
+            "GROUP BY it.shop_id, it.product_id, it.totalstock " +
+            "HAVING it.totalstock - COALESCE(SUM(m.quantity), 0) <> 0";
+
+    private static final String SHOP_IDS_SQL = "SELECT id FROM shops ORDER BY id";
+
+    private static final String BOUNDARY_SQL =
+            "SELECT id, created_at FROM stock_movements WHERE shop_id = ? AND id > ? AND created_at < ? " +
+            "ORDER BY id DESC LIMIT 1";
+
+    private static final String MOVED_SQL =
+            "SELECT product_id, SUM(quantity), MAX(created_at) FROM stock_movements " +
+            "WHERE shop_id = ? AND id > ? AND id <= ? GROUP BY product_id";
+
+    private static final String BALANCES_SQL =
+            "SELECT b.product_id, b.quantity FROM stock_ledger_balances b " +
+            "WHERE b.shop_id = ? AND b.last_movement_id = (SELECT MAX(b2.last_movement_id) FROM stock_ledger_balances b2 " +
+            "WHERE b2.shop_id = b.shop_id AND b2.product_id = b.product_id AND b2.last_movement_id <= ?)";
+
+    private static final String INSERT_BALANCE_SQL =
+            "INSERT INTO stock_ledger_balances (shop_id, product_id, last_movement_id, quantity) VALUES (?, ?, ?, ?)";
+
+    private static final String REPLAY_SQL =
+            "SELECT product_id, SUM(quantity), COUNT(*) FROM stock_movements " +
+            "WHERE shop_id = ? AND id > ? AND id <= ? AND created_at <= ? GROUP BY product_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StockMovementRepository movementRepository;
+    private final StockLedgerCheckpointRepository checkpointRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${stock.ledger.checkpoint-enabled:true}")
+    private boolean checkpointEnabled;
+
+    @Value("${stock.ledger.settle:PT5M}")
+    private Duration settle;
+
+    @Value("${stock.ledger.max-movements:500}")
+    private int maxMovements;
+
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+    private TransactionTemplate shopTransaction;
+
+    private record Boundary(long id, LocalDateTime createdAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        shopTransaction = new TransactionTemplate(transactionManager);
+        shopTransaction.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Record the stock already held when the ledger is first used, so replaying a pair's
+     * movements adds up to its inventory total
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOpeningBalances() {
+        Long openings = jdbcTemplate.queryForObject(OPENING_BALANCE_COUNT_SQL, Long.class);
+        if (openings != null && openings == 0) {
+            int written = shopTransaction.execute(status -> jdbcTemplate.update(OPENING_BALANCE_SQL,
+                    "Stock held before the ledger was started", Timestamp.valueOf(LocalDateTime.now())));
+            log.info("Recorded {} opening stock balances in the ledger", written);
+        }
+    }
+
+    /**
+     * Append the movements of one stock change in the caller's transaction; sign is -1
+     * for stock leaving the shops. The stock alert watcher applies the same quantities
+     * once the transaction commits.
+     */
+    public void record(List<StockChange> changes, int sign, StockMovementReason reason) {
+        movementRepository.appendAll(changes, sign, reason, LocalDateTime.now());
+        eventPublisher.publishEvent(new StockMovedEvent(changes, sign));
+    }
+
+    /**
+     * Latest movements of a shop and product, newest first
+     */
+    public List<StockMovement> getMovements(Long shopId, Long productId, int limit) {
+        if (limit <= 0 || limit > maxMovements) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + maxMovements + ", received: " + limit);
+        }
+        return movementRepository.findByShopIdAndProductIdOrderByIdDesc(shopId, productId, PageRequest.of(0, limit));
+    }
+
+    @Scheduled(fixedDelayString = "${stock.ledger.checkpoint-interval-ms:3600000}",
+            initialDelayString = "${stock.ledger.checkpoint-interval-ms:3600000}")
+    public void checkpointPeriodically() {
+        if (!checkpointEnabled) {
+            return;
+        }
+        try {
+            checkpointAll();
+        } catch (Exception e) {
+            log.error("Stock ledger checkpoint failed", e);
+        }
+    }
+
+    /**
+     * Checkpoint every shop with settled movements since its last checkpoint, a shop per
+     * transaction. Returns the number of checkpoints written.
+     */
+    public int checkpointAll() {
+        if (!checkpointLock.tryLock()) {
+            throw new RuntimeException("Stock ledger checkpoint already running");
+        }
+        try {
+            long started = System.currentTimeMillis();
+            LocalDateTime settledBefore = LocalDateTime.now().minus(settle);
+            int written = 0;
+            for (Long shopId : jdbcTemplate.queryForList(SHOP_IDS_SQL, Long.class)) {
+                if (Boolean.TRUE.equals(shopTransaction.execute(status -> checkpoint(shopId, settledBefore)))) {
+                    written++;
+                }
+            }
+            log.info("Wrote {} stock ledger checkpoints in {} ms", written, System.currentTimeMillis() - started);
+            return written;
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    /**
+     * Stock of every product the shop has had movements for, as of the given time
+     */
+    public StockAsOfResponse stockAsOf(Long shopId, LocalDateTime asOf) {
+        Optional<StockLedgerCheckpoint> from = checkpointRepository
+                .findFirstByShopIdAndMovementsUpToLessThanEqualOrderByLastMovementIdDesc(shopId, asOf);
+        long fromId = from.map(StockLedgerCheckpoint::getLastMovementId).orElse(0L);
+        // Movements after a checkpoint whose last movement is a settle period past asOf were all created after asOf
+        long toId = checkpointRepository
+                .findFirstByShopIdAndLastMovementAtGreaterThanOrderByLastMovementIdAsc(shopId, asOf.plus(settle))
+                .map(StockLedgerCheckpoint::getLastMovementId)
+                .orElse(Long.MAX_VALUE);
+
+        Map<Long, Long> levels = from.isPresent() ? balancesAt(shopId, fromId) : new TreeMap<>();
+        long[] replayed = new long[1];
+        jdbcTemplate.query(REPLAY_SQL, (RowCallbackHandler) rs -> {
+            levels.merge(rs.getLong(1), rs.getLong(2), Long::sum);
+            replayed[0] += rs.getLong(3);
+        }, shopId, fromId, toId, Timestamp.valueOf(asOf));
+
+        return StockAsOfResponse.builder()
+                .shopId(shopId)
+                .asOf(asOf)
+                .checkpointMovementId(from.map(StockLedgerCheckpoint::getLastMovementId).orElse(null))
+                .movementsReplayed(replayed[0])
+                .levels(levels.entrySet().stream()
+                        .map(level -> StockAsOfResponse.StockLevel.builder()
+                                .productId(level.getKey())
+                                .quantity(level.getValue())
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    /**
+     * Write a checkpoint of the shop's movements created before settledBefore, if there
+     * are any since its last one
+     */
+    private boolean checkpoint(Long shopId, LocalDateTime settledBefore) {
+        Optional<StockLedgerCheckpoint> previous = checkpointRepository.findFirstByShopIdOrderByLastMovementIdDesc(shopId);
+        long fromId = previous.map(StockLedgerCheckpoint::getLastMovementId).orElse(0L);
+
+        List<Boundary> boundary = jdbcTemplate.query(BOUNDARY_SQL,
+                (rs, row) -> new Boundary(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime()),
+                shopId, fromId, Timestamp.valueOf(settledBefore));
+        if (boundary.isEmpty()) {
+            return false;
+        }
+        long toId = boundary.get(0).id();
+
+        Map<Long, Long> balances = previous.isPresent() ? balancesAt(shopId, fromId) : new TreeMap<>();
+        Map<Long, Long> moved = new TreeMap<>();
+        LocalDateTime[] upTo = {previous.map(StockLedgerCheckpoint::getMovementsUpTo).orElse(null)};
+        jdbcTemplate.query(MOVED_SQL, (RowCallbackHandler) rs -> {
+            long productId = rs.getLong(1);
+            moved.put(productId, balances.getOrDefault(productId, 0L) + rs.getLong(2));
+            LocalDateTime createdAt = rs.getTimestamp(3).toLocalDateTime();
+            if (upTo[0] == null || createdAt.isAfter(upTo[0])) {
+                upTo[0] = createdAt;
+            }
+        }, shopId, fromId, toId);
+
+        List<Map.Entry<Long, Long>> rows = new ArrayList<>(moved.entrySet());
+        jdbcTemplate.batchUpdate(INSERT_BALANCE_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, shopId);
+            ps.setLong(2, row.getKey());
+            ps.setLong(3, toId);
+            ps.setLong(4, row.getValue());
+        });
+        checkpointRepository.save(StockLedgerCheckpoint.builder()
+                .shopId(shopId)
+                .lastMovementId(toId)
+                .lastMovementAt(boundary.get(0).createdAt())
+                .movementsUpTo(upTo[0])
+                .balancesWritten(rows.size())
+                .createdAt(LocalDateTime.now())
+                .build());
+        return true;
+    }
+
+    /**
+     * Balance of each product of the shop as of the checkpoint ending at the given movement
+     */
+    private Map<Long, Long> balancesAt(Long shopId, long lastMovementId) {
+        Map<Long, Long> balances = new TreeMap<>();
+        jdbcTemplate.query(BALANCES_SQL, (RowCallbackHandler) rs -> balances.put(rs.getLong(1), rs.getLong(2)),
+                shopId, lastMovementId);
+        return balances;
+    }
+}
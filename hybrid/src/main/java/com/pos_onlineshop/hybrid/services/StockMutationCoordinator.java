@@ -0,0 +1,268 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.StockMutationStatsResponse;
+import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotalRepository;
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
+import com.pos_onlineshop.hybrid.stockLedger.StockMovementReason;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Single entry point for changes that touch several stock rows in one transaction.
+ *
+ * Rows are always changed in (shop_id, product_id) order, so two transactions that
+ * share products wait for each other instead of deadlocking. Should the database still
+ * pick a victim (or a lock wait time out), the whole business operation is rerun in a
+ * fresh transaction after a short random backoff. So is an operation whose order was
+ * changed by another transaction after it was read: orders carry a version, and a stale
+ * write is rejected rather than, say, voiding an order twice and returning its stock
+ * twice. The rerun reads the order as it is now. Retrying is only possible where the
+ * coordinator starts the transaction itself, so callers that want it are declared
+ * with SUPPORTS and hand their work to {@link #execute(Supplier)}.
+ *
+ * Each change appends its movements to the stock ledger in the same transaction.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockMutationCoordinator {
+
+    private static final int MYSQL_DEADLOCK = 1213;
+    private static final String SQLSTATE_SERIALIZATION_FAILURE = "40001";
+
+    private static final Comparator<Long> IDS = Comparator.nullsFirst(Comparator.naturalOrder());
+    private static final Comparator<StockChange> LOCK_ORDER = Comparator
+            .comparing(StockChange::shopId, IDS)
+            .thenComparing(StockChange::productId, IDS);
+
+    private final InventoryTotalRepository inventoryTotalRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final StockValuationService stockValuationService;
+    private final StockLedgerService stockLedgerService;
+
+    @Value("${stock.mutation.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${stock.mutation.retry-base-delay-ms:20}")
+    private long retryBaseDelayMs;
+
+    @Value("${stock.mutation.slow-lock-wait-ms:100}")
+    private long slowLockWaitMs;
+
+    private final LongAdder mutations = new LongAdder();
+    private final LongAdder rowsChanged = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
+    private final LongAdder slowLockWaits = new LongAdder();
+    private final LongAdder deadlocks = new LongAdder();
+    private final LongAdder lockTimeouts = new LongAdder();
+    private final LongAdder staleWrites = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder retriesExhausted = new LongAdder();
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Run a stock-changing operation in its own transaction, rerunning it on deadlock or
+     * a stale order write.
+     * Inside an existing transaction the work simply joins it; the outermost caller owns retries.
+     */
+    public <T> T execute(Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (RuntimeException e) {
+                ConcurrencyFailureException lockFailure = findLockFailure(e);
+                if (lockFailure == null) {
+                    throw e;
+                }
+                if (lockFailure instanceof OptimisticLockingFailureException) {
+                    staleWrites.increment();
+                } else if (isDeadlock(lockFailure)) {
+                    deadlocks.increment();
+                } else {
+                    lockTimeouts.increment();
+                }
+                if (attempt >= maxAttempts) {
+                    retriesExhausted.increment();
+                    log.error("Stock mutation still failing after {} attempts: {}", attempt, lockFailure.getMessage());
+                    throw e;
+                }
+
+                retries.increment();
+                long delay = ThreadLocalRandom.current().nextLong(Math.max(1, retryBaseDelayMs << (attempt - 1))) + 1;
+                log.warn("Stock mutation lost a lock conflict (attempt {}), retrying in {} ms", attempt, delay);
+                sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Runnable form of {@link #execute(Supplier)}
+     */
+    public void executeWithoutResult(Runnable work) {
+        execute(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Take stock for several shop/product pairs. Entries for the same pair are merged;
+     * the first pair, in lock order, without enough stock is passed to onShortfall and
+     * the resulting exception is thrown so the transaction rolls back.
+     */
+    public void reduce(List<StockChange> changes, StockMovementReason reason,
+                       Function<StockChange, RuntimeException> onShortfall) {
+        List<StockChange> ordered = inLockOrder(changes);
+        if (ordered.isEmpty()) {
+            return;
+        }
+
+        int[] updated = timed(ordered.size(), () -> inventoryTotalRepository.decrementAllIfAvailable(ordered));
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                throw onShortfall.apply(ordered.get(i));
+            }
+        }
+        stockLedgerService.record(ordered, -1, reason);
+        stockValuationService.markChanged(ordered.stream().map(StockChange::shopId).toList());
+    }
+
+    /**
+     * Put stock back or receive it for several shop/product pairs, creating inventory
+     * totals that do not exist yet
+     */
+    public void add(List<StockChange> changes, StockMovementReason reason) {
+        List<StockChange> ordered = inLockOrder(changes);
+        if (ordered.isEmpty()) {
+            return;
+        }
+
+        timed(ordered.size(), () -> {
+            inventoryTotalRepository.incrementAll(ordered);
+            return null;
+        });
+        stockLedgerService.record(ordered, 1, reason);
+        stockValuationService.markChanged(ordered.stream().map(StockChange::shopId).toList());
+    }
+
+    /**
+     * Apply a per-row action in lock order, for stock that is still changed through
+     * locked entities (the online inventory items)
+     */
+    public <T> void forEachInLockOrder(Collection<T> items, Function<T, Long> shopId,
+                                       Function<T, Long> productId, Consumer<T> action) {
+        List<T> ordered = new ArrayList<>(items);
+        ordered.sort(Comparator.comparing(shopId, IDS).thenComparing(productId, IDS));
+
+        timed(ordered.size(), () -> {
+            ordered.forEach(action);
+            return null;
+        });
+    }
+
+    public StockMutationStatsResponse getStats() {
+        return StockMutationStatsResponse.builder()
+                .mutations(mutations.sum())
+                .rowsChanged(rowsChanged.sum())
+                .lockWaitMillis(TimeUnit.NANOSECONDS.toMillis(lockWaitNanos.sum()))
+                .slowLockWaits(slowLockWaits.sum())
+                .deadlocks(deadlocks.sum())
+                .lockTimeouts(lockTimeouts.sum())
+                .staleWrites(staleWrites.sum())
+                .retries(retries.sum())
+                .retriesExhausted(retriesExhausted.sum())
+                .build();
+    }
+
+    /**
+     * Merge entries for the same shop/product pair and sort them into lock order
+     */
+    private List<StockChange> inLockOrder(List<StockChange> changes) {
+        Map<StockChange, Integer> merged = new TreeMap<>(LOCK_ORDER);
+        for (StockChange change : changes) {
+            if (change.quantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be positive, received: " + change.quantity());
+            }
+            merged.merge(change, change.quantity(), Integer::sum);
+        }
+
+        List<StockChange> ordered = new ArrayList<>(merged.size());
+        merged.forEach((change, quantity) -> ordered.add(new StockChange(change.shopId(), change.productId(), quantity)));
+        return ordered;
+    }
+
+    /**
+     * Time spent in stock statements is dominated by waiting for row locks held by
+     * other transactions, so it is recorded as lock wait
+     */
+    private <T> T timed(int rows, Supplier<T> statements) {
+        long start = System.nanoTime();
+        try {
+            return statements.get();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            mutations.increment();
+            rowsChanged.add(rows);
+            lockWaitNanos.add(elapsed);
+            if (elapsed >= TimeUnit.MILLISECONDS.toNanos(slowLockWaitMs)) {
+                slowLockWaits.increment();
+            }
+        }
+    }
+
+    private ConcurrencyFailureException findLockFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConcurrencyFailureException lockFailure) {
+                return lockFailure;
+            }
+        }
+        return null;
+    }
+
+    private boolean isDeadlock(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException
+                    && (sqlException.getErrorCode() == MYSQL_DEADLOCK
+                    || SQLSTATE_SERIALIZATION_FAILURE.equals(sqlException.getSQLState()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to retry stock mutation", e);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dataExport.JdbcCursor;
+import com.pos_onlineshop.hybrid.stockValuation.ShopStockChangedEvent;
+import com.pos_onlineshop.hybrid.stockValuation.ShopValuation;
+import com.pos_onlineshop.hybrid.stockValuation.StockValuation;
+import com.pos_onlineshop.hybrid.stockValuation.ValuationTask;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Values inventory per shop for the stock summary and stock value reports.
+ *
+ * Each shop is valued by one streamed query that prices its inventory totals at the
+ * latest shop inventory record of each product, and shops are valued in parallel
+ * fork-join tasks whose results are merged. A shop's valuation is cached until a change
+ * to its stock commits.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockValuationService {
+
+    private static final String SHOP_IDS_SQL = "SELECT DISTINCT shop_id FROM inventory_total ORDER BY shop_id";
+
+    private static final String SHOP_SQL =
+            "SELECT it.product_id, it.totalstock, p.category, si.unit_price, si.reorder_level " +
+            "FROM inventory_total it " +
+            "JOIN products p ON p.id = it.product_id " +
+            "LEFT JOIN shop_inventory_latest l ON l.shop_id = it.shop_id AND l.product_id = it.product_id " +
+            "LEFT JOIN shop_inventories si ON si.id = l.shop_inventory_id " +
+            "WHERE it.shop_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${inventory.valuation.parallelism:4}")
+    private int parallelism;
+
+    private record Cached(long generation, ShopValuation valuation) {
+    }
+
+    private final Map<Long, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final Map<Long, Cached> cache = new ConcurrentHashMap<>();
+    private ForkJoinPool valuationPool;
+
+    @PostConstruct
+    void init() {
+        valuationPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Drop a shop's cached valuation once the current transaction commits
+     */
+    public void markChanged(Long shopId) {
+        eventPublisher.publishEvent(new ShopStockChangedEvent(shopId));
+    }
+
+    public void markChanged(Collection<Long> shopIds) {
+        shopIds.stream().distinct().forEach(this::markChanged);
+    }
+
+    /**
+     * Drop every cached valuation once the current transaction commits
+     */
+    public void markAllChanged() {
+        markChanged((Long) null);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStockChanged(ShopStockChangedEvent event) {
+        if (event.shopId() == null) {
+            generations.values().forEach(AtomicLong::incrementAndGet);
+        } else {
+            generationOf(event.shopId()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Value every shop holding inventory totals, in shop id order
+     */
+    public StockValuation valueAllShops() {
+        long started = System.currentTimeMillis();
+        long[] shopIds = jdbcTemplate.queryForList(SHOP_IDS_SQL, Long.class).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        StockValuation valuation = valuationPool.invoke(new ValuationTask(shopIds, this::valueShop));
+        log.debug("Valued {} shops in {} ms", shopIds.length, System.currentTimeMillis() - started);
+        return valuation;
+    }
+
+    /**
+     * A shop's valuation, from the cache unless its stock changed since it was built
+     */
+    public ShopValuation valueShop(long shopId) {
+        // Read before querying, so a change committed meanwhile leaves the entry stale
+        long generation = generationOf(shopId).get();
+        Cached cached = cache.get(shopId);
+        if (cached != null && cached.generation() == generation) {
+            return cached.valuation();
+        }
+
+        ShopValuation valuation = new ShopValuation(shopId);
+        jdbcTemplate.query(JdbcCursor.forwardOnly(SHOP_SQL, shopId), (RowCallbackHandler) rs ->
+                valuation.add(rs.getLong(1), rs.getInt(2), rs.getString(3), rs.getBigDecimal(4),
+                        rs.getObject(5, Integer.class)));
+        cache.put(shopId, new Cached(generation, valuation));
+        return valuation;
+    }
+
+    private AtomicLong generationOf(long shopId) {
+        return generations.computeIfAbsent(shopId, id -> new AtomicLong());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        valuationPool.shutdown();
+    }
+}
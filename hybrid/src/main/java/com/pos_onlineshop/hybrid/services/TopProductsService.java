@@ -0,0 +1,258 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dataExport.JdbcCursor;
+import com.pos_onlineshop.hybrid.dtos.TopProductsReport;
+import com.pos_onlineshop.hybrid.enums.OrderChangeType;
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import com.pos_onlineshop.hybrid.orderLines.OrderLine;
+import com.pos_onlineshop.hybrid.orderLines.OrderLineRepository;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderChangedEvent;
+import com.pos_onlineshop.hybrid.orders.ScannedOrders;
+import com.pos_onlineshop.hybrid.products.Product;
+import com.pos_onlineshop.hybrid.products.ProductRepository;
+import com.pos_onlineshop.hybrid.topProducts.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Answers "best sellers this hour/day/week" per shop from Space-Saving sketches kept
+ * current as sales complete, with an exact mode that groups order lines in the database
+ * for audits.
+ *
+ * A sale counts once its order is COMPLETED or DELIVERED and is taken back out when the
+ * order is voided or deleted; quantity edits after the sale are only reflected by the
+ * exact mode. At startup the sketches are filled from the database in the background and
+ * report incomplete until then.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TopProductsService {
+
+    private static final Set<OrderStatus> SOLD = EnumSet.of(OrderStatus.COMPLETED, OrderStatus.DELIVERED);
+
+    // Every order of the windows held, sold or not, so the load knows the version of each it read
+    private static final String LOAD_SQL =
+            "SELECT o.id, o.shop_id, o.order_date, l.product_id, l.quantity, o.version, o.status " +
+            "FROM orders o LEFT JOIN order_lines l ON l.order_id = o.id " +
+            "WHERE o.order_date >= ?";
+
+    private final OrderLineRepository orderLineRepository;
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${analytics.top-products.capacity:200}")
+    private int capacity;
+
+    @Value("${analytics.top-products.max-limit:100}")
+    private int maxLimit;
+
+    private final Object recordLock = new Object();
+
+    private volatile TopProductsTracker tracker;
+    private volatile boolean loaded;
+    // Non-null while the startup load runs; guarded by recordLock
+    private List<ProductSalesEvent> recordedDuringLoad;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        Thread loader = new Thread(() -> {
+            try {
+                load();
+            } catch (Exception e) {
+                log.error("Loading top product sketches failed", e);
+            }
+        }, "top-products-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Count an order's products as it becomes sold, whether created so as POS sales are or
+     * moved there later, and take them back out when it is voided or deleted
+     */
+    @EventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        boolean sold = SOLD.contains(event.order().getStatus());
+        int sign = switch (event.type()) {
+            case CREATED -> sold ? 1 : 0;
+            case DELETED -> sold ? -1 : 0;
+            case STATUS_CHANGED -> SOLD.contains(event.oldStatus()) == sold ? 0 : sold ? 1 : -1;
+            case PAYMENT_METHOD_CHANGED -> 0;
+        };
+        if (sign != 0) {
+            publish(event.order(), sign, event.type() == OrderChangeType.DELETED);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSale(ProductSalesEvent event) {
+        synchronized (recordLock) {
+            apply(trackerOrNew(), event);
+            if (recordedDuringLoad != null) {
+                recordedDuringLoad.add(event);
+            }
+        }
+    }
+
+    /**
+     * Best sellers of the current window, or of the one before it, for a shop or for all
+     * shops when shopId is null
+     */
+    @Transactional(readOnly = true)
+    public TopProductsReport getTopProducts(Long shopId, TopProductsWindow window, int limit,
+                                            boolean previous, boolean exact) {
+        if (limit < 1 || limit > maxLimit) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + maxLimit);
+        }
+        LocalDateTime from = window.startOf(LocalDateTime.now());
+        if (previous) {
+            from = window.previous(from);
+        }
+        LocalDateTime to = window.next(from);
+
+        TopProductsReport.TopProductsReportBuilder report = TopProductsReport.builder()
+                .shopId(shopId)
+                .window(window)
+                .from(from)
+                .to(to)
+                .exact(exact);
+
+        if (exact) {
+            return report
+                    .complete(true)
+                    .totalQuantity(orderLineRepository.sumQuantity(SOLD, from, to, shopId))
+                    .products(getTopProducts(from, to, shopId, limit))
+                    .build();
+        }
+
+        TopProductsTracker.WindowTop top = trackerOrNew().top(shopId, window, from, limit);
+        Map<Long, String> names = productRepository.findAllById(
+                        top.products().stream().map(HeavyHitter::productId).toList()).stream()
+                .collect(Collectors.toMap(Product::getId, Product::getName));
+        return report
+                .complete(loaded)
+                .totalQuantity(top.totalQuantity())
+                .errorBound(top.errorBound())
+                .products(top.products().stream()
+                        .map(hitter -> TopProductsReport.Item.builder()
+                                .productId(hitter.productId())
+                                .productName(names.get(hitter.productId()))
+                                .quantity(hitter.count())
+                                .maxError(hitter.error())
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    /**
+     * Exact best sellers of any period, grouped in the database
+     */
+    @Transactional(readOnly = true)
+    public List<TopProductsReport.Item> getTopProducts(LocalDateTime from, LocalDateTime to, Long shopId, int limit) {
+        return orderLineRepository.sumQuantityByProduct(SOLD, from, to, shopId, PageRequest.of(0, limit)).stream()
+                .map(row -> TopProductsReport.Item.builder()
+                        .productId((Long) row[0])
+                        .productName((String) row[1])
+                        .quantity(((Number) row[2]).longValue())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * Fill fresh sketches with the sales of every window still held, i.e. since the start
+     * of last week, and swap them in. Sales recorded while it runs are replayed onto it
+     * unless the load read them, going by order version; those of orders older than the
+     * windows fall outside the sketches either way.
+     */
+    void load() {
+        long started = System.currentTimeMillis();
+        LocalDateTime since = TopProductsWindow.WEEK.previous(TopProductsWindow.WEEK.startOf(LocalDateTime.now()));
+        synchronized (recordLock) {
+            recordedDuringLoad = new ArrayList<>();
+        }
+
+        TopProductsTracker fresh = new TopProductsTracker(capacity);
+        ScannedOrders read = new ScannedOrders();
+        long[] lines = new long[1];
+        try {
+            jdbcTemplate.query(JdbcCursor.forwardOnly(LOAD_SQL, since), (RowCallbackHandler) rs -> {
+                read.add(rs.getLong(1), rs.getLong(6));
+                String status = rs.getString(7);
+                if (rs.getObject(4) != null && status != null && SOLD.contains(OrderStatus.valueOf(status))) {
+                    fresh.record(rs.getObject(2, Long.class), rs.getTimestamp(3).toLocalDateTime(),
+                            rs.getLong(4), rs.getInt(5));
+                    lines[0]++;
+                }
+            });
+        } catch (RuntimeException e) {
+            synchronized (recordLock) {
+                recordedDuringLoad = null;
+            }
+            throw e;
+        }
+
+        synchronized (recordLock) {
+            read.unread(recordedDuringLoad, ProductSalesEvent::orderId, ProductSalesEvent::version,
+                            ProductSalesEvent::deleted)
+                    .forEach(event -> apply(fresh, event));
+            recordedDuringLoad = null;
+            tracker = fresh;
+        }
+        loaded = true;
+        log.info("Loaded {} order lines into the top product sketches in {} ms",
+                lines[0], System.currentTimeMillis() - started);
+    }
+
+    private void publish(Order order, int sign, boolean deleted) {
+        if (order.getOrderDate() == null || order.getOrderLines().isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> quantities = order.getOrderLines().stream()
+                .filter(line -> line.getQuantity() != null)
+                .collect(Collectors.toMap(line -> line.getProduct().getId(), OrderLine::getQuantity, Integer::sum));
+        eventPublisher.publishEvent(new ProductSalesEvent(order.getId(),
+                order.getVersion() != null ? order.getVersion() : 0L, deleted,
+                order.getShop() != null ? order.getShop().getId() : null, order.getOrderDate(), quantities, sign));
+    }
+
+    private static void apply(TopProductsTracker target, ProductSalesEvent event) {
+        event.quantities().forEach((productId, quantity) -> {
+            if (event.sign() > 0) {
+                target.record(event.shopId(), event.soldAt(), productId, quantity);
+            } else {
+                target.retract(event.shopId(), event.soldAt(), productId, quantity);
+            }
+        });
+    }
+
+    private TopProductsTracker trackerOrNew() {
+        TopProductsTracker current = tracker;
+        if (current == null) {
+            synchronized (recordLock) {
+                if (tracker == null) {
+                    tracker = new TopProductsTracker(capacity);
+                }
+                current = tracker;
+            }
+        }
+        return current;
+    }
+}
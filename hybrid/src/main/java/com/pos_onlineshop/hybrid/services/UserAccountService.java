@@ -84,6 +84,14 @@ public class UserAccountService implements UserDetailsService {
         return userRepository.findAll();
     }
 
+    public long countUsers() {
+        return userRepository.count();
+    }
+
+    public long countActiveUsers() {
+        return userRepository.countByEnabled(true);
+    }
+
     public List<UserAccount> findByRole(Role role) {
         return userRepository.findByRole(role);
     }
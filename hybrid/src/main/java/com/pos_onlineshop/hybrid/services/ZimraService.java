@@ -43,6 +43,7 @@ public class ZimraService {
     private final OrderRepository orderRepository;
     private final SalesRepository salesRepository;
     private final FiscalisationMapper mapper;
+    private final FiscalCounterAllocator fiscalCounterAllocator;
 
     @Value("${zimra.business.tin:12345678}")
     private String businessTin;
@@ -60,10 +61,12 @@ public class ZimraService {
     private boolean autoFiscalise;
 
     /**
-     * Fiscalise an order transaction
+     * Fiscalise an order transaction. The order stays locked until the device answers, so a
+     * second attempt at the same order waits and then finds it fiscalised rather than
+     * sending it again.
      */
     public FiscalisationResponse fiscaliseOrder(Long orderId, FiscaliseTransactionRequest request) {
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findByIdWithLock(orderId)
             .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
 
         // Check if already fiscalised
@@ -180,36 +183,24 @@ public class ZimraService {
     }
 
     /**
-     * Core fiscalisation logic
+     * Core fiscalisation logic. A document keeps the receipt number it was first given, so
+     * a failed one is retried under the same number. The number is allocated before the
+     * device is tried: an allocation failure rolls the whole fiscalisation back rather than
+     * being recorded as a failed document.
      */
     private FiscalisationResponse performFiscalisation(ZimraFiscalisation fiscalisation, FiscalDevice device) {
+        if (fiscalisation.getReceiptNumber() == null) {
+            assignReceiptNumber(device, fiscalisation);
+        }
         try {
             fiscalisation.setStatus(FiscalStatus.PROCESSING);
             fiscalisation.setFiscalDate(LocalDateTime.now());
 
-            // Generate receipt number from device
-            String receiptNumber = generateReceiptNumber(device, fiscalisation);
-            fiscalisation.setReceiptNumber(receiptNumber);
-
-            // Generate fiscal code (unique identifier)
-            String fiscalCode = generateFiscalCode(fiscalisation);
-            fiscalisation.setFiscalCode(fiscalCode);
-
-            // Generate verification code
-            String verificationCode = generateVerificationCode(fiscalisation);
-            fiscalisation.setVerificationCode(verificationCode);
-
-            // Generate digital signature
-            String signature = generateDigitalSignature(fiscalisation);
-            fiscalisation.setDigitalSignature(signature);
-
-            // Generate QR code data
-            String qrCode = generateQRCodeData(fiscalisation);
-            fiscalisation.setQrCodeData(qrCode);
+            signFiscalDocument(fiscalisation);
+            String fiscalCode = fiscalisation.getFiscalCode();
 
             // Set fiscal memory details
             fiscalisation.setFiscalMemoryNumber(device.getFiscalMemoryId());
-            fiscalisation.setFiscalCounterValue(device.getLastReceiptNumber());
 
             // Simulate device communication
             boolean success = sendToFiscalDevice(fiscalisation, device);
@@ -239,15 +230,34 @@ public class ZimraService {
     }
 
     /**
-     * Generate unique receipt number
+     * Set the fiscal code, verification code, digital signature and QR code data of a
+     * document that already has its receipt number, amounts, device and fiscal date
      */
-    private String generateReceiptNumber(FiscalDevice device, ZimraFiscalisation fiscalisation) {
-        Long nextNumber = device.getNextReceiptNumber();
-        deviceRepository.save(device);
+    public void signFiscalDocument(ZimraFiscalisation fiscalisation) {
+        // Generate fiscal code (unique identifier)
+        fiscalisation.setFiscalCode(generateFiscalCode(fiscalisation));
+
+        // Generate verification code
+        fiscalisation.setVerificationCode(generateVerificationCode(fiscalisation));
+
+        // Generate digital signature
+        fiscalisation.setDigitalSignature(generateDigitalSignature(fiscalisation));
+
+        // Generate QR code data
+        fiscalisation.setQrCodeData(generateQRCodeData(fiscalisation));
+    }
+
+    /**
+     * Give a document the device's next receipt number
+     */
+    private void assignReceiptNumber(FiscalDevice device, ZimraFiscalisation fiscalisation) {
+        long nextNumber = fiscalCounterAllocator.allocate(device.getId());
+        device.setLastReceiptNumber(nextNumber);
 
         String prefix = fiscalisation.getShop().getCode();
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-        return String.format("%s-%s-%08d", prefix, timestamp, nextNumber);
+        fiscalisation.setReceiptNumber(String.format("%s-%s-%08d", prefix, timestamp, nextNumber));
+        fiscalisation.setFiscalCounterValue(nextNumber);
     }
 
     /**
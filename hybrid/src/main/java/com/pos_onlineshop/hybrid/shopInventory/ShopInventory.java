@@ -15,7 +15,9 @@ import java.time.LocalDateTime;
  * Each record represents a stock addition for audit/record-keeping purposes.
  */
 @Entity
-@Table(name = "shop_inventories")
+@Table(name = "shop_inventories", indexes = {
+        @Index(name = "idx_shop_inventories_shop_product", columnList = "shop_id, product_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
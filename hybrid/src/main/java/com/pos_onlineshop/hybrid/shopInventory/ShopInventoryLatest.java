@@ -0,0 +1,41 @@
+package com.pos_onlineshop.hybrid.shopInventory;
+
+import com.pos_onlineshop.hybrid.products.Product;
+import com.pos_onlineshop.hybrid.shop.Shop;
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Points at the most recent ShopInventory record of each shop and product, whose
+ * supplier, pricing and stock levels are the current ones. Lookups of the current
+ * record go through this table instead of the growing per-product record history.
+ */
+@Entity
+@Table(name = "shop_inventory_latest",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_shop_inventory_latest", columnNames = {"shop_id", "product_id"}),
+                @UniqueConstraint(name = "uk_shop_inventory_latest_record", columnNames = "shop_inventory_id")
+        })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode(exclude = {"shop", "product", "record"})
+@ToString(exclude = {"shop", "product", "record"})
+public class ShopInventoryLatest {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "shop_id", nullable = false)
+    private Shop shop;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id", nullable = false)
+    private Product product;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "shop_inventory_id", nullable = false)
+    private ShopInventory record;
+}
@@ -9,32 +9,46 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import jakarta.persistence.LockModeType;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ShopInventoryRepository extends JpaRepository<ShopInventory, Long> {
+public interface ShopInventoryRepository extends JpaRepository<ShopInventory, Long>, ShopInventoryRepositoryCustom {
 
     // Get the most recent shop inventory record for a shop-product combination
-    // This handles cases where multiple records exist (for audit trail purposes)
-    Optional<ShopInventory> findFirstByShopAndProductOrderByIdDesc(Shop shop, Product product);
+    // Read through shop_inventory_latest, so the record history is never scanned
+    @Query("SELECT l.record FROM ShopInventoryLatest l WHERE l.shop = :shop AND l.product = :product")
+    Optional<ShopInventory> findLatest(@Param("shop") Shop shop, @Param("product") Product product);
 
     @Lock(LockModeType.PESSIMISTIC_WRITE)
-    @Query("SELECT si FROM ShopInventory si WHERE si.shop.id = :shopId AND si.product.id = :productId ORDER BY si.id DESC")
+    @Query("SELECT si FROM ShopInventory si WHERE si.id = (SELECT l.record.id FROM ShopInventoryLatest l " +
+            "WHERE l.shop.id = :shopId AND l.product.id = :productId)")
     Optional<ShopInventory> findByShopIdAndProductIdWithLock(
             @Param("shopId") Long shopId,
             @Param("productId") Long productId);
 
+    // Records still held in detail; older ones are folded into shop_inventory_snapshots
     List<ShopInventory> findByShop(Shop shop);
 
+    /**
+     * The most recent record of each of the given products in a shop, with supplier and
+     * currency fetched
+     */
+    @Query("SELECT si FROM ShopInventory si LEFT JOIN FETCH si.suppliers LEFT JOIN FETCH si.currency " +
+            "WHERE si.id IN (SELECT l.record.id FROM ShopInventoryLatest l " +
+            "WHERE l.shop.id = :shopId AND l.product.id IN :productIds)")
+    List<ShopInventory> findLatestByShopIdAndProductIds(@Param("shopId") Long shopId,
+                                                        @Param("productIds") Collection<Long> productIds);
+
     List<ShopInventory> findByProduct(Product product);
 
 
 
-    @Query("SELECT si FROM ShopInventory si WHERE si.shop.type = 'WAREHOUSE' " +
-            "AND si.product.id = :productId ORDER BY si.id DESC")
+    @Query("SELECT l.record FROM ShopInventoryLatest l WHERE l.shop.type = 'WAREHOUSE' " +
+            "AND l.product.id = :productId ORDER BY l.record.id DESC")
     Optional<ShopInventory> findWarehouseInventory(@Param("productId") Long productId);
 
-    @Query("SELECT si.product FROM ShopInventory si WHERE si.shop.id = :shopId")
+    @Query("SELECT l.product FROM ShopInventoryLatest l WHERE l.shop.id = :shopId")
     List<Product> findProductsByShopId(@Param("shopId") Long shopId);
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.pos_onlineshop.hybrid.shopInventory;
+
+/**
+ * Upkeep of the shop_inventory_latest pointers, in plain SQL
+ */
+public interface ShopInventoryRepositoryCustom {
+
+    /**
+     * Point the record's shop and product at it, unless a newer record is already current
+     */
+    void recordLatest(ShopInventory record);
+
+    /**
+     * Point a shop and product at its newest record other than the given one, which is
+     * about to be deleted, or drop the pointer when no other record is left
+     */
+    void relinkLatest(Long shopId, Long productId, Long deletedRecordId);
+
+    /**
+     * Recompute every pointer from the records; returns the number of pointers written
+     */
+    int rebuildLatest();
+}
@@ -0,0 +1,49 @@
+package com.pos_onlineshop.hybrid.shopInventory;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@RequiredArgsConstructor
+public class ShopInventoryRepositoryImpl implements ShopInventoryRepositoryCustom {
+
+    // Under concurrent inserts the highest record id wins whatever the commit order
+    private static final String RECORD_SQL =
+            "INSERT INTO shop_inventory_latest (shop_id, product_id, shop_inventory_id) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE shop_inventory_id = GREATEST(shop_inventory_id, VALUES(shop_inventory_id))";
+
+    private static final String PREVIOUS_SQL =
+            "SELECT MAX(id) FROM shop_inventories WHERE shop_id = ? AND product_id = ? AND id <> ?";
+
+    private static final String RELINK_SQL =
+            "UPDATE shop_inventory_latest SET shop_inventory_id = ? WHERE shop_id = ? AND product_id = ?";
+
+    private static final String UNLINK_SQL = "DELETE FROM shop_inventory_latest WHERE shop_id = ? AND product_id = ?";
+
+    private static final String REBUILD_SQL =
+            "INSERT INTO shop_inventory_latest (shop_id, product_id, shop_inventory_id) " +
+            "SELECT newest.shop_id, newest.product_id, newest.id FROM " +
+            "(SELECT shop_id, product_id, MAX(id) AS id FROM shop_inventories GROUP BY shop_id, product_id) newest " +
+            "ON DUPLICATE KEY UPDATE shop_inventory_id = GREATEST(shop_inventory_id, VALUES(shop_inventory_id))";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void recordLatest(ShopInventory record) {
+        jdbcTemplate.update(RECORD_SQL, record.getShop().getId(), record.getProduct().getId(), record.getId());
+    }
+
+    @Override
+    public void relinkLatest(Long shopId, Long productId, Long deletedRecordId) {
+        Long previous = jdbcTemplate.queryForObject(PREVIOUS_SQL, Long.class, shopId, productId, deletedRecordId);
+        if (previous != null) {
+            jdbcTemplate.update(RELINK_SQL, previous, shopId, productId);
+        } else {
+            jdbcTemplate.update(UNLINK_SQL, shopId, productId);
+        }
+    }
+
+    @Override
+    public int rebuildLatest() {
+        return jdbcTemplate.update(REBUILD_SQL);
+    }
+}
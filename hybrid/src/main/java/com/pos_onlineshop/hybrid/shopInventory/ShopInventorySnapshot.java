@@ -0,0 +1,64 @@
+package com.pos_onlineshop.hybrid.shopInventory;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * ShopInventory records of one shop, product and currency received in one month, folded
+ * together once the records themselves have been compacted away and archived.
+ */
+@Entity
+@Table(name = "shop_inventory_snapshots",
+        uniqueConstraints = @UniqueConstraint(name = "uk_shop_inventory_snapshots",
+                columnNames = {"shop_id", "product_id", "period_start", "currency_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ShopInventorySnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "shop_id", nullable = false)
+    private Long shopId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    /** First day of the month the records were added in */
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Column(name = "currency_id", nullable = false)
+    private Long currencyId;
+
+    @Column(name = "record_count", nullable = false)
+    private Integer recordCount;
+
+    @Column(nullable = false)
+    private Long quantity;
+
+    /** Sum of quantity x unit price over the records */
+    @Column(name = "received_value", nullable = false, precision = 19, scale = 4)
+    private BigDecimal receivedValue;
+
+    @Column(name = "min_unit_price", nullable = false, precision = 19, scale = 4)
+    private BigDecimal minUnitPrice;
+
+    @Column(name = "max_unit_price", nullable = false, precision = 19, scale = 4)
+    private BigDecimal maxUnitPrice;
+
+    @Column(name = "first_added_at", nullable = false)
+    private LocalDateTime firstAddedAt;
+
+    @Column(name = "last_added_at", nullable = false)
+    private LocalDateTime lastAddedAt;
+
+    @Column(name = "last_record_id", nullable = false)
+    private Long lastRecordId;
+}
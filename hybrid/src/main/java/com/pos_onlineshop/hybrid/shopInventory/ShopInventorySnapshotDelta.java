@@ -0,0 +1,30 @@
+package com.pos_onlineshop.hybrid.shopInventory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * ShopInventory records to fold into one snapshot row
+ */
+public record ShopInventorySnapshotDelta(long shopId, long productId, LocalDate periodStart, long currencyId,
+                                         int recordCount, long quantity, BigDecimal receivedValue,
+                                         BigDecimal minUnitPrice, BigDecimal maxUnitPrice,
+                                         LocalDateTime firstAddedAt, LocalDateTime lastAddedAt, long lastRecordId) {
+
+    public static ShopInventorySnapshotDelta of(long recordId, long shopId, long productId, long currencyId,
+                                                int quantity, BigDecimal unitPrice, LocalDateTime addedAt) {
+        return new ShopInventorySnapshotDelta(shopId, productId, addedAt.toLocalDate().withDayOfMonth(1), currencyId,
+                1, quantity, unitPrice.multiply(BigDecimal.valueOf(quantity)), unitPrice, unitPrice,
+                addedAt, addedAt, recordId);
+    }
+
+    public ShopInventorySnapshotDelta merge(ShopInventorySnapshotDelta other) {
+        return new ShopInventorySnapshotDelta(shopId, productId, periodStart, currencyId,
+                recordCount + other.recordCount, quantity + other.quantity, receivedValue.add(other.receivedValue),
+                minUnitPrice.min(other.minUnitPrice), maxUnitPrice.max(other.maxUnitPrice),
+                firstAddedAt.isBefore(other.firstAddedAt) ? firstAddedAt : other.firstAddedAt,
+                lastAddedAt.isAfter(other.lastAddedAt) ? lastAddedAt : other.lastAddedAt,
+                Math.max(lastRecordId, other.lastRecordId));
+    }
+}
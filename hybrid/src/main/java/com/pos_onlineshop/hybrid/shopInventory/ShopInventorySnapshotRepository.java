@@ -0,0 +1,12 @@
+package com.pos_onlineshop.hybrid.shopInventory;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ShopInventorySnapshotRepository extends JpaRepository<ShopInventorySnapshot, Long> {
+
+    List<ShopInventorySnapshot> findByShopIdAndProductIdOrderByPeriodStartAscCurrencyIdAsc(Long shopId, Long productId);
+}
@@ -0,0 +1,78 @@
+package com.pos_onlineshop.hybrid.shopStockReport;
+
+import com.pos_onlineshop.hybrid.dtos.ShopStockReport;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a shop stock report one inventory total at a time, keeping the running totals and
+ * status counts as rows arrive so the rows can be streamed straight from the database.
+ */
+public class ShopStockReportAssembler {
+
+    public static final String OUT_OF_STOCK = "OUT_OF_STOCK";
+    public static final String LOW_STOCK = "LOW_STOCK";
+    public static final String IN_STOCK = "IN_STOCK";
+
+    private final List<ShopStockReport.ProductStockDetail> products = new ArrayList<>();
+    private BigDecimal totalValue = BigDecimal.ZERO;
+    private int totalUnits;
+    private int lowStockCount;
+    private int outOfStockCount;
+
+    /**
+     * Add one inventory total; unitPrice and the levels are null when the product has no
+     * shop inventory record
+     */
+    public void add(long productId, String name, String barcode, String sku, String category, int currentStock,
+                    BigDecimal unitPrice, Integer reorderLevel, Integer minStock, Integer maxStock) {
+        BigDecimal price = unitPrice != null ? unitPrice : BigDecimal.ZERO;
+        BigDecimal productValue = price.multiply(BigDecimal.valueOf(currentStock));
+
+        String stockStatus;
+        if (currentStock <= 0) {
+            stockStatus = OUT_OF_STOCK;
+            outOfStockCount++;
+        } else if (reorderLevel != null && currentStock <= reorderLevel) {
+            stockStatus = LOW_STOCK;
+            lowStockCount++;
+        } else {
+            stockStatus = IN_STOCK;
+        }
+
+        totalValue = totalValue.add(productValue);
+        totalUnits += currentStock;
+
+        products.add(ShopStockReport.ProductStockDetail.builder()
+                .productId(productId)
+                .productName(name)
+                .productBarcode(barcode)
+                .productSku(sku)
+                .category(category)
+                .currentStock(currentStock)
+                .unitPrice(price)
+                .totalValue(productValue)
+                .reorderLevel(reorderLevel)
+                .minStock(minStock)
+                .maxStock(maxStock)
+                .stockStatus(stockStatus)
+                .build());
+    }
+
+    /**
+     * Report builder holding the product rows and totals; the caller adds the shop fields
+     */
+    public ShopStockReport.ShopStockReportBuilder toReport() {
+        return ShopStockReport.builder()
+                .totalProducts(products.size())
+                .totalStockUnits(totalUnits)
+                .totalStockValue(totalValue)
+                .lowStockProductCount(lowStockCount)
+                .outOfStockProductCount(outOfStockCount)
+                .products(products)
+                .generatedAt(LocalDateTime.now());
+    }
+}
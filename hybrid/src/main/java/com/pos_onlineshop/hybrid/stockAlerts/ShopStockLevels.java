@@ -0,0 +1,145 @@
+package com.pos_onlineshop.hybrid.stockAlerts;
+
+import com.pos_onlineshop.hybrid.dtos.StockAlert;
+import com.pos_onlineshop.hybrid.enums.StockLevelStatus;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Last known stock level and status of each product of one shop, with the low-stock and
+ * out-of-stock products kept as sets so they never need a scan. A product whose current
+ * inventory record sets thresholds but that has no inventory total yet is held without
+ * a stock level or status, so stock arriving later is checked against them.
+ */
+public class ShopStockLevels {
+
+    private record Level(Integer stock, Integer reorderLevel, Integer minStock, StockLevelStatus status) {
+    }
+
+    private final long shopId;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Long, Level> levels = new HashMap<>();
+    private final Set<Long> lowStock = new HashSet<>();
+    private final Set<Long> outOfStock = new HashSet<>();
+
+    public ShopStockLevels(long shopId) {
+        this.shopId = shopId;
+    }
+
+    /**
+     * Record a product's level as read from the database; stock is null when it has no
+     * inventory total. Returns the alert when its status changed, or when a product seen
+     * for the first time is not in stock; null otherwise.
+     */
+    public StockAlert update(long productId, Integer stock, Integer reorderLevel, Integer minStock) {
+        lock.lock();
+        try {
+            return put(productId, stock, reorderLevel, minStock);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Move a product's stock by delta. A product without a stock level has just had its
+     * inventory total created, starting from zero.
+     */
+    public StockAlert adjust(long productId, int delta) {
+        lock.lock();
+        try {
+            Level previous = levels.get(productId);
+            if (previous == null) {
+                return put(productId, delta, null, null);
+            }
+            int stock = previous.stock() != null ? previous.stock() : 0;
+            return put(productId, stock + delta, previous.reorderLevel(), previous.minStock());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check a product's stock against new thresholds
+     */
+    public StockAlert setThresholds(long productId, Integer reorderLevel, Integer minStock) {
+        lock.lock();
+        try {
+            Level previous = levels.get(productId);
+            return put(productId, previous != null ? previous.stock() : null, reorderLevel, minStock);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forget a product whose inventory is gone
+     */
+    public void remove(long productId) {
+        lock.lock();
+        try {
+            Level previous = levels.remove(productId);
+            if (previous != null) {
+                track(productId, previous.status(), false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Long> lowStockProductIds() {
+        lock.lock();
+        try {
+            return lowStock.stream().sorted().toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public List<Long> outOfStockProductIds() {
+        lock.lock();
+        try {
+            return outOfStock.stream().sorted().toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private StockAlert put(long productId, Integer stock, Integer reorderLevel, Integer minStock) {
+        StockLevelStatus status = stock != null ? StockLevelStatus.of(stock, reorderLevel, minStock) : null;
+        Level previous = levels.put(productId, new Level(stock, reorderLevel, minStock, status));
+        StockLevelStatus previousStatus = previous != null ? previous.status() : null;
+        if (status == previousStatus) {
+            return null;
+        }
+
+        track(productId, previousStatus, false);
+        track(productId, status, true);
+        if (status == null || previousStatus == null && status == StockLevelStatus.IN_STOCK) {
+            return null;
+        }
+        return StockAlert.builder()
+                .shopId(shopId)
+                .productId(productId)
+                .previousStatus(previousStatus)
+                .status(status)
+                .currentStock(stock)
+                .reorderLevel(reorderLevel)
+                .minStock(minStock)
+                .at(LocalDateTime.now())
+                .build();
+    }
+
+    private void track(long productId, StockLevelStatus status, boolean add) {
+        Set<Long> target = status == StockLevelStatus.OUT_OF_STOCK ? outOfStock
+                : status != null && status.isLow() ? lowStock : null;
+        if (target != null) {
+            if (add) {
+                target.add(productId);
+            } else {
+                target.remove(productId);
+            }
+        }
+    }
+}
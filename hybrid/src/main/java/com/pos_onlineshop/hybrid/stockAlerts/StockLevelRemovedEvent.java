@@ -0,0 +1,7 @@
+package com.pos_onlineshop.hybrid.stockAlerts;
+
+/**
+ * A product's inventory of a shop was deleted
+ */
+public record StockLevelRemovedEvent(Long shopId, Long productId) {
+}
@@ -0,0 +1,12 @@
+package com.pos_onlineshop.hybrid.stockAlerts;
+
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
+
+import java.util.List;
+
+/**
+ * Stock of some shop/product pairs moved by the given quantities; sign is -1 for stock
+ * leaving the shops
+ */
+public record StockMovedEvent(List<StockChange> changes, int sign) {
+}
@@ -0,0 +1,8 @@
+package com.pos_onlineshop.hybrid.stockAlerts;
+
+/**
+ * The current shop inventory record of a product, and so its reorder level and minimum
+ * stock, changed
+ */
+public record StockThresholdsChangedEvent(Long shopId, Long productId, Integer reorderLevel, Integer minStock) {
+}
@@ -0,0 +1,33 @@
+package com.pos_onlineshop.hybrid.stockLedger;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Stock of a shop and product as of a checkpoint's last movement
+ */
+@Entity
+@Table(name = "stock_ledger_balances",
+        uniqueConstraints = @UniqueConstraint(name = "uk_stock_ledger_balances",
+                columnNames = {"shop_id", "product_id", "last_movement_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockLedgerBalance {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "shop_id", nullable = false)
+    private Long shopId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "last_movement_id", nullable = false)
+    private Long lastMovementId;
+
+    @Column(nullable = false)
+    private Long quantity;
+}
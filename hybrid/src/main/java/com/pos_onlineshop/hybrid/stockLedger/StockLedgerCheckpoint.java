@@ -0,0 +1,46 @@
+package com.pos_onlineshop.hybrid.stockLedger;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A shop's stock as of one movement. The balances written with it only cover the
+ * products that moved since the shop's previous checkpoint; the others keep the balance
+ * of an earlier one.
+ */
+@Entity
+@Table(name = "stock_ledger_checkpoints",
+        uniqueConstraints = @UniqueConstraint(name = "uk_stock_ledger_checkpoints",
+                columnNames = {"shop_id", "last_movement_id"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockLedgerCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "shop_id", nullable = false)
+    private Long shopId;
+
+    /** Last movement of the shop included */
+    @Column(name = "last_movement_id", nullable = false)
+    private Long lastMovementId;
+
+    /** created_at of the last movement; later movements of the shop were created after it */
+    @Column(name = "last_movement_at", nullable = false)
+    private LocalDateTime lastMovementAt;
+
+    /** Latest created_at of the movements included */
+    @Column(name = "movements_up_to", nullable = false)
+    private LocalDateTime movementsUpTo;
+
+    @Column(name = "balances_written", nullable = false)
+    private Integer balancesWritten;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
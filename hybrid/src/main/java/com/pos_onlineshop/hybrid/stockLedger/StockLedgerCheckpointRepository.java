@@ -0,0 +1,25 @@
+package com.pos_onlineshop.hybrid.stockLedger;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface StockLedgerCheckpointRepository extends JpaRepository<StockLedgerCheckpoint, Long> {
+
+    Optional<StockLedgerCheckpoint> findFirstByShopIdOrderByLastMovementIdDesc(Long shopId);
+
+    /**
+     * Latest checkpoint of the shop made only of movements created up to the given time
+     */
+    Optional<StockLedgerCheckpoint> findFirstByShopIdAndMovementsUpToLessThanEqualOrderByLastMovementIdDesc(
+            Long shopId, LocalDateTime upTo);
+
+    /**
+     * Earliest checkpoint of the shop whose last movement was created after the given time
+     */
+    Optional<StockLedgerCheckpoint> findFirstByShopIdAndLastMovementAtGreaterThanOrderByLastMovementIdAsc(
+            Long shopId, LocalDateTime after);
+}
@@ -0,0 +1,51 @@
+package com.pos_onlineshop.hybrid.stockLedger;
+
+import com.pos_onlineshop.hybrid.enums.StockMovementType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One change to a shop's stock of a product. Rows are only ever appended; the sum of a
+ * pair's quantities is its stock. Shops and products are held by id so an insert does not
+ * check foreign keys.
+ */
+@Entity
+@Table(name = "stock_movements", indexes = {
+        @Index(name = "idx_stock_movements_shop", columnList = "shop_id, id"),
+        @Index(name = "idx_stock_movements_shop_product", columnList = "shop_id, product_id, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockMovement {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "shop_id", nullable = false)
+    private Long shopId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "movement_type", nullable = false, length = 20)
+    private StockMovementType movementType;
+
+    /** Signed change: negative when stock left the shop */
+    @Column(nullable = false)
+    private Integer quantity;
+
+    /** Order or transfer the movement belongs to, or the inventory record for receipts */
+    @Column(name = "reference_id")
+    private Long referenceId;
+
+    @Column(length = 500)
+    private String notes;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
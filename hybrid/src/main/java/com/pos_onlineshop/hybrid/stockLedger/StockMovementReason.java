@@ -0,0 +1,13 @@
+package com.pos_onlineshop.hybrid.stockLedger;
+
+import com.pos_onlineshop.hybrid.enums.StockMovementType;
+
+/**
+ * Type, reference and notes recorded with every movement of one stock change
+ */
+public record StockMovementReason(StockMovementType type, Long referenceId, String notes) {
+
+    public static StockMovementReason of(StockMovementType type, Long referenceId) {
+        return new StockMovementReason(type, referenceId, null);
+    }
+}
@@ -0,0 +1,13 @@
+package com.pos_onlineshop.hybrid.stockLedger;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StockMovementRepository extends JpaRepository<StockMovement, Long>, StockMovementRepositoryCustom {
+
+    List<StockMovement> findByShopIdAndProductIdOrderByIdDesc(Long shopId, Long productId, Pageable pageable);
+}
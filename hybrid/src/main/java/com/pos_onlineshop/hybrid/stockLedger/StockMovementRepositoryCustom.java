@@ -0,0 +1,18 @@
+package com.pos_onlineshop.hybrid.stockLedger;
+
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Ledger writes that bypass entity persistence
+ */
+public interface StockMovementRepositoryCustom {
+
+    /**
+     * Append one movement per change in a single JDBC batch. The quantities are
+     * multiplied by sign, so stock leaving the shop is passed with -1.
+     */
+    void appendAll(List<StockChange> changes, int sign, StockMovementReason reason, LocalDateTime createdAt);
+}
@@ -0,0 +1,42 @@
+package com.pos_onlineshop.hybrid.stockLedger;
+
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class StockMovementRepositoryImpl implements StockMovementRepositoryCustom {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO stock_movements (shop_id, product_id, movement_type, quantity, reference_id, notes, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void appendAll(List<StockChange> changes, int sign, StockMovementReason reason, LocalDateTime createdAt) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        Timestamp at = Timestamp.valueOf(createdAt);
+        jdbcTemplate.batchUpdate(INSERT_SQL, changes, changes.size(), (ps, change) -> {
+            ps.setLong(1, change.shopId());
+            ps.setLong(2, change.productId());
+            ps.setString(3, reason.type().name());
+            ps.setInt(4, sign * change.quantity());
+            if (reason.referenceId() != null) {
+                ps.setLong(5, reason.referenceId());
+            } else {
+                ps.setNull(5, Types.BIGINT);
+            }
+            ps.setString(6, reason.notes());
+            ps.setTimestamp(7, at);
+        });
+    }
+}
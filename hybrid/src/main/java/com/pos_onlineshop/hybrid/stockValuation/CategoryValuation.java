@@ -0,0 +1,48 @@
+package com.pos_onlineshop.hybrid.stockValuation;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+
+/**
+ * Stock value, units and distinct products of one category
+ */
+public class CategoryValuation {
+
+    private BigDecimal value = BigDecimal.ZERO;
+    private long units;
+    private final BitSet products = new BitSet();
+
+    void add(long productId, int stock, BigDecimal lineValue) {
+        value = value.add(lineValue);
+        units += stock;
+        products.set(Math.toIntExact(productId));
+    }
+
+    CategoryValuation copy() {
+        CategoryValuation copy = new CategoryValuation();
+        copy.merge(this);
+        return copy;
+    }
+
+    void merge(CategoryValuation other) {
+        value = value.add(other.value);
+        units += other.units;
+        products.or(other.products);
+    }
+
+    BitSet products() {
+        return products;
+    }
+
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public int getProductCount() {
+        return products.cardinality();
+    }
+}
@@ -0,0 +1,8 @@
+package com.pos_onlineshop.hybrid.stockValuation;
+
+/**
+ * Stock, prices or reorder levels of a shop changed; shopId is null when every shop may
+ * be affected, e.g. after a product moved category
+ */
+public record ShopStockChangedEvent(Long shopId) {
+}
@@ -0,0 +1,85 @@
+package com.pos_onlineshop.hybrid.stockValuation;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stock value of one shop: its inventory totals priced at the latest shop inventory
+ * record of each product. Built once per shop and then only read, so it can be cached
+ * and shared between reports.
+ */
+public class ShopValuation {
+
+    public static final String UNCATEGORIZED = "Uncategorized";
+
+    private final long shopId;
+    private BigDecimal value = BigDecimal.ZERO;
+    private long units;
+    private int productCount;
+    private int stockedProductCount;
+    private int lowStockCount;
+    private int outOfStockCount;
+    private final Map<String, CategoryValuation> categories = new TreeMap<>();
+
+    public ShopValuation(long shopId) {
+        this.shopId = shopId;
+    }
+
+    /**
+     * Add one inventory total; unitPrice and reorderLevel are null when the product has
+     * no shop inventory record
+     */
+    public void add(long productId, int stock, String category, BigDecimal unitPrice, Integer reorderLevel) {
+        BigDecimal lineValue = unitPrice != null ? unitPrice.multiply(BigDecimal.valueOf(stock)) : BigDecimal.ZERO;
+        value = value.add(lineValue);
+        units += stock;
+        productCount++;
+        if (stock > 0) {
+            stockedProductCount++;
+            if (reorderLevel != null && stock <= reorderLevel) {
+                lowStockCount++;
+            }
+        } else if (stock == 0) {
+            outOfStockCount++;
+        }
+        categories.computeIfAbsent(category != null ? category : UNCATEGORIZED, key -> new CategoryValuation())
+                .add(productId, stock, lineValue);
+    }
+
+    public long getShopId() {
+        return shopId;
+    }
+
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    /**
+     * Inventory totals of the shop, whatever their stock
+     */
+    public int getProductCount() {
+        return productCount;
+    }
+
+    public int getStockedProductCount() {
+        return stockedProductCount;
+    }
+
+    public int getLowStockCount() {
+        return lowStockCount;
+    }
+
+    public int getOutOfStockCount() {
+        return outOfStockCount;
+    }
+
+    Map<String, CategoryValuation> categories() {
+        return Collections.unmodifiableMap(categories);
+    }
+}
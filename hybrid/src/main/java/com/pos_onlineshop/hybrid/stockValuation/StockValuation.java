@@ -0,0 +1,80 @@
+package com.pos_onlineshop.hybrid.stockValuation;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Stock value of several shops, merged from their shop valuations. Shops are kept
+ * individually and categories are summed across them.
+ */
+public class StockValuation {
+
+    private final List<ShopValuation> shops = new ArrayList<>();
+    private final Map<String, CategoryValuation> categories = new TreeMap<>();
+    private BigDecimal value = BigDecimal.ZERO;
+    private long units;
+    private int lowStockCount;
+    private int outOfStockCount;
+
+    public static StockValuation of(ShopValuation shop) {
+        StockValuation valuation = new StockValuation();
+        valuation.shops.add(shop);
+        shop.categories().forEach((category, partial) -> valuation.categories.put(category, partial.copy()));
+        valuation.value = shop.getValue();
+        valuation.units = shop.getUnits();
+        valuation.lowStockCount = shop.getLowStockCount();
+        valuation.outOfStockCount = shop.getOutOfStockCount();
+        return valuation;
+    }
+
+    /**
+     * Add another valuation of different shops to this one
+     */
+    public StockValuation merge(StockValuation other) {
+        shops.addAll(other.shops);
+        other.categories.forEach((category, partial) -> categories.merge(category, partial, (mine, theirs) -> {
+            mine.merge(theirs);
+            return mine;
+        }));
+        value = value.add(other.value);
+        units += other.units;
+        lowStockCount += other.lowStockCount;
+        outOfStockCount += other.outOfStockCount;
+        return this;
+    }
+
+    public List<ShopValuation> getShops() {
+        return shops;
+    }
+
+    /**
+     * Per category totals, by category name
+     */
+    public Map<String, CategoryValuation> getCategories() {
+        return categories;
+    }
+
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    /**
+     * Distinct products stocked in any shop; a product belongs to one category, so this
+     * is the sum over categories
+     */
+    public int getProductCount() {
+        return categories.values().stream().mapToInt(CategoryValuation::getProductCount).sum();
+    }
+
+    public int getLowStockCount() {
+        return lowStockCount;
+    }
+
+    public int getOutOfStockCount() {
+        return outOfStockCount;
+    }
+}
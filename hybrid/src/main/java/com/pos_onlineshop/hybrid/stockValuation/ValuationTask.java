@@ -0,0 +1,43 @@
+package com.pos_onlineshop.hybrid.stockValuation;
+
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongFunction;
+
+/**
+ * Values a range of shops by splitting it in halves down to single shops and merging
+ * the halves' valuations on the way back up
+ */
+public class ValuationTask extends RecursiveTask<StockValuation> {
+
+    private final long[] shopIds;
+    private final int from;
+    private final int to;
+    private final LongFunction<ShopValuation> valuer;
+
+    public ValuationTask(long[] shopIds, LongFunction<ShopValuation> valuer) {
+        this(shopIds, 0, shopIds.length, valuer);
+    }
+
+    private ValuationTask(long[] shopIds, int from, int to, LongFunction<ShopValuation> valuer) {
+        this.shopIds = shopIds;
+        this.from = from;
+        this.to = to;
+        this.valuer = valuer;
+    }
+
+    @Override
+    protected StockValuation compute() {
+        if (to - from == 0) {
+            return new StockValuation();
+        }
+        if (to - from == 1) {
+            return StockValuation.of(valuer.apply(shopIds[from]));
+        }
+
+        int middle = (from + to) >>> 1;
+        ValuationTask left = new ValuationTask(shopIds, from, middle, valuer);
+        left.fork();
+        StockValuation right = new ValuationTask(shopIds, middle, to, valuer).compute();
+        return left.join().merge(right);
+    }
+}
@@ -0,0 +1,7 @@
+package com.pos_onlineshop.hybrid.topProducts;
+
+/**
+ * One tracked product: the true quantity lies between count - error and count
+ */
+public record HeavyHitter(long productId, long count, long error) {
+}
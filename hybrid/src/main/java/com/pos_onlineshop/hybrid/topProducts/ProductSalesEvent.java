@@ -0,0 +1,13 @@
+package com.pos_onlineshop.hybrid.topProducts;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Published when an order's sale completes (sign 1) or is taken back (sign -1); applied to
+ * the tracker once the change commits. Carries the order version the change was written
+ * at, and whether it is the order's deletion, so a load can tell whether it already read it.
+ */
+public record ProductSalesEvent(long orderId, long version, boolean deleted, Long shopId, LocalDateTime soldAt,
+                                Map<Long, Integer> quantities, int sign) {
+}
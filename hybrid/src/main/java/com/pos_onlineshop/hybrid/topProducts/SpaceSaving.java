@@ -0,0 +1,168 @@
+package com.pos_onlineshop.hybrid.topProducts;
+
+import java.util.*;
+
+/**
+ * Space-Saving heavy-hitters sketch over weighted product ids, holding at most capacity
+ * counters.
+ *
+ * When an untracked product arrives and every counter is taken, the smallest counter is
+ * handed to it and keeps its count as the new product's error. So for a stream of total
+ * weight N: every estimate overcounts by at most its error, every error is at most
+ * N / capacity, and any product with more than N / capacity units is tracked. Counters
+ * sit in a min-heap so both increments and evictions are O(log capacity).
+ *
+ * Weight can be taken back, e.g. when a sale is voided. A tracked product's count drops by
+ * it, so estimates still never undercount; the weight of an evicted product is only taken
+ * off the total, as it lives on in the error of whichever counter took its place.
+ */
+public class SpaceSaving {
+
+    private final int capacity;
+    private final long[] items;
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<Long, Integer> positions;
+    private int size;
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Sketch capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.items = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    public void add(long item, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        total += weight;
+
+        Integer position = positions.get(item);
+        if (position != null) {
+            counts[position] += weight;
+            siftDown(position);
+            return;
+        }
+        if (size < capacity) {
+            items[size] = item;
+            counts[size] = weight;
+            errors[size] = 0;
+            positions.put(item, size);
+            siftUp(size++);
+            return;
+        }
+
+        // Take over the smallest counter
+        positions.remove(items[0]);
+        items[0] = item;
+        errors[0] = counts[0];
+        counts[0] += weight;
+        positions.put(item, 0);
+        siftDown(0);
+    }
+
+    public void remove(long item, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        total = Math.max(total - weight, 0);
+
+        Integer position = positions.get(item);
+        if (position == null) {
+            return;
+        }
+        counts[position] = Math.max(counts[position] - weight, 0);
+        errors[position] = Math.min(errors[position], counts[position]);
+        siftUp(position);
+    }
+
+    /**
+     * The k largest estimates, largest first; counters taken back to zero are left out
+     */
+    public List<HeavyHitter> top(int k) {
+        Integer[] order = new Integer[size];
+        int held = 0;
+        for (int i = 0; i < size; i++) {
+            if (counts[i] > 0) {
+                order[held++] = i;
+            }
+        }
+        Arrays.sort(order, 0, held, (a, b) -> Long.compare(counts[b], counts[a]));
+
+        List<HeavyHitter> top = new ArrayList<>(Math.min(k, held));
+        for (int i = 0; i < Math.min(k, held); i++) {
+            int slot = order[i];
+            top.add(new HeavyHitter(items[slot], counts[slot], errors[slot]));
+        }
+        return top;
+    }
+
+    /**
+     * Total weight added, which no estimate can exceed
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Most units an untracked product can have, which is also the most any estimate
+     * overcounts by: the smallest counter once every counter is taken, zero before
+     */
+    public long errorBound() {
+        return size < capacity ? 0 : counts[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[parent] <= counts[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long item = items[a];
+        long count = counts[a];
+        long error = errors[a];
+        items[a] = items[b];
+        counts[a] = counts[b];
+        errors[a] = errors[b];
+        items[b] = item;
+        counts[b] = count;
+        errors[b] = error;
+        positions.put(items[a], a);
+        positions.put(items[b], b);
+    }
+}
@@ -0,0 +1,118 @@
+package com.pos_onlineshop.hybrid.topProducts;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Space-Saving sketches of units sold per shop (and across all shops) for the current and
+ * the previous hour, day and week.
+ *
+ * A sale in a newer window rolls that series forward, so memory is fixed at two sketches
+ * of the same capacity per shop and window size, and a sale older than the previous
+ * window is dropped.
+ */
+public class TopProductsTracker {
+
+    private final int capacity;
+    private final Map<SeriesKey, Series> series = new ConcurrentHashMap<>();
+
+    private record SeriesKey(Long shopId, TopProductsWindow window) {
+    }
+
+    /**
+     * Top products of one window as held by the sketch
+     */
+    public record WindowTop(List<HeavyHitter> products, long totalQuantity, long errorBound) {
+
+        static final WindowTop EMPTY = new WindowTop(List.of(), 0, 0);
+    }
+
+    public TopProductsTracker(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void record(Long shopId, LocalDateTime soldAt, long productId, long quantity) {
+        for (TopProductsWindow window : TopProductsWindow.values()) {
+            LocalDateTime start = window.startOf(soldAt);
+            seriesOf(null, window).add(window, start, productId, quantity);
+            if (shopId != null) {
+                seriesOf(shopId, window).add(window, start, productId, quantity);
+            }
+        }
+    }
+
+    /**
+     * Take back units recorded earlier, from the windows still held
+     */
+    public void retract(Long shopId, LocalDateTime soldAt, long productId, long quantity) {
+        for (TopProductsWindow window : TopProductsWindow.values()) {
+            LocalDateTime start = window.startOf(soldAt);
+            retract(null, window, start, productId, quantity);
+            if (shopId != null) {
+                retract(shopId, window, start, productId, quantity);
+            }
+        }
+    }
+
+    /**
+     * Top k products of the window starting at windowStart for one shop, or all shops when
+     * shopId is null; empty if nothing was sold in it or it is older than the previous window
+     */
+    public WindowTop top(Long shopId, TopProductsWindow window, LocalDateTime windowStart, int k) {
+        Series held = series.get(new SeriesKey(shopId, window));
+        return held != null ? held.top(windowStart, k) : WindowTop.EMPTY;
+    }
+
+    private void retract(Long shopId, TopProductsWindow window, LocalDateTime start, long productId, long quantity) {
+        Series held = series.get(new SeriesKey(shopId, window));
+        if (held != null) {
+            held.remove(start, productId, quantity);
+        }
+    }
+
+    private Series seriesOf(Long shopId, TopProductsWindow window) {
+        return series.computeIfAbsent(new SeriesKey(shopId, window), key -> new Series());
+    }
+
+    private final class Series {
+
+        private LocalDateTime currentStart;
+        private SpaceSaving current;
+        private LocalDateTime previousStart;
+        private SpaceSaving previous;
+
+        synchronized void add(TopProductsWindow window, LocalDateTime start, long productId, long quantity) {
+            if (currentStart == null || start.isAfter(currentStart)) {
+                boolean adjacent = currentStart != null && window.previous(start).equals(currentStart);
+                previousStart = adjacent ? currentStart : null;
+                previous = adjacent ? current : null;
+                currentStart = start;
+                current = new SpaceSaving(capacity);
+            }
+
+            if (start.equals(currentStart)) {
+                current.add(productId, quantity);
+            } else if (start.equals(previousStart)) {
+                previous.add(productId, quantity);
+            }
+        }
+
+        synchronized void remove(LocalDateTime start, long productId, long quantity) {
+            if (start.equals(currentStart)) {
+                current.remove(productId, quantity);
+            } else if (start.equals(previousStart)) {
+                previous.remove(productId, quantity);
+            }
+        }
+
+        synchronized WindowTop top(LocalDateTime start, int k) {
+            SpaceSaving sketch = start.equals(currentStart) ? current
+                    : start.equals(previousStart) ? previous : null;
+            return sketch != null
+                    ? new WindowTop(sketch.top(k), sketch.total(), sketch.errorBound())
+                    : WindowTop.EMPTY;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.pos_onlineshop.hybrid.topProducts;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Calendar-aligned tumbling windows; weeks start on Monday
+ */
+public enum TopProductsWindow {
+    HOUR, DAY, WEEK;
+
+    public LocalDateTime startOf(LocalDateTime time) {
+        return switch (this) {
+            case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> time.truncatedTo(ChronoUnit.DAYS);
+            case WEEK -> time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        };
+    }
+
+    public LocalDateTime next(LocalDateTime start) {
+        return switch (this) {
+            case HOUR -> start.plusHours(1);
+            case DAY -> start.plusDays(1);
+            case WEEK -> start.plusWeeks(1);
+        };
+    }
+
+    public LocalDateTime previous(LocalDateTime start) {
+        return switch (this) {
+            case HOUR -> start.minusHours(1);
+            case DAY -> start.minusDays(1);
+            case WEEK -> start.minusWeeks(1);
+        };
+    }
+}
@@ -20,6 +20,8 @@ public interface UserAccountRepository extends JpaRepository<UserAccount, Long>
 
     List<UserAccount> findByEnabled(boolean enabled);
 
+    long countByEnabled(boolean enabled);
+
     @Query("SELECT u FROM UserAccount u JOIN u.roles r WHERE r = :role")
     List<UserAccount> findByRole(Role role);
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+-- Migration: Unique index on orders.receipt_number
+-- Date: 2026-10-17
+-- Description: Receipt numbers are now allocated per shop and day (SHOPCODE-yyyyMMdd-000001).
+--              The unique index guards against duplicates and turns reprint/lookup by
+--              receipt number into a point lookup. Online orders keep NULL receipt numbers,
+--              which the unique index allows.
+
+CREATE UNIQUE INDEX idx_orders_receipt_number ON orders(receipt_number);
@@ -0,0 +1,54 @@
+package com.pos_onlineshop.hybrid.benchmarks;
+
+import com.pos_onlineshop.hybrid.fiscalDevice.FiscalDevice;
+import com.pos_onlineshop.hybrid.services.ZimraService;
+import com.pos_onlineshop.hybrid.zimra.ZimraFiscalisation;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ZimraService.signFiscalDocument: three SHA-256 hashes (fiscal code, verification code,
+ * digital signature) and the QR code payload, run for every receipt the outbox fiscalises.
+ * The service is built without repositories; signing touches only the document.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FiscalSigningBenchmark {
+
+	private ZimraService zimraService;
+	private ZimraFiscalisation fiscalisation;
+	private long receipt;
+
+	@Setup(Level.Trial)
+	public void createDocument() {
+		zimraService = new ZimraService(null, null, null, null, null, null);
+
+		FiscalDevice device = new FiscalDevice();
+		device.setZimraRegistrationNumber("ZIMRA-REG-00042");
+
+		fiscalisation = new ZimraFiscalisation();
+		fiscalisation.setFiscalDevice(device);
+		fiscalisation.setBusinessTin("12345678");
+		fiscalisation.setBusinessName("POS Online Shop");
+		fiscalisation.setCurrency("USD");
+		fiscalisation.setSubtotalAmount(new BigDecimal("86.96"));
+		fiscalisation.setTaxAmount(new BigDecimal("13.04"));
+		fiscalisation.setTotalAmount(new BigDecimal("100.00"));
+		fiscalisation.setFiscalDate(LocalDateTime.of(2025, 6, 30, 17, 45, 12));
+	}
+
+	@Benchmark
+	public String signFiscalDocument() {
+		// A new receipt number each time, so no hash input repeats
+		fiscalisation.setReceiptNumber("FD42-20250630-" + receipt++);
+		zimraService.signFiscalDocument(fiscalisation);
+		return fiscalisation.getQrCodeData();
+	}
+}
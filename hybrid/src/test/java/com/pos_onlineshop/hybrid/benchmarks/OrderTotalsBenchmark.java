@@ -0,0 +1,74 @@
+package com.pos_onlineshop.hybrid.benchmarks;
+
+import com.pos_onlineshop.hybrid.orderLines.OrderLine;
+import com.pos_onlineshop.hybrid.orders.Order;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building an order line by line.
+ *
+ * recalculateEveryLine: every added line re-sums all lines with BigDecimal
+ *                       (previous Order.addOrderLine), quadratic in basket size.
+ * runningTotals:        Order.addOrderLine with scaled-long running totals.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderTotalsBenchmark {
+
+	@Param({"10", "100", "1000"})
+	public int lines;
+
+	private List<OrderLine> basket;
+
+	@Setup(Level.Trial)
+	public void createBasket() {
+		Random random = new Random(7);
+		String[] rates = {"0.00", "0.15", "0.15", "0.15"};
+		basket = new ArrayList<>(lines);
+		for (int i = 0; i < lines; i++) {
+			basket.add(OrderLine.builder()
+					.productName("Item " + i)
+					.quantity(1 + random.nextInt(12))
+					.unitPrice(BigDecimal.valueOf(50 + random.nextInt(50_000), 2).setScale(4))
+					.taxRate(new BigDecimal(rates[random.nextInt(rates.length)]))
+					.build());
+		}
+	}
+
+	@Benchmark
+	public Order recalculateEveryLine() {
+		Order order = new Order();
+		for (OrderLine line : basket) {
+			order.getOrderLines().add(line);
+			line.setOrder(order);
+			BigDecimal subtotal = order.getOrderLines().stream()
+					.map(OrderLine::getSubtotal)
+					.reduce(BigDecimal.ZERO, BigDecimal::add);
+			BigDecimal tax = order.getOrderLines().stream()
+					.map(l -> l.getSubtotal().multiply(l.getTaxRate()))
+					.reduce(BigDecimal.ZERO, BigDecimal::add);
+			order.setTaxAmount(tax);
+			order.setTotalAmount(subtotal.add(tax));
+		}
+		return order;
+	}
+
+	@Benchmark
+	public Order runningTotals() {
+		Order order = new Order();
+		for (OrderLine line : basket) {
+			order.addOrderLine(line);
+		}
+		return order;
+	}
+}
@@ -0,0 +1,117 @@
+package com.pos_onlineshop.hybrid.benchmarks;
+
+import com.pos_onlineshop.hybrid.enums.TaxCalculationType;
+import com.pos_onlineshop.hybrid.enums.TaxNature;
+import com.pos_onlineshop.hybrid.orderLines.OrderLine;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.selling_price.SellingPrice;
+import com.pos_onlineshop.hybrid.tax.Tax;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The arithmetic a till runs for every scanned item and every basket: line subtotals
+ * and tax, order totals, tax amounts and shelf prices built from base price and taxes.
+ * Pure computation on detached entities, no database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PricingBenchmark {
+
+	/** Lines in the basket for recalculateTotal */
+	@Param({"5", "50"})
+	public int lines;
+
+	private OrderLine line;
+	private Order order;
+	private Tax vat;
+	private Tax levy;
+	private SellingPrice taxedPrice;
+	private SellingPrice discountedPrice;
+	private BigDecimal baseAmount;
+
+	@Setup(Level.Trial)
+	public void createFixtures() {
+		Random random = new Random(3);
+
+		line = OrderLine.builder()
+				.quantity(3)
+				.unitPrice(new BigDecimal("12.4500"))
+				.taxRate(new BigDecimal("0.15"))
+				.build();
+
+		order = new Order();
+		for (int i = 0; i < lines; i++) {
+			order.addOrderLine(OrderLine.builder()
+					.productName("Item " + i)
+					.quantity(1 + random.nextInt(6))
+					.unitPrice(BigDecimal.valueOf(50 + random.nextInt(20_000), 2).setScale(4))
+					.taxRate(random.nextInt(4) == 0 ? new BigDecimal("0.00") : new BigDecimal("0.15"))
+					.build());
+		}
+
+		vat = Tax.builder()
+				.taxNature(TaxNature.VAT)
+				.taxName("VAT 15%")
+				.taxCalculationType(TaxCalculationType.PERCENTAGE)
+				.taxValue(new BigDecimal("15.0000"))
+				.build();
+		levy = Tax.builder()
+				.taxNature(TaxNature.OTHER)
+				.taxName("Sugar levy")
+				.taxCalculationType(TaxCalculationType.FIXED)
+				.taxValue(new BigDecimal("0.0200"))
+				.build();
+		baseAmount = new BigDecimal("19.9900");
+
+		taxedPrice = SellingPrice.builder()
+				.basePrice(new BigDecimal("8.6957"))
+				.taxes(List.of(vat, levy))
+				.build();
+		discountedPrice = SellingPrice.builder()
+				.sellingPrice(new BigDecimal("10.0000"))
+				.discountPercentage(new BigDecimal("12.50"))
+				.quantityBreak(12)
+				.bulkPrice(new BigDecimal("8.5000"))
+				.build();
+	}
+
+	@Benchmark
+	public void orderLineAmounts(Blackhole bh) {
+		bh.consume(line.getSubtotal());
+		bh.consume(line.getTotalWithTax());
+	}
+
+	@Benchmark
+	public BigDecimal recalculateTotal() {
+		order.recalculateTotal();
+		return order.getTotalAmount();
+	}
+
+	@Benchmark
+	public void taxAmount(Blackhole bh) {
+		bh.consume(vat.calculateTaxAmount(baseAmount));
+		bh.consume(levy.calculateTaxAmount(baseAmount));
+	}
+
+	@Benchmark
+	public BigDecimal sellingPriceFromBaseAndTaxes() {
+		taxedPrice.calculateSellingPriceFromBaseAndTaxes();
+		return taxedPrice.getSellingPrice();
+	}
+
+	@Benchmark
+	public void applicablePrice(Blackhole bh) {
+		bh.consume(discountedPrice.getApplicablePrice(1));
+		bh.consume(discountedPrice.getApplicablePrice(24));
+	}
+}
@@ -0,0 +1,123 @@
+package com.pos_onlineshop.hybrid.benchmarks;
+
+import com.pos_onlineshop.hybrid.HybridApplication;
+import com.pos_onlineshop.hybrid.cashierSessions.CashierSession;
+import com.pos_onlineshop.hybrid.currency.Currency;
+import com.pos_onlineshop.hybrid.currency.CurrencyRepository;
+import com.pos_onlineshop.hybrid.dtos.QuickSaleItem;
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import com.pos_onlineshop.hybrid.exchangeRate.ExchangeRate;
+import com.pos_onlineshop.hybrid.exchangeRate.ExchangeRateRepository;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.services.CashierService;
+import com.pos_onlineshop.hybrid.services.CurrencyService;
+import com.pos_onlineshop.hybrid.services.POSService;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A till's quick sale end to end, the way POSController runs it: active session lookup,
+ * POSService.processQuickSale (receipt number, basket pricing, order and accounting
+ * writes, stock decrement, fiscal outbox) and the session cash update. Also times
+ * CurrencyService.convert for direct, inverse and cross rates. The application runs
+ * against an embedded H2 database with fiscalisation workers switched off.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QuickSaleBenchmark {
+
+	/** Distinct products scanned into each basket */
+	@Param({"1", "10"})
+	public int basketLines;
+
+	private ConfigurableApplicationContext context;
+	private POSService posService;
+	private CashierService cashierService;
+	private CurrencyService currencyService;
+	private Long cashierId;
+	private List<QuickSaleItem> basket;
+	private Currency usd;
+	private Currency zwg;
+	private Currency zar;
+	private final BigDecimal amount = new BigDecimal("123.45");
+
+	@Setup(Level.Trial)
+	public void startApplication() {
+		// Command-line arguments, so they win over application.properties
+		context = new SpringApplicationBuilder(HybridApplication.class).run(
+				"--spring.datasource.url=jdbc:h2:mem:quick-sale-benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1",
+				"--spring.datasource.username=sa",
+				"--spring.datasource.password=",
+				"--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+				"--spring.jpa.hibernate.ddl-auto=create-drop",
+				"--spring.jpa.show-sql=false",
+				"--zimra.auto-fiscalise=false",
+				"--server.port=0",
+				"--logging.level.root=WARN");
+		posService = context.getBean(POSService.class);
+		cashierService = context.getBean(CashierService.class);
+		currencyService = context.getBean(CurrencyService.class);
+
+		PosTestData data = new PosTestData(context, "BENCH").seed(Math.max(basketLines, 10), 1);
+		cashierId = data.cashiers.get(0).getId();
+		basket = new ArrayList<>(basketLines);
+		for (int i = 0; i < basketLines; i++) {
+			QuickSaleItem item = new QuickSaleItem();
+			item.setProductId(data.products.get(i).getId());
+			item.setQuantity(1 + i % 3);
+			basket.add(item);
+		}
+
+		// USD -> ZWG is stored directly, ZAR only as ZAR -> USD, so ZWG -> ZAR has to cross through USD
+		CurrencyRepository currencyRepository = context.getBean(CurrencyRepository.class);
+		ExchangeRateRepository rateRepository = context.getBean(ExchangeRateRepository.class);
+		usd = data.currency;
+		zwg = currencyRepository.save(Currency.builder().code("ZWG").name("Zimbabwe Gold").symbol("ZiG").build());
+		zar = currencyRepository.save(Currency.builder().code("ZAR").name("South African Rand").symbol("R").build());
+		rateRepository.save(ExchangeRate.builder().fromCurrency(usd).toCurrency(zwg)
+				.rate(new BigDecimal("26.80")).effectiveDate(LocalDateTime.now().minusDays(1)).build());
+		rateRepository.save(ExchangeRate.builder().fromCurrency(zar).toCurrency(usd)
+				.rate(new BigDecimal("0.0550")).effectiveDate(LocalDateTime.now().minusDays(1)).build());
+	}
+
+	@TearDown(Level.Trial)
+	public void stopApplication() {
+		context.close();
+	}
+
+	@Benchmark
+	public Order processQuickSale() {
+		CashierSession session = cashierService.getActiveSession(cashierId)
+				.orElseThrow(() -> new IllegalStateException("No active session for cashier"));
+		Order order = posService.processQuickSale(basket, PaymentMethod.CASH, null, session);
+		cashierService.recordSale(session, order.getTotalAmount());
+		return order;
+	}
+
+	@Benchmark
+	public BigDecimal convertDirect() {
+		return currencyService.convert(amount, usd, zwg);
+	}
+
+	@Benchmark
+	public BigDecimal convertInverse() {
+		return currencyService.convert(amount, usd, zar);
+	}
+
+	@Benchmark
+	public BigDecimal convertCross() {
+		return currencyService.convert(amount, zwg, zar);
+	}
+}
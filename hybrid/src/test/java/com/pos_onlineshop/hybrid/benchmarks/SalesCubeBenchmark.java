@@ -0,0 +1,81 @@
+package com.pos_onlineshop.hybrid.benchmarks;
+
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import com.pos_onlineshop.hybrid.enums.SalesChannel;
+import com.pos_onlineshop.hybrid.salesCube.CubeDimension;
+import com.pos_onlineshop.hybrid.salesCube.CubeQuery;
+import com.pos_onlineshop.hybrid.salesCube.CubeResult;
+import com.pos_onlineshop.hybrid.salesCube.SalesCube;
+import com.pos_onlineshop.hybrid.salesCube.SalesCubeLine;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full scans of the sales cube: 50 shops, 40 categories, 2,000 products, 200 cashiers,
+ * two currencies and two years of days.
+ *
+ * totalByCurrency:         no filter, grouped by currency only.
+ * shopCategoryDayOneMonth: one currency and one month, grouped by shop x category x day.
+ * oneShopByCashier:        one shop and one quarter, grouped by cashier.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+@State(Scope.Benchmark)
+public class SalesCubeBenchmark {
+
+	private static final LocalDate START = LocalDate.of(2025, 1, 1);
+	private static final int MAX_GROUPS = 100_000;
+
+	@Param({"1000000", "10000000"})
+	public int lines;
+
+	private SalesCube cube;
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void fillCube() {
+		Random random = new Random(5);
+		PaymentMethod[] methods = PaymentMethod.values();
+		cube = new SalesCube();
+		for (int i = 0; i < lines; i++) {
+			int quantity = 1 + random.nextInt(6);
+			cube.append(new SalesCubeLine(i / 4, START.plusDays(random.nextInt(730)), (long) random.nextInt(50),
+					"Category " + random.nextInt(40), (long) random.nextInt(2_000),
+					methods[random.nextInt(methods.length)], (long) random.nextInt(200),
+					random.nextInt(4) == 0 ? "ZWG" : "USD", SalesChannel.POS,
+					1, quantity, quantity * (long) (5_000 + random.nextInt(500_000))));
+		}
+		pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	@TearDown(Level.Trial)
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public CubeResult totalByCurrency() {
+		return cube.query(new CubeQuery(List.of(CubeDimension.CURRENCY), null, null,
+				null, null, null, null, null, null, null), pool, MAX_GROUPS);
+	}
+
+	@Benchmark
+	public CubeResult shopCategoryDayOneMonth() {
+		return cube.query(new CubeQuery(List.of(CubeDimension.SHOP, CubeDimension.CATEGORY, CubeDimension.DAY),
+				START, START.plusDays(29), null, null, null, null, null, "USD", null), pool, MAX_GROUPS);
+	}
+
+	@Benchmark
+	public CubeResult oneShopByCashier() {
+		return cube.query(new CubeQuery(List.of(CubeDimension.CASHIER), START, START.plusDays(90),
+				7L, null, null, null, null, "USD", null), pool, MAX_GROUPS);
+	}
+}
@@ -0,0 +1,189 @@
+package com.pos_onlineshop.hybrid.benchmarks;
+
+import com.pos_onlineshop.hybrid.dtos.ShopStockReport;
+import com.pos_onlineshop.hybrid.shopStockReport.ShopStockReportAssembler;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Loads the stock report of one synthetic shop of 50,000 SKUs, each restocked up to three
+ * times, on an embedded H2 database. Both variants feed the same report assembler:
+ *
+ * perProduct: the inventory totals with their products, then the latest shop inventory
+ *             record of each product in its own query (previous generateShopStockReport).
+ * setBased:   one streamed query joining every total to its latest record through
+ *             shop_inventory_latest (ShopStockReportService).
+ *
+ * H2 runs in-process, so roundTripMicros adds a simulated database round trip after every
+ * statement; that latency, paid once per SKU, is what the per-product lookups cost against
+ * a networked MySQL.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ShopStockReportBenchmark {
+
+	private static final String URL = "jdbc:h2:mem:shop-stock-report-benchmark;DB_CLOSE_DELAY=-1";
+	private static final long SHOP_ID = 1L;
+
+	private static final String TOTALS_SQL =
+			"SELECT p.id, p.name, p.barcode, p.sku, p.category, it.totalstock FROM inventory_total it " +
+			"JOIN products p ON p.id = it.product_id WHERE it.shop_id = ?";
+
+	private static final String LATEST_SQL =
+			"SELECT unit_price, reorder_level, min_stock, max_stock FROM shop_inventories " +
+			"WHERE shop_id = ? AND product_id = ? ORDER BY id DESC LIMIT 1";
+
+	private static final String REPORT_SQL =
+			"SELECT p.id, p.name, p.barcode, p.sku, p.category, it.totalstock, " +
+			"si.unit_price, si.reorder_level, si.min_stock, si.max_stock " +
+			"FROM inventory_total it " +
+			"JOIN products p ON p.id = it.product_id " +
+			"LEFT JOIN shop_inventory_latest l ON l.shop_id = it.shop_id AND l.product_id = it.product_id " +
+			"LEFT JOIN shop_inventories si ON si.id = l.shop_inventory_id " +
+			"WHERE it.shop_id = ? " +
+			"ORDER BY it.product_id";
+
+	@Param({"50000"})
+	public int skus;
+
+	/** Simulated client/database round trip per statement */
+	@Param({"0", "100"})
+	public long roundTripMicros;
+
+	private Connection connection;
+
+	@Setup(Level.Trial)
+	public void createShop() throws SQLException {
+		connection = DriverManager.getConnection(URL);
+		try (Statement st = connection.createStatement()) {
+			st.execute("DROP ALL OBJECTS");
+			st.execute("CREATE TABLE products (id BIGINT PRIMARY KEY, name VARCHAR(255) NOT NULL, " +
+					"barcode VARCHAR(255), sku VARCHAR(255) NOT NULL, category VARCHAR(255) NOT NULL)");
+			st.execute("CREATE TABLE inventory_total (id BIGINT AUTO_INCREMENT PRIMARY KEY, shop_id BIGINT NOT NULL, " +
+					"product_id BIGINT NOT NULL, totalstock INT NOT NULL, " +
+					"CONSTRAINT uk_inventory_total UNIQUE (shop_id, product_id))");
+			st.execute("CREATE TABLE shop_inventories (id BIGINT AUTO_INCREMENT PRIMARY KEY, shop_id BIGINT NOT NULL, " +
+					"product_id BIGINT NOT NULL, unit_price DECIMAL(19, 4) NOT NULL, reorder_level INT, " +
+					"min_stock INT, max_stock INT)");
+			st.execute("CREATE INDEX idx_shop_inventories_shop_product ON shop_inventories (shop_id, product_id)");
+			st.execute("CREATE TABLE shop_inventory_latest (id BIGINT AUTO_INCREMENT PRIMARY KEY, shop_id BIGINT NOT NULL, " +
+					"product_id BIGINT NOT NULL, shop_inventory_id BIGINT NOT NULL, " +
+					"CONSTRAINT uk_shop_inventory_latest UNIQUE (shop_id, product_id))");
+		}
+
+		Random random = new Random(5);
+		try (PreparedStatement product = connection.prepareStatement(
+				"INSERT INTO products (id, name, barcode, sku, category) VALUES (?, ?, ?, ?, ?)");
+			 PreparedStatement total = connection.prepareStatement(
+					 "INSERT INTO inventory_total (shop_id, product_id, totalstock) VALUES (?, ?, ?)");
+			 PreparedStatement record = connection.prepareStatement(
+					 "INSERT INTO shop_inventories (shop_id, product_id, unit_price, reorder_level, min_stock, max_stock) " +
+					 "VALUES (?, ?, ?, ?, ?, ?)")) {
+			for (long productId = 1; productId <= skus; productId++) {
+				product.setLong(1, productId);
+				product.setString(2, "Product " + productId);
+				product.setString(3, String.format("60000%08d", productId));
+				product.setString(4, "SKU-" + productId);
+				product.setString(5, "Category " + random.nextInt(40));
+				product.addBatch();
+
+				total.setLong(1, SHOP_ID);
+				total.setLong(2, productId);
+				total.setInt(3, random.nextInt(200));
+				total.addBatch();
+
+				// One SKU in ten was never received through shop inventory
+				int records = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(3);
+				for (int i = 0; i < records; i++) {
+					record.setLong(1, SHOP_ID);
+					record.setLong(2, productId);
+					record.setBigDecimal(3, BigDecimal.valueOf(50 + random.nextInt(100_000), 2));
+					record.setInt(4, 5 + random.nextInt(20));
+					record.setInt(5, 0);
+					record.setInt(6, 500);
+					record.addBatch();
+				}
+				if (productId % 5_000 == 0) {
+					product.executeBatch();
+					total.executeBatch();
+					record.executeBatch();
+				}
+			}
+			product.executeBatch();
+			total.executeBatch();
+			record.executeBatch();
+		}
+		try (Statement st = connection.createStatement()) {
+			st.execute("INSERT INTO shop_inventory_latest (shop_id, product_id, shop_inventory_id) " +
+					"SELECT shop_id, product_id, MAX(id) FROM shop_inventories GROUP BY shop_id, product_id");
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void dropShop() throws SQLException {
+		try (Statement st = connection.createStatement()) {
+			st.execute("DROP ALL OBJECTS");
+		}
+		connection.close();
+	}
+
+	@Benchmark
+	public ShopStockReport perProduct() throws SQLException {
+		ShopStockReportAssembler assembler = new ShopStockReportAssembler();
+		try (PreparedStatement totals = connection.prepareStatement(TOTALS_SQL);
+			 PreparedStatement latest = connection.prepareStatement(LATEST_SQL)) {
+			totals.setLong(1, SHOP_ID);
+			try (ResultSet rs = totals.executeQuery()) {
+				roundTrip();
+				while (rs.next()) {
+					latest.setLong(1, SHOP_ID);
+					latest.setLong(2, rs.getLong(1));
+					try (ResultSet si = latest.executeQuery()) {
+						roundTrip();
+						boolean found = si.next();
+						assembler.add(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+								rs.getString(5), rs.getInt(6), found ? si.getBigDecimal(1) : null,
+								found ? si.getObject(2, Integer.class) : null,
+								found ? si.getObject(3, Integer.class) : null,
+								found ? si.getObject(4, Integer.class) : null);
+					}
+				}
+			}
+		}
+		return assembler.toReport().shopId(SHOP_ID).build();
+	}
+
+	@Benchmark
+	public ShopStockReport setBased() throws SQLException {
+		ShopStockReportAssembler assembler = new ShopStockReportAssembler();
+		try (PreparedStatement report = connection.prepareStatement(REPORT_SQL,
+				ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			report.setFetchSize(1000);
+			report.setLong(1, SHOP_ID);
+			try (ResultSet rs = report.executeQuery()) {
+				roundTrip();
+				while (rs.next()) {
+					assembler.add(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+							rs.getString(5), rs.getInt(6), rs.getBigDecimal(7), rs.getObject(8, Integer.class),
+							rs.getObject(9, Integer.class), rs.getObject(10, Integer.class));
+				}
+			}
+		}
+		return assembler.toReport().shopId(SHOP_ID).build();
+	}
+
+	private void roundTrip() {
+		if (roundTripMicros > 0) {
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package com.pos_onlineshop.hybrid.benchmarks;
+
+import com.pos_onlineshop.hybrid.HybridApplication;
+import com.pos_onlineshop.hybrid.enums.StockMovementType;
+import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotal;
+import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotalRepository;
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderRepository;
+import com.pos_onlineshop.hybrid.products.ProductRepository;
+import com.pos_onlineshop.hybrid.services.ShopInventoryService;
+import com.pos_onlineshop.hybrid.services.StockMutationCoordinator;
+import com.pos_onlineshop.hybrid.shop.ShopRepository;
+import com.pos_onlineshop.hybrid.stockLedger.StockMovementReason;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the ways of taking stock for a sale on hot SKUs, with several tills selling
+ * concurrently. Each sale saves a one-line POS order and takes one unit of stock in the
+ * same transaction, through the application's own services and repositories on an
+ * embedded H2 database:
+ *
+ * locking:  the previous ShopInventoryService.reduceStock statement for statement (shop
+ *           and product lookups, SELECT ... FOR UPDATE, check in Java, UPDATE on flush),
+ *           run before the order as quick sales used to, so the row stays locked for
+ *           the whole sale.
+ * batch:    the order first, then StockMutationCoordinator.reduce as quick sales now
+ *           take stock (conditional decrement, stock ledger, valuation mark).
+ * single:   the order first, then ShopInventoryService.reduceStock as it is now
+ *           (conditional decrement, stock ledger, valuation mark, read-back).
+ *
+ * H2 runs in-process, so roundTripMicros adds a simulated database round trip before
+ * every statement Hibernate sends; that latency is what a row lock held across the sale
+ * costs against a networked MySQL. Commits are not delayed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class StockDecrementBenchmark {
+
+	/** Number of distinct products the tills are selling */
+	@Param({"1", "8"})
+	public int hotSkus;
+
+	/** Simulated client/database round trip per statement */
+	@Param({"0", "250"})
+	public long roundTripMicros;
+
+	private ConfigurableApplicationContext context;
+	private TransactionTemplate transactionTemplate;
+	private ShopInventoryService shopInventoryService;
+	private StockMutationCoordinator stockMutationCoordinator;
+	private ShopRepository shopRepository;
+	private ProductRepository productRepository;
+	private InventoryTotalRepository inventoryTotalRepository;
+	private OrderRepository orderRepository;
+	private PosTestData data;
+	private final AtomicLong receipts = new AtomicLong();
+
+	/**
+	 * Delays every statement by the benchmark's round trip
+	 */
+	public static class RoundTrip implements StatementInspector {
+		static volatile long micros;
+
+		@Override
+		public String inspect(String sql) {
+			if (micros > 0) {
+				LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+			}
+			return sql;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void startApplication() {
+		RoundTrip.micros = 0;
+		// Command-line arguments, so they win over application.properties
+		context = new SpringApplicationBuilder(HybridApplication.class).run(
+				"--spring.datasource.url=jdbc:h2:mem:stock-benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000",
+				"--spring.datasource.username=sa",
+				"--spring.datasource.password=",
+				"--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+				"--spring.jpa.properties.hibernate.session_factory.statement_inspector=" + RoundTrip.class.getName(),
+				"--spring.jpa.hibernate.ddl-auto=create-drop",
+				"--spring.jpa.show-sql=false",
+				"--zimra.auto-fiscalise=false",
+				"--server.port=0",
+				"--logging.level.root=WARN");
+		transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+		shopInventoryService = context.getBean(ShopInventoryService.class);
+		stockMutationCoordinator = context.getBean(StockMutationCoordinator.class);
+		shopRepository = context.getBean(ShopRepository.class);
+		productRepository = context.getBean(ProductRepository.class);
+		inventoryTotalRepository = context.getBean(InventoryTotalRepository.class);
+		orderRepository = context.getBean(OrderRepository.class);
+
+		data = new PosTestData(context, "STOCK").seed(hotSkus, 1);
+		RoundTrip.micros = roundTripMicros;
+	}
+
+	@TearDown(Level.Trial)
+	public void stopApplication() {
+		RoundTrip.micros = 0;
+		context.close();
+	}
+
+	@Benchmark
+	public Integer lockingDecrement() {
+		int index = ThreadLocalRandom.current().nextInt(hotSkus);
+		Long shopId = data.shop.getId();
+		Long productId = data.products.get(index).getId();
+		return transactionTemplate.execute(status -> {
+			shopRepository.findById(shopId)
+					.orElseThrow(() -> new RuntimeException("Shop not found with id: " + shopId));
+			productRepository.findById(productId)
+					.orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
+			InventoryTotal inventoryTotal = inventoryTotalRepository.findByShopIdAndProductIdWithLock(shopId, productId)
+					.orElseThrow(() -> new RuntimeException("Inventory total not found"));
+			if (inventoryTotal.getTotalstock() < 1) {
+				throw new RuntimeException("Insufficient stock");
+			}
+			inventoryTotal.setTotalstock(inventoryTotal.getTotalstock() - 1);
+			inventoryTotal.setLastUpdated(LocalDateTime.now());
+			inventoryTotalRepository.save(inventoryTotal);
+
+			saveSale(index);
+			return inventoryTotal.getTotalstock();
+		});
+	}
+
+	@Benchmark
+	public Order batchDecrement() {
+		int index = ThreadLocalRandom.current().nextInt(hotSkus);
+		return transactionTemplate.execute(status -> {
+			Order order = saveSale(index);
+			stockMutationCoordinator.reduce(
+					List.of(new StockChange(data.shop.getId(), data.products.get(index).getId(), 1)),
+					StockMovementReason.of(StockMovementType.SALE, order.getId()),
+					shortfall -> new RuntimeException("Insufficient stock"));
+			return order;
+		});
+	}
+
+	@Benchmark
+	public InventoryTotal singleDecrement() {
+		int index = ThreadLocalRandom.current().nextInt(hotSkus);
+		return transactionTemplate.execute(status -> {
+			saveSale(index);
+			return shopInventoryService.reduceStock(data.shop.getId(), data.products.get(index).getId(), 1);
+		});
+	}
+
+	private Order saveSale(int index) {
+		Order order = data.posSale(LocalDateTime.now(), index, 1, "1.00");
+		order.setReceiptNumber("STOCK-" + receipts.incrementAndGet());
+		return orderRepository.save(order);
+	}
+}
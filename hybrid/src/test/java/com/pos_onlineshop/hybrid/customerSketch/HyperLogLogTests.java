@@ -0,0 +1,70 @@
+package com.pos_onlineshop.hybrid.customerSketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class HyperLogLogTests {
+
+	// Four standard errors at 2^12 registers
+	private static final double TOLERANCE = 4 * 1.04 / Math.sqrt(HyperLogLog.REGISTERS);
+
+	@Test
+	void estimatesDistinctCountsWithinErrorBounds() {
+		for (int distinct : new int[]{10, 1_000, 50_000, 1_000_000}) {
+			HyperLogLog sketch = new HyperLogLog();
+			for (int i = 0; i < distinct; i++) {
+				sketch.add(HyperLogLog.hash(1, i));
+				// Repeat customers do not count twice
+				sketch.add(HyperLogLog.hash(1, i / 2));
+			}
+			assertThat((double) sketch.estimate()).isCloseTo(distinct, offset(
+					Math.max(1, distinct * TOLERANCE)));
+		}
+	}
+
+	@Test
+	void unionAndIntersectionOfOverlappingSets() {
+		HyperLogLog a = new HyperLogLog();
+		HyperLogLog b = new HyperLogLog();
+		for (int i = 0; i < 30_000; i++) {
+			a.add(HyperLogLog.hash(1, i));
+		}
+		for (int i = 20_000; i < 60_000; i++) {
+			b.add(HyperLogLog.hash(1, i));
+		}
+
+		assertThat((double) a.copy().merge(b).estimate()).isCloseTo(60_000, offset(60_000 * TOLERANCE));
+		// Inclusion-exclusion carries the error of the union
+		assertThat((double) HyperLogLog.intersection(a, b)).isCloseTo(10_000, offset(60_000 * TOLERANCE));
+		// Same ids in another namespace are other customers
+		HyperLogLog users = new HyperLogLog();
+		for (int i = 0; i < 30_000; i++) {
+			users.add(HyperLogLog.hash(2, i));
+		}
+		assertThat((double) HyperLogLog.intersection(a, users)).isLessThan(30_000 * TOLERANCE);
+	}
+
+	@Test
+	void serialisesSparseThenDense() {
+		HyperLogLog sketch = new HyperLogLog();
+		for (int i = 0; i < 100; i++) {
+			sketch.add(HyperLogLog.hash(1, i));
+		}
+		byte[] sparse = sketch.toBytes();
+		assertThat(sparse.length).isLessThan(400);
+		assertThat(HyperLogLog.fromBytes(sparse).estimate()).isEqualTo(sketch.estimate());
+
+		for (int i = 100; i < 100_000; i++) {
+			sketch.add(HyperLogLog.hash(1, i));
+		}
+		byte[] dense = sketch.toBytes();
+		assertThat(dense).hasSize(HyperLogLog.MAX_BYTES);
+		assertThat(HyperLogLog.fromBytes(dense).estimate()).isEqualTo(sketch.estimate());
+
+		assertThatThrownBy(() -> HyperLogLog.fromBytes(new byte[]{2, 0}))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
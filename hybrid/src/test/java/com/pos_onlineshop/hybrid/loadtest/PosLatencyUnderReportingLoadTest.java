@@ -0,0 +1,182 @@
+package com.pos_onlineshop.hybrid.loadtest;
+
+import com.pos_onlineshop.hybrid.cashier.Cashier;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * POS quick-sale latency on its own and while month-end reports run against the same
+ * database. Tagged "load", so it only runs with mvn -Ploadtest test. Run it once per
+ * execution mode and compare the logged percentiles:
+ *
+ *   mvn -Ploadtest test                                  (platform threads)
+ *   mvn -Ploadtest test -Dreporting.max-concurrent-requests=4 -Dreporting.queue-timeout-ms=100
+ *   mvn -Pjava21,loadtest test -Dspring.profiles.active=virtual   (virtual threads, Java 21)
+ *
+ * Tomcat is held to a small worker pool so the report clients can exhaust it, as they do
+ * on a busy server; in the virtual profile that limit does not apply. Pass
+ * -Dloadtest.max-pos-p99-ms to fail the run when POS p99 under report load exceeds it.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:pos-load;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.jpa.hibernate.ddl-auto=create-drop",
+		"zimra.auto-fiscalise=false",
+		"server.tomcat.threads.max=16",
+		"logging.level.com.pos_onlineshop=WARN",
+		"logging.level.com.pos_onlineshop.hybrid.loadtest=INFO"
+})
+@Slf4j
+class PosLatencyUnderReportingLoadTest {
+
+	private static final int TILLS = Integer.getInteger("loadtest.tills", 8);
+	private static final int REPORT_CLIENTS = Integer.getInteger("loadtest.report-clients", 24);
+	private static final int PHASE_SECONDS = Integer.getInteger("loadtest.phase-seconds", 20);
+	private static final int HISTORY_ORDERS = Integer.getInteger("loadtest.history-orders", 20_000);
+	private static final Long MAX_P99_MS = Long.getLong("loadtest.max-pos-p99-ms");
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private ApplicationContext context;
+
+	private final HttpClient client = HttpClient.newBuilder()
+			.connectTimeout(Duration.ofSeconds(5))
+			.executor(Executors.newCachedThreadPool())
+			.build();
+
+	@Test
+	void posLatencyWhileReportsRun() throws Exception {
+		PosTestData data = new PosTestData(context, "LOAD").seed(20, TILLS).seedOrderHistory(HISTORY_ORDERS);
+
+		// Warm up the sale path before measuring
+		runPhase(data, 0, 5);
+
+		Result alone = runPhase(data, 0, PHASE_SECONDS);
+		Result withReports = runPhase(data, REPORT_CLIENTS, PHASE_SECONDS);
+
+		log.info("POS quick-sale latency ({} threads, {} tills)",
+				System.getProperty("spring.profiles.active", "platform"), TILLS);
+		log.info(alone.describe("POS only"));
+		log.info(withReports.describe("POS + " + REPORT_CLIENTS + " report clients"));
+
+		assertThat(alone.posFailures.get()).isZero();
+		assertThat(withReports.posFailures.get()).isZero();
+		if (MAX_P99_MS != null) {
+			assertThat(withReports.percentile(99)).isLessThan(MAX_P99_MS);
+		}
+	}
+
+	private Result runPhase(PosTestData data, int reportClients, int seconds) throws Exception {
+		Result result = new Result();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		ExecutorService workers = Executors.newFixedThreadPool(TILLS + reportClients);
+		List<Future<?>> running = new ArrayList<>();
+
+		for (int till = 0; till < TILLS; till++) {
+			Cashier cashier = data.cashiers.get(till);
+			long productId = data.products.get(till % data.products.size()).getId();
+			running.add(workers.submit(() -> {
+				while (System.nanoTime() < deadline) {
+					sell(cashier.getId(), productId, result);
+				}
+				return null;
+			}));
+		}
+		for (int i = 0; i < reportClients; i++) {
+			String path = i % 2 == 0
+					? "/api/analytics/dashboard?shopId=" + data.shop.getId()
+					: "/api/analytics/sales-trend?startDate=" + LocalDate.now().minusDays(30) + "&endDate=" + LocalDate.now();
+			running.add(workers.submit(() -> {
+				while (System.nanoTime() < deadline) {
+					report(path, result);
+				}
+				return null;
+			}));
+		}
+
+		for (Future<?> future : running) {
+			future.get(seconds + 120L, TimeUnit.SECONDS);
+		}
+		workers.shutdown();
+		return result;
+	}
+
+	private void sell(Long cashierId, long productId, Result result) throws Exception {
+		String body = "{\"cashierId\":" + cashierId + ",\"paymentMethod\":\"CASH\",\"cashGiven\":100," +
+				"\"items\":[{\"productId\":" + productId + ",\"quantity\":1}]}";
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/pos/quick-sale"))
+				.header("Content-Type", "application/json")
+				.timeout(Duration.ofSeconds(60))
+				.POST(HttpRequest.BodyPublishers.ofString(body))
+				.build();
+
+		long start = System.nanoTime();
+		HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+		long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+		if (response.statusCode() == 200) {
+			result.posLatencies.add(elapsedMicros);
+		} else {
+			result.posFailures.incrementAndGet();
+		}
+	}
+
+	private void report(String path, Result result) throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+				.timeout(Duration.ofSeconds(120))
+				.GET()
+				.build();
+		HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+		if (response.statusCode() == 200) {
+			result.reports.incrementAndGet();
+		} else {
+			result.reportsRejected.incrementAndGet();
+		}
+	}
+
+	private static final class Result {
+		private final ConcurrentLinkedQueue<Long> posLatencies = new ConcurrentLinkedQueue<>();
+		private final AtomicLong posFailures = new AtomicLong();
+		private final AtomicLong reports = new AtomicLong();
+		private final AtomicLong reportsRejected = new AtomicLong();
+
+		private long percentile(int p) {
+			long[] sorted = posLatencies.stream().mapToLong(Long::longValue).sorted().toArray();
+			if (sorted.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+			return TimeUnit.MICROSECONDS.toMillis(sorted[Math.max(0, index)]);
+		}
+
+		private String describe(String phase) {
+			return String.format("%-32s sales=%6d  failed=%d  p50=%5d ms  p95=%5d ms  p99=%5d ms  max=%5d ms" +
+							"  reports=%d  rejected=%d",
+					phase, posLatencies.size(), posFailures.get(), percentile(50), percentile(95), percentile(99),
+					percentile(100), reports.get(), reportsRejected.get());
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package com.pos_onlineshop.hybrid.orders;
+
+import com.pos_onlineshop.hybrid.orderLines.OrderLine;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderTotalsTests {
+
+	private static final String[] PRICES = {"0", "0.01", "1.5", "19.99", "249.0000", "1234.5678", "0.0001", "99999.99"};
+	private static final String[] RATES = {"0.00", "0.15", "0.145", "0.1", "0", "0.1550"};
+
+	@Test
+	void runningTotalsMatchFullRecalculation() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			Order order = new Order();
+			List<OrderLine> added = new ArrayList<>();
+			for (int i = 0; i < 1 + random.nextInt(60); i++) {
+				OrderLine line = line(PRICES[random.nextInt(PRICES.length)], 1 + random.nextInt(500),
+						RATES[random.nextInt(RATES.length)]);
+				order.addOrderLine(line);
+				added.add(line);
+				assertMatchesRecalculation(order);
+
+				if (random.nextInt(5) == 0) {
+					order.removeOrderLine(added.remove(random.nextInt(added.size())));
+					assertMatchesRecalculation(order);
+				}
+			}
+		}
+	}
+
+	@Test
+	void emptyOrderHasZeroTotals() {
+		Order order = new Order();
+		OrderLine line = line("10.00", 1, "0.15");
+		order.addOrderLine(line);
+		order.removeOrderLine(line);
+
+		assertThat(order.getTotalAmount()).isEqualTo(BigDecimal.ZERO);
+		assertThat(order.getTaxAmount()).isEqualTo(BigDecimal.ZERO);
+	}
+
+	@Test
+	void linesOutsideScaledRangeFallBackToExactSums() {
+		Order order = new Order();
+		order.addOrderLine(line("10.00", 3, "0.15"));
+		order.addOrderLine(line("0.123456", 7, "0.15"));
+		order.addOrderLine(line("92233720368547.7580", 1000, "0.15"));
+		OrderLine unpriced = line(null, 2, "0.15");
+		order.addOrderLine(unpriced);
+
+		assertMatchesRecalculation(order);
+	}
+
+	@Test
+	void linesAlreadyOnALoadedOrderAreCounted() {
+		Order order = new Order();
+		OrderLine existing = line("5.0000", 4, "0.15");
+		existing.setOrder(order);
+		order.getOrderLines().add(existing);
+
+		order.addOrderLine(line("2.50", 2, "0.00"));
+
+		assertMatchesRecalculation(order);
+		assertThat(order.getTotalAmount()).isEqualTo(new BigDecimal("28.000000"));
+	}
+
+	private static void assertMatchesRecalculation(Order order) {
+		BigDecimal subtotal = order.getOrderLines().stream()
+				.map(OrderLine::getSubtotal)
+				.reduce(BigDecimal.ZERO, BigDecimal::add);
+		BigDecimal tax = order.getOrderLines().stream()
+				.map(line -> line.getSubtotal().multiply(line.getTaxRate()))
+				.reduce(BigDecimal.ZERO, BigDecimal::add);
+
+		// equals, not compareTo: the scale has to match as well
+		assertThat(order.getTaxAmount()).isEqualTo(tax);
+		assertThat(order.getTotalAmount()).isEqualTo(subtotal.add(tax));
+	}
+
+	private static OrderLine line(String unitPrice, int quantity, String taxRate) {
+		return OrderLine.builder()
+				.unitPrice(unitPrice != null ? new BigDecimal(unitPrice) : null)
+				.quantity(quantity)
+				.taxRate(new BigDecimal(taxRate))
+				.productName("Item")
+				.build();
+	}
+}
@@ -0,0 +1,39 @@
+package com.pos_onlineshop.hybrid.orders;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScannedOrdersTests {
+
+	private record Change(long orderId, long version, boolean deletes) {
+	}
+
+	@Test
+	void replaysExactlyTheChangesTheLoadDidNotRead() {
+		ScannedOrders read = new ScannedOrders();
+		read.add(1, 0);
+		read.add(2, 0);
+		read.add(3, 2);
+		read.add(4, 1);
+
+		Change placedBeforeRead = new Change(1, 0, false);
+		Change voidedAfterRead = new Change(2, 1, false);
+		Change voidedBeforeRead = new Change(3, 2, false);
+		Change voidedAfterThat = new Change(3, 3, false);
+		Change deletedAfterRead = new Change(4, 1, true);
+		Change placedAfterRead = new Change(5, 0, false);
+		Change voidedAfterPlaced = new Change(5, 1, false);
+		// Never read: deleted before the load reached it, or placed and deleted after
+		Change voidedThenDeleted = new Change(6, 3, false);
+		Change deletedBeforeRead = new Change(6, 3, true);
+
+		List<Change> captured = List.of(placedBeforeRead, voidedAfterRead, voidedBeforeRead, voidedAfterThat,
+				deletedAfterRead, placedAfterRead, voidedAfterPlaced, voidedThenDeleted, deletedBeforeRead);
+		assertThat(read.unread(captured, Change::orderId, Change::version, Change::deletes))
+				.containsExactly(voidedAfterRead, voidedAfterThat, deletedAfterRead, placedAfterRead,
+						voidedAfterPlaced);
+	}
+}
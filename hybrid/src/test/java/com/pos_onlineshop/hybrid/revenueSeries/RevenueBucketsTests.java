@@ -0,0 +1,86 @@
+package com.pos_onlineshop.hybrid.revenueSeries;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RevenueBucketsTests {
+
+	private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 20, 15, 42, 10);
+
+	private record Sale(Long shopId, long currencyId, LocalDateTime at, long cents) {
+	}
+
+	@Test
+	void rangeSumsMatchBruteForceWhileMinutesAreHeld() {
+		Random random = new Random(5);
+		RevenueBuckets buckets = new RevenueBuckets(Duration.ofDays(30), Duration.ofDays(60));
+		buckets.trim(NOW);
+		List<Sale> sales = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++) {
+			Sale sale = new Sale(random.nextInt(4) == 0 ? null : 1L + random.nextInt(3), 1L + random.nextInt(2),
+					NOW.minusSeconds(random.nextInt(20 * 24 * 3600)), 1 + random.nextInt(10_000));
+			sales.add(sale);
+			buckets.add(sale.shopId(), sale.currencyId(), sale.at(), sale.cents(), 1);
+		}
+		// A void takes its sale back out
+		Sale voided = sales.remove(0);
+		buckets.add(voided.shopId(), voided.currencyId(), voided.at(), -voided.cents(), -1);
+
+		for (int q = 0; q < 300; q++) {
+			LocalDateTime from = NOW.minusMinutes(random.nextInt(25 * 24 * 60));
+			LocalDateTime to = from.plusMinutes(random.nextInt(10 * 24 * 60));
+			Long shopId = random.nextBoolean() ? null : 1L + random.nextInt(3);
+			for (RevenueTotal total : buckets.sum(shopId, from, to).orElseThrow()) {
+				long cents = 0;
+				long orders = 0;
+				for (Sale sale : sales) {
+					LocalDateTime minute = sale.at().withSecond(0);
+					if (sale.currencyId() == total.currencyId() && !minute.isBefore(from) && minute.isBefore(to)
+							&& (shopId == null || shopId.equals(sale.shopId()))) {
+						cents += sale.cents();
+						orders++;
+					}
+				}
+				assertThat(total.amountCents()).isEqualTo(cents);
+				assertThat(total.orders()).isEqualTo(orders);
+			}
+		}
+	}
+
+	@Test
+	void rangesWithAnEdgeWhereFinerBucketsAreGoneHaveNoTotal() {
+		RevenueBuckets buckets = new RevenueBuckets(Duration.ofHours(2), Duration.ofDays(2));
+		buckets.trim(NOW);
+		LocalDateTime tenDaysAgo = NOW.minusDays(10).withHour(10).withMinute(0).withSecond(0);
+		buckets.add(1L, 1, tenDaysAgo.plusMinutes(5), 100, 1);
+		buckets.add(1L, 1, tenDaysAgo.plusHours(5), 200, 1);
+		buckets.add(1L, 1, NOW.minusDays(1).withHour(9).withMinute(30), 400, 1);
+		buckets.add(1L, 1, NOW.minusMinutes(5), 800, 1);
+
+		// Hours ten days ago are gone, so a range starting at 10:00 has no exact total
+		assertThat(buckets.sum(1L, tenDaysAgo, NOW.plusMinutes(1))).isEmpty();
+		assertThat(buckets.sum(1L, NOW.minusDays(20), tenDaysAgo.withHour(0).plusDays(1))).isEmpty();
+		// Whole days are still exact
+		assertThat(buckets.sum(1L, tenDaysAgo.withHour(0), NOW.plusMinutes(1)).orElseThrow().get(0).amountCents())
+				.isEqualTo(1500);
+		// Yesterday's minutes are gone but its hours are held
+		LocalDateTime yesterday = NOW.minusDays(1).withSecond(0);
+		assertThat(buckets.sum(1L, yesterday.withHour(9).withMinute(0), yesterday.withHour(10).withMinute(0))
+				.orElseThrow().get(0).amountCents()).isEqualTo(400);
+		assertThat(buckets.sum(1L, yesterday.withHour(9).withMinute(15), yesterday.withHour(10).withMinute(0)))
+				.isEmpty();
+		// Nothing was sold two days ago, which is still an exact total
+		LocalDateTime twoDaysAgo = NOW.minusDays(2).withMinute(0).withSecond(0);
+		assertThat(buckets.sum(1L, twoDaysAgo.withHour(0), twoDaysAgo.withHour(6))).contains(List.of());
+
+		assertThat(buckets.buckets(null, RevenueResolution.DAY, tenDaysAgo.withHour(0), NOW))
+				.extracting(RevenueBuckets.Bucket::amountCents).containsExactly(300L, 400L, 800L);
+	}
+}
@@ -0,0 +1,181 @@
+package com.pos_onlineshop.hybrid.salesCube;
+
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import com.pos_onlineshop.hybrid.enums.SalesChannel;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SalesCubeTests {
+
+	private static final LocalDate START = LocalDate.of(2026, 1, 1);
+	private static final String[] CATEGORIES = {"Drinks", "Bakery", "Dairy", null};
+	private static final String[] CURRENCIES = {"USD", "ZWG"};
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+	private static final int MAX_GROUPS = 100_000;
+
+	@AfterAll
+	static void shutdown() {
+		POOL.shutdown();
+	}
+
+	@Test
+	void groupsAndFiltersMatchBruteForceAcrossBlocks() {
+		Random random = new Random(11);
+		SalesCube cube = new SalesCube();
+		List<SalesCubeLine> lines = new ArrayList<>();
+		for (int i = 0; i < 200_000; i++) {
+			SalesCubeLine line = randomLine(random, i);
+			lines.add(line);
+			cube.append(line);
+		}
+
+		List<CubeQuery> queries = List.of(
+				query(List.of(), null, null, null, null, null),
+				query(List.of(CubeDimension.SHOP, CubeDimension.CATEGORY, CubeDimension.DAY,
+						CubeDimension.PAYMENT_METHOD, CubeDimension.CASHIER), null, null, null, null, "USD"),
+				query(List.of(CubeDimension.DAY, CubeDimension.CURRENCY), START.plusDays(10), START.plusDays(20),
+						null, null, null),
+				query(List.of(CubeDimension.CASHIER, CubeDimension.SALES_CHANNEL), null, null, 3L, "Bakery", null),
+				query(List.of(CubeDimension.PRODUCT), null, null, null, PaymentMethod.ECOCASH, "ZWG"));
+
+		for (CubeQuery query : queries) {
+			assertThat(toMap(cube.query(query, POOL, MAX_GROUPS))).isEqualTo(bruteForce(lines, query));
+		}
+		assertThat(cube.query(queries.get(0), POOL, MAX_GROUPS).scannedLines()).isEqualTo(200_000);
+	}
+
+	@Test
+	void negatedLinesCancelOut() {
+		SalesCube cube = new SalesCube();
+		SalesCubeLine sale = line(1, START, 1L, "Drinks", PaymentMethod.CASH, 1, 2, 50_000);
+		cube.append(sale);
+		cube.append(line(2, START, 1L, "Drinks", PaymentMethod.CASH, 1, 1, 25_000));
+		cube.append(line(1, START, 1L, "Drinks", PaymentMethod.CASH, -1, -2, -50_000));
+
+		CubeResult result = cube.query(query(List.of(CubeDimension.SHOP), null, null, null, null, null), POOL, MAX_GROUPS);
+
+		assertThat(result.rows()).singleElement().satisfies(row -> {
+			assertThat(row.keys()).containsEntry(CubeDimension.SHOP, 1L);
+			assertThat(row.lines()).isEqualTo(1);
+			assertThat(row.quantity()).isEqualTo(1);
+			assertThat(row.amount()).isEqualByComparingTo("2.50");
+		});
+	}
+
+	@Test
+	void unknownFilterValueMatchesNothing() {
+		SalesCube cube = new SalesCube();
+		cube.append(line(1, START, 1L, "Drinks", PaymentMethod.CASH, 1, 1, 10_000));
+
+		assertThat(cube.query(query(List.of(), null, null, 99L, null, null), POOL, MAX_GROUPS).rows()).isEmpty();
+		assertThat(cube.query(query(List.of(), START.plusDays(1), null, null, null, null), POOL, MAX_GROUPS).rows()).isEmpty();
+	}
+
+	@Test
+	void rejectsGroupingThatOverflowsTheKey() {
+		Random random = new Random(3);
+		SalesCube cube = new SalesCube();
+		for (int i = 0; i < 5_000; i++) {
+			cube.append(new SalesCubeLine(i, START.plusDays(random.nextInt(20_000)), (long) i, "c" + i, (long) i,
+					PaymentMethod.CASH, (long) i, "c" + i, SalesChannel.POS, 1, 1, 1));
+		}
+
+		assertThatThrownBy(() -> cube.query(query(List.of(CubeDimension.SHOP, CubeDimension.CATEGORY,
+				CubeDimension.PRODUCT, CubeDimension.CASHIER, CubeDimension.CURRENCY, CubeDimension.DAY),
+				null, null, null, null, null), POOL, MAX_GROUPS))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void rejectsQueryWithTooManyGroups() {
+		SalesCube cube = new SalesCube();
+		for (int i = 0; i < 100; i++) {
+			cube.append(line(i, START.plusDays(i), 1L, "Drinks", PaymentMethod.CASH, 1, 1, 10_000));
+		}
+
+		CubeQuery byDay = query(List.of(CubeDimension.DAY), null, null, null, null, null);
+		assertThat(cube.query(byDay, POOL, 100).rows()).hasSize(100);
+		assertThatThrownBy(() -> cube.query(byDay, POOL, 99))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static SalesCubeLine randomLine(Random random, long orderId) {
+		int lines = random.nextInt(10) == 0 ? -1 : 1;
+		int quantity = 1 + random.nextInt(5);
+		return new SalesCubeLine(orderId, START.plusDays(random.nextInt(60)),
+				random.nextInt(8) == 0 ? null : (long) random.nextInt(5),
+				CATEGORIES[random.nextInt(CATEGORIES.length)], (long) random.nextInt(300),
+				random.nextInt(12) == 0 ? null : PaymentMethod.values()[random.nextInt(PaymentMethod.values().length)],
+				(long) random.nextInt(12), CURRENCIES[random.nextInt(CURRENCIES.length)],
+				SalesChannel.values()[random.nextInt(SalesChannel.values().length)],
+				lines, lines * quantity, lines * quantity * (long) random.nextInt(1_000_000));
+	}
+
+	private static SalesCubeLine line(long orderId, LocalDate day, Long shopId, String category,
+									  PaymentMethod paymentMethod, int lines, int quantity, long amount) {
+		return new SalesCubeLine(orderId, day, shopId, category, 7L, paymentMethod, 1L, "USD", SalesChannel.POS,
+				lines, quantity, amount);
+	}
+
+	private static CubeQuery query(List<CubeDimension> groupBy, LocalDate from, LocalDate to, Long shopId,
+								   Object filter, String currencyCode) {
+		return new CubeQuery(groupBy, from, to, shopId, filter instanceof String category ? category : null, null,
+				filter instanceof PaymentMethod method ? method : null, null, currencyCode, null);
+	}
+
+	private static Map<List<Object>, List<Object>> toMap(CubeResult result) {
+		Map<List<Object>, List<Object>> groups = new HashMap<>();
+		for (CubeResult.Row row : result.rows()) {
+			groups.put(new ArrayList<>(row.keys().values()),
+					List.of(row.lines(), row.quantity(), row.amount().unscaledValue().longValueExact()));
+		}
+		return groups;
+	}
+
+	private static Map<List<Object>, List<Object>> bruteForce(List<SalesCubeLine> lines, CubeQuery query) {
+		Map<List<Object>, long[]> totals = new HashMap<>();
+		for (SalesCubeLine line : lines) {
+			if ((query.from() != null && line.day().isBefore(query.from()))
+					|| (query.to() != null && line.day().isAfter(query.to()))
+					|| (query.shopId() != null && !query.shopId().equals(line.shopId()))
+					|| (query.category() != null && !query.category().equals(line.category()))
+					|| (query.paymentMethod() != null && query.paymentMethod() != line.paymentMethod())
+					|| (query.currencyCode() != null && !query.currencyCode().equals(line.currencyCode()))) {
+				continue;
+			}
+			List<Object> key = new ArrayList<>();
+			for (CubeDimension dimension : query.groupBy()) {
+				key.add(switch (dimension) {
+					case SHOP -> line.shopId();
+					case CATEGORY -> line.category();
+					case PRODUCT -> line.productId();
+					case DAY -> line.day();
+					case PAYMENT_METHOD -> line.paymentMethod();
+					case CASHIER -> line.cashierId();
+					case CURRENCY -> line.currencyCode();
+					case SALES_CHANNEL -> line.salesChannel();
+				});
+			}
+			long[] total = totals.computeIfAbsent(key, k -> new long[3]);
+			total[0] += line.lines();
+			total[1] += line.quantity();
+			total[2] += line.amount();
+		}
+
+		Map<List<Object>, List<Object>> groups = new HashMap<>();
+		totals.forEach((key, total) -> {
+			if (total[0] != 0 || total[1] != 0 || total[2] != 0) {
+				groups.put(key, List.of(total[0], total[1], total[2]));
+			}
+		});
+		return groups;
+	}
+}
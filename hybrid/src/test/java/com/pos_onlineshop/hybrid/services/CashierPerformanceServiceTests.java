@@ -0,0 +1,123 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.cashier.Cashier;
+import com.pos_onlineshop.hybrid.cashierSessions.CashierSession;
+import com.pos_onlineshop.hybrid.cashierSessions.CashierSessionRepository;
+import com.pos_onlineshop.hybrid.dtos.CashierPerformance;
+import com.pos_onlineshop.hybrid.enums.SessionStatus;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+@PosDataJpaTest
+@Import(CashierPerformanceService.class)
+class CashierPerformanceServiceTests {
+
+	private static final LocalDateTime START = LocalDateTime.of(2025, 6, 1, 0, 0);
+
+	@Autowired
+	private CashierPerformanceService performanceService;
+
+	@Autowired
+	private CashierSessionRepository sessionRepository;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+	private PosTestData data;
+	private final List<CashierSession> sessions = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		data = new PosTestData(context, "CP" + System.nanoTime() % 100_000).seed(1, 3);
+		Random random = new Random(11);
+		for (int i = 0; i < 300; i++) {
+			LocalDateTime start = START.plusMinutes(random.nextInt(20 * 24 * 60));
+			boolean closed = random.nextInt(5) > 0;
+			sessions.add(sessionRepository.save(CashierSession.builder()
+					.cashier(data.cashiers.get(random.nextInt(3)))
+					.shop(data.shop)
+					.sessionStart(start)
+					.sessionEnd(closed ? start.plusMinutes(30 + random.nextInt(480)) : null)
+					.status(closed ? SessionStatus.CLOSED : SessionStatus.ACTIVE)
+					.totalSales(BigDecimal.valueOf(random.nextInt(100_000), 2))
+					.transactionCount(random.nextInt(50))
+					.build()));
+		}
+	}
+
+	@Test
+	void rangesMatchTheSessionsAndFollowCommittedChanges() {
+		Random random = new Random(3);
+		for (int q = 0; q < 40; q++) {
+			LocalDateTime from = START.minusDays(1).plusMinutes(random.nextInt(22 * 24 * 60));
+			LocalDateTime to = q % 5 == 0 ? from : from.plusMinutes(random.nextInt(8 * 24 * 60));
+			assertMatchesSessions(from, to);
+		}
+
+		// A committed sale is seen on the next read of its day
+		CashierSession session = sessions.get(0);
+		transactionTemplate.executeWithoutResult(status -> {
+			session.setTotalSales(session.getTotalSales().add(new BigDecimal("1000.00")));
+			sessionRepository.save(session);
+			performanceService.markChanged(session.getSessionStart());
+		});
+		assertMatchesSessions(START, START.plusDays(20));
+
+		// Unannounced changes are not, as the day is cached
+		CashierPerformance before = performanceService.getCashierStats(session.getCashier().getId(),
+				START, START.plusDays(20));
+		session.setTotalSales(session.getTotalSales().add(new BigDecimal("1000.00")));
+		sessionRepository.save(session);
+		assertThat(performanceService.getCashierStats(session.getCashier().getId(), START, START.plusDays(20))
+				.getTotalSales()).isEqualByComparingTo(before.getTotalSales());
+	}
+
+	private void assertMatchesSessions(LocalDateTime from, LocalDateTime to) {
+		List<CashierPerformance> leaderboard = performanceService.getLeaderboard(from, to, 3);
+		for (Cashier cashier : data.cashiers) {
+			List<CashierSession> started = sessions.stream()
+					.filter(s -> s.getCashier().getId().equals(cashier.getId()))
+					.filter(s -> !s.getSessionStart().isBefore(from) && !s.getSessionStart().isAfter(to))
+					.toList();
+			CashierPerformance stats = performanceService.getCashierStats(cashier.getId(), from, to);
+			assertThat(stats.getTotalSessions()).isEqualTo(started.size());
+			assertThat(stats.getTotalSales()).isEqualByComparingTo(started.stream()
+					.map(CashierSession::getTotalSales)
+					.reduce(BigDecimal.ZERO, BigDecimal::add));
+			assertThat(stats.getTotalTransactions())
+					.isEqualTo(started.stream().mapToLong(CashierSession::getTransactionCount).sum());
+			assertThat(stats.getAverageSessionDuration()).isCloseTo(started.stream()
+					.filter(s -> s.getSessionEnd() != null)
+					.mapToLong(s -> Duration.between(s.getSessionStart(), s.getSessionEnd()).toMinutes())
+					.average().orElse(0.0), offset(1e-9));
+			if (!started.isEmpty()) {
+				assertThat(leaderboard).filteredOn(p -> p.getCashierId().equals(cashier.getId()))
+						.singleElement()
+						.satisfies(p -> assertThat(p.getTotalSales()).isEqualByComparingTo(stats.getTotalSales()));
+			}
+		}
+		assertThat(leaderboard).isSortedAccordingTo((a, b) -> b.getTotalSales().compareTo(a.getTotalSales()));
+	}
+}
@@ -0,0 +1,150 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.customers.Customers;
+import com.pos_onlineshop.hybrid.customers.CustomersRepository;
+import com.pos_onlineshop.hybrid.dtos.CustomerCohort;
+import com.pos_onlineshop.hybrid.dtos.CustomerStats;
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderChangedEvent;
+import com.pos_onlineshop.hybrid.orders.OrderRepository;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PosDataJpaTest
+@Import(CustomerSketchService.class)
+class CustomerSketchServiceTests {
+
+	private static final YearMonth JANUARY = YearMonth.of(2026, 1);
+	private static final YearMonth FEBRUARY = YearMonth.of(2026, 2);
+
+	@Autowired
+	private CustomerSketchService sketchService;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private CustomersRepository customersRepository;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+	private PosTestData data;
+	private final List<Customers> customers = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		String prefix = "HLL" + System.nanoTime() % 100_000;
+		data = new PosTestData(context, prefix).seed(1, 1);
+		for (int i = 0; i < 5; i++) {
+			customers.add(customersRepository.save(Customers.builder()
+					.code(prefix + "-C" + i)
+					.name("Customer " + i)
+					.build()));
+		}
+	}
+
+	@Test
+	void committedSalesMatchRebuildFromOrders() {
+		for (int i : new int[]{0, 1, 2, 3, 0}) {
+			sell(JANUARY.atDay(10), customers.get(i));
+		}
+		for (int i : new int[]{0, 1, 4}) {
+			sell(FEBRUARY.atDay(3), customers.get(i));
+		}
+		// Anonymous sales and rolled back sales are not counted
+		sell(FEBRUARY.atDay(3), null);
+		transactionTemplate.executeWithoutResult(status -> {
+			Order order = orderRepository.findAll().get(0);
+			order.setCustomer(customers.get(2));
+			order.setOrderDate(FEBRUARY.atDay(4).atTime(9, 0));
+			context.publishEvent(OrderChangedEvent.created(order));
+			status.setRollbackOnly();
+		});
+
+		// Counted from memory before the flush and from the table after it
+		assertStats(stats());
+		sketchService.flush();
+		assertStats(stats());
+		assertRetention(sketchService.getRetention(data.shop.getId(), JANUARY, 2));
+
+		sketchService.rebuild(JANUARY.atDay(1), FEBRUARY.atEndOfMonth());
+		assertStats(stats());
+		assertRetention(sketchService.getRetention(data.shop.getId(), JANUARY, 2));
+	}
+
+	@Test
+	void voidedAndDeletedSalesLeaveTheirDayAtTheNextFlush() {
+		LocalDate day = FEBRUARY.atDay(10);
+		sell(day, customers.get(0));
+		Order voided = sell(day, customers.get(1));
+		Order deleted = sell(day, customers.get(2));
+		sketchService.flush();
+
+		transactionTemplate.executeWithoutResult(status -> {
+			Order managed = orderRepository.findById(voided.getId()).orElseThrow();
+			managed.setStatus(OrderStatus.CANCELLED);
+			context.publishEvent(OrderChangedEvent.statusChanged(managed, OrderStatus.COMPLETED));
+		});
+		transactionTemplate.executeWithoutResult(status -> {
+			Order managed = orderRepository.findById(deleted.getId()).orElseThrow();
+			context.publishEvent(OrderChangedEvent.deleted(managed));
+			orderRepository.delete(managed);
+		});
+		// Sold again later the same day, so the customer stays
+		sell(day, customers.get(0));
+		sketchService.flush();
+
+		assertThat(sketchService.getCustomerStats(data.shop.getId(), day, day).getUniqueCustomers()).isEqualTo(1);
+	}
+
+	private CustomerStats stats() {
+		return sketchService.getCustomerStats(data.shop.getId(), FEBRUARY.atDay(1), FEBRUARY.atEndOfMonth());
+	}
+
+	private static void assertStats(CustomerStats stats) {
+		assertThat(stats.getUniqueCustomers()).isEqualTo(3);
+		assertThat(stats.getPreviousPeriodCustomers()).isEqualTo(4);
+		assertThat(stats.getReturningCustomers()).isEqualTo(2);
+		assertThat(stats.getReturningRate()).isEqualTo(66.67);
+	}
+
+	private static void assertRetention(List<CustomerCohort> cohorts) {
+		assertThat(cohorts).hasSize(2);
+		assertThat(cohorts.get(0).getMonth()).isEqualTo(JANUARY);
+		assertThat(cohorts.get(0).getCustomers()).isEqualTo(4);
+		assertThat(cohorts.get(0).getRetention()).containsExactly(50.0);
+		assertThat(cohorts.get(1).getCustomers()).isEqualTo(3);
+		assertThat(cohorts.get(1).getRetention()).isEmpty();
+	}
+
+	private Order sell(LocalDate day, Customers customer) {
+		return transactionTemplate.execute(status -> {
+			Order order = data.posSale(day.atTime(12, 0), 0, 1, "3.00");
+			order.setCustomer(customer);
+			Order saved = orderRepository.save(order);
+			context.publishEvent(OrderChangedEvent.created(saved));
+			return saved;
+		});
+	}
+}
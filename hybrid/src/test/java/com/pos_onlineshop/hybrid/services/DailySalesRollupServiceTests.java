@@ -0,0 +1,121 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.DailySummary;
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderChangedEvent;
+import com.pos_onlineshop.hybrid.orders.OrderRepository;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PosDataJpaTest
+@Import(DailySalesRollupService.class)
+class DailySalesRollupServiceTests {
+
+	private static final LocalDate TODAY = LocalDate.now();
+
+	@Autowired
+	private DailySalesRollupService rollupService;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+	private PosTestData data;
+
+	@BeforeEach
+	void setUp() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		data = new PosTestData(context, "ROLLUP" + System.nanoTime() % 100_000).seed(3, 2);
+	}
+
+	@Test
+	void summaryFollowsSalesVoidsAndDeletes() {
+		Order first = sell(0, PaymentMethod.CASH, 0, 2, "10.00", 1, 1, "5.00");
+		sell(0, PaymentMethod.CASH, 0, 1, "10.00");
+		Order card = sell(1, PaymentMethod.SWIPE, 2, 4, "2.50");
+		Order deleted = sell(1, PaymentMethod.SWIPE, 1, 3, "5.00");
+
+		voidOrder(card);
+		transactionTemplate.executeWithoutResult(status -> {
+			context.publishEvent(OrderChangedEvent.deleted(deleted));
+			orderRepository.deleteById(deleted.getId());
+		});
+
+		DailySummary summary = rollupService.getDailySummary(TODAY, data.shop.getId());
+
+		assertThat(summary.getTotalTransactions()).isEqualTo(3);
+		assertThat(summary.getRevenueByPaymentMethod()).containsOnlyKeys(PaymentMethod.CASH, PaymentMethod.SWIPE);
+		assertThat(summary.getCashInDrawer()).isEqualByComparingTo(first.getTotalAmount().add(new BigDecimal("10.00")));
+		assertThat(summary.getRevenueByPaymentMethod().get(PaymentMethod.SWIPE)).isEqualByComparingTo("10.00");
+		assertThat(summary.getRefundsProcessed()).isEqualTo(1);
+		assertThat(summary.getRefundTotal()).isEqualByComparingTo("10.00");
+		assertThat(summary.getTopSellingProducts()).containsExactly(
+				Map.entry(data.products.get(2).getName(), 4),
+				Map.entry(data.products.get(0).getName(), 3),
+				Map.entry(data.products.get(1).getName(), 1));
+		assertThat(summary.getTopCashier()).isEqualTo(data.cashiers.get(0).getFullName());
+	}
+
+	@Test
+	void rebuildReproducesIncrementalRollup() {
+		sell(0, PaymentMethod.CASH, 0, 2, "10.00", 1, 1, "5.00");
+		sell(1, PaymentMethod.ECOCASH, 2, 4, "2.50");
+		Order voided = sell(1, PaymentMethod.CASH, 1, 3, "5.00");
+		voidOrder(voided);
+
+		DailySummary incremental = rollupService.getDailySummary(TODAY, data.shop.getId());
+		rollupService.rebuild(TODAY, TODAY);
+		DailySummary rebuilt = rollupService.getDailySummary(TODAY, data.shop.getId());
+
+		assertThat(rebuilt.getTotalTransactions()).isEqualTo(incremental.getTotalTransactions());
+		assertThat(rebuilt.getTotalRevenue()).isEqualByComparingTo(incremental.getTotalRevenue());
+		assertThat(rebuilt.getRefundsProcessed()).isEqualTo(incremental.getRefundsProcessed());
+		assertThat(rebuilt.getRefundTotal()).isEqualByComparingTo(incremental.getRefundTotal());
+		assertThat(rebuilt.getTopSellingProducts()).isEqualTo(incremental.getTopSellingProducts());
+		assertThat(rebuilt.getTopCashier()).isEqualTo(incremental.getTopCashier());
+	}
+
+	/**
+	 * Save a completed POS sale and record it; lines are given as product index, quantity, price
+	 */
+	private Order sell(int cashier, PaymentMethod method, Object... lines) {
+		return transactionTemplate.execute(status -> {
+			Order order = data.posSale(TODAY.atTime(12, 0), lines);
+			order.setCashier(data.cashiers.get(cashier));
+			order.setPaymentMethod(method);
+			Order saved = orderRepository.save(order);
+			context.publishEvent(OrderChangedEvent.created(saved));
+			return saved;
+		});
+	}
+
+	private void voidOrder(Order order) {
+		transactionTemplate.executeWithoutResult(status -> {
+			Order managed = orderRepository.findById(order.getId()).orElseThrow();
+			OrderStatus oldStatus = managed.getStatus();
+			managed.setStatus(OrderStatus.CANCELLED);
+			context.publishEvent(OrderChangedEvent.statusChanged(managed, oldStatus));
+		});
+	}
+}
@@ -0,0 +1,96 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dataExport.ExportFormat;
+import com.pos_onlineshop.hybrid.dataExport.ExportType;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderRepository;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@PosDataJpaTest
+@Import(DataExportService.class)
+class DataExportServiceTests {
+
+	private static final LocalDate TODAY = LocalDate.now();
+
+	@Autowired
+	private DataExportService exportService;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private ApplicationContext context;
+
+	private PosTestData data;
+
+	@BeforeEach
+	void setUp() {
+		data = new PosTestData(context, "EXPORT" + System.nanoTime() % 100_000).seed(2, 1);
+	}
+
+	@Test
+	void ordersAsCsvQuoteTextAndKeepDecimals() {
+		Order first = save("Main, \"North\" branch", 0, 2, "10.50");
+		Order second = save("Kiosk", 1, 1, "3.25");
+
+		List<String> lines = export(ExportType.ORDERS, ExportFormat.CSV, data.shop.getId()).lines().toList();
+
+		assertThat(lines.get(0)).startsWith("id,order_date,status,sales_channel,payment_method,shop_id");
+		assertThat(lines).hasSize(3);
+		assertThat(lines.get(1)).startsWith(first.getId() + "," + TODAY.atTime(9, 30) + ",COMPLETED,POS,CASH,");
+		assertThat(lines.get(1)).contains("," + data.currency.getCode() + ",21.00,");
+		assertThat(lines.get(1)).contains(",\"Main, \"\"North\"\" branch\",");
+		assertThat(lines.get(2)).startsWith(second.getId() + ",");
+		assertThat(lines.get(2)).contains(",Kiosk,");
+	}
+
+	@Test
+	void orderLinesAsNdjsonOneObjectPerLine() {
+		Order order = save("Kiosk", 0, 3, "2.50");
+
+		List<String> lines = export(ExportType.ORDER_LINES, ExportFormat.NDJSON, data.shop.getId()).lines().toList();
+
+		assertThat(lines).singleElement().satisfies(line -> {
+			assertThat(line).startsWith("{\"id\":");
+			assertThat(line).contains("\"order_id\":" + order.getId());
+			assertThat(line).contains("\"quantity\":3");
+			assertThat(line).contains("\"product_name\":\"" + data.products.get(0).getName() + "\"");
+			assertThat(line).contains("\"currency\":\"" + data.currency.getCode() + "\"");
+		});
+	}
+
+	@Test
+	void emptyExportsStillWriteTheCsvHeader() {
+		assertThat(export(ExportType.SALES, ExportFormat.CSV, -1L)).isEqualTo(
+				"id,created_at,shop_id,customer_id,product_id,quantity,currency,unit_price,total_price,payment_method,sale_type\r\n");
+		assertThat(export(ExportType.ACCOUNTING_ENTRIES, ExportFormat.NDJSON, null)).isEmpty();
+		assertThatThrownBy(() -> export(ExportType.ACCOUNTING_ENTRIES, ExportFormat.CSV, 1L))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private String export(ExportType type, ExportFormat format, Long shopId) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		exportService.export(type, format, TODAY, TODAY, shopId, out);
+		return out.toString(StandardCharsets.UTF_8);
+	}
+
+	private Order save(String storeLocation, int product, int quantity, String price) {
+		Order order = data.posSale(TODAY.atTime(9, 30), product, quantity, price);
+		order.setStoreLocation(storeLocation);
+		return orderRepository.save(order);
+	}
+}
@@ -0,0 +1,117 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.enums.FiscalDeviceType;
+import com.pos_onlineshop.hybrid.fiscalDevice.FiscalDevice;
+import com.pos_onlineshop.hybrid.repositories.FiscalDeviceRepository;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PosDataJpaTest
+@Import(FiscalCounterAllocator.class)
+class FiscalCounterAllocatorTests {
+
+	private static final int THREADS = 16;
+	private static final int ALLOCATIONS_PER_THREAD = 250;
+
+	@Autowired
+	private FiscalCounterAllocator allocator;
+
+	@Autowired
+	private FiscalDeviceRepository deviceRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+
+	@BeforeEach
+	void setUp() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		deviceRepository.deleteAll();
+	}
+
+	@Test
+	void concurrentAllocationsAreUniqueAndGapFree() throws Exception {
+		FiscalDevice device = deviceRepository.save(newDevice("SN-CONCURRENT"));
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<List<Long>>> results = new ArrayList<>();
+
+		for (int t = 0; t < THREADS; t++) {
+			results.add(executor.submit(() -> {
+				start.await();
+				List<Long> allocated = new ArrayList<>(ALLOCATIONS_PER_THREAD);
+				for (int i = 0; i < ALLOCATIONS_PER_THREAD; i++) {
+					allocated.add(transactionTemplate.execute(status -> allocator.allocate(device.getId())));
+				}
+				return allocated;
+			}));
+		}
+		start.countDown();
+
+		List<Long> all = new ArrayList<>();
+		for (Future<List<Long>> result : results) {
+			List<Long> perThread = result.get(2, TimeUnit.MINUTES);
+			// Each thread sees its own numbers strictly increasing
+			assertThat(perThread).isSorted().doesNotHaveDuplicates();
+			all.addAll(perThread);
+		}
+		executor.shutdown();
+
+		int expected = THREADS * ALLOCATIONS_PER_THREAD;
+		assertThat(all).hasSize(expected).doesNotHaveDuplicates();
+		assertThat(new TreeSet<>(all).first()).isEqualTo(1L);
+		assertThat(new TreeSet<>(all).last()).isEqualTo((long) expected);
+		assertThat(deviceRepository.findLastReceiptNumber(device.getId())).isEqualTo((long) expected);
+	}
+
+	@Test
+	void rolledBackAllocationIsReissued() {
+		FiscalDevice device = deviceRepository.save(newDevice("SN-ROLLBACK"));
+
+		long first = transactionTemplate.execute(status -> allocator.allocate(device.getId()));
+		transactionTemplate.executeWithoutResult(status -> {
+			allocator.allocate(device.getId());
+			status.setRollbackOnly();
+		});
+		long next = transactionTemplate.execute(status -> allocator.allocate(device.getId()));
+
+		assertThat(first).isEqualTo(1L);
+		assertThat(next).isEqualTo(2L);
+	}
+
+	@Test
+	void savingDeviceDoesNotOverwriteCounter() {
+		FiscalDevice device = deviceRepository.save(newDevice("SN-STALE"));
+		transactionTemplate.execute(status -> allocator.allocate(device.getId()));
+
+		// The detached copy still holds 0; saving it must not reset the counter
+		device.setIsConnected(true);
+		deviceRepository.save(device);
+
+		assertThat(deviceRepository.findLastReceiptNumber(device.getId())).isEqualTo(1L);
+	}
+
+	private FiscalDevice newDevice(String serialNumber) {
+		FiscalDevice device = new FiscalDevice();
+		device.setSerialNumber(serialNumber);
+		device.setDeviceName("Till " + serialNumber);
+		device.setDeviceType(FiscalDeviceType.values()[0]);
+		device.setZimraRegistrationNumber("REG-" + serialNumber);
+		device.setCertificationDate(LocalDateTime.now());
+		device.setIsActive(true);
+		device.setIsConnected(false);
+		return device;
+	}
+}
@@ -0,0 +1,60 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.FiscalisationResponse;
+import com.pos_onlineshop.hybrid.enums.FiscalStatus;
+import com.pos_onlineshop.hybrid.fiscalOutbox.FiscalOutboxEntry;
+import com.pos_onlineshop.hybrid.fiscalOutbox.FiscalOutboxRepository;
+import com.pos_onlineshop.hybrid.mappers.FiscalisationMapper;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderRepository;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PosDataJpaTest(properties = "zimra.outbox.claim-timeout=PT0.1S")
+@Import({FiscalOutboxService.class, FiscalisationMapper.class})
+class FiscalOutboxServiceTests {
+
+	@Autowired
+	private FiscalOutboxService outboxService;
+
+	@Autowired
+	private FiscalOutboxRepository outboxRepository;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Test
+	void onlyTheCurrentClaimRecordsAnOutcome() throws InterruptedException {
+		PosTestData data = new PosTestData(context, "FOB" + System.nanoTime() % 100_000).seed(1, 1);
+		Order order = orderRepository.save(data.posSale(LocalDateTime.now(), 0, 1, "3.00"));
+		outboxService.enqueueOrder(order);
+		Long entryId = outboxRepository.findByOrderId(order.getId()).orElseThrow().getId();
+
+		FiscalOutboxEntry slow = outboxService.claim(entryId).orElseThrow();
+		assertThat(outboxService.claim(entryId)).isEmpty();
+		// The first worker is still waiting on the device when its claim times out
+		Thread.sleep(150);
+		FiscalOutboxEntry current = outboxService.claim(entryId).orElseThrow();
+
+		FiscalOutboxEntry ignored = outboxService.recordResult(entryId, slow.getClaimedAt(),
+				FiscalisationResponse.builder().id(1L).status(FiscalStatus.FISCALISED).build());
+		assertThat(ignored.getStatus()).isEqualTo(FiscalStatus.PROCESSING);
+		assertThat(ignored.getClaimedAt()).isEqualTo(current.getClaimedAt());
+
+		FiscalOutboxEntry failed = outboxService.recordFailure(entryId, current.getClaimedAt(), "Device offline");
+		assertThat(failed.getStatus()).isEqualTo(FiscalStatus.PENDING);
+		assertThat(failed.getAttempts()).isEqualTo(2);
+		assertThat(failed.getLastError()).isEqualTo("Device offline");
+	}
+}
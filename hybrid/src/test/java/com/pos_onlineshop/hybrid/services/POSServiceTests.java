@@ -0,0 +1,275 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.cashierSessions.CashierSession;
+import com.pos_onlineshop.hybrid.customers.Customers;
+import com.pos_onlineshop.hybrid.customers.CustomersRepository;
+import com.pos_onlineshop.hybrid.dtos.DailySummary;
+import com.pos_onlineshop.hybrid.dtos.QuickSaleItem;
+import com.pos_onlineshop.hybrid.dtos.TopProductsReport;
+import com.pos_onlineshop.hybrid.dtos.UpdateOrderRequest;
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotal;
+import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotalRepository;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderRepository;
+import com.pos_onlineshop.hybrid.products.Product;
+import com.pos_onlineshop.hybrid.products.ProductRepository;
+import com.pos_onlineshop.hybrid.salesCube.CubeDimension;
+import com.pos_onlineshop.hybrid.salesCube.CubeQuery;
+import com.pos_onlineshop.hybrid.salesCube.CubeResult;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import com.pos_onlineshop.hybrid.topProducts.TopProductsWindow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Quick sales and voids through POSService, checked against each analytics view kept from
+ * the order changes it publishes. Runs the whole application on the h2 profile.
+ */
+@SpringBootTest(properties = "zimra.auto-fiscalise=false")
+@ActiveProfiles("h2")
+class POSServiceTests {
+
+	@Autowired
+	private POSService posService;
+
+	@Autowired
+	private CashierService cashierService;
+
+	@Autowired
+	private TopProductsService topProductsService;
+
+	@Autowired
+	private CustomerSketchService customerSketchService;
+
+	@Autowired
+	private RevenueSeriesService revenueSeriesService;
+
+	@Autowired
+	private SalesCubeService salesCubeService;
+
+	@Autowired
+	private DailySalesRollupService dailySalesRollupService;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private CustomersRepository customersRepository;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private InventoryTotalRepository inventoryTotalRepository;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private StockMutationCoordinator stockMutationCoordinator;
+
+	@Autowired
+	private ApplicationContext context;
+
+	private PosTestData data;
+
+	@BeforeEach
+	void setUp() throws InterruptedException {
+		data = new PosTestData(context, "POS" + System.nanoTime() % 100_000).seed(3, 1);
+		awaitStartupLoads();
+	}
+
+	@Test
+	void voidedSalesLeaveTheTopProducts() {
+		sell(0, 2, 1, 5);
+		Order voided = sell(0, 3, 2, 1);
+		posService.voidTransaction(voided.getId(), "Rung up twice");
+
+		TopProductsReport top = topProductsService.getTopProducts(data.shop.getId(), TopProductsWindow.DAY,
+				10, false, false);
+		assertThat(top.getTotalQuantity()).isEqualTo(7);
+		assertThat(top.getProducts())
+				.extracting(TopProductsReport.Item::getProductId, TopProductsReport.Item::getQuantity)
+				.containsExactly(tuple(data.products.get(1).getId(), 5L), tuple(data.products.get(0).getId(), 2L));
+
+		topProductsService.load();
+		assertThat(topProductsService.getTopProducts(data.shop.getId(), TopProductsWindow.DAY, 10, false, false)
+				.getProducts()).usingRecursiveComparison().isEqualTo(top.getProducts());
+	}
+
+	@Test
+	void voidedSalesLeaveTheCustomerSketch() {
+		LocalDate today = LocalDate.now();
+		Order kept = sell(0, 1);
+		Order voided = sell(1, 1);
+		// Quick sales are anonymous; the customers are named on the orders afterwards
+		nameCustomer(kept, "C1");
+		nameCustomer(voided, "C2");
+		customerSketchService.rebuild(today, today);
+		assertThat(customerSketchService.getCustomerStats(data.shop.getId(), today, today).getUniqueCustomers())
+				.isEqualTo(2);
+
+		posService.voidTransaction(voided.getId(), "Returned");
+		customerSketchService.flush();
+		assertThat(customerSketchService.getCustomerStats(data.shop.getId(), today, today).getUniqueCustomers())
+				.isEqualTo(1);
+	}
+
+	@Test
+	void voidedSalesLeaveTheRevenueSeries() {
+		LocalDateTime today = LocalDate.now().atStartOfDay();
+		Order kept = sell(0, 2);
+		Order voided = sell(1, 3);
+		posService.voidTransaction(voided.getId(), "Card declined");
+
+		assertThat(revenueSeriesService.sumRevenue(data.shop.getId(), today, today.plusDays(1), data.currency))
+				.hasValueSatisfying(sum -> assertThat(sum).isEqualByComparingTo(kept.getTotalAmount()));
+		revenueSeriesService.reload();
+		assertThat(revenueSeriesService.sumRevenue(data.shop.getId(), today, today.plusDays(1), data.currency))
+				.hasValueSatisfying(sum -> assertThat(sum).isEqualByComparingTo(kept.getTotalAmount()));
+	}
+
+	@Test
+	void voidsAreCountedAsRefundsInTheDailySummary() {
+		LocalDate today = LocalDate.now();
+		Order kept = sell(0, 2);
+		Order voided = sell(1, 3);
+		posService.voidTransaction(voided.getId(), "Customer changed their mind");
+
+		DailySummary summary = posService.getDailySummary(today, data.shop.getId());
+		assertThat(summary.getTotalTransactions()).isEqualTo(2);
+		assertThat(summary.getTotalRevenue()).isEqualByComparingTo(kept.getTotalAmount().add(voided.getTotalAmount()));
+		assertThat(summary.getRefundsProcessed()).isEqualTo(1);
+		assertThat(summary.getRefundTotal()).isEqualByComparingTo(voided.getTotalAmount());
+
+		// Rebuilding the day from the orders gives the same summary
+		dailySalesRollupService.rebuild(today, today);
+		assertThat(posService.getDailySummary(today, data.shop.getId())).usingRecursiveComparison()
+				.withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+				.isEqualTo(summary);
+	}
+
+	@Test
+	void voidedSalesLeaveTheSalesCube() {
+		sell(0, 2, 1, 5);
+		Order voided = sell(0, 3, 2, 1);
+		posService.voidTransaction(voided.getId(), "Wrong items");
+
+		List<CubeResult.Row> incremental = byProduct();
+		assertThat(incremental)
+				.extracting(row -> row.keys().get(CubeDimension.PRODUCT), CubeResult.Row::quantity)
+				.containsExactlyInAnyOrder(tuple(data.products.get(0).getId(), 2L),
+						tuple(data.products.get(1).getId(), 5L));
+		salesCubeService.reload();
+		assertThat(byProduct()).isEqualTo(incremental);
+	}
+
+	@Test
+	void aBasketFailsOnItsFirstLineThatCannotBeSold() {
+		Product unpriced = productRepository.save(Product.builder()
+				.name(data.shop.getCode() + " unpriced")
+				.category("General")
+				.sku(data.shop.getCode() + "-UNPRICED")
+				.build());
+		inventoryTotalRepository.save(InventoryTotal.builder()
+				.shop(data.shop)
+				.product(unpriced)
+				.totalstock(10)
+				.build());
+		data.products.add(unpriced);
+		String shortOfStock = "Insufficient stock in shop for: " + data.products.get(0).getName();
+		String withoutPrice = "No selling price found for product: " + unpriced.getName();
+
+		// Each line is checked for stock, then for a price, before the next line
+		assertThatThrownBy(() -> sell(0, 20_000_000, 3, 1)).hasMessage(shortOfStock);
+		assertThatThrownBy(() -> sell(3, 1, 0, 20_000_000)).hasMessageStartingWith(withoutPrice);
+		// Stock counts the earlier lines of the same product
+		assertThatThrownBy(() -> sell(0, 6_000_000, 0, 6_000_000, 3, 1)).hasMessage(shortOfStock);
+		assertThat(inventoryTotalRepository.findTotalstock(data.shop.getId(), data.products.get(0).getId()))
+				.contains(10_000_000);
+	}
+
+	@Test
+	void aVoidThatReadTheOrderBeforeAnotherTillVoidedItIsRerunAndRefused() {
+		LocalDateTime today = LocalDate.now().atStartOfDay();
+		Order order = sell(0, 2);
+		Long productId = data.products.get(0).getId();
+		Integer stockBefore = inventoryTotalRepository.findTotalstock(data.shop.getId(), productId).orElseThrow() + 2;
+
+		AtomicInteger attempts = new AtomicInteger();
+		assertThatThrownBy(() -> stockMutationCoordinator.executeWithoutResult(() -> {
+			if (attempts.incrementAndGet() == 1) {
+				// Read the order, then let another till void it before this void writes
+				orderRepository.findById(order.getId()).orElseThrow();
+				Thread otherTill = new Thread(() -> posService.voidTransaction(order.getId(), "Customer left"));
+				otherTill.start();
+				try {
+					otherTill.join();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			posService.voidTransaction(order.getId(), "Rung up twice");
+		})).hasMessage("Order already voided");
+
+		assertThat(attempts).hasValue(2);
+		assertThat(inventoryTotalRepository.findTotalstock(data.shop.getId(), productId)).contains(stockBefore);
+		assertThat(posService.getDailySummary(LocalDate.now(), data.shop.getId()).getRefundsProcessed()).isEqualTo(1);
+		assertThat(revenueSeriesService.sumRevenue(data.shop.getId(), today, today.plusDays(1), data.currency))
+				.hasValueSatisfying(sum -> assertThat(sum).isEqualByComparingTo(BigDecimal.ZERO));
+	}
+
+	private List<CubeResult.Row> byProduct() {
+		LocalDate today = LocalDate.now();
+		return salesCubeService.query(new CubeQuery(List.of(CubeDimension.PRODUCT), today, today,
+				data.shop.getId(), null, null, null, null, data.currency.getCode(), null)).rows();
+	}
+
+	private void nameCustomer(Order order, String code) {
+		Customers customer = customersRepository.save(Customers.builder()
+				.code(data.shop.getCode() + "-" + code)
+				.name("Customer " + code)
+				.build());
+		orderService.updateOrderFromRequest(order.getId(), UpdateOrderRequest.builder()
+				.customerId(customer.getId())
+				.build());
+	}
+
+	/**
+	 * Ring up a cash sale at the first till; items are given as product index, quantity
+	 */
+	private Order sell(int... items) {
+		List<QuickSaleItem> basket = new ArrayList<>();
+		for (int i = 0; i < items.length; i += 2) {
+			QuickSaleItem item = new QuickSaleItem();
+			item.setProductId(data.products.get(items[i]).getId());
+			item.setQuantity(items[i + 1]);
+			basket.add(item);
+		}
+		CashierSession session = cashierService.getActiveSession(data.cashiers.get(0).getId()).orElseThrow();
+		return posService.processQuickSale(basket, PaymentMethod.CASH, null, session);
+	}
+
+	private void awaitStartupLoads() throws InterruptedException {
+		for (int i = 0; i < 500 && !(revenueSeriesService.isLoaded() && salesCubeService.getLoadedAt() != null
+				&& topProductsService.getTopProducts(null, TopProductsWindow.DAY, 1, false, false).isComplete()); i++) {
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.selling_price.SellingPrice;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// One connection, so a lookup that needed a second one while its transaction holds the first would time out
+@PosDataJpaTest(properties = {"spring.datasource.hikari.maximum-pool-size=1",
+		"spring.datasource.hikari.connection-timeout=5000"})
+@Import(PriceBook.class)
+class PriceBookTests {
+
+	@Autowired
+	private PriceBook priceBook;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Test
+	void changingAFoundPriceLeavesTheCachedOneAlone() {
+		PosTestData data = new PosTestData(context, "PB" + System.nanoTime() % 100_000).seed(1, 0);
+		Long shopId = data.shop.getId();
+		Long productId = data.products.get(0).getId();
+
+		SellingPrice found = priceBook.findBestPrice(shopId, productId, LocalDateTime.now()).orElseThrow();
+		BigDecimal price = found.getSellingPrice();
+		found.setSellingPrice(price.add(BigDecimal.TEN));
+		found.setEffectiveTo(LocalDateTime.now().minusDays(1));
+		found.getTaxes().clear();
+
+		SellingPrice again = priceBook.findBestPrice(shopId, productId, LocalDateTime.now()).orElseThrow();
+		assertThat(again).isNotSameAs(found);
+		assertThat(again.getId()).isEqualTo(found.getId());
+		assertThat(again.getSellingPrice()).isEqualByComparingTo(price);
+		assertThat(again.getEffectiveTo()).isNull();
+	}
+
+	@Test
+	void aLookupInsideATransactionUsesItsConnectionAndTheShopLoadsInTheBackground() throws InterruptedException {
+		PosTestData data = new PosTestData(context, "PL" + System.nanoTime() % 100_000).seed(1, 0);
+		Long shopId = data.shop.getId();
+		Long productId = data.products.get(0).getId();
+
+		SellingPrice queried = new TransactionTemplate(transactionManager).execute(status ->
+				priceBook.findBestPrice(shopId, productId, LocalDateTime.now()).orElseThrow());
+
+		for (int i = 0; i < 500 && !priceBook.isLoaded(shopId); i++) {
+			Thread.sleep(10);
+		}
+		assertThat(priceBook.isLoaded(shopId)).isTrue();
+		assertThat(priceBook.findBestPrice(shopId, productId, LocalDateTime.now())).hasValueSatisfying(cached -> {
+			assertThat(cached.getId()).isEqualTo(queried.getId());
+			assertThat(cached.getSellingPrice()).isEqualByComparingTo(queried.getSellingPrice());
+		});
+	}
+}
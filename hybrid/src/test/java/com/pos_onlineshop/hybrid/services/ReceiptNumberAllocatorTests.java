@@ -0,0 +1,44 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.shop.Shop;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two connections: one held by the sale, one for the background reservation
+@PosDataJpaTest(properties = {"receipt.sequence.block-size=10",
+		"spring.datasource.hikari.maximum-pool-size=2",
+		"spring.datasource.hikari.connection-timeout=5000"})
+@Import(ReceiptNumberAllocator.class)
+class ReceiptNumberAllocatorTests {
+
+	@Autowired
+	private ReceiptNumberAllocator allocator;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Test
+	void numbersRunOnAcrossBlocksWhileTheSaleHoldsItsConnection() {
+		Shop shop = new PosTestData(context, "RN" + System.nanoTime() % 100_000).seed(0, 0).shop;
+
+		List<String> numbers = new TransactionTemplate(transactionManager).execute(status ->
+				IntStream.range(0, 30).mapToObj(i -> allocator.nextReceiptNumber(shop)).toList());
+
+		assertThat(numbers.stream().map(number -> Integer.parseInt(number.substring(number.lastIndexOf('-') + 1))))
+				.containsExactlyElementsOf(IntStream.rangeClosed(1, 30).boxed().toList());
+	}
+}
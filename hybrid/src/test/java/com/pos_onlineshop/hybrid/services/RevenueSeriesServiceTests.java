@@ -0,0 +1,109 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.RevenuePoint;
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderChangedEvent;
+import com.pos_onlineshop.hybrid.orders.OrderRepository;
+import com.pos_onlineshop.hybrid.revenueSeries.RevenueResolution;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PosDataJpaTest
+@Import({RevenueSeriesService.class, CurrencyService.class})
+class RevenueSeriesServiceTests {
+
+	private static final LocalDateTime DAY = LocalDateTime.now().minusDays(1).withHour(8).withMinute(0)
+			.withSecond(0).withNano(0);
+
+	@Autowired
+	private RevenueSeriesService revenueSeriesService;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+	private PosTestData data;
+
+	@BeforeEach
+	void setUp() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		data = new PosTestData(context, "RS" + System.nanoTime() % 100_000).seed(1, 1);
+	}
+
+	@Test
+	void committedChangesMatchReloadAndOrders() {
+		sell(DAY.plusMinutes(5), 2);
+		sell(DAY.plusHours(3).plusMinutes(30), 1);
+		revenueSeriesService.reload();
+
+		Order voided = sell(DAY.plusHours(3).plusMinutes(45), 4);
+		sell(DAY.plusHours(9), 3);
+		transactionTemplate.executeWithoutResult(status -> {
+			Order order = orderRepository.findById(voided.getId()).orElseThrow();
+			order.setStatus(OrderStatus.CANCELLED);
+			context.publishEvent(OrderChangedEvent.statusChanged(orderRepository.save(order), OrderStatus.COMPLETED));
+		});
+		// A rolled back sale is not counted
+		transactionTemplate.executeWithoutResult(status -> {
+			context.publishEvent(OrderChangedEvent.created(orderRepository.save(newOrder(DAY.plusHours(2), 5))));
+			status.setRollbackOnly();
+		});
+
+		assertSeries();
+		revenueSeriesService.reload();
+		assertSeries();
+	}
+
+	private void assertSeries() {
+		LocalDateTime end = DAY.plusDays(1);
+		BigDecimal fromOrders = orderRepository
+				.sumTotalsByStatusAndCurrency(OrderStatus.COMPLETED, data.shop.getId(), DAY, end).stream()
+				.map(row -> (BigDecimal) row[2])
+				.reduce(BigDecimal.ZERO, BigDecimal::add);
+		assertThat(fromOrders).isEqualByComparingTo("18.00");
+		assertThat(revenueSeriesService.sumRevenue(data.shop.getId(), DAY, end, data.currency))
+				.hasValueSatisfying(sum -> assertThat(sum).isEqualByComparingTo(fromOrders));
+		// Edges inside an hour come from minute buckets
+		assertThat(revenueSeriesService.sumRevenue(data.shop.getId(), DAY.plusMinutes(5),
+				DAY.plusHours(3).plusMinutes(31), data.currency))
+				.hasValueSatisfying(sum -> assertThat(sum).isEqualByComparingTo("9.00"));
+
+		List<RevenuePoint> hours = revenueSeriesService.getSeries(data.shop.getId(), RevenueResolution.HOUR,
+				DAY, end, data.currency);
+		assertThat(hours).extracting(RevenuePoint::getStart)
+				.containsExactly(DAY, DAY.plusHours(3), DAY.plusHours(9));
+		assertThat(hours).extracting(RevenuePoint::getOrders).containsExactly(1L, 1L, 1L);
+	}
+
+	private Order sell(LocalDateTime at, int quantity) {
+		return transactionTemplate.execute(status -> {
+			Order order = orderRepository.save(newOrder(at, quantity));
+			context.publishEvent(OrderChangedEvent.created(order));
+			return order;
+		});
+	}
+
+	private Order newOrder(LocalDateTime at, int quantity) {
+		return data.posSale(at, 0, quantity, "3.00");
+	}
+}
@@ -0,0 +1,106 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import com.pos_onlineshop.hybrid.enums.PaymentMethod;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderChangedEvent;
+import com.pos_onlineshop.hybrid.orders.OrderRepository;
+import com.pos_onlineshop.hybrid.salesCube.CubeDimension;
+import com.pos_onlineshop.hybrid.salesCube.CubeQuery;
+import com.pos_onlineshop.hybrid.salesCube.CubeResult;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PosDataJpaTest
+@Import(SalesCubeService.class)
+class SalesCubeServiceTests {
+
+	private static final LocalDate TODAY = LocalDate.now();
+
+	@Autowired
+	private SalesCubeService cubeService;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+	private PosTestData data;
+
+	@BeforeEach
+	void setUp() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		data = new PosTestData(context, "CUBE" + System.nanoTime() % 100_000).seed(3, 2);
+	}
+
+	@Test
+	void committedChangesMatchReload() {
+		cubeService.reload();
+		sell(PaymentMethod.CASH, 0, 2, "10.00", 1, 1, "5.00");
+		Order voided = sell(PaymentMethod.ECOCASH, 2, 4, "2.50");
+		sell(PaymentMethod.ECOCASH, 1, 3, "5.00");
+		voidOrder(voided);
+
+		// A rolled back sale never reaches the cube
+		transactionTemplate.executeWithoutResult(status -> {
+			context.publishEvent(OrderChangedEvent.created(orderRepository.findById(voided.getId()).orElseThrow()));
+			status.setRollbackOnly();
+		});
+
+		List<CubeResult.Row> incremental = byPaymentMethod();
+		assertThat(incremental).hasSize(2);
+		assertThat(incremental.get(0).keys()).containsEntry(CubeDimension.PAYMENT_METHOD, PaymentMethod.CASH);
+		assertThat(incremental.get(0).amount()).isEqualByComparingTo("25.00");
+		assertThat(incremental.get(0).quantity()).isEqualTo(3);
+		assertThat(incremental.get(1).amount()).isEqualByComparingTo("15.00");
+		assertThat(incremental.get(1).lines()).isEqualTo(1);
+
+		cubeService.reload();
+
+		assertThat(byPaymentMethod()).isEqualTo(incremental);
+	}
+
+	private List<CubeResult.Row> byPaymentMethod() {
+		return cubeService.query(new CubeQuery(List.of(CubeDimension.PAYMENT_METHOD), TODAY, TODAY,
+				data.shop.getId(), null, null, null, null, data.currency.getCode(), null)).rows();
+	}
+
+	/**
+	 * Save a completed POS sale and record it; lines are given as product index, quantity, price
+	 */
+	private Order sell(PaymentMethod method, Object... lines) {
+		return transactionTemplate.execute(status -> {
+			Order order = data.posSale(TODAY.atTime(12, 0), lines);
+			order.setPaymentMethod(method);
+			Order saved = orderRepository.save(order);
+			context.publishEvent(OrderChangedEvent.created(saved));
+			return saved;
+		});
+	}
+
+	private void voidOrder(Order order) {
+		transactionTemplate.executeWithoutResult(status -> {
+			Order managed = orderRepository.findById(order.getId()).orElseThrow();
+			OrderStatus oldStatus = managed.getStatus();
+			managed.setStatus(OrderStatus.CANCELLED);
+			context.publishEvent(OrderChangedEvent.statusChanged(managed, oldStatus));
+		});
+	}
+}
@@ -0,0 +1,192 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.ShopInventoryCompactionResult;
+import com.pos_onlineshop.hybrid.products.Product;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventory;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventoryRepository;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventorySnapshot;
+import com.pos_onlineshop.hybrid.suppliers.Suppliers;
+import com.pos_onlineshop.hybrid.suppliers.SuppliersRepository;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PosDataJpaTest(properties = {
+		"shop-inventory.compaction.batch-size=2",
+		"shop-inventory.compaction.archive-dir=target/test-archive/shop-inventories"
+})
+@Import(ShopInventoryCompactionService.class)
+class ShopInventoryCompactionServiceTests {
+
+	private static final LocalDateTime JANUARY = LocalDateTime.of(2025, 1, 10, 9, 0);
+
+	@Autowired
+	private ShopInventoryCompactionService compactionService;
+
+	@Autowired
+	private ShopInventoryRepository shopInventoryRepository;
+
+	@Autowired
+	private SuppliersRepository suppliersRepository;
+
+	@Autowired
+	private ApplicationContext context;
+
+	private PosTestData data;
+	private Suppliers supplier;
+
+	@BeforeEach
+	void setUp() {
+		String prefix = "SC" + System.nanoTime() % 100_000;
+		data = new PosTestData(context, prefix).seed(4, 0);
+		supplier = suppliersRepository.save(Suppliers.builder().code(prefix + "-SUP").name("Supplier").build());
+	}
+
+	@Test
+	void oldRecordsAreFoldedIntoMonthlySnapshotsAndArchived() throws IOException {
+		Product restocked = data.products.get(0);
+		Product stale = data.products.get(1);
+		Product fresh = data.products.get(2);
+		Product unrecorded = data.products.get(3);
+
+		ShopInventory first = record(restocked, JANUARY, 10, "2.00", true);
+		ShopInventory second = record(restocked, JANUARY.plusDays(10), 30, "3.00", true);
+		ShopInventory february = record(restocked, JANUARY.plusMonths(1), 5, "4.00", true);
+		ShopInventory restockedCurrent = record(restocked, LocalDateTime.now(), 1, "5.00", true);
+		ShopInventory staleOldest = record(stale, JANUARY.minusDays(1), 7, "0.50", true);
+		ShopInventory staleOld = record(stale, JANUARY, 7, "1.00", true);
+		ShopInventory staleCurrent = record(stale, JANUARY.plusDays(1), 7, "1.50", true);
+		ShopInventory freshCurrent = record(fresh, LocalDateTime.now(), 2, "9.00", true);
+		// Saved without its pointer; the run must still keep it as the current record
+		ShopInventory unrecordedOldest = record(unrecorded, JANUARY.minusDays(1), 1, "1.00", false);
+		ShopInventory unrecordedOld = record(unrecorded, JANUARY, 1, "1.00", false);
+		ShopInventory unrecordedCurrent = record(unrecorded, JANUARY.plusDays(2), 1, "1.00", false);
+
+		// Only the records of the first day are before this cutoff
+		ShopInventoryCompactionResult early = compactionService.compact(JANUARY.plusDays(1));
+		assertThat(early.getRecordsCompacted()).isEqualTo(3);
+		assertThat(archivedIds(early)).containsExactlyInAnyOrder(first.getId(), staleOldest.getId(),
+				unrecordedOldest.getId());
+
+		// The record before each current one is kept too
+		ShopInventoryCompactionResult result = compactionService.compact(LocalDateTime.now().minusDays(1));
+		assertThat(result.getRecordsCompacted()).isEqualTo(1);
+		assertThat(archivedIds(result)).containsExactly(second.getId());
+
+		assertThat(shopInventoryRepository.findByShop(data.shop)).extracting(ShopInventory::getId)
+				.containsExactlyInAnyOrder(february.getId(), restockedCurrent.getId(), staleOld.getId(),
+						staleCurrent.getId(), freshCurrent.getId(), unrecordedOld.getId(), unrecordedCurrent.getId());
+		assertThat(shopInventoryRepository.findLatest(data.shop, stale)).map(ShopInventory::getId)
+				.contains(staleCurrent.getId());
+		assertThat(shopInventoryRepository.findLatest(data.shop, unrecorded)).map(ShopInventory::getId)
+				.contains(unrecordedCurrent.getId());
+
+		// The two January records were compacted by different runs into the same snapshot
+		List<ShopInventorySnapshot> snapshots = compactionService.getSnapshots(data.shop.getId(), restocked.getId());
+		assertThat(snapshots).extracting(ShopInventorySnapshot::getPeriodStart)
+				.containsExactly(LocalDate.of(2025, 1, 1));
+		ShopInventorySnapshot january = snapshots.get(0);
+		assertThat(january.getRecordCount()).isEqualTo(2);
+		assertThat(january.getQuantity()).isEqualTo(40L);
+		assertThat(january.getReceivedValue()).isEqualByComparingTo("110.00");
+		assertThat(january.getMinUnitPrice()).isEqualByComparingTo("2.00");
+		assertThat(january.getMaxUnitPrice()).isEqualByComparingTo("3.00");
+		assertThat(january.getFirstAddedAt()).isEqualTo(JANUARY);
+		assertThat(january.getLastAddedAt()).isEqualTo(JANUARY.plusDays(10));
+		assertThat(january.getLastRecordId()).isEqualTo(second.getId());
+		assertThat(compactionService.getSnapshots(data.shop.getId(), fresh.getId())).isEmpty();
+
+		ShopInventoryCompactionResult again = compactionService.compact(LocalDateTime.now().minusDays(1));
+		assertThat(again.getRecordsCompacted()).isZero();
+		assertThat(again.getArchiveFile()).isNull();
+	}
+
+	@Test
+	void deletingTheCurrentRecordMakesThePreviousOneCurrent() {
+		Product product = data.products.get(0);
+		ShopInventory previous = record(product, JANUARY, 1, "1.00", true);
+		ShopInventory current = record(product, JANUARY.plusDays(1), 1, "2.00", true);
+
+		shopInventoryRepository.relinkLatest(data.shop.getId(), product.getId(), current.getId());
+		shopInventoryRepository.delete(current);
+		assertThat(shopInventoryRepository.findLatest(data.shop, product)).map(ShopInventory::getId)
+				.contains(previous.getId());
+
+		shopInventoryRepository.relinkLatest(data.shop.getId(), product.getId(), previous.getId());
+		shopInventoryRepository.delete(previous);
+		assertThat(shopInventoryRepository.findLatest(data.shop, product)).isEmpty();
+	}
+
+	@Test
+	void deletingTheCurrentRecordAfterCompactionRestoresThePreviousSettings() {
+		Product product = data.products.get(0);
+		record(product, JANUARY, 1, "1.00", true);
+		ShopInventory previous = shopInventoryRepository.save(ShopInventory.builder()
+				.shop(data.shop)
+				.product(product)
+				.suppliers(supplier)
+				.currency(data.currency)
+				.quantity(4)
+				.unitPrice(new BigDecimal("2.50"))
+				.reorderLevel(6)
+				.minStock(3)
+				.addedAt(JANUARY.plusDays(1))
+				.build());
+		shopInventoryRepository.recordLatest(previous);
+		ShopInventory current = record(product, JANUARY.plusDays(2), 1, "3.00", true);
+
+		assertThat(compactionService.compact(LocalDateTime.now().minusDays(1)).getRecordsCompacted()).isEqualTo(1);
+		shopInventoryRepository.relinkLatest(data.shop.getId(), product.getId(), current.getId());
+		shopInventoryRepository.delete(current);
+
+		ShopInventory restored = shopInventoryRepository.findLatest(data.shop, product).orElseThrow();
+		assertThat(restored.getId()).isEqualTo(previous.getId());
+		assertThat(restored.getSuppliers().getId()).isEqualTo(supplier.getId());
+		assertThat(restored.getUnitPrice()).isEqualByComparingTo("2.50");
+		assertThat(restored.getReorderLevel()).isEqualTo(6);
+		assertThat(restored.getMinStock()).isEqualTo(3);
+	}
+
+	private ShopInventory record(Product product, LocalDateTime addedAt, int quantity, String unitPrice,
+								 boolean recordLatest) {
+		ShopInventory saved = shopInventoryRepository.save(ShopInventory.builder()
+				.shop(data.shop)
+				.product(product)
+				.suppliers(supplier)
+				.currency(data.currency)
+				.quantity(quantity)
+				.unitPrice(new BigDecimal(unitPrice))
+				.addedAt(addedAt)
+				.build());
+		if (recordLatest) {
+			shopInventoryRepository.recordLatest(saved);
+		}
+		return saved;
+	}
+
+	private static List<Long> archivedIds(ShopInventoryCompactionResult result) throws IOException {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(Files.newInputStream(Path.of(result.getArchiveFile()))), StandardCharsets.UTF_8))) {
+			assertThat(reader.readLine()).startsWith("id,shop_id,product_id,");
+			return reader.lines().map(line -> Long.parseLong(line.substring(0, line.indexOf(',')))).toList();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.ShopInventoryPage;
+import com.pos_onlineshop.hybrid.dtos.ShopInventoryResponse;
+import com.pos_onlineshop.hybrid.products.Product;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventory;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventoryRepository;
+import com.pos_onlineshop.hybrid.suppliers.Suppliers;
+import com.pos_onlineshop.hybrid.suppliers.SuppliersRepository;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PosDataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"shop-inventory.listing.max-page-size=10"
+})
+@Import({ShopInventoryService.class, StockMutationCoordinator.class, StockValuationService.class,
+		StockLedgerService.class})
+class ShopInventoryServiceTests {
+
+	@Autowired
+	private ShopInventoryService shopInventoryService;
+
+	@Autowired
+	private ShopInventoryRepository shopInventoryRepository;
+
+	@Autowired
+	private SuppliersRepository suppliersRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private ApplicationContext context;
+
+	private PosTestData data;
+	private final Map<Long, ShopInventory> latest = new HashMap<>();
+
+	@BeforeEach
+	void setUp() {
+		String prefix = "SI" + System.nanoTime() % 100_000;
+		data = new PosTestData(context, prefix).seed(25, 0);
+		Suppliers supplier = suppliersRepository.save(Suppliers.builder().code(prefix + "-SUP").name("Supplier").build());
+		// Every third product has no record, every other one has been restocked at a new price
+		for (int i = 0; i < data.products.size(); i++) {
+			Product product = data.products.get(i);
+			if (i % 3 == 0) {
+				continue;
+			}
+			for (int record = 0; record <= i % 2; record++) {
+				ShopInventory saved = shopInventoryRepository.save(ShopInventory.builder()
+						.shop(data.shop)
+						.product(product)
+						.suppliers(supplier)
+						.currency(data.currency)
+						.quantity(10)
+						.unitPrice(BigDecimal.valueOf(100 * i + record, 2))
+						.reorderLevel(i)
+						.build());
+				shopInventoryRepository.recordLatest(saved);
+				latest.put(product.getId(), saved);
+			}
+		}
+	}
+
+	@Test
+	void pagesPairEachTotalWithItsLatestRecordInTwoQueries() {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		List<ShopInventoryResponse> paged = new ArrayList<>();
+		Long cursor = null;
+		int pages = 0;
+		statistics.clear();
+		do {
+			ShopInventoryPage page = shopInventoryService.getShopInventoryPage(data.shop.getId(), cursor, 7);
+			paged.addAll(page.getItems());
+			cursor = page.getNextCursor();
+			pages++;
+		} while (cursor != null);
+		assertThat(pages).isEqualTo(4);
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2L * pages);
+
+		assertThat(paged).extracting(ShopInventoryResponse::getProductId)
+				.containsExactlyElementsOf(data.products.stream().map(Product::getId).sorted().toList());
+		for (ShopInventoryResponse item : paged) {
+			assertThat(item.getTotalStock()).isEqualTo(10_000_000);
+			assertThat(item.getShopCode()).isEqualTo(data.shop.getCode());
+			ShopInventory record = latest.get(item.getProductId());
+			if (record == null) {
+				assertThat(item.getId()).isNull();
+				assertThat(item.getUnitPrice()).isNull();
+			} else {
+				assertThat(item.getId()).isEqualTo(record.getId());
+				assertThat(item.getUnitPrice()).isEqualByComparingTo(record.getUnitPrice());
+				assertThat(item.getSupplierName()).isEqualTo("Supplier");
+				assertThat(item.getCurrencyCode()).isEqualTo(data.currency.getCode());
+			}
+		}
+
+		assertThat(shopInventoryService.getShopInventoryFromTotal(data.shop.getId())).isEqualTo(paged);
+	}
+}
@@ -0,0 +1,121 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.ShopStockReport;
+import com.pos_onlineshop.hybrid.products.Product;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventory;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventoryRepository;
+import com.pos_onlineshop.hybrid.suppliers.Suppliers;
+import com.pos_onlineshop.hybrid.suppliers.SuppliersRepository;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PosDataJpaTest
+@Import(ShopStockReportService.class)
+class ShopStockReportServiceTests {
+
+	@Autowired
+	private ShopStockReportService reportService;
+
+	@Autowired
+	private ShopInventoryRepository shopInventoryRepository;
+
+	@Autowired
+	private SuppliersRepository suppliersRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private ApplicationContext context;
+
+	private PosTestData data;
+	private final Map<Long, ShopInventory> latest = new HashMap<>();
+	private final Map<Long, Integer> stock = new HashMap<>();
+
+	@BeforeEach
+	void setUp() {
+		String prefix = "SR" + System.nanoTime() % 100_000;
+		data = new PosTestData(context, prefix).seed(30, 0);
+		Suppliers supplier = suppliersRepository.save(Suppliers.builder().code(prefix + "-SUP").name("Supplier").build());
+		// Every fifth product has no record; the others were restocked up to three times
+		for (int i = 0; i < data.products.size(); i++) {
+			Product product = data.products.get(i);
+			int currentStock = i % 4 == 0 ? 0 : i * 3;
+			jdbcTemplate.update("UPDATE inventory_total SET totalstock = ? WHERE shop_id = ? AND product_id = ?",
+					currentStock, data.shop.getId(), product.getId());
+			stock.put(product.getId(), currentStock);
+			if (i % 5 == 0) {
+				continue;
+			}
+			for (int record = 0; record <= i % 3; record++) {
+				ShopInventory saved = shopInventoryRepository.save(ShopInventory.builder()
+						.shop(data.shop)
+						.product(product)
+						.suppliers(supplier)
+						.currency(data.currency)
+						.quantity(10)
+						.unitPrice(BigDecimal.valueOf(100 * i + record, 2))
+						.reorderLevel(40 + record)
+						.minStock(record)
+						.maxStock(1_000 + record)
+						.build());
+				shopInventoryRepository.recordLatest(saved);
+				latest.put(product.getId(), saved);
+			}
+		}
+	}
+
+	@Test
+	void rowsCarryTheLatestRecordOfEachProduct() {
+		ShopStockReport report = reportService.generate(data.shop);
+
+		assertThat(report.getShopCode()).isEqualTo(data.shop.getCode());
+		assertThat(report.getProducts()).extracting(ShopStockReport.ProductStockDetail::getProductId)
+				.containsExactlyElementsOf(data.products.stream().map(Product::getId).sorted().toList());
+
+		BigDecimal totalValue = BigDecimal.ZERO;
+		int units = 0;
+		int low = 0;
+		int out = 0;
+		for (ShopStockReport.ProductStockDetail row : report.getProducts()) {
+			int currentStock = stock.get(row.getProductId());
+			ShopInventory record = latest.get(row.getProductId());
+			BigDecimal unitPrice = record != null ? record.getUnitPrice() : BigDecimal.ZERO;
+			Integer reorderLevel = record != null ? record.getReorderLevel() : null;
+			String status = currentStock <= 0 ? "OUT_OF_STOCK"
+					: reorderLevel != null && currentStock <= reorderLevel ? "LOW_STOCK" : "IN_STOCK";
+
+			assertThat(row.getCurrentStock()).isEqualTo(currentStock);
+			assertThat(row.getUnitPrice()).isEqualByComparingTo(unitPrice);
+			assertThat(row.getTotalValue()).isEqualByComparingTo(unitPrice.multiply(BigDecimal.valueOf(currentStock)));
+			assertThat(row.getReorderLevel()).isEqualTo(reorderLevel);
+			assertThat(row.getMinStock()).isEqualTo(record != null ? record.getMinStock() : null);
+			assertThat(row.getMaxStock()).isEqualTo(record != null ? record.getMaxStock() : null);
+			assertThat(row.getCategory()).isEqualTo("General");
+			assertThat(row.getStockStatus()).isEqualTo(status);
+
+			totalValue = totalValue.add(unitPrice.multiply(BigDecimal.valueOf(currentStock)));
+			units += currentStock;
+			low += status.equals("LOW_STOCK") ? 1 : 0;
+			out += status.equals("OUT_OF_STOCK") ? 1 : 0;
+		}
+		assertThat(low).isPositive();
+		assertThat(report.getTotalProducts()).isEqualTo(30);
+		assertThat(report.getTotalStockUnits()).isEqualTo(units);
+		assertThat(report.getTotalStockValue()).isEqualByComparingTo(totalValue);
+		assertThat(report.getLowStockProductCount()).isEqualTo(low);
+		assertThat(report.getOutOfStockProductCount()).isEqualTo(out);
+	}
+}
@@ -0,0 +1,200 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.ShopStockAlerts;
+import com.pos_onlineshop.hybrid.dtos.StockAlert;
+import com.pos_onlineshop.hybrid.enums.StockLevelStatus;
+import com.pos_onlineshop.hybrid.enums.StockMovementType;
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
+import com.pos_onlineshop.hybrid.products.Product;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventory;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventoryRepository;
+import com.pos_onlineshop.hybrid.stockAlerts.StockThresholdsChangedEvent;
+import com.pos_onlineshop.hybrid.stockLedger.StockMovementReason;
+import com.pos_onlineshop.hybrid.suppliers.Suppliers;
+import com.pos_onlineshop.hybrid.suppliers.SuppliersRepository;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@PosDataJpaTest
+@Import({StockAlertService.class, StockLedgerService.class, StockMutationCoordinator.class,
+		StockValuationService.class, StockAlertServiceTests.CapturingBroker.class})
+class StockAlertServiceTests {
+
+	private static final List<Message<?>> SENT = new CopyOnWriteArrayList<>();
+
+	@TestConfiguration
+	static class CapturingBroker {
+		@Bean
+		SimpMessagingTemplate simpMessagingTemplate() {
+			return new SimpMessagingTemplate((message, timeout) -> SENT.add(message));
+		}
+	}
+
+	@Autowired
+	private StockAlertService alertService;
+
+	@Autowired
+	private StockMutationCoordinator stockMutationCoordinator;
+
+	@Autowired
+	private ShopInventoryRepository shopInventoryRepository;
+
+	@Autowired
+	private SuppliersRepository suppliersRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Test
+	void crossingsArePushedAndTheLowAndOutOfStockSetsFollowCommittedChanges() {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		String prefix = "SW" + System.nanoTime() % 100_000;
+		PosTestData data = new PosTestData(context, prefix).seed(3, 0);
+		Suppliers supplier = suppliersRepository.save(Suppliers.builder().code(prefix + "-SUP").name("Supplier").build());
+		Long shopId = data.shop.getId();
+		Long watched = data.products.get(0).getId();
+		Long belowMinimum = data.products.get(1).getId();
+		Long unrecorded = data.products.get(2).getId();
+		thresholds(data, supplier, data.products.get(0), 15, 5);
+		thresholds(data, supplier, data.products.get(1), 15, 5);
+		setStock(shopId, watched, 20);
+		setStock(shopId, belowMinimum, 3);
+		setStock(shopId, unrecorded, 0);
+
+		// The levels were loaded at startup; the stock set above bypassed the ledger
+		alertService.reload();
+		assertAlerts(alertService.getAlerts(shopId), List.of(belowMinimum), List.of(unrecorded));
+		SENT.clear();
+
+		reduce(transactionTemplate, shopId, watched, 6);
+		assertThat(sentAlerts()).singleElement().satisfies(alert -> {
+			assertThat(alert.getProductId()).isEqualTo(watched);
+			assertThat(alert.getPreviousStatus()).isEqualTo(StockLevelStatus.IN_STOCK);
+			assertThat(alert.getStatus()).isEqualTo(StockLevelStatus.LOW_STOCK);
+			assertThat(alert.getCurrentStock()).isEqualTo(14);
+			assertThat(alert.getReorderLevel()).isEqualTo(15);
+		});
+		assertThat(SENT.get(0).getHeaders().get(SimpMessageHeaderAccessor.DESTINATION_HEADER))
+				.isEqualTo("/topic/shops/" + shopId + "/stock-alerts");
+		assertAlerts(alertService.getAlerts(shopId), List.of(watched, belowMinimum), List.of(unrecorded));
+
+		// Still low, and a rolled back change: nothing to push
+		SENT.clear();
+		reduce(transactionTemplate, shopId, watched, 1);
+		transactionTemplate.executeWithoutResult(status -> {
+			stockMutationCoordinator.reduce(List.of(new StockChange(shopId, watched, 13)),
+					StockMovementReason.of(StockMovementType.SALE, null), shortfall -> new RuntimeException("Insufficient"));
+			status.setRollbackOnly();
+		});
+		assertThat(SENT).isEmpty();
+
+		transactionTemplate.executeWithoutResult(status -> stockMutationCoordinator.add(
+				List.of(new StockChange(shopId, unrecorded, 10)), StockMovementReason.of(StockMovementType.RECEIPT, null)));
+		reduce(transactionTemplate, shopId, watched, 13);
+		assertThat(sentAlerts()).extracting(StockAlert::getProductId, StockAlert::getStatus).containsExactly(
+				tuple(unrecorded, StockLevelStatus.IN_STOCK),
+				tuple(watched, StockLevelStatus.OUT_OF_STOCK));
+		assertAlerts(alertService.getAlerts(shopId), List.of(belowMinimum), List.of(watched));
+		assertThat(alertService.getAlerts()).filteredOn(alerts -> alerts.getShopId().equals(shopId)).singleElement()
+				.satisfies(alerts -> assertAlerts(alerts, List.of(belowMinimum), List.of(watched)));
+	}
+
+	@Test
+	void thresholdsAreCheckedAgainstTheLevelsHeldInMemory() {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		String prefix = "ST" + System.nanoTime() % 100_000;
+		PosTestData data = new PosTestData(context, prefix).seed(2, 0);
+		Suppliers supplier = suppliersRepository.save(Suppliers.builder().code(prefix + "-SUP").name("Supplier").build());
+		Long shopId = data.shop.getId();
+		Long stocked = data.products.get(0).getId();
+		Long unstocked = data.products.get(1).getId();
+		setStock(shopId, stocked, 8);
+		jdbcTemplate.update("DELETE FROM inventory_total WHERE shop_id = ? AND product_id = ?", shopId, unstocked);
+		thresholds(data, supplier, data.products.get(1), 15, 5);
+		alertService.reload();
+		assertAlerts(alertService.getAlerts(shopId), List.of(), List.of());
+		SENT.clear();
+
+		// As published by ShopInventoryService for a new current record
+		eventPublisher.publishEvent(new StockThresholdsChangedEvent(shopId, stocked, 10, 2));
+		assertThat(sentAlerts()).singleElement().satisfies(alert -> {
+			assertThat(alert.getStatus()).isEqualTo(StockLevelStatus.LOW_STOCK);
+			assertThat(alert.getCurrentStock()).isEqualTo(8);
+		});
+
+		// Thresholds set before the first stock arrives still apply to it
+		SENT.clear();
+		transactionTemplate.executeWithoutResult(status -> stockMutationCoordinator.add(
+				List.of(new StockChange(shopId, unstocked, 4)), StockMovementReason.of(StockMovementType.RECEIPT, null)));
+		assertThat(sentAlerts()).extracting(StockAlert::getProductId, StockAlert::getPreviousStatus, StockAlert::getStatus)
+				.containsExactly(tuple(unstocked, null, StockLevelStatus.BELOW_MIN_STOCK));
+		assertAlerts(alertService.getAlerts(shopId), List.of(stocked, unstocked), List.of());
+	}
+
+	private void reduce(TransactionTemplate transactionTemplate, Long shopId, Long productId, int quantity) {
+		transactionTemplate.executeWithoutResult(status -> stockMutationCoordinator.reduce(
+				List.of(new StockChange(shopId, productId, quantity)),
+				StockMovementReason.of(StockMovementType.SALE, null),
+				shortfall -> new RuntimeException("Insufficient stock")));
+	}
+
+	private void thresholds(PosTestData data, Suppliers supplier, Product product, int reorderLevel, int minStock) {
+		ShopInventory saved = shopInventoryRepository.save(ShopInventory.builder()
+				.shop(data.shop)
+				.product(product)
+				.suppliers(supplier)
+				.currency(data.currency)
+				.quantity(1)
+				.unitPrice(BigDecimal.ONE)
+				.reorderLevel(reorderLevel)
+				.minStock(minStock)
+				.build());
+		shopInventoryRepository.recordLatest(saved);
+	}
+
+	private void setStock(Long shopId, Long productId, int stock) {
+		jdbcTemplate.update("UPDATE inventory_total SET totalstock = ? WHERE shop_id = ? AND product_id = ?",
+				stock, shopId, productId);
+	}
+
+	private static List<StockAlert> sentAlerts() {
+		List<StockAlert> alerts = new ArrayList<>();
+		SENT.forEach(message -> alerts.add((StockAlert) message.getPayload()));
+		return alerts;
+	}
+
+	private static void assertAlerts(ShopStockAlerts alerts, List<Long> low, List<Long> out) {
+		assertThat(alerts.getLowStockProductIds()).containsExactlyElementsOf(low.stream().sorted().toList());
+		assertThat(alerts.getOutOfStockProductIds()).containsExactlyElementsOf(out.stream().sorted().toList());
+	}
+}
@@ -0,0 +1,147 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.StockAsOfResponse;
+import com.pos_onlineshop.hybrid.enums.StockMovementType;
+import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotalRepository;
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
+import com.pos_onlineshop.hybrid.stockLedger.*;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@PosDataJpaTest(properties = "stock.ledger.settle=PT0S")
+@Import({StockLedgerService.class, StockMutationCoordinator.class, StockValuationService.class})
+class StockLedgerServiceTests {
+
+	private static final LocalDateTime JANUARY = LocalDateTime.of(2025, 1, 10, 9, 0);
+
+	@Autowired
+	private StockLedgerService ledgerService;
+
+	@Autowired
+	private StockMutationCoordinator stockMutationCoordinator;
+
+	@Autowired
+	private StockMovementRepository movementRepository;
+
+	@Autowired
+	private StockLedgerCheckpointRepository checkpointRepository;
+
+	@Autowired
+	private InventoryTotalRepository inventoryTotalRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Test
+	void movementsAreWrittenWithEachChangeAndReplayToTheTotals() {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		PosTestData data = new PosTestData(context, "SL" + System.nanoTime() % 100_000).seed(3, 0);
+		Long shopId = data.shop.getId();
+		Long productId = data.products.get(0).getId();
+		ledgerService.backfillOpeningBalances();
+
+		transactionTemplate.executeWithoutResult(status -> stockMutationCoordinator.reduce(
+				List.of(new StockChange(shopId, productId, 4), new StockChange(shopId, productId, 3)),
+				StockMovementReason.of(StockMovementType.SALE, 42L),
+				shortfall -> new RuntimeException("Insufficient stock")));
+		transactionTemplate.executeWithoutResult(status -> stockMutationCoordinator.add(
+				List.of(new StockChange(shopId, productId, 2)),
+				new StockMovementReason(StockMovementType.VOID, 42L, "Customer changed their mind")));
+		// A failed change leaves no movement behind
+		assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> stockMutationCoordinator.reduce(
+				List.of(new StockChange(shopId, productId, 20_000_000)),
+				StockMovementReason.of(StockMovementType.SALE, 43L),
+				shortfall -> new RuntimeException("Insufficient stock"))))
+				.hasMessage("Insufficient stock");
+
+		List<StockMovement> movements = ledgerService.getMovements(shopId, productId, 10);
+		assertThat(movements).extracting(StockMovement::getMovementType)
+				.containsExactly(StockMovementType.VOID, StockMovementType.SALE, StockMovementType.OPENING_BALANCE);
+		assertThat(movements).extracting(StockMovement::getQuantity).containsExactly(2, -7, 10_000_000);
+		assertThat(movements.get(0).getReferenceId()).isEqualTo(42L);
+		assertThat(movements.get(0).getNotes()).isEqualTo("Customer changed their mind");
+		assertThatThrownBy(() -> ledgerService.getMovements(shopId, productId, 0))
+				.isInstanceOf(IllegalArgumentException.class);
+
+		StockAsOfResponse replayed = ledgerService.stockAsOf(shopId, LocalDateTime.now());
+		assertThat(replayed.getCheckpointMovementId()).isNull();
+		assertThat(replayed.getMovementsReplayed()).isEqualTo(5);
+		assertMatchesTotals(data, replayed);
+
+		assertThat(ledgerService.checkpointAll()).isPositive();
+		transactionTemplate.executeWithoutResult(status -> stockMutationCoordinator.reduce(
+				List.of(new StockChange(shopId, data.products.get(1).getId(), 5)),
+				StockMovementReason.of(StockMovementType.SALE, 44L),
+				shortfall -> new RuntimeException("Insufficient stock")));
+
+		StockAsOfResponse fromCheckpoint = ledgerService.stockAsOf(shopId, LocalDateTime.now());
+		assertThat(fromCheckpoint.getCheckpointMovementId()).isEqualTo(movements.get(0).getId());
+		assertThat(fromCheckpoint.getMovementsReplayed()).isEqualTo(1);
+		assertMatchesTotals(data, fromCheckpoint);
+	}
+
+	@Test
+	void stockAsOfStartsFromTheLatestCheckpointBeforeIt() {
+		PosTestData data = new PosTestData(context, "SA" + System.nanoTime() % 100_000).seed(2, 0);
+		Long shopId = data.shop.getId();
+		Long first = data.products.get(0).getId();
+		Long second = data.products.get(1).getId();
+
+		movementRepository.appendAll(List.of(new StockChange(shopId, first, 10), new StockChange(shopId, second, 5)),
+				1, StockMovementReason.of(StockMovementType.RECEIPT, null), JANUARY);
+		ledgerService.checkpointAll();
+		movementRepository.appendAll(List.of(new StockChange(shopId, first, 3)),
+				-1, StockMovementReason.of(StockMovementType.SALE, 1L), JANUARY.plusHours(1));
+		ledgerService.checkpointAll();
+		movementRepository.appendAll(List.of(new StockChange(shopId, second, 2)),
+				-1, StockMovementReason.of(StockMovementType.SALE, 2L), JANUARY.plusHours(2));
+
+		// Only the product that moved is written with the second checkpoint
+		StockLedgerCheckpoint latest = checkpointRepository.findFirstByShopIdOrderByLastMovementIdDesc(shopId).orElseThrow();
+		assertThat(latest.getBalancesWritten()).isEqualTo(1);
+		assertThat(latest.getMovementsUpTo()).isEqualTo(JANUARY.plusHours(1));
+
+		assertThat(ledgerService.stockAsOf(shopId, JANUARY.minusMinutes(1)).getLevels()).isEmpty();
+		assertThat(levels(ledgerService.stockAsOf(shopId, JANUARY.plusMinutes(30))))
+				.isEqualTo(Map.of(first, 10L, second, 5L));
+
+		StockAsOfResponse afterSale = ledgerService.stockAsOf(shopId, JANUARY.plusMinutes(90));
+		assertThat(afterSale.getCheckpointMovementId()).isEqualTo(latest.getLastMovementId());
+		assertThat(afterSale.getMovementsReplayed()).isZero();
+		assertThat(levels(afterSale)).isEqualTo(Map.of(first, 7L, second, 5L));
+
+		StockAsOfResponse tail = ledgerService.stockAsOf(shopId, JANUARY.plusHours(3));
+		assertThat(tail.getMovementsReplayed()).isEqualTo(1);
+		assertThat(levels(tail)).isEqualTo(Map.of(first, 7L, second, 3L));
+	}
+
+	private void assertMatchesTotals(PosTestData data, StockAsOfResponse response) {
+		Map<Long, Long> totals = inventoryTotalRepository.findAll().stream()
+				.filter(total -> total.getShop().getId().equals(data.shop.getId()))
+				.collect(Collectors.toMap(total -> total.getProduct().getId(), total -> (long) total.getTotalstock()));
+		assertThat(levels(response)).isEqualTo(totals);
+	}
+
+	private static Map<Long, Long> levels(StockAsOfResponse response) {
+		return response.getLevels().stream()
+				.collect(Collectors.toMap(StockAsOfResponse.StockLevel::getProductId,
+						StockAsOfResponse.StockLevel::getQuantity));
+	}
+}
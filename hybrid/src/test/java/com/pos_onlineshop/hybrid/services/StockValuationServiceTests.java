@@ -0,0 +1,163 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.enums.StockMovementType;
+import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotal;
+import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotalRepository;
+import com.pos_onlineshop.hybrid.inventoryTotal.StockChange;
+import com.pos_onlineshop.hybrid.products.Product;
+import com.pos_onlineshop.hybrid.products.ProductRepository;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventory;
+import com.pos_onlineshop.hybrid.shopInventory.ShopInventoryRepository;
+import com.pos_onlineshop.hybrid.stockLedger.StockMovementReason;
+import com.pos_onlineshop.hybrid.stockValuation.CategoryValuation;
+import com.pos_onlineshop.hybrid.stockValuation.ShopValuation;
+import com.pos_onlineshop.hybrid.stockValuation.StockValuation;
+import com.pos_onlineshop.hybrid.suppliers.Suppliers;
+import com.pos_onlineshop.hybrid.suppliers.SuppliersRepository;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PosDataJpaTest
+@Import({StockValuationService.class, StockMutationCoordinator.class, StockLedgerService.class})
+class StockValuationServiceTests {
+
+	@Autowired
+	private StockValuationService valuationService;
+
+	@Autowired
+	private StockMutationCoordinator stockMutationCoordinator;
+
+	@Autowired
+	private InventoryTotalRepository inventoryTotalRepository;
+
+	@Autowired
+	private ShopInventoryRepository shopInventoryRepository;
+
+	@Autowired
+	private SuppliersRepository suppliersRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+	private PosTestData first;
+	private PosTestData second;
+
+	@BeforeEach
+	void setUp() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		String prefix = "SV" + System.nanoTime() % 100_000;
+		first = new PosTestData(context, prefix + "A").seed(3, 0);
+		second = new PosTestData(context, prefix + "B").seed(2, 0);
+		Suppliers supplier = suppliersRepository.save(Suppliers.builder().code(prefix + "-SUP").name("Supplier").build());
+
+		// The latest record of a product sets its price and reorder level
+		stockRecord(first, supplier, first.products.get(0), "1.00", null);
+		stockRecord(first, supplier, first.products.get(0), "2.50", 100);
+		stockRecord(first, supplier, first.products.get(1), "4.00", 5);
+		stockRecord(second, supplier, second.products.get(0), "3.00", null);
+		transactionTemplate.executeWithoutResult(status -> {
+			Product product = second.products.get(1);
+			product.setCategory("Drinks");
+			context.getBean(ProductRepository.class).save(product);
+		});
+	}
+
+	@Test
+	void valuationMatchesInventoryAndFollowsCommittedChanges() {
+		assertMatchesInventory(valuationService.valueAllShops());
+
+		// Committed through the coordinator: revalued
+		transactionTemplate.executeWithoutResult(status -> stockMutationCoordinator.reduce(
+				List.of(new StockChange(first.shop.getId(), first.products.get(0).getId(), 7)),
+				StockMovementReason.of(StockMovementType.ADJUSTMENT, null),
+				shortfall -> new RuntimeException("Insufficient stock")));
+		assertMatchesInventory(valuationService.valueAllShops());
+
+		// Rolled back: still the cached valuation
+		ShopValuation cached = valuationService.valueShop(first.shop.getId());
+		transactionTemplate.executeWithoutResult(status -> {
+			stockMutationCoordinator.add(List.of(new StockChange(first.shop.getId(), first.products.get(1).getId(), 3)),
+					StockMovementReason.of(StockMovementType.ADJUSTMENT, null));
+			status.setRollbackOnly();
+		});
+		assertThat(valuationService.valueShop(first.shop.getId())).isSameAs(cached);
+
+		// Written behind the service's back: stale until marked changed
+		jdbcTemplate.update("UPDATE inventory_total SET totalstock = 2 WHERE shop_id = ?", first.shop.getId());
+		assertThat(valuationService.valueShop(first.shop.getId())).isSameAs(cached);
+		valuationService.markChanged(first.shop.getId());
+		assertMatchesInventory(valuationService.valueAllShops());
+		assertThat(valuationService.valueShop(first.shop.getId()).getLowStockCount()).isEqualTo(2);
+	}
+
+	/**
+	 * Value the inventory totals one by one, as the reports used to
+	 */
+	private void assertMatchesInventory(StockValuation valuation) {
+		BigDecimal value = BigDecimal.ZERO;
+		long units = 0;
+		BigDecimal general = BigDecimal.ZERO;
+		for (PosTestData data : List.of(first, second)) {
+			BigDecimal shopValue = BigDecimal.ZERO;
+			for (Product product : data.products) {
+				InventoryTotal total = inventoryTotalRepository.findByShopAndProduct(data.shop, product).orElseThrow();
+				BigDecimal price = shopInventoryRepository.findLatest(data.shop, product)
+						.map(ShopInventory::getUnitPrice)
+						.orElse(BigDecimal.ZERO);
+				BigDecimal lineValue = price.multiply(BigDecimal.valueOf(total.getTotalstock()));
+				shopValue = shopValue.add(lineValue);
+				units += total.getTotalstock();
+				if (product.getCategory().equals("General")) {
+					general = general.add(lineValue);
+				}
+			}
+			ShopValuation shop = valuation.getShops().stream()
+					.filter(s -> s.getShopId() == data.shop.getId())
+					.findFirst().orElseThrow();
+			assertThat(shop.getValue()).isEqualByComparingTo(shopValue);
+			assertThat(shop.getProductCount()).isEqualTo(data.products.size());
+			value = value.add(shopValue);
+		}
+
+		assertThat(valuation.getValue()).isEqualByComparingTo(value);
+		assertThat(valuation.getUnits()).isEqualTo(units);
+		assertThat(valuation.getProductCount()).isEqualTo(5);
+		assertThat(valuation.getCategories()).containsOnlyKeys("Drinks", "General");
+		CategoryValuation generalCategory = valuation.getCategories().get("General");
+		assertThat(generalCategory.getValue()).isEqualByComparingTo(general);
+		assertThat(generalCategory.getProductCount()).isEqualTo(4);
+	}
+
+	private void stockRecord(PosTestData data, Suppliers supplier, Product product, String unitPrice,
+							 Integer reorderLevel) {
+		shopInventoryRepository.recordLatest(shopInventoryRepository.save(ShopInventory.builder()
+				.shop(data.shop)
+				.product(product)
+				.suppliers(supplier)
+				.currency(data.currency)
+				.quantity(0)
+				.unitPrice(new BigDecimal(unitPrice))
+				.reorderLevel(reorderLevel)
+				.build()));
+	}
+}
@@ -0,0 +1,107 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.TopProductsReport;
+import com.pos_onlineshop.hybrid.enums.OrderStatus;
+import com.pos_onlineshop.hybrid.enums.SalesChannel;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderChangedEvent;
+import com.pos_onlineshop.hybrid.orders.OrderRepository;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import com.pos_onlineshop.hybrid.topProducts.TopProductsWindow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@PosDataJpaTest
+@Import(TopProductsService.class)
+class TopProductsServiceTests {
+
+	@Autowired
+	private TopProductsService topProductsService;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+	private PosTestData data;
+
+	@BeforeEach
+	void setUp() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		data = new PosTestData(context, "TOP" + System.nanoTime() % 100_000).seed(3, 1);
+	}
+
+	@Test
+	void sketchMatchesExactCountsOfCommittedSales() {
+		topProductsService.load();
+		sell(OrderStatus.COMPLETED, 0, 2, "1.00", 1, 5, "1.00");
+		sell(OrderStatus.COMPLETED, 0, 4, "1.00");
+		Order online = sell(OrderStatus.PENDING, 2, 1, "1.00");
+
+		// Counted once it is delivered; a rolled back sale is never counted
+		transactionTemplate.executeWithoutResult(status -> {
+			Order managed = orderRepository.findById(online.getId()).orElseThrow();
+			managed.setStatus(OrderStatus.DELIVERED);
+			context.publishEvent(OrderChangedEvent.statusChanged(managed, OrderStatus.PENDING));
+		});
+		transactionTemplate.executeWithoutResult(status -> {
+			context.publishEvent(OrderChangedEvent.created(orderRepository.findById(online.getId()).orElseThrow()));
+			status.setRollbackOnly();
+		});
+
+		TopProductsReport estimated = topProductsService.getTopProducts(data.shop.getId(), TopProductsWindow.DAY,
+				10, false, false);
+		TopProductsReport exact = topProductsService.getTopProducts(data.shop.getId(), TopProductsWindow.DAY,
+				10, false, true);
+
+		assertThat(estimated.isComplete()).isTrue();
+		assertThat(estimated.getErrorBound()).isZero();
+		assertThat(estimated.getTotalQuantity()).isEqualTo(12).isEqualTo(exact.getTotalQuantity());
+		assertThat(estimated.getProducts())
+				.extracting(TopProductsReport.Item::getProductId, TopProductsReport.Item::getProductName,
+						TopProductsReport.Item::getQuantity)
+				.containsExactlyElementsOf(exact.getProducts().stream()
+						.map(item -> tuple(item.getProductId(), item.getProductName(),
+								item.getQuantity()))
+						.toList());
+		assertThat(exact.getProducts().get(0).getProductId()).isEqualTo(data.products.get(0).getId());
+		assertThat(exact.getProducts().get(0).getQuantity()).isEqualTo(6);
+
+		// A reload reads the same sales back from the database
+		topProductsService.load();
+		assertThat(topProductsService.getTopProducts(data.shop.getId(), TopProductsWindow.DAY, 10, false, false)
+				.getProducts()).usingRecursiveComparison().isEqualTo(estimated.getProducts());
+	}
+
+	/**
+	 * Save an order placed now and record it; lines are given as product index, quantity, price
+	 */
+	private Order sell(OrderStatus status, Object... lines) {
+		return transactionTemplate.execute(tx -> {
+			Order order = data.posSale(LocalDateTime.now(), lines);
+			order.setStatus(status);
+			if (status == OrderStatus.PENDING) {
+				order.setSalesChannel(SalesChannel.ONLINE);
+			}
+			Order saved = orderRepository.save(order);
+			context.publishEvent(OrderChangedEvent.created(saved));
+			return saved;
+		});
+	}
+}
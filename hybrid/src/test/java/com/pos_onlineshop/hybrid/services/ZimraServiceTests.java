@@ -0,0 +1,71 @@
+package com.pos_onlineshop.hybrid.services;
+
+import com.pos_onlineshop.hybrid.dtos.FiscalisationResponse;
+import com.pos_onlineshop.hybrid.dtos.FiscaliseTransactionRequest;
+import com.pos_onlineshop.hybrid.enums.FiscalDeviceType;
+import com.pos_onlineshop.hybrid.enums.FiscalStatus;
+import com.pos_onlineshop.hybrid.fiscalDevice.FiscalDevice;
+import com.pos_onlineshop.hybrid.mappers.FiscalisationMapper;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderRepository;
+import com.pos_onlineshop.hybrid.repositories.FiscalDeviceRepository;
+import com.pos_onlineshop.hybrid.support.PosDataJpaTest;
+import com.pos_onlineshop.hybrid.support.PosTestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@PosDataJpaTest
+@Import({ZimraService.class, FiscalCounterAllocator.class, FiscalisationMapper.class})
+class ZimraServiceTests {
+
+	@Autowired
+	private ZimraService zimraService;
+
+	@Autowired
+	private FiscalDeviceRepository deviceRepository;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Test
+	void aFailedDocumentIsRetriedUnderTheNumberItWasGiven() {
+		PosTestData data = new PosTestData(context, "ZS" + System.nanoTime() % 100_000).seed(1, 1);
+		Order order = orderRepository.save(data.posSale(LocalDateTime.now(), 0, 1, "4.00"));
+		FiscalDevice device = deviceRepository.save(newDevice("SN-" + data.shop.getCode()));
+
+		FiscalisationResponse failed = zimraService.fiscaliseOrder(order.getId(),
+				FiscaliseTransactionRequest.builder().fiscalDeviceId(device.getId()).build());
+		assertThat(failed.getStatus()).isEqualTo(FiscalStatus.FAILED);
+		assertThat(failed.getReceiptNumber()).endsWith("-00000001");
+
+		device.setIsConnected(true);
+		deviceRepository.save(device);
+		assertThat(zimraService.retryFailedFiscalisations()).singleElement().satisfies(retried -> {
+			assertThat(retried.getStatus()).isEqualTo(FiscalStatus.FISCALISED);
+			assertThat(retried.getReceiptNumber()).isEqualTo(failed.getReceiptNumber());
+		});
+		assertThat(deviceRepository.findLastReceiptNumber(device.getId())).isEqualTo(1L);
+	}
+
+	private FiscalDevice newDevice(String serialNumber) {
+		FiscalDevice device = new FiscalDevice();
+		device.setSerialNumber(serialNumber);
+		device.setDeviceName("Till " + serialNumber);
+		device.setDeviceType(FiscalDeviceType.values()[0]);
+		device.setZimraRegistrationNumber("REG-" + serialNumber);
+		device.setCertificationDate(LocalDateTime.now());
+		device.setIsActive(true);
+		// Not answering yet, so the first attempt fails
+		device.setIsConnected(false);
+		return device;
+	}
+}
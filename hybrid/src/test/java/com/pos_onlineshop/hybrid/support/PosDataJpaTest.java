@@ -0,0 +1,32 @@
+package com.pos_onlineshop.hybrid.support;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.core.annotation.AliasFor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.*;
+
+/**
+ * JPA slice on an embedded H2 database in MySQL mode, with each test committing its own
+ * transactions as the services do in production. Services under test are added with
+ * {@code @Import}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public @interface PosDataJpaTest {
+
+	/**
+	 * Extra properties, e.g. to tune the service under test
+	 */
+	@AliasFor(annotation = DataJpaTest.class, attribute = "properties")
+	String[] properties() default {};
+}
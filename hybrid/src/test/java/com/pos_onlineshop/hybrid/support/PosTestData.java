@@ -0,0 +1,189 @@
+package com.pos_onlineshop.hybrid.support;
+
+import com.pos_onlineshop.hybrid.cashier.Cashier;
+import com.pos_onlineshop.hybrid.cashier.CashierRepository;
+import com.pos_onlineshop.hybrid.cashierSessions.CashierSession;
+import com.pos_onlineshop.hybrid.cashierSessions.CashierSessionRepository;
+import com.pos_onlineshop.hybrid.currency.Currency;
+import com.pos_onlineshop.hybrid.currency.CurrencyRepository;
+import com.pos_onlineshop.hybrid.enums.*;
+import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotal;
+import com.pos_onlineshop.hybrid.inventoryTotal.InventoryTotalRepository;
+import com.pos_onlineshop.hybrid.orderLines.OrderLine;
+import com.pos_onlineshop.hybrid.orders.Order;
+import com.pos_onlineshop.hybrid.orders.OrderRepository;
+import com.pos_onlineshop.hybrid.products.Product;
+import com.pos_onlineshop.hybrid.products.ProductRepository;
+import com.pos_onlineshop.hybrid.selling_price.SellingPrice;
+import com.pos_onlineshop.hybrid.selling_price.SellingPriceRepository;
+import com.pos_onlineshop.hybrid.shop.Shop;
+import com.pos_onlineshop.hybrid.shop.ShopRepository;
+import org.springframework.context.ApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeds an embedded database with what a till needs to sell: a base currency, a shop,
+ * priced and stocked products, and cashiers with open sessions. Optionally adds past
+ * POS orders for the reports to chew on.
+ */
+public class PosTestData {
+
+	private static final int STOCK_PER_PRODUCT = 10_000_000;
+
+	private final ApplicationContext context;
+	private final TransactionTemplate transactionTemplate;
+	private final String prefix;
+	private int receipts;
+
+	public Currency currency;
+	public Shop shop;
+	public final List<Product> products = new ArrayList<>();
+	public final List<Cashier> cashiers = new ArrayList<>();
+	public final List<CashierSession> sessions = new ArrayList<>();
+
+	public PosTestData(ApplicationContext context, String prefix) {
+		this.context = context;
+		this.transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+		this.prefix = prefix;
+	}
+
+	public PosTestData seed(int productCount, int cashierCount) {
+		transactionTemplate.executeWithoutResult(status -> {
+			CurrencyRepository currencyRepository = context.getBean(CurrencyRepository.class);
+			currency = currencyRepository.findByBaseCurrencyTrue().orElseGet(() -> currencyRepository.save(Currency.builder()
+					.code("USD")
+					.name("US Dollar")
+					.symbol("$")
+					.baseCurrency(true)
+					.build()));
+
+			shop = context.getBean(ShopRepository.class).save(Shop.builder()
+					.code(prefix + "-SHOP")
+					.name(prefix + " Shop")
+					.defaultCurrency(currency)
+					.build());
+
+			ProductRepository productRepository = context.getBean(ProductRepository.class);
+			SellingPriceRepository priceRepository = context.getBean(SellingPriceRepository.class);
+			InventoryTotalRepository totalRepository = context.getBean(InventoryTotalRepository.class);
+			for (int i = 0; i < productCount; i++) {
+				Product product = productRepository.save(Product.builder()
+						.name(prefix + " product " + i)
+						.category("General")
+						.sku(prefix + "-SKU-" + i)
+						.barcode(prefix + "-BC-" + i)
+						.build());
+				products.add(product);
+
+				priceRepository.save(SellingPrice.builder()
+						.product(product)
+						.shop(shop)
+						.currency(currency)
+						.priceType(PriceType.REGULAR)
+						.sellingPrice(BigDecimal.valueOf(100 + i * 25L, 2))
+						.effectiveFrom(LocalDateTime.now().minusDays(1))
+						.build());
+
+				totalRepository.save(InventoryTotal.builder()
+						.shop(shop)
+						.product(product)
+						.totalstock(STOCK_PER_PRODUCT)
+						.build());
+			}
+
+			CashierRepository cashierRepository = context.getBean(CashierRepository.class);
+			CashierSessionRepository sessionRepository = context.getBean(CashierSessionRepository.class);
+			for (int i = 0; i < cashierCount; i++) {
+				Cashier cashier = cashierRepository.save(Cashier.builder()
+						.employeeId(prefix + "-EMP-" + i)
+						.username(prefix.toLowerCase() + ".cashier" + i)
+						.password("not-used")
+						.firstName("Cashier")
+						.lastName(String.valueOf(i))
+						.email(prefix.toLowerCase() + ".cashier" + i + "@example.com")
+						.assignedShop(shop)
+						.role(CashierRole.CASHIER)
+						.build());
+				cashiers.add(cashier);
+
+				sessions.add(sessionRepository.save(CashierSession.builder()
+						.cashier(cashier)
+						.shop(shop)
+						.terminalId(prefix + "-TILL-" + i)
+						.sessionStart(LocalDateTime.now())
+						.openingCash(BigDecimal.ZERO)
+						.expectedCash(BigDecimal.ZERO)
+						.status(SessionStatus.ACTIVE)
+						.build()));
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * An unsaved, completed cash sale at the shop's first till; lines are given as product
+	 * index, quantity, unit price
+	 */
+	public Order posSale(LocalDateTime at, Object... lines) {
+		Order order = Order.builder()
+				.shop(shop)
+				.currency(currency)
+				.cashier(cashiers.get(0))
+				.salesChannel(SalesChannel.POS)
+				.paymentMethod(PaymentMethod.CASH)
+				.status(OrderStatus.COMPLETED)
+				.receiptNumber(prefix + "-R" + receipts++)
+				.orderDate(at)
+				.build();
+		for (int i = 0; i < lines.length; i += 3) {
+			OrderLine line = OrderLine.builder().quantity((Integer) lines[i + 1]).build();
+			line.copyProductDetails(products.get((Integer) lines[i]), currency, new BigDecimal((String) lines[i + 2]));
+			order.addOrderLine(line);
+		}
+		return order;
+	}
+
+	/**
+	 * Add completed POS orders spread over the last 60 days
+	 */
+	public PosTestData seedOrderHistory(int orderCount) {
+		OrderRepository orderRepository = context.getBean(OrderRepository.class);
+		Random random = new Random(11);
+		int batch = 500;
+		for (int start = 0; start < orderCount; start += batch) {
+			int from = start;
+			int to = Math.min(orderCount, start + batch);
+			transactionTemplate.executeWithoutResult(status -> {
+				List<Order> orders = new ArrayList<>(to - from);
+				for (int i = from; i < to; i++) {
+					Product product = products.get(random.nextInt(products.size()));
+					Order order = Order.builder()
+							.shop(shop)
+							.currency(currency)
+							.cashier(cashiers.get(i % cashiers.size()))
+							.salesChannel(SalesChannel.POS)
+							.paymentMethod(PaymentMethod.CASH)
+							.status(OrderStatus.COMPLETED)
+							.receiptNumber(prefix + "-HIST-" + i)
+							.orderDate(LocalDateTime.now().minusMinutes(random.nextInt(60 * 24 * 60)))
+							.build();
+					OrderLine line = OrderLine.builder()
+							.quantity(1 + random.nextInt(5))
+							.build();
+					line.copyProductDetails(product, currency, BigDecimal.valueOf(100 + random.nextInt(5000), 2));
+					order.addOrderLine(line);
+					orders.add(order);
+				}
+				orderRepository.saveAll(orders);
+			});
+		}
+		return this;
+	}
+}
@@ -0,0 +1,108 @@
+package com.pos_onlineshop.hybrid.topProducts;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpaceSavingTests {
+
+	@Test
+	void estimatesStayWithinErrorBoundsOfExactCounts() {
+		Random random = new Random(7);
+		SpaceSaving sketch = new SpaceSaving(50);
+		Map<Long, Long> exact = new HashMap<>();
+		long total = 0;
+		for (int i = 0; i < 200_000; i++) {
+			// Skewed: a few best sellers over a long tail of 5,000 products
+			long product = (long) Math.floor(Math.pow(random.nextDouble(), 3) * 5_000);
+			int quantity = 1 + random.nextInt(3);
+			sketch.add(product, quantity);
+			exact.merge(product, (long) quantity, Long::sum);
+			total += quantity;
+		}
+
+		assertThat(sketch.total()).isEqualTo(total);
+		assertThat(sketch.errorBound()).isLessThanOrEqualTo(total / 50);
+		for (HeavyHitter hitter : sketch.top(50)) {
+			long count = exact.getOrDefault(hitter.productId(), 0L);
+			assertThat(hitter.count()).isGreaterThanOrEqualTo(count);
+			assertThat(hitter.count() - hitter.error()).isLessThanOrEqualTo(count);
+			assertThat(hitter.error()).isLessThanOrEqualTo(sketch.errorBound());
+		}
+
+		// Every product above N / capacity is tracked
+		Set<Long> tracked = new HashSet<>();
+		sketch.top(50).forEach(hitter -> tracked.add(hitter.productId()));
+		long threshold = total / 50;
+		exact.forEach((product, count) -> {
+			if (count > threshold) {
+				assertThat(tracked).contains(product);
+			}
+		});
+
+		assertThat(sketch.top(1).get(0).productId()).isZero();
+	}
+
+	@Test
+	void isExactUntilACounterIsTakenOver() {
+		SpaceSaving sketch = new SpaceSaving(3);
+		sketch.add(1, 5);
+		sketch.add(2, 2);
+		sketch.add(1, 1);
+		sketch.add(3, 4);
+
+		assertThat(sketch.errorBound()).isEqualTo(2);
+		assertThat(sketch.top(2)).containsExactly(new HeavyHitter(1, 6, 0), new HeavyHitter(3, 4, 0));
+
+		// Product 4 takes over product 2's counter and its count as error
+		sketch.add(4, 1);
+		assertThat(sketch.top(3)).containsExactly(new HeavyHitter(1, 6, 0), new HeavyHitter(3, 4, 0),
+				new HeavyHitter(4, 3, 2));
+	}
+
+	@Test
+	void takingWeightBackNeverLetsAnEstimateUndercount() {
+		SpaceSaving sketch = new SpaceSaving(2);
+		sketch.add(1, 5);
+		sketch.add(2, 2);
+		// Product 3 takes over product 2's counter: 3 units, 2 of them error
+		sketch.add(3, 1);
+
+		sketch.remove(1, 4);
+		sketch.remove(3, 1);
+		// Product 2 is no longer tracked; its units only leave the total
+		sketch.remove(2, 2);
+
+		assertThat(sketch.total()).isEqualTo(1);
+		assertThat(sketch.top(2)).containsExactly(new HeavyHitter(3, 2, 2), new HeavyHitter(1, 1, 0));
+	}
+
+	@Test
+	void trackerRollsWindowsForwardAndKeepsThePreviousOne() {
+		TopProductsTracker tracker = new TopProductsTracker(10);
+		LocalDateTime nine = LocalDateTime.of(2026, 3, 4, 9, 15);
+		tracker.record(1L, nine, 100, 2);
+		tracker.record(2L, nine, 100, 1);
+		tracker.record(1L, nine.plusHours(1), 200, 5);
+		// Older than the previous hour, so only the day and week count it
+		tracker.record(1L, nine.minusHours(2), 300, 1);
+
+		assertThat(tracker.top(1L, TopProductsWindow.HOUR, nine.plusHours(1).withMinute(0), 5).products())
+				.containsExactly(new HeavyHitter(200, 5, 0));
+		assertThat(tracker.top(1L, TopProductsWindow.HOUR, nine.withMinute(0), 5).products())
+				.containsExactly(new HeavyHitter(100, 2, 0));
+		assertThat(tracker.top(1L, TopProductsWindow.HOUR, nine.minusHours(2).withMinute(0), 5).products())
+				.isEmpty();
+		assertThat(tracker.top(null, TopProductsWindow.DAY, nine.toLocalDate().atStartOfDay(), 5).products())
+				.containsExactly(new HeavyHitter(200, 5, 0), new HeavyHitter(100, 3, 0), new HeavyHitter(300, 1, 0));
+		assertThat(tracker.top(2L, TopProductsWindow.WEEK, LocalDateTime.of(2026, 3, 2, 0, 0), 5).totalQuantity())
+				.isEqualTo(1);
+	}
+}